@@ -0,0 +1,107 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.compression.ContentCoding;
+import com.example.demo.service.CsvReaderType;
+import com.example.demo.service.ProcessingMode;
+import com.example.demo.service.ProcessingOptions;
+import com.example.demo.service.TransactionProxyServiceImpl;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Whole {@code processTransactions} stream, from upstream bytes to the last output byte.
+ * The {@code rows} and {@code bytes} counters give rows/s and bytes/s of output.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx512m", "-XX:+UseG1GC"})
+public class ProcessTransactionsBenchmark {
+    @Param({"10000", "1000000", "10000000"})
+    private long rows;
+
+    @Param({"OPENCSV", "TOKENIZER"})
+    private CsvReaderType reader;
+
+    @Param({"FULL", "PASSTHROUGH"})
+    private ProcessingMode mode;
+
+    /** PIPE reads the returned PipedInputStream; DIRECT writes straight into the consumer's OutputStream. */
+    @Param({"PIPE", "DIRECT"})
+    private String output;
+
+    /** Response coding; run with {@code -p compression=IDENTITY,GZIP,ZSTD} to compare. */
+    @Param({"IDENTITY"})
+    private ContentCoding compression;
+
+    private TransactionProxyServiceImpl service;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Output {
+        public long rows;
+        public long bytes;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        service = new TransactionProxyServiceImpl();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    @Benchmark
+    public void processTransactions(Output counters) throws IOException, InterruptedException {
+        ProcessingOptions options = ProcessingOptions.builder().reader(reader).mode(mode)
+                .compression(compression).build();
+        if (output.equals("DIRECT")) {
+            CountingOutputStream out = new CountingOutputStream();
+            service.processTransactions(SyntheticTransactions.stream(rows), out, options);
+            counters.bytes += out.count;
+        } else {
+            byte[] buffer = new byte[65536];
+            try (InputStream processed = service.processTransactions(SyntheticTransactions.stream(rows), options)) {
+                int read;
+                while ((read = processed.read(buffer)) != -1) {
+                    counters.bytes += read;
+                }
+            }
+        }
+        counters.rows += rows;
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.demo.benchmark;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic spending.gov.ua-shaped CSV rows: 38 columns, Cyrillic names and payment
+ * details, quoted fields with embedded commas and doubled quotes.
+ */
+public final class SyntheticTransactions {
+    public static final String HEADER = "id,doc_vob,doc_vob_name,doc_number,doc_date,doc_v_date,trans_date,amount,"
+            + "amount_cop,currency,payer_edrpou,payer_name,payer_account,payer_mfo,payer_bank,payer_edrpou_fact,"
+            + "payer_name_fact,recipt_edrpou,recipt_name,recipt_account,recipt_mfo,recipt_bank,recipt_edrpou_fact,"
+            + "recipt_name_fact,payment_details,doc_add_attr,region_id,payment_type,payment_data,source_id,"
+            + "source_name,kekv,kpk,contractId,contractNumber,budgetCode,system_key,system_key_ff";
+
+    private static final String[] PAYERS = {
+            "\"Виділення асигнувань по ЗФ\"",
+            "\"ГУ ДКСУ у м.Києві, відділ розрахунків\"",
+            "Управління освіти Київської РДА",
+            "\"КНП \"\"Міська лікарня №3\"\"\""
+    };
+    private static final String[] RECIPIENTS = {
+            "Мінфін",
+            "\"ТОВ \"\"Будсервіс-Україна\"\"\"",
+            "ФОП Коваленко Олена Петрівна",
+            "\"ПрАТ \"\"Київенерго\"\", філія\""
+    };
+    private static final String[] DETAILS = {
+            "\"Процентний. Розп.МФУ від 10.10.xxxx №xxxx\"",
+            "\"Оплата за послуги з постачання теплової енергії, рах. №%d від 01.10.2024, без ПДВ\"",
+            "\"Заробітна плата за жовтень 2024 р., \"\"аванс\"\"\"",
+            "Придбання канцтоварів згідно договору №%d"
+    };
+    private static final String[] BANKS = {"", "АТ КБ \"\"ПриватБанк\"\"", "Казначейство України"};
+    private static final int[] KEKV = {2111, 2120, 2210, 2240, 2271, 2410, 2420, 2610};
+    private static final LocalDate FIRST_DAY = LocalDate.of(2024, 1, 1);
+
+    private SyntheticTransactions() {
+    }
+
+    public static String row(long index) {
+        SplittableRandom random = new SplittableRandom(index);
+        long cop = 1 + random.nextLong(1_000_000_000_000L);
+        LocalDate date = FIRST_DAY.plusDays(index % 366);
+        String bank = BANKS[random.nextInt(BANKS.length)];
+        return new StringBuilder(512)
+                .append(290_000_000L + index).append(",6,,")
+                .append(random.nextInt(1000)).append('/').append(random.nextInt(10_000)).append(',')
+                .append(date).append(',').append(date).append(',').append(date).append(',')
+                .append(cop / 100).append('.').append(String.format("%02d", cop % 100)).append(',')
+                .append(cop).append(",UAH,")
+                .append(37_567_646 + random.nextInt(64)).append(',')
+                .append(PAYERS[random.nextInt(PAYERS.length)]).append(',')
+                .append("UA6182017200000423140000").append(10_000 + random.nextInt(90_000)).append(",,")
+                .append(bank.isEmpty() ? "" : "\"" + bank + "\"").append(",,,")
+                .append(String.format("%08d", random.nextInt(100_000_000))).append(',')
+                .append(RECIPIENTS[random.nextInt(RECIPIENTS.length)]).append(',')
+                .append("UA6082017203433400230000").append(10_000 + random.nextInt(90_000)).append(",,,,,")
+                .append(String.format(DETAILS[random.nextInt(DETAILS.length)], random.nextInt(100_000))).append(",,")
+                .append(1 + random.nextInt(28)).append(",nsep,,2,ДКСУ,")
+                .append(KEKV[random.nextInt(KEKV.length)]).append(',')
+                .append(3_511_000 + random.nextInt(1000)).append(",,,9900000000,")
+                .append(176_000_000L + index).append(',')
+                .toString();
+    }
+
+    public static String csv(int rows) {
+        StringBuilder csv = new StringBuilder(HEADER).append('\n');
+        for (int i = 0; i < rows; i++) {
+            csv.append(row(i)).append('\n');
+        }
+        return csv.toString();
+    }
+
+    /** Generates rows lazily, so 10M-row inputs do not have to fit in memory. */
+    public static InputStream stream(long rows) {
+        return new InputStream() {
+            private byte[] current = (HEADER + '\n').getBytes(StandardCharsets.UTF_8);
+            private int position;
+            private long next;
+
+            @Override
+            public int read() {
+                byte[] single = new byte[1];
+                return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] target, int offset, int length) {
+                if (length == 0) {
+                    return 0;
+                }
+                int copied = 0;
+                while (copied < length) {
+                    if (position == current.length) {
+                        if (next == rows) {
+                            break;
+                        }
+                        current = (row(next++) + '\n').getBytes(StandardCharsets.UTF_8);
+                        position = 0;
+                    }
+                    int chunk = Math.min(length - copied, current.length - position);
+                    System.arraycopy(current, position, target, offset + copied, chunk);
+                    position += chunk;
+                    copied += chunk;
+                }
+                return copied == 0 ? -1 : copied;
+            }
+        };
+    }
+}
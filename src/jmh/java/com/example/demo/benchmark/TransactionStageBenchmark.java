@@ -0,0 +1,120 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.csv.CsvRecord;
+import com.example.demo.csv.CsvTokenizer;
+import com.example.demo.model.CompactTransaction;
+import com.example.demo.model.StringInterner;
+import com.example.demo.model.TransactionDto;
+import com.opencsv.CSVParser;
+import com.opencsv.CSVParserBuilder;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Per-row cost of each stage on its own. Scores are rows per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionStageBenchmark {
+    private static final int ROWS = 10_000;
+
+    private String[] lines;
+    private String[][] columns;
+    private TransactionDto[] transactions;
+    private CSVParser parser;
+    private ByteBuffer csvBytes;
+    private CsvRecord record;
+    private CompactTransaction compact;
+    private ByteArrayOutputStream compactOutput;
+
+    @Setup
+    public void setUp() throws IOException {
+        parser = new CSVParserBuilder().withSeparator(',').build();
+        lines = new String[ROWS];
+        columns = new String[ROWS][];
+        transactions = new TransactionDto[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            lines[i] = SyntheticTransactions.row(i);
+            columns[i] = parser.parseLine(lines[i]);
+            transactions[i] = new TransactionDto(columns[i]);
+            transactions[i].generateHash();
+        }
+        csvBytes = ByteBuffer.wrap(String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+        record = new CsvRecord();
+        compact = new CompactTransaction(new StringInterner(4096));
+        compactOutput = new ByteArrayOutputStream(4096);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void parse(Blackhole blackhole) throws IOException {
+        for (String line : lines) {
+            blackhole.consume(parser.parseLine(line));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void tokenize(Blackhole blackhole) {
+        int position = 0;
+        while (position < csvBytes.limit()) {
+            position = CsvTokenizer.nextRecord(csvBytes, position, csvBytes.limit(), record);
+            blackhole.consume(record.length(0));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void buildDto(Blackhole blackhole) {
+        for (String[] row : columns) {
+            blackhole.consume(new TransactionDto(row));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void generateHash(Blackhole blackhole) {
+        for (TransactionDto transaction : transactions) {
+            transaction.generateHash();
+            blackhole.consume(transaction.getHash());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void toCsv(Blackhole blackhole) {
+        for (TransactionDto transaction : transactions) {
+            blackhole.consume(transaction.toCsv());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void compactRecord(Blackhole blackhole) throws IOException {
+        for (String[] row : columns) {
+            compactOutput.reset();
+            blackhole.consume(compact.parse(row));
+            compact.write(compactOutput);
+        }
+        blackhole.consume(compactOutput.size());
+    }
+}
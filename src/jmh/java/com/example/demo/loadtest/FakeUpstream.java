@@ -0,0 +1,197 @@
+package com.example.demo.loadtest;
+
+import com.example.demo.benchmark.SyntheticTransactions;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Local stand-in for the spending.gov.ua transactions endpoint. Every request gets
+ * {@link SyntheticTransactions} rows as a chunked body, shaped by a {@link Profile}: time to the
+ * response headers, write size, bandwidth, and injected faults. It speaks just enough HTTP/1.1
+ * over plain sockets to end a body with a TCP reset, which a servlet container cannot do.
+ */
+public final class FakeUpstream implements AutoCloseable {
+    @Value
+    @Builder
+    public static class Profile {
+        /** Rows per response, after the header. */
+        @Builder.Default
+        long rows = 100_000;
+        /** Body bytes per second of each response; 0 means as fast as the client reads. */
+        @Builder.Default
+        long bytesPerSecond = 0;
+        /** Wait before the response headers. */
+        @Builder.Default
+        Duration latency = Duration.ZERO;
+        /** Bytes per chunk; each chunk is flushed on its own. */
+        @Builder.Default
+        int chunkSize = 64 * 1024;
+        /** Share of requests answered with 503. */
+        @Builder.Default
+        double serverErrorRate = 0;
+        /** Share of responses reset part way through the body. */
+        @Builder.Default
+        double resetRate = 0;
+        /** Share of responses sent at {@link #dripBytesPerSecond} instead. */
+        @Builder.Default
+        double dripRate = 0;
+        @Builder.Default
+        long dripBytesPerSecond = 16 * 1024;
+    }
+
+    private final Profile profile;
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "fake-upstream");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder serverErrors = new LongAdder();
+    private final LongAdder resets = new LongAdder();
+    private final LongAdder drips = new LongAdder();
+
+    private FakeUpstream(Profile profile, ServerSocket serverSocket) {
+        this.profile = profile;
+        this.serverSocket = serverSocket;
+    }
+
+    /** Listens on {@code port} of the loopback address, or on any free port for 0. */
+    public static FakeUpstream start(Profile profile, int port) throws IOException {
+        FakeUpstream upstream = new FakeUpstream(profile,
+                new ServerSocket(port, 512, InetAddress.getLoopbackAddress()));
+        Thread acceptor = new Thread(upstream::accept, "fake-upstream-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return upstream;
+    }
+
+    /** The value for {@code upstream.base-url}. */
+    public String baseUrl() {
+        return "http://127.0.0.1:" + serverSocket.getLocalPort() + "/";
+    }
+
+    public String summary() {
+        return String.format("%d requests, %d answered 503, %d reset, %d dripped",
+                requests.sum(), serverErrors.sum(), resets.sum(), drips.sum());
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        connections.shutdownNow();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.execute(() -> serve(socket));
+            } catch (IOException e) {
+                // Closed.
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            readRequestHead(socket.getInputStream());
+            requests.increment();
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            sleep(profile.getLatency().toNanos());
+            OutputStream out = socket.getOutputStream();
+            double roll = random.nextDouble();
+            if (roll < profile.getServerErrorRate()) {
+                serverErrors.increment();
+                out.write(("HTTP/1.1 503 Service Unavailable\r\nContent-Length: 0\r\nConnection: close\r\n\r\n")
+                        .getBytes(StandardCharsets.US_ASCII));
+                return;
+            }
+            roll -= profile.getServerErrorRate();
+            long resetAfter = Long.MAX_VALUE;
+            long bytesPerSecond = profile.getBytesPerSecond();
+            if (roll < profile.getResetRate()) {
+                resets.increment();
+                // Somewhere in the first half of a typical body; rows are about 600 bytes.
+                resetAfter = 1 + random.nextLong(Math.max(1, profile.getRows() * 300));
+            } else if (roll - profile.getResetRate() < profile.getDripRate()) {
+                drips.increment();
+                bytesPerSecond = profile.getDripBytesPerSecond();
+            }
+            out.write(("HTTP/1.1 200 OK\r\nContent-Type: text/csv; charset=utf-8\r\n"
+                    + "Transfer-Encoding: chunked\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            if (!writeBody(out, bytesPerSecond, resetAfter)) {
+                // A zero linger turns the close into a TCP reset.
+                socket.setSoLinger(true, 0);
+            }
+        } catch (IOException e) {
+            // The client went away.
+        }
+    }
+
+    /** @return false if the body was cut off at {@code resetAfter} bytes */
+    private boolean writeBody(OutputStream out, long bytesPerSecond, long resetAfter) throws IOException {
+        byte[] chunk = new byte[profile.getChunkSize()];
+        long start = System.nanoTime();
+        long sent = 0;
+        try (InputStream body = SyntheticTransactions.stream(profile.getRows())) {
+            for (int n; (n = body.readNBytes(chunk, 0, chunk.length)) > 0; ) {
+                if (sent + n > resetAfter) {
+                    writeChunk(out, chunk, (int) (resetAfter - sent));
+                    return false;
+                }
+                writeChunk(out, chunk, n);
+                sent += n;
+                if (bytesPerSecond > 0) {
+                    sleep(start + TimeUnit.SECONDS.toNanos(sent) / bytesPerSecond - System.nanoTime());
+                }
+            }
+        }
+        out.write("0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        return true;
+    }
+
+    private static void writeChunk(OutputStream out, byte[] data, int length) throws IOException {
+        if (length > 0) {
+            out.write((Integer.toHexString(length) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.write(data, 0, length);
+            out.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+        }
+    }
+
+    /** Reads up to the blank line after the headers; the request itself does not matter. */
+    private static void readRequestHead(InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII));
+        String line;
+        while ((line = reader.readLine()) != null && !line.isEmpty()) {
+            // Skip.
+        }
+    }
+
+    private static void sleep(long nanos) {
+        if (nanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(nanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.demo.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Keeps {@link Plan#getClients()} {@code /transactions/proxy} requests in flight for the plan's
+ * duration, each client sending its next request when the previous body ends. Every request asks
+ * for a random day of 2024, so the cache and request coalescing see few repeats. Bodies are
+ * drained and discarded; only their timing and size are kept.
+ */
+public final class LoadDriver {
+    private static final LocalDate FIRST_DAY = LocalDate.of(2024, 1, 1);
+
+    @Value
+    @Builder
+    public static class Plan {
+        /** The proxy's context root, such as {@code http://localhost:8080/api/v2/}. */
+        String target;
+        int clients;
+        Duration duration;
+        /** Extra query parameters for every request, such as {@code reader=TOKENIZER&format=NDJSON}. */
+        String query;
+        /** Sent as {@code Accept-Encoding}; null for none. */
+        String acceptEncoding;
+    }
+
+    /** One request: {@code ttfbNanos} is -1 if no body byte arrived, {@code outcome} "ok" for a complete 200. */
+    @Value
+    public static class Sample {
+        long ttfbNanos;
+        long latencyNanos;
+        long bytes;
+        String outcome;
+    }
+
+    @Value
+    public static class Result {
+        List<Sample> samples;
+        long elapsedNanos;
+
+        public String report() {
+            List<Sample> ok = samples.stream().filter(sample -> "ok".equals(sample.getOutcome())).toList();
+            double seconds = elapsedNanos / 1e9;
+            long bytes = samples.stream().mapToLong(Sample::getBytes).sum();
+            Map<String, Long> failures = samples.stream()
+                    .filter(sample -> !"ok".equals(sample.getOutcome()))
+                    .collect(Collectors.groupingBy(Sample::getOutcome, TreeMap::new, Collectors.counting()));
+            long[] ttfb = ok.stream().mapToLong(Sample::getTtfbNanos).sorted().toArray();
+            long[] latency = ok.stream().mapToLong(Sample::getLatencyNanos).sorted().toArray();
+            return String.format("requests   %d ok, %d failed %s in %.1f s%n"
+                            + "throughput %.1f req/s, %.1f MB/s%n"
+                            + "ttfb       p50 %s  p99 %s  max %s%n"
+                            + "latency    p50 %s  p99 %s  max %s%n",
+                    ok.size(), samples.size() - ok.size(), failures, seconds,
+                    ok.size() / seconds, bytes / seconds / (1 << 20),
+                    millis(ttfb, 0.50), millis(ttfb, 0.99), millis(ttfb, 1),
+                    millis(latency, 0.50), millis(latency, 0.99), millis(latency, 1));
+        }
+
+        private static String millis(long[] sorted, double quantile) {
+            if (sorted.length == 0) {
+                return "-";
+            }
+            int index = (int) Math.ceil(quantile * sorted.length) - 1;
+            return String.format("%.1f ms", sorted[Math.max(0, index)] / 1e6);
+        }
+    }
+
+    private final Plan plan;
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    public LoadDriver(Plan plan) {
+        this.plan = plan;
+    }
+
+    public Result run() throws InterruptedException {
+        ConcurrentLinkedQueue<Sample> samples = new ConcurrentLinkedQueue<>();
+        long start = System.nanoTime();
+        long end = start + plan.getDuration().toNanos();
+        ExecutorService clients = Executors.newFixedThreadPool(plan.getClients());
+        for (int i = 0; i < plan.getClients(); i++) {
+            clients.execute(() -> {
+                while (System.nanoTime() < end && !Thread.currentThread().isInterrupted()) {
+                    samples.add(request());
+                }
+            });
+        }
+        clients.shutdown();
+        // A drip-fed body may outlast the plan; give it a while, then cut it off.
+        if (!clients.awaitTermination(plan.getDuration().toMillis() + TimeUnit.MINUTES.toMillis(2), TimeUnit.MILLISECONDS)) {
+            clients.shutdownNow();
+        }
+        return new Result(new ArrayList<>(samples), System.nanoTime() - start);
+    }
+
+    private Sample request() {
+        LocalDate day = FIRST_DAY.plusDays(ThreadLocalRandom.current().nextInt(366));
+        String query = "startDate=" + day + "&endDate=" + day
+                + (plan.getQuery() == null || plan.getQuery().isEmpty() ? "" : "&" + plan.getQuery());
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(plan.getTarget() + "transactions/proxy?" + query))
+                .GET();
+        if (plan.getAcceptEncoding() != null) {
+            request.header("Accept-Encoding", plan.getAcceptEncoding());
+        }
+        long start = System.nanoTime();
+        long ttfb = -1;
+        long bytes = 0;
+        try {
+            HttpResponse<InputStream> response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+            byte[] buffer = new byte[64 * 1024];
+            try (InputStream body = response.body()) {
+                for (int n; (n = body.read(buffer)) >= 0; ) {
+                    if (ttfb < 0 && n > 0) {
+                        ttfb = System.nanoTime() - start;
+                    }
+                    bytes += n;
+                }
+            }
+            String outcome = response.statusCode() == 200 ? "ok" : "status " + response.statusCode();
+            return new Sample(ttfb, System.nanoTime() - start, bytes, outcome);
+        } catch (IOException e) {
+            return new Sample(ttfb, System.nanoTime() - start, bytes, ttfb < 0 ? "no body" : "aborted");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Sample(ttfb, System.nanoTime() - start, bytes, "interrupted");
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.demo.loadtest;
+
+import com.example.demo.TransactionProxyApplication;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Load test of {@code /transactions/proxy} against {@link FakeUpstream}. Starts the proxy in
+ * this JVM unless {@code --target} names a running one, which must then have its
+ * {@code upstream.base-url} pointed at {@code --upstream-port}. The cache and request coalescing
+ * are off in-process so every request goes through the pipeline. Options, with defaults:
+ *
+ * <pre>
+ * --clients=32 --duration=30s --query= --accept-encoding=
+ * --rows=100000 --rate=0 --latency=0ms --chunk=65536
+ * --error-rate=0 --reset-rate=0 --drip-rate=0 --drip-bytes-per-second=16384
+ * --target= --upstream-port=0 --cache=false --coalescing=false
+ * </pre>
+ */
+public final class LoadTest {
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        FakeUpstream.Profile profile = FakeUpstream.Profile.builder()
+                .rows(Long.parseLong(options.getOrDefault("rows", "100000")))
+                .bytesPerSecond(Long.parseLong(options.getOrDefault("rate", "0")))
+                .latency(duration(options.getOrDefault("latency", "0ms")))
+                .chunkSize(Integer.parseInt(options.getOrDefault("chunk", "65536")))
+                .serverErrorRate(Double.parseDouble(options.getOrDefault("error-rate", "0")))
+                .resetRate(Double.parseDouble(options.getOrDefault("reset-rate", "0")))
+                .dripRate(Double.parseDouble(options.getOrDefault("drip-rate", "0")))
+                .dripBytesPerSecond(Long.parseLong(options.getOrDefault("drip-bytes-per-second", "16384")))
+                .build();
+        String encoding = options.getOrDefault("accept-encoding", "");
+        try (FakeUpstream upstream = FakeUpstream.start(profile,
+                Integer.parseInt(options.getOrDefault("upstream-port", "0")))) {
+            ConfigurableApplicationContext proxy = null;
+            String target = options.get("target");
+            if (target == null) {
+                proxy = SpringApplication.run(TransactionProxyApplication.class,
+                        "--server.port=0",
+                        "--upstream.base-url=" + upstream.baseUrl(),
+                        "--cache.enabled=" + options.getOrDefault("cache", "false"),
+                        "--coalescing.enabled=" + options.getOrDefault("coalescing", "false"));
+                target = "http://127.0.0.1:" + proxy.getEnvironment().getProperty("local.server.port") + "/api/v2/";
+            } else if (!target.endsWith("/")) {
+                target += "/";
+            }
+            System.out.println("upstream   " + upstream.baseUrl() + " " + profile);
+            System.out.println("proxy      " + target + (proxy != null ? " (in-process: heap and GC include the driver)" : ""));
+            LoadDriver.Plan plan = LoadDriver.Plan.builder()
+                    .target(target)
+                    .clients(Integer.parseInt(options.getOrDefault("clients", "32")))
+                    .duration(duration(options.getOrDefault("duration", "30s")))
+                    .query(options.getOrDefault("query", ""))
+                    .acceptEncoding(encoding.isEmpty() ? null : encoding)
+                    .build();
+            ServerMetrics metrics = ServerMetrics.start(target);
+            LoadDriver.Result result = new LoadDriver(plan).run();
+            metrics.close();
+            System.out.print(result.report());
+            System.out.print(metrics.report());
+            System.out.println("upstream   " + upstream.summary());
+            if (proxy != null) {
+                proxy.close();
+            }
+        }
+        // Clients cut off after the run may still hold non-daemon HTTP threads.
+        System.exit(0);
+    }
+
+    private static Duration duration(String value) {
+        return DurationStyle.detectAndParse(value);
+    }
+}
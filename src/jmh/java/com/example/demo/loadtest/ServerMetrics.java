@@ -0,0 +1,105 @@
+package com.example.demo.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples the proxy's heap and GC meters from {@code /actuator/metrics} while the load runs, so
+ * an out-of-process proxy can be measured as well. Heap is the peak of the samples; GC is the
+ * difference between the first and the last sample.
+ */
+public final class ServerMetrics implements AutoCloseable {
+    private static final long SAMPLE_MILLIS = 500;
+
+    private final String target;
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "server-metrics");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final double[] firstGc;
+    private volatile double[] lastGc;
+    private volatile double peakHeap;
+    private volatile String error;
+
+    private ServerMetrics(String target) {
+        this.target = target;
+        this.firstGc = gc();
+        this.lastGc = firstGc;
+    }
+
+    /** Starts sampling the proxy whose context root is {@code target}. */
+    public static ServerMetrics start(String target) {
+        ServerMetrics metrics = new ServerMetrics(target);
+        metrics.sampler.scheduleAtFixedRate(metrics::sample, 0, SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+        return metrics;
+    }
+
+    public String report() {
+        if (error != null) {
+            return "server     metrics unavailable: " + error + System.lineSeparator();
+        }
+        return String.format("server     heap peak %.0f MB, %.0f GC pauses totalling %.0f ms, longest %.0f ms%n",
+                peakHeap / (1 << 20), lastGc[0] - firstGc[0], (lastGc[1] - firstGc[1]) * 1000, lastGc[2] * 1000);
+    }
+
+    @Override
+    public void close() {
+        sampler.shutdownNow();
+        sample();
+    }
+
+    private void sample() {
+        double heap = meter("jvm.memory.used?tag=area:heap", "VALUE");
+        if (heap > peakHeap) {
+            peakHeap = heap;
+        }
+        lastGc = gc();
+    }
+
+    /** Pause count, total seconds and longest recent pause in seconds. */
+    private double[] gc() {
+        return new double[]{
+                meter("jvm.gc.pause", "COUNT"),
+                meter("jvm.gc.pause", "TOTAL_TIME"),
+                meter("jvm.gc.pause", "MAX")};
+    }
+
+    private double meter(String name, String statistic) {
+        try {
+            HttpResponse<byte[]> response = httpClient.send(
+                    HttpRequest.newBuilder(URI.create(target + "actuator/metrics/" + name)).build(),
+                    HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() == 404) {
+                // The meter is registered with the first pause.
+                return 0;
+            }
+            if (response.statusCode() != 200) {
+                error = "actuator answered " + response.statusCode();
+                return 0;
+            }
+            for (JsonNode measurement : objectMapper.readTree(response.body()).path("measurements")) {
+                if (statistic.equals(measurement.path("statistic").asText())) {
+                    return measurement.path("value").asDouble();
+                }
+            }
+            return 0;
+        } catch (IOException e) {
+            error = e.toString();
+            return 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        }
+    }
+}
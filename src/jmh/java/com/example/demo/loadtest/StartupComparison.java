@@ -0,0 +1,158 @@
+package com.example.demo.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares cold starts of the default jar with the {@code fast-startup} build: time from
+ * launching the JVM until {@code /actuator/health/readiness} is UP, then the latency of the
+ * first and the tenth {@code /transactions/proxy} request against {@link FakeUpstream}. Build
+ * both first with {@code mvn -Pfast-startup package}. Options, with defaults:
+ *
+ * <pre>
+ * --runs=5 --rows=20000 --jar=target/demo-0.0.1-SNAPSHOT.jar --fast-startup=target/fast-startup
+ * </pre>
+ */
+public final class StartupComparison {
+    private static final String JVM_OPTIONS = "-Xmx512m -XX:+UseG1GC -XX:MaxGCPauseMillis=200";
+    private static final int REQUESTS = 10;
+
+    private static final HttpClient HTTP_CLIENT = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(1))
+            .build();
+
+    private StartupComparison() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        int runs = Integer.parseInt(options.getOrDefault("runs", "5"));
+        Path jar = Path.of(options.getOrDefault("jar", "target/demo-0.0.1-SNAPSHOT.jar"));
+        Path fastStartup = Path.of(options.getOrDefault("fast-startup", "target/fast-startup"));
+        Path extractedJar = fastStartup.resolve(jar.getFileName());
+        Path archive = fastStartup.resolve("application.jsa");
+        for (Path required : List.of(jar, extractedJar, archive)) {
+            if (!Files.exists(required)) {
+                throw new IllegalStateException(required + " is missing; run mvn -Pfast-startup package first");
+            }
+        }
+        String aot = "-XX:SharedArchiveFile=" + archive + " -Dspring.aot.enabled=true -jar " + extractedJar;
+        Map<String, String> variants = new LinkedHashMap<>();
+        variants.put("default", "-jar " + jar);
+        variants.put("aot+cds", aot);
+        variants.put("aot+cds+warmup", aot + " --warmup.enabled=true");
+
+        FakeUpstream.Profile profile = FakeUpstream.Profile.builder()
+                .rows(Long.parseLong(options.getOrDefault("rows", "20000")))
+                .build();
+        try (FakeUpstream upstream = FakeUpstream.start(profile, 0)) {
+            System.out.printf("%-16s %12s %14s %14s%n", "variant", "ready (ms)", "first req (ms)", "10th req (ms)");
+            for (Map.Entry<String, String> variant : variants.entrySet()) {
+                long[][] samples = new long[3][runs];
+                for (int run = 0; run < runs; run++) {
+                    long[] sample = measure(variant.getKey(), variant.getValue(), upstream, run);
+                    for (int i = 0; i < sample.length; i++) {
+                        samples[i][run] = sample[i];
+                    }
+                }
+                System.out.printf("%-16s %12d %14d %14d%n", variant.getKey(),
+                        median(samples[0]), median(samples[1]), median(samples[2]));
+            }
+        }
+        System.out.println("Medians of " + runs + " runs; logs in target/startup-*.log");
+    }
+
+    /** @return milliseconds until ready, for the first request, and for the last request */
+    private static long[] measure(String name, String launch, FakeUpstream upstream, int run) throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(Arrays.asList(JVM_OPTIONS.split(" ")));
+        command.addAll(Arrays.asList(launch.split(" ")));
+        command.addAll(List.of("--server.port=" + port, "--upstream.base-url=" + upstream.baseUrl(),
+                "--cache.enabled=false", "--coalescing.enabled=false"));
+        String base = "http://127.0.0.1:" + port + "/api/v2/";
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(Path.of("target", "startup-" + name + "-" + run + ".log").toFile())
+                .start();
+        try {
+            while (!isReady(base)) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException(name + " exited with " + process.exitValue());
+                }
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            long ready = System.nanoTime() - start;
+            long first = request(base, 0);
+            long last = first;
+            for (int i = 1; i < REQUESTS; i++) {
+                last = request(base, i);
+            }
+            return new long[]{ready / 1_000_000, first / 1_000_000, last / 1_000_000};
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private static boolean isReady(String base) throws InterruptedException {
+        try {
+            HttpResponse<Void> response = HTTP_CLIENT.send(
+                    HttpRequest.newBuilder(URI.create(base + "actuator/health/readiness")).build(),
+                    HttpResponse.BodyHandlers.discarding());
+            return response.statusCode() == 200;
+        } catch (IOException e) {
+            // Not listening yet.
+            return false;
+        }
+    }
+
+    /** @return nanoseconds until the whole body was read */
+    private static long request(String base, int day) throws IOException, InterruptedException {
+        String date = LocalDate.of(2024, 1, 1).plusDays(day).toString();
+        URI uri = URI.create(base + "transactions/proxy?startDate=" + date + "&endDate=" + date);
+        long start = System.nanoTime();
+        HttpResponse<InputStream> response = HTTP_CLIENT.send(HttpRequest.newBuilder(uri).build(),
+                HttpResponse.BodyHandlers.ofInputStream());
+        try (InputStream body = response.body()) {
+            body.transferTo(OutputStream.nullOutputStream());
+        }
+        if (response.statusCode() != 200) {
+            throw new IOException(uri + " answered " + response.statusCode());
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
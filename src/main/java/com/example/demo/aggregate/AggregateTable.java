@@ -0,0 +1,126 @@
+package com.example.demo.aggregate;
+
+/**
+ * Count, sum, min and max per {@code long} group key, in parallel primitive arrays with open
+ * addressing and linear probing. Adding a row does not allocate. A slot is taken once its
+ * count is non-zero. One table is updated by one thread at a time.
+ */
+public final class AggregateTable {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private long[] keys;
+    private long[] counts;
+    private long[] sums;
+    private long[] mins;
+    private long[] maxs;
+    private int size;
+
+    public AggregateTable() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /** Adds one row of {@code amount} to the key's group. */
+    public void add(long key, long amount) {
+        int slot = slot(key);
+        if (counts[slot] == 0) {
+            insert(slot, key, 1, amount, amount, amount);
+            return;
+        }
+        counts[slot]++;
+        sums[slot] = Math.addExact(sums[slot], amount);
+        mins[slot] = Math.min(mins[slot], amount);
+        maxs[slot] = Math.max(maxs[slot], amount);
+    }
+
+    /** Adds every group of {@code other} into this table. */
+    public void merge(AggregateTable other) {
+        for (int i = 0; i < other.keys.length; i++) {
+            if (other.counts[i] == 0) {
+                continue;
+            }
+            int slot = slot(other.keys[i]);
+            if (counts[slot] == 0) {
+                insert(slot, other.keys[i], other.counts[i], other.sums[i], other.mins[i], other.maxs[i]);
+                continue;
+            }
+            counts[slot] += other.counts[i];
+            sums[slot] = Math.addExact(sums[slot], other.sums[i]);
+            mins[slot] = Math.min(mins[slot], other.mins[i]);
+            maxs[slot] = Math.max(maxs[slot], other.maxs[i]);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void forEach(GroupConsumer consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (counts[i] != 0) {
+                consumer.accept(keys[i], counts[i], sums[i], mins[i], maxs[i]);
+            }
+        }
+    }
+
+    private int slot(long key) {
+        int mask = keys.length - 1;
+        int slot = (int) mix(key) & mask;
+        while (counts[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void insert(int slot, long key, long count, long sum, long min, long max) {
+        keys[slot] = key;
+        counts[slot] = count;
+        sums[slot] = sum;
+        mins[slot] = min;
+        maxs[slot] = max;
+        // Keep the load factor at or below one half, so probe runs stay short.
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldCounts = counts;
+        long[] oldSums = sums;
+        long[] oldMins = mins;
+        long[] oldMaxs = maxs;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldCounts[i] != 0) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+                sums[slot] = oldSums[i];
+                mins[slot] = oldMins[i];
+                maxs[slot] = oldMaxs[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        counts = new long[capacity];
+        sums = new long[capacity];
+        mins = new long[capacity];
+        maxs = new long[capacity];
+    }
+
+    /** The MurmurHash3 finalizer, so that sequential keys such as days spread over the table. */
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        return key ^ (key >>> 33);
+    }
+
+    @FunctionalInterface
+    public interface GroupConsumer {
+        void accept(long key, long count, long sum, long min, long max);
+    }
+}
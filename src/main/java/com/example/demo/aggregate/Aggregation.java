@@ -0,0 +1,263 @@
+package com.example.demo.aggregate;
+
+import com.example.demo.csv.CsvChunk;
+import com.example.demo.csv.CsvRecord;
+import com.example.demo.csv.CsvTokenizer;
+import com.example.demo.filter.RowFilter;
+import com.example.demo.model.ColumnType;
+import com.example.demo.model.TransactionColumns;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One group-by request: count, sum, min and max of {@code amount_cop} per value of one column,
+ * computed straight from tokenized chunks.
+ * <p>
+ * Group values become {@code long} keys without building Strings: digit codes of up to 17
+ * digits keep their length in the top bits (so {@code 00013480} and {@code 13480} stay
+ * apart), non-negative numbers are their value and dates are {@code yyyyMMdd}. Anything else
+ * is numbered through a shared dictionary. Each worker aggregates into a table it takes from
+ * a pool and returns after the chunk, so there are about as many partial tables as workers,
+ * and they are merged once at the end.
+ */
+public final class Aggregation {
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final int MAX_CODE_DIGITS = 17;
+    private static final int CODE_LENGTH_SHIFT = 57;
+    private static final long CODE_VALUE_MASK = (1L << CODE_LENGTH_SHIFT) - 1;
+    private static final int MAX_NUMBER_DIGITS = 18;
+
+    private final String groupBy;
+    private final int column;
+    private final ColumnType type;
+    private final RowFilter filter;
+    private final Queue<AggregateTable> idle = new ConcurrentLinkedQueue<>();
+    private final List<AggregateTable> tables = new CopyOnWriteArrayList<>();
+    private final Map<String, Long> dictionary = new ConcurrentHashMap<>();
+    private final AtomicLong nextDictionaryKey = new AtomicLong(EMPTY + 1);
+    private final LongAdder skipped = new LongAdder();
+
+    /**
+     * @param filter rows to aggregate, or null for all rows
+     * @throws IllegalArgumentException if {@code groupBy} is not a column, or is an amount
+     */
+    public Aggregation(String groupBy, RowFilter filter) {
+        this.column = TransactionColumns.indexOf(groupBy);
+        if (column < 0) {
+            throw new IllegalArgumentException("Unknown groupBy column: " + groupBy);
+        }
+        this.type = TransactionColumns.type(column);
+        if (type == ColumnType.DECIMAL) {
+            throw new IllegalArgumentException("Cannot group by an amount: " + groupBy);
+        }
+        this.groupBy = groupBy;
+        this.filter = filter;
+    }
+
+    /**
+     * Aggregates the chunk's rows; may be called from several threads at once.
+     *
+     * @return the number of rows aggregated
+     */
+    public int add(CsvChunk chunk) {
+        AggregateTable table = idle.poll();
+        if (table == null) {
+            table = new AggregateTable();
+            tables.add(table);
+        }
+        try {
+            return add(chunk.getData(), table);
+        } finally {
+            idle.add(table);
+        }
+    }
+
+    /** Merges the partial tables; call once every chunk has been added. */
+    public AggregationResult result() {
+        AggregateTable merged = new AggregateTable();
+        for (AggregateTable table : tables) {
+            merged.merge(table);
+        }
+        Map<Long, String> names = new HashMap<>();
+        dictionary.forEach((name, key) -> names.put(key, name));
+        List<AggregationResult.Group> groups = new ArrayList<>(merged.size());
+        long[] rows = new long[1];
+        merged.forEach((key, count, sum, min, max) -> {
+            groups.add(new AggregationResult.Group(key < 0 && key != EMPTY ? names.get(key) : decode(key),
+                    count, sum, min, max));
+            rows[0] += count;
+        });
+        Comparator<AggregationResult.Group> order = Comparator.comparing(AggregationResult.Group::getKey);
+        if (type == ColumnType.LONG || type == ColumnType.INTEGER) {
+            order = Comparator.comparing((AggregationResult.Group group) -> number(group.getKey()),
+                    Comparator.nullsLast(Comparator.naturalOrder())).thenComparing(order);
+        }
+        groups.sort(order);
+        return new AggregationResult(groupBy, rows[0], skipped.sum(), groups);
+    }
+
+    private int add(ByteBuffer data, AggregateTable table) {
+        CsvRecord record = new CsvRecord();
+        Field field = new Field();
+        int aggregated = 0;
+        int position = 0;
+        while (position < data.limit()) {
+            position = CsvTokenizer.nextRecord(data, position, data.limit(), record);
+            if (filter != null && !filter.test(record)) {
+                continue;
+            }
+            if (record.size() < TransactionColumns.COUNT
+                    || !field.load(record, TransactionColumns.AMOUNT_COP).parseAmount()) {
+                skipped.increment();
+                continue;
+            }
+            long amount = field.value;
+            table.add(key(field.load(record, column)), amount);
+            aggregated++;
+        }
+        return aggregated;
+    }
+
+    private long key(Field field) {
+        if (field.length == 0) {
+            return EMPTY;
+        }
+        switch (type) {
+            case STRING:
+                if (field.length <= MAX_CODE_DIGITS && field.parseDigits(field.offset, field.length)) {
+                    return (long) field.length << CODE_LENGTH_SHIFT | field.value;
+                }
+                break;
+            case LONG:
+            case INTEGER:
+                int start = field.bytes[field.offset] == '+' ? field.offset + 1 : field.offset;
+                int digits = field.offset + field.length - start;
+                if (digits > 0 && digits <= MAX_NUMBER_DIGITS && field.parseDigits(start, digits)) {
+                    return field.value;
+                }
+                break;
+            case DATE:
+                if (field.length == 10 && field.bytes[field.offset + 4] == '-' && field.bytes[field.offset + 7] == '-'
+                        && field.parseDigits(field.offset, 4)) {
+                    long year = field.value;
+                    if (field.parseDigits(field.offset + 5, 2)) {
+                        long month = field.value;
+                        if (field.parseDigits(field.offset + 8, 2)) {
+                            return year * 10000 + month * 100 + field.value;
+                        }
+                    }
+                }
+                break;
+            default:
+                break;
+        }
+        String name = new String(field.bytes, field.offset, field.length, StandardCharsets.UTF_8);
+        return dictionary.computeIfAbsent(name, n -> nextDictionaryKey.getAndIncrement());
+    }
+
+    private String decode(long key) {
+        if (key == EMPTY) {
+            return "";
+        }
+        switch (type) {
+            case STRING:
+                String digits = Long.toString(key & CODE_VALUE_MASK);
+                return "0".repeat((int) (key >>> CODE_LENGTH_SHIFT) - digits.length()) + digits;
+            case DATE:
+                return String.format("%04d-%02d-%02d", key / 10000, key / 100 % 100, key % 100);
+            default:
+                return Long.toString(key);
+        }
+    }
+
+    private static Long number(String key) {
+        try {
+            return Long.valueOf(key);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /** The trimmed bytes of one field, unquoted into a scratch array when needed. */
+    private static final class Field {
+        private byte[] scratch = new byte[256];
+        byte[] bytes;
+        int offset;
+        int length;
+        long value;
+
+        Field load(CsvRecord record, int column) {
+            ByteBuffer data = record.data();
+            length = record.length(column);
+            if (!record.needsUnquoting(column) && data.hasArray()) {
+                bytes = data.array();
+                offset = data.arrayOffset() + record.offset(column);
+            } else {
+                if (scratch.length < length) {
+                    scratch = new byte[length];
+                }
+                bytes = scratch;
+                offset = 0;
+                length = record.copyField(column, scratch, 0);
+            }
+            while (length > 0 && (bytes[offset] & 0xff) <= ' ') {
+                offset++;
+                length--;
+            }
+            while (length > 0 && (bytes[offset + length - 1] & 0xff) <= ' ') {
+                length--;
+            }
+            return this;
+        }
+
+        /** Reads {@code count} ASCII digits into {@link #value}. */
+        boolean parseDigits(int from, int count) {
+            long result = 0;
+            for (int i = from; i < from + count; i++) {
+                byte b = bytes[i];
+                if (b < '0' || b > '9') {
+                    return false;
+                }
+                result = result * 10 + (b - '0');
+            }
+            value = result;
+            return true;
+        }
+
+        /** Reads an integral kopeck amount, allowing a sign and a fraction of zeros, into {@link #value}. */
+        boolean parseAmount() {
+            if (length == 0) {
+                return false;
+            }
+            int end = offset + length;
+            boolean negative = bytes[offset] == '-';
+            int start = negative || bytes[offset] == '+' ? offset + 1 : offset;
+            int point = start;
+            while (point < end && bytes[point] != '.') {
+                point++;
+            }
+            for (int i = point + 1; i < end; i++) {
+                if (bytes[i] != '0') {
+                    return false;
+                }
+            }
+            int digits = point - start;
+            if (digits == 0 || digits > MAX_NUMBER_DIGITS || !parseDigits(start, digits)) {
+                return false;
+            }
+            value = negative ? -value : value;
+            return true;
+        }
+    }
+}
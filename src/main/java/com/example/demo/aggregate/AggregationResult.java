@@ -0,0 +1,24 @@
+package com.example.demo.aggregate;
+
+import java.util.List;
+import lombok.Value;
+
+/** Groups of one aggregation; amounts are {@code amount_cop} kopecks. */
+@Value
+public class AggregationResult {
+    String groupBy;
+    /** Rows that were aggregated. */
+    long rows;
+    /** Rows that passed the filter but had no integral {@code amount_cop}, or too few columns. */
+    long skippedRows;
+    List<Group> groups;
+
+    @Value
+    public static class Group {
+        String key;
+        long count;
+        long sumCop;
+        long minCop;
+        long maxCop;
+    }
+}
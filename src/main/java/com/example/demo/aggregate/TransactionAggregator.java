@@ -0,0 +1,61 @@
+package com.example.demo.aggregate;
+
+import com.example.demo.csv.CsvChunk;
+import com.example.demo.csv.CsvChunkReader;
+import com.example.demo.csv.CsvRecord;
+import com.example.demo.csv.CsvTokenizer;
+import com.example.demo.execution.ExecutionEngine;
+import com.example.demo.metrics.ProxyMetrics;
+import com.example.demo.metrics.RequestMetrics;
+import com.example.demo.model.TransactionColumns;
+import com.example.demo.pipeline.EncodedBatch;
+import com.example.demo.pipeline.FlowController;
+import com.example.demo.pipeline.OrderedBatchPipeline;
+import io.micrometer.core.instrument.Tags;
+import java.io.IOException;
+import java.io.InputStream;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs an {@link Aggregation} over an upstream CSV body in one pass: the body is read in
+ * chunks of whole records, and the chunks are tokenized and aggregated on the hashing workers.
+ * Nothing is hashed or written per row.
+ */
+@Component
+public class TransactionAggregator {
+    private static final byte[] NO_OUTPUT = new byte[0];
+    private static final Tags TAGS = Tags.of("reader", "TOKENIZER", "mode", "AGGREGATE", "format", "JSON",
+            "compression", "identity", "delta", "false");
+
+    private final ExecutionEngine executionEngine;
+    private final ProxyMetrics proxyMetrics;
+    private final OrderedBatchPipeline pipeline;
+
+    public TransactionAggregator(ExecutionEngine executionEngine, ProxyMetrics proxyMetrics) {
+        this.executionEngine = executionEngine;
+        this.proxyMetrics = proxyMetrics;
+        this.pipeline = new OrderedBatchPipeline(executionEngine.cpuExecutor(), executionEngine.ioExecutor(),
+                executionEngine.batchesPerRequest(), executionEngine.stallTimeoutMillis());
+    }
+
+    public AggregationResult aggregate(InputStream inputStream, Aggregation aggregation) throws IOException {
+        try (CsvChunkReader chunkReader = new CsvChunkReader(inputStream);
+             RequestMetrics metrics = proxyMetrics.begin(TAGS)) {
+            CsvChunk header = chunkReader.nextChunk(1);
+            if (header == null) {
+                throw new IOException("Empty CSV file");
+            }
+            CsvRecord record = new CsvRecord();
+            CsvTokenizer.nextRecord(header.getData(), 0, header.getData().limit(), record);
+            if (record.size() < TransactionColumns.COUNT) {
+                throw new IOException("Invalid CSV header: expected at least 38 columns, got " + record.size());
+            }
+            FlowController flow = executionEngine.newFlow();
+            pipeline.run(metrics.source(() -> chunkReader.nextChunk(flow.batchRows(), flow.lingerNanos())),
+                    flow.processor(metrics.processor((sequence, chunk) ->
+                            new EncodedBatch(sequence, NO_OUTPUT, aggregation.add(chunk))), CsvChunk::getRecordCount),
+                    metrics.sink(EncodedBatch::getRowCount), flow.deadlineNanos());
+        }
+        return aggregation.result();
+    }
+}
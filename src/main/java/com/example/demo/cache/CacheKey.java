@@ -0,0 +1,20 @@
+package com.example.demo.cache;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.TreeSet;
+import lombok.Value;
+
+/**
+ * One cached day for one recipient filter. The filter is kept sorted and without
+ * duplicates, so the same set of EDRPOU codes in any order shares an entry.
+ */
+@Value
+public class CacheKey {
+    LocalDate day;
+    String recipients;
+
+    public static CacheKey of(LocalDate day, List<String> reciptEdrpous) {
+        return new CacheKey(day, String.join(",", new TreeSet<>(reciptEdrpous)));
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.demo.cache;
+
+import lombok.Value;
+
+@Value
+public class CacheStats {
+    long hits;
+    long misses;
+    long evictions;
+    int entries;
+    int segments;
+    long sizeBytes;
+}
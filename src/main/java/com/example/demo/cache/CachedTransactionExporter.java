@@ -0,0 +1,166 @@
+package com.example.demo.cache;
+
+import com.example.demo.client.UpstreamClient;
+import com.example.demo.compression.CompressingOutputStream;
+import com.example.demo.compression.ContentCoding;
+import com.example.demo.execution.ExecutionEngine;
+import com.example.demo.model.TransactionQuery;
+import com.example.demo.service.ProcessingOptions;
+import com.example.demo.service.TransactionProxyService;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.time.LocalDate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Serves a query day by day: settled days come from {@link ProcessedRangeCache} or are
+ * fetched and processed on their own and then cached, and the days inside the freshness
+ * horizon are fetched as one range. The output has a single header, like an uncached
+ * response. The cache holds plain CSV, so compressed responses are compressed here, in
+ * parallel blocks, rather than day by day.
+ */
+@Component
+public class CachedTransactionExporter {
+    private final ProcessedRangeCache cache;
+    private final UpstreamClient upstreamClient;
+    private final TransactionProxyService transactionProxyService;
+    private final ExecutionEngine executionEngine;
+
+    public CachedTransactionExporter(ProcessedRangeCache cache,
+                                     UpstreamClient upstreamClient,
+                                     TransactionProxyService transactionProxyService,
+                                     ExecutionEngine executionEngine) {
+        this.cache = cache;
+        this.upstreamClient = upstreamClient;
+        this.transactionProxyService = transactionProxyService;
+        this.executionEngine = executionEngine;
+    }
+
+    public void export(TransactionQuery query, ProcessingOptions options, OutputStream out) throws IOException {
+        if (options.getCompression() == ContentCoding.IDENTITY) {
+            exportPlain(query, options, out);
+            return;
+        }
+        CompressingOutputStream compressed = new CompressingOutputStream(out, options.getCompression(),
+                executionEngine.cpuExecutor(), executionEngine.batchesPerRequest());
+        exportPlain(query, options.toBuilder().compression(ContentCoding.IDENTITY).build(), compressed);
+        compressed.finish();
+    }
+
+    /**
+     * Writes the cached CSV of every day of {@code query}, with a single header, without
+     * fetching anything.
+     *
+     * @return false, with the days before it written, once a day is inside the freshness
+     *         horizon or not cached
+     */
+    public boolean exportCached(TransactionQuery query, OutputStream out) throws IOException {
+        WritableByteChannel channel = Channels.newChannel(out);
+        boolean headerWritten = false;
+        for (LocalDate day = query.getStartDate(); !day.isAfter(query.getEndDate()); day = day.plusDays(1)) {
+            if (!cache.isCacheable(day)) {
+                return false;
+            }
+            try (ProcessedRangeCache.CachedEntry cached = cache.lookup(CacheKey.of(day, query.getReciptEdrpous()))) {
+                if (cached == null) {
+                    return false;
+                }
+                out.flush();
+                cached.transferTo(channel, !headerWritten);
+                headerWritten = true;
+            }
+        }
+        return true;
+    }
+
+    private void exportPlain(TransactionQuery query, ProcessingOptions options, OutputStream out)
+            throws IOException {
+        WritableByteChannel channel = Channels.newChannel(out);
+        boolean headerWritten = false;
+        for (LocalDate day = query.getStartDate(); !day.isAfter(query.getEndDate()); day = day.plusDays(1)) {
+            if (!cache.isCacheable(day)) {
+                // The horizon is relative to today, so every later day is fresh as well.
+                process(new TransactionQuery(day, query.getEndDate(), query.getReciptEdrpous()), options,
+                        new HeaderFilter(out, headerWritten, null));
+                return;
+            }
+            CacheKey key = CacheKey.of(day, query.getReciptEdrpous());
+            try (ProcessedRangeCache.CachedEntry cached = cache.lookup(key)) {
+                if (cached != null) {
+                    out.flush();
+                    cached.transferTo(channel, !headerWritten);
+                    headerWritten = true;
+                    continue;
+                }
+            }
+            try (ProcessedRangeCache.EntryWriter entry = cache.newEntry(key)) {
+                HeaderFilter filter = new HeaderFilter(out, headerWritten, entry);
+                process(new TransactionQuery(day, day, query.getReciptEdrpous()), options, filter);
+                entry.commit(filter.headerLength);
+            }
+            headerWritten = true;
+        }
+    }
+
+    private void process(TransactionQuery query, ProcessingOptions options, OutputStream out) throws IOException {
+        try (InputStream upstream = upstreamClient.fetch(query)) {
+            transactionProxyService.processTransactions(upstream, out, options);
+        }
+    }
+
+    /**
+     * Passes processed output on to the response, dropping the header line once one has
+     * been sent, and copies all of it, header included, to an optional cache entry.
+     */
+    private static final class HeaderFilter extends OutputStream {
+        private final OutputStream out;
+        private final boolean skipHeader;
+        private final OutputStream copy;
+        private boolean inHeader = true;
+        private int headerLength;
+
+        HeaderFilter(OutputStream out, boolean skipHeader, OutputStream copy) {
+            this.out = out;
+            this.skipHeader = skipHeader;
+            this.copy = copy;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (copy != null) {
+                copy.write(b, off, len);
+            }
+            int start = off;
+            if (inHeader) {
+                int end = off;
+                while (end < off + len && b[end] != '\n') {
+                    end++;
+                }
+                if (end < off + len) {
+                    end++;
+                    inHeader = false;
+                }
+                headerLength += end - off;
+                if (skipHeader) {
+                    start = end;
+                }
+            }
+            if (start < off + len) {
+                out.write(b, start, off + len - start);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+    }
+}
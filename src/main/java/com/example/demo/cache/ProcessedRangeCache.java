@@ -0,0 +1,383 @@
+package com.example.demo.cache;
+
+import com.example.demo.config.CacheProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * On-disk cache of processed CSV output, one entry per {@link CacheKey}.
+ * <p>
+ * Entries are appended to segment files and recorded in an append-only index log, which is
+ * replayed and compacted on startup. Eviction drops whole segments, least recently used
+ * first, until the cache fits {@code maxSize}; the segment being appended to is never
+ * evicted. Entries are served with {@link FileChannel#transferTo}, which lets the kernel
+ * copy straight from the page cache when the target is a file or socket channel.
+ */
+@Slf4j
+@Component
+public class ProcessedRangeCache {
+    private static final String INDEX_FILE = "index.log";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+    private static final String PART_SUFFIX = ".part";
+    private static final String ALL_RECIPIENTS = "-";
+    private static final int WRITE_BUFFER_SIZE = 65536;
+
+    private final CacheProperties properties;
+    private final Clock clock;
+    private final Map<CacheKey, Entry> entries = new HashMap<>();
+    private final Map<Long, Segment> segments = new HashMap<>();
+    private Segment active;
+    private FileChannel activeChannel;
+    private BufferedWriter index;
+    private long totalSize;
+    private long useCounter;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    @Autowired
+    public ProcessedRangeCache(CacheProperties properties) {
+        this(properties, Clock.systemDefaultZone());
+    }
+
+    ProcessedRangeCache(CacheProperties properties, Clock clock) {
+        this.properties = properties;
+        this.clock = clock;
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /** Whether the day is outside the freshness horizon, so its upstream data is settled. */
+    public boolean isCacheable(LocalDate day) {
+        return day.isBefore(LocalDate.now(clock).minusDays(properties.getFreshnessDays() - 1L));
+    }
+
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        Path directory = properties.getDirectory();
+        Files.createDirectories(directory);
+        replayIndex(directory.resolve(INDEX_FILE));
+        deleteUnreferencedFiles(directory);
+        writeCompactedIndex(directory);
+        index = Files.newBufferedWriter(directory.resolve(INDEX_FILE), StandardCharsets.UTF_8,
+                StandardOpenOption.APPEND);
+        // Always start a new segment, so a tail left by a crash is never appended to.
+        startSegment();
+        log.info("Opened cache in {}: {} entries, {} bytes", directory, entries.size(), totalSize);
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (index != null) {
+            index.close();
+            activeChannel.close();
+            index = null;
+        }
+    }
+
+    /**
+     * Looks the entry up and opens it for reading; an entry stays readable after it is
+     * looked up even if its segment is evicted meanwhile.
+     *
+     * @return the entry, or {@code null} on a miss
+     */
+    public synchronized CachedEntry lookup(CacheKey key) throws IOException {
+        Entry entry = index == null ? null : entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        Segment segment = segments.get(entry.segment);
+        segment.lastUsed = ++useCounter;
+        FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.READ);
+        return new CachedEntry(channel, entry.offset, entry.length, entry.headerLength);
+    }
+
+    /**
+     * Starts a new entry. Its bytes are spooled to a temporary file and only become visible
+     * on {@link EntryWriter#commit}; closing an uncommitted writer discards them.
+     */
+    public EntryWriter newEntry(CacheKey key) throws IOException {
+        return new EntryWriter(key, Files.createTempFile(properties.getDirectory(), "entry-", PART_SUFFIX));
+    }
+
+    public synchronized CacheStats stats() {
+        return new CacheStats(hits, misses, evictions, entries.size(), segments.size(), totalSize);
+    }
+
+    private synchronized void append(CacheKey key, Path part, int headerLength) throws IOException {
+        if (index == null) {
+            return;
+        }
+        long length = Files.size(part);
+        if (length > properties.getMaxSize().toBytes()) {
+            return;
+        }
+        if (active.size > 0 && active.size + length > properties.getSegmentSize().toBytes()) {
+            startSegment();
+        }
+        long offset = active.size;
+        try (FileChannel source = FileChannel.open(part, StandardOpenOption.READ)) {
+            long copied = 0;
+            while (copied < length) {
+                copied += source.transferTo(copied, length - copied, activeChannel);
+            }
+        }
+        active.size += length;
+        active.lastUsed = ++useCounter;
+        totalSize += length;
+        Entry entry = new Entry(active.id, offset, length, headerLength);
+        entries.put(key, entry);
+        index.write(putLine(key, entry));
+        index.flush();
+        evict();
+    }
+
+    private void evict() throws IOException {
+        while (totalSize > properties.getMaxSize().toBytes()) {
+            Segment victim = null;
+            for (Segment segment : segments.values()) {
+                if (segment != active && (victim == null || segment.lastUsed < victim.lastUsed)) {
+                    victim = segment;
+                }
+            }
+            if (victim == null) {
+                return;
+            }
+            long segmentId = victim.id;
+            int before = entries.size();
+            entries.values().removeIf(entry -> entry.segment == segmentId);
+            evictions += before - entries.size();
+            segments.remove(segmentId);
+            totalSize -= victim.size;
+            index.write("drop " + segmentId + "\n");
+            index.flush();
+            Files.deleteIfExists(victim.path);
+        }
+    }
+
+    private void startSegment() throws IOException {
+        long id = segments.keySet().stream().mapToLong(Long::longValue).max().orElse(0) + 1;
+        if (activeChannel != null) {
+            activeChannel.close();
+        }
+        active = new Segment(id, segmentPath(id));
+        activeChannel = FileChannel.open(active.path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        segments.put(id, active);
+    }
+
+    private void replayIndex(Path indexFile) throws IOException {
+        if (!Files.exists(indexFile)) {
+            return;
+        }
+        for (String line : Files.readAllLines(indexFile, StandardCharsets.UTF_8)) {
+            String[] parts = line.split(" ");
+            try {
+                if (parts[0].equals("put") && parts.length == 7) {
+                    long segment = Long.parseLong(parts[3]);
+                    String recipients = parts[2].equals(ALL_RECIPIENTS) ? "" : parts[2];
+                    entries.put(new CacheKey(LocalDate.parse(parts[1]), recipients), new Entry(segment,
+                            Long.parseLong(parts[4]), Long.parseLong(parts[5]), Integer.parseInt(parts[6])));
+                    segments.computeIfAbsent(segment, id -> new Segment(id, segmentPath(id))).lastUsed = ++useCounter;
+                } else if (parts[0].equals("drop") && parts.length == 2) {
+                    long segment = Long.parseLong(parts[1]);
+                    entries.values().removeIf(entry -> entry.segment == segment);
+                    segments.remove(segment);
+                }
+            } catch (RuntimeException e) {
+                // A crash can leave a partial last line; every complete line before it still counts.
+                log.warn("Skipping malformed cache index line: {}", line);
+            }
+        }
+        List<Long> missing = new ArrayList<>();
+        for (Segment segment : segments.values()) {
+            if (Files.exists(segment.path)) {
+                segment.size = Files.size(segment.path);
+                totalSize += segment.size;
+            } else {
+                missing.add(segment.id);
+            }
+        }
+        for (long segment : missing) {
+            segments.remove(segment);
+        }
+        entries.values().removeIf(entry -> !segments.containsKey(entry.segment)
+                || entry.offset + entry.length > segments.get(entry.segment).size);
+    }
+
+    private void deleteUnreferencedFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> {
+                String name = file.getFileName().toString();
+                return name.endsWith(PART_SUFFIX) || (name.startsWith(SEGMENT_PREFIX)
+                        && segments.values().stream().noneMatch(segment -> segment.path.equals(file)));
+            }).forEach(file -> {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void writeCompactedIndex(Path directory) throws IOException {
+        Path compacted = directory.resolve(INDEX_FILE + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(compacted, StandardCharsets.UTF_8)) {
+            List<Map.Entry<CacheKey, Entry>> live = new ArrayList<>(entries.entrySet());
+            // Replay assigns use order by line order, so keep the least recently used first.
+            live.sort((a, b) -> Long.compare(segments.get(a.getValue().segment).lastUsed,
+                    segments.get(b.getValue().segment).lastUsed));
+            for (Map.Entry<CacheKey, Entry> entry : live) {
+                writer.write(putLine(entry.getKey(), entry.getValue()));
+            }
+        }
+        Files.move(compacted, directory.resolve(INDEX_FILE), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path segmentPath(long id) {
+        return properties.getDirectory().resolve(SEGMENT_PREFIX + id + SEGMENT_SUFFIX);
+    }
+
+    private static String putLine(CacheKey key, Entry entry) {
+        String recipients = key.getRecipients().isEmpty() ? ALL_RECIPIENTS : key.getRecipients();
+        return "put " + key.getDay() + " " + recipients + " " + entry.segment + " " + entry.offset + " "
+                + entry.length + " " + entry.headerLength + "\n";
+    }
+
+    private static final class Entry {
+        final long segment;
+        final long offset;
+        final long length;
+        final int headerLength;
+
+        Entry(long segment, long offset, long length, int headerLength) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.headerLength = headerLength;
+        }
+    }
+
+    private static final class Segment {
+        final long id;
+        final Path path;
+        long size;
+        long lastUsed;
+
+        Segment(long id, Path path) {
+            this.id = id;
+            this.path = path;
+        }
+    }
+
+    /** An open cached entry: the processed CSV of one day, header line first. */
+    public static final class CachedEntry implements Closeable {
+        private final FileChannel channel;
+        private final long offset;
+        private final long length;
+        private final int headerLength;
+
+        private CachedEntry(FileChannel channel, long offset, long length, int headerLength) {
+            this.channel = channel;
+            this.offset = offset;
+            this.length = length;
+            this.headerLength = headerLength;
+        }
+
+        /** @return the number of bytes written */
+        public long transferTo(WritableByteChannel target, boolean includeHeader) throws IOException {
+            long position = includeHeader ? offset : offset + headerLength;
+            long end = offset + length;
+            while (position < end) {
+                position += channel.transferTo(position, end - position, target);
+            }
+            return includeHeader ? length : length - headerLength;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /** Collects one entry; not thread-safe. */
+    public final class EntryWriter extends OutputStream {
+        private final CacheKey key;
+        private final Path part;
+        private final OutputStream out;
+        private boolean closed;
+
+        private EntryWriter(CacheKey key, Path part) throws IOException {
+            this.key = key;
+            this.part = part;
+            this.out = new BufferedOutputStream(Files.newOutputStream(part), WRITE_BUFFER_SIZE);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        /** Publishes the entry; the first {@code headerLength} bytes must be the header line. */
+        public void commit(int headerLength) throws IOException {
+            out.close();
+            closed = true;
+            try {
+                append(key, part, headerLength);
+            } finally {
+                Files.deleteIfExists(part);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                try {
+                    out.close();
+                } finally {
+                    Files.deleteIfExists(part);
+                }
+            }
+        }
+    }
+}
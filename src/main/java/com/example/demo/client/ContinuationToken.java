@@ -0,0 +1,52 @@
+package com.example.demo.client;
+
+import com.example.demo.model.TransactionQuery;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import lombok.Value;
+
+/**
+ * Position in an upstream body: the {@code trans_date} and {@code id} of the last complete row.
+ * Rows come in {@code trans_date} order, so the rest of the body is the same query from that
+ * date on, with the rows up to and including this one skipped. Encoded as base64url of
+ * {@code <trans_date>,<id>}, which a client can build from the last complete row it received.
+ */
+@Value
+public class ContinuationToken {
+    LocalDate transDate;
+    String id;
+
+    public static ContinuationToken parse(String token) {
+        String decoded;
+        try {
+            decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Continuation token is not base64url: " + token, e);
+        }
+        int comma = decoded.indexOf(',');
+        if (comma < 0 || comma == decoded.length() - 1) {
+            throw new IllegalArgumentException("Continuation token must hold <trans_date>,<id>: " + decoded);
+        }
+        try {
+            return new ContinuationToken(LocalDate.parse(decoded.substring(0, comma)), decoded.substring(comma + 1));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Continuation token has no valid date: " + decoded, e);
+        }
+    }
+
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((transDate + "," + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** The part of {@code query} from this row's date on. */
+    public TransactionQuery remainderOf(TransactionQuery query) {
+        if (transDate.isBefore(query.getStartDate()) || transDate.isAfter(query.getEndDate())) {
+            throw new IllegalArgumentException("Continuation token date " + transDate + " is outside "
+                    + query.getStartDate() + ".." + query.getEndDate());
+        }
+        return new TransactionQuery(transDate, query.getEndDate(), query.getReciptEdrpous());
+    }
+}
@@ -0,0 +1,315 @@
+package com.example.demo.client;
+
+import com.example.demo.model.TransactionColumns;
+import com.example.demo.model.TransactionQuery;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Upstream body that survives a dropped connection. Only complete records are passed on, and
+ * the last one passed on is the checkpoint. When a read from the upstream fails, the rest of
+ * the query is requested again from the checkpoint's {@code trans_date}; the new body's header
+ * and its rows up to and including the checkpoint row are dropped, so the reader sees one
+ * uninterrupted CSV. This relies on the upstream returning rows in {@code trans_date} order and
+ * rows of one date in the same order every time; once a row breaks the date order or falls
+ * outside the query, the body is no longer resumed and a failure is passed on as before.
+ */
+@Slf4j
+public final class ResumableUpstreamStream extends InputStream {
+    private static final int INITIAL_BUFFER_SIZE = 65536;
+    private static final byte QUOTE = '"';
+    private static final byte COMMA = ',';
+    private static final byte LINE_FEED = '\n';
+
+    /** Requests a query from the upstream; the body must start with the header. */
+    @FunctionalInterface
+    public interface Opener {
+        InputStream open(TransactionQuery query) throws IOException;
+    }
+
+    private final TransactionQuery query;
+    private final Opener opener;
+    private final int maxResumes;
+    private final long backoffMillis;
+    private InputStream upstream;
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+    /** Next byte for the reader. */
+    private int pos;
+    /** End of the records the reader may have; everything after is an incomplete record. */
+    private int released;
+    /** Bytes already checked for record ends. */
+    private int scanned;
+    private int filled;
+    private boolean inQuotes;
+    private boolean eof;
+    private boolean headerSeen;
+    private boolean headerReleased;
+    private boolean resumable = true;
+    /** The last row passed on, or {@code null} if none was. */
+    private ContinuationToken checkpoint;
+    /** While set, rows are dropped up to and including this one. */
+    private ContinuationToken skipThrough;
+    private int resumes;
+    private boolean closed;
+
+    /**
+     * @param body          the body of {@code query}, or of its remainder from {@code resumeFrom}
+     * @param resumeFrom    a row the reader already has, or {@code null} to pass on every row
+     * @param maxResumes    how many times the body may be requested again
+     * @param backoffMillis wait before the first new request; doubles for each further one
+     */
+    public ResumableUpstreamStream(TransactionQuery query, ContinuationToken resumeFrom, InputStream body,
+                                   Opener opener, int maxResumes, long backoffMillis) {
+        this.query = query;
+        this.skipThrough = resumeFrom;
+        this.upstream = body;
+        this.opener = opener;
+        this.maxResumes = maxResumes;
+        this.backoffMillis = backoffMillis;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return buffer[pos++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] target, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int count = Math.min(length, released - pos);
+        System.arraycopy(buffer, pos, target, offset, count);
+        pos += count;
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return released - pos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            upstream.close();
+        }
+    }
+
+    /** @return false once the body has ended and every released byte was read */
+    private boolean fill() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        while (pos == released) {
+            compact();
+            if (scanned < filled) {
+                // A record held back until the reader caught up.
+                scan();
+                continue;
+            }
+            if (eof) {
+                return false;
+            }
+            if (filled == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            int read;
+            try {
+                read = upstream.read(buffer, filled, buffer.length - filled);
+            } catch (IOException e) {
+                resume(e);
+                continue;
+            }
+            if (read < 0) {
+                endOfBody();
+            } else {
+                filled += read;
+                scan();
+            }
+        }
+        return true;
+    }
+
+    private void compact() {
+        if (pos > 0) {
+            System.arraycopy(buffer, pos, buffer, 0, filled - pos);
+            filled -= pos;
+            scanned -= pos;
+            released -= pos;
+            pos = 0;
+        }
+    }
+
+    private void scan() throws IOException {
+        for (int i = scanned; i < filled; i++) {
+            byte b = buffer[i];
+            if (b == QUOTE) {
+                inQuotes = !inQuotes;
+            } else if (b == LINE_FEED && !inQuotes && !record(released, i + 1)) {
+                scanned = released;
+                return;
+            }
+        }
+        scanned = filled;
+    }
+
+    private void endOfBody() throws IOException {
+        // A last record without a line feed is passed on as it is; the parser decides.
+        if (released < filled) {
+            record(released, filled);
+        }
+        scanned = filled;
+        if (skipThrough != null) {
+            throw new IOException("Cannot resume after row " + skipThrough.getId() + " of "
+                    + skipThrough.getTransDate() + ": the upstream no longer returns it");
+        }
+        eof = true;
+    }
+
+    /**
+     * Passes on or drops the record {@code [start, end)}.
+     *
+     * @return false if the record is to be dropped but released bytes before it are still unread;
+     *         it is then looked at again once they are
+     */
+    private boolean record(int start, int end) throws IOException {
+        boolean drop = headerSeen ? skipThrough != null : headerReleased;
+        if (drop && released > pos) {
+            return false;
+        }
+        if (!headerSeen) {
+            headerSeen = true;
+            headerReleased = true;
+        } else {
+            ContinuationToken row = position(start, end);
+            if (skipThrough != null) {
+                skip(row);
+            } else if (resumable) {
+                if (row == null || row.getTransDate().isBefore(query.getStartDate())
+                        || row.getTransDate().isAfter(query.getEndDate())
+                        || checkpoint != null && row.getTransDate().isBefore(checkpoint.getTransDate())) {
+                    resumable = false;
+                } else {
+                    checkpoint = row;
+                }
+            }
+        }
+        if (drop) {
+            pos = end;
+        }
+        released = end;
+        return true;
+    }
+
+    private void skip(ContinuationToken row) throws IOException {
+        if (row == null) {
+            throw new IOException("Cannot resume after row " + skipThrough.getId() + ": unreadable row upstream");
+        }
+        int order = row.getTransDate().compareTo(skipThrough.getTransDate());
+        if (order > 0) {
+            throw new IOException("Cannot resume after row " + skipThrough.getId() + " of "
+                    + skipThrough.getTransDate() + ": the upstream no longer returns it");
+        }
+        if (order == 0 && row.getId().equals(skipThrough.getId())) {
+            checkpoint = skipThrough;
+            skipThrough = null;
+        }
+    }
+
+    private void resume(IOException failure) throws IOException {
+        if (!resumable || closed) {
+            throw failure;
+        }
+        // The incomplete record after the released ones is requested again.
+        filled = released;
+        scanned = released;
+        inQuotes = false;
+        if (checkpoint != null) {
+            skipThrough = checkpoint;
+        }
+        TransactionQuery remainder = skipThrough == null ? query : skipThrough.remainderOf(query);
+        closeQuietly(upstream, failure);
+        while (true) {
+            if (resumes >= maxResumes) {
+                throw failure;
+            }
+            resumes++;
+            log.warn("Upstream body for {}..{} failed after row {}, requesting {}..{} again ({} of {}): {}",
+                    query.getStartDate(), query.getEndDate(), skipThrough == null ? "-" : skipThrough.getId(),
+                    remainder.getStartDate(), remainder.getEndDate(), resumes, maxResumes, failure.toString());
+            sleep(backoffMillis << (resumes - 1));
+            try {
+                upstream = opener.open(remainder);
+                headerSeen = false;
+                return;
+            } catch (IOException e) {
+                failure.addSuppressed(e);
+            }
+        }
+    }
+
+    /** The {@code trans_date} and {@code id} of a row, or {@code null} if either is unreadable. */
+    private ContinuationToken position(int start, int end) {
+        String id = null;
+        int field = 0;
+        int fieldStart = start;
+        boolean quoted = false;
+        for (int i = start; i <= end; i++) {
+            if (i < end && buffer[i] == QUOTE) {
+                quoted = !quoted;
+            } else if (i == end || buffer[i] == COMMA && !quoted || buffer[i] == LINE_FEED && !quoted) {
+                if (field == TransactionColumns.ID) {
+                    id = text(fieldStart, i);
+                } else if (field == TransactionColumns.TRANS_DATE) {
+                    try {
+                        return id == null || id.isEmpty() ? null : new ContinuationToken(LocalDate.parse(text(fieldStart, i)), id);
+                    } catch (DateTimeParseException e) {
+                        return null;
+                    }
+                }
+                field++;
+                fieldStart = i + 1;
+            }
+        }
+        return null;
+    }
+
+    private String text(int from, int to) {
+        String text = new String(buffer, from, to - from, StandardCharsets.UTF_8).strip();
+        if (text.length() >= 2 && text.charAt(0) == '"' && text.charAt(text.length() - 1) == '"') {
+            text = text.substring(1, text.length() - 1).strip();
+        }
+        return text;
+    }
+
+    private static void closeQuietly(InputStream stream, IOException failure) {
+        try {
+            stream.close();
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted before requesting the upstream again");
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.example.demo.client;
+
+import com.example.demo.config.UpstreamProperties;
+import com.example.demo.execution.ExecutionEngine;
+import com.example.demo.model.TransactionQuery;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.BooleanSupplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Fans one long-range query out into per-N-day (and per-EDRPOU-group) upstream requests,
+ * downloads them concurrently and serves them back as one CSV stream in shard order with a
+ * single header. Each shard is spooled to a file in {@code upstream.shard-spool-directory}
+ * before it is served, so a failed shard is retried on its own without corrupting the output.
+ * Downloads run on the engine's I/O executor.
+ */
+@Slf4j
+@Component
+public class ShardedUpstreamFetcher {
+    private static final long RETRY_BACKOFF_MILLIS = 500;
+    private static final int COPY_BUFFER_SIZE = 65536;
+    private final UpstreamClient upstreamClient;
+    private final UpstreamProperties properties;
+    private final ExecutionEngine executionEngine;
+
+    public ShardedUpstreamFetcher(UpstreamClient upstreamClient, UpstreamProperties properties,
+                                  ExecutionEngine executionEngine) {
+        this.upstreamClient = upstreamClient;
+        this.properties = properties;
+        this.executionEngine = executionEngine;
+    }
+
+    public InputStream fetch(TransactionQuery query, int shardDays) {
+        return fetch(query, shardDays, null);
+    }
+
+    /**
+     * The rows of {@code query} after {@code resumeFrom}; shards start at the token's date.
+     *
+     * @throws IllegalArgumentException if the output is not in date order, see {@link #isDateOrdered}
+     */
+    public InputStream fetch(TransactionQuery query, int shardDays, ContinuationToken resumeFrom) {
+        if (resumeFrom != null && !isDateOrdered(query)) {
+            throw new IllegalArgumentException("Continuation tokens need at most "
+                    + properties.getShardMaxEdrpous() + " recipients in a sharded fetch");
+        }
+        TransactionQuery remainder = resumeFrom == null ? query : resumeFrom.remainderOf(query);
+        return new ShardedInputStream(split(remainder, shardDays, properties.getShardMaxEdrpous()), resumeFrom);
+    }
+
+    /**
+     * Whether the sharded output of {@code query} is in date order, as a continuation token
+     * needs; recipient groups of one date range follow each other.
+     */
+    public boolean isDateOrdered(TransactionQuery query) {
+        return query.getReciptEdrpous().size() <= properties.getShardMaxEdrpous();
+    }
+
+    /** Splits a query in date order, then by EDRPOU group within each date range. */
+    public static List<TransactionQuery> split(TransactionQuery query, int shardDays, int maxEdrpous) {
+        if (shardDays < 1 || maxEdrpous < 1) {
+            throw new IllegalArgumentException("Shard size must be positive");
+        }
+        List<String> edrpous = query.getReciptEdrpous();
+        List<TransactionQuery> shards = new ArrayList<>();
+        for (LocalDate start = query.getStartDate(); !start.isAfter(query.getEndDate()); start = start.plusDays(shardDays)) {
+            LocalDate end = start.plusDays(shardDays - 1L);
+            if (end.isAfter(query.getEndDate())) {
+                end = query.getEndDate();
+            }
+            if (edrpous.isEmpty()) {
+                shards.add(new TransactionQuery(start, end, edrpous));
+            }
+            for (int i = 0; i < edrpous.size(); i += maxEdrpous) {
+                shards.add(new TransactionQuery(start, end, edrpous.subList(i, Math.min(i + maxEdrpous, edrpous.size()))));
+            }
+        }
+        return shards;
+    }
+
+    private Path download(TransactionQuery shard, ContinuationToken resumeFrom, BooleanSupplier cancelled) {
+        int attempts = properties.getShardRetries() + 1;
+        for (int attempt = 1; ; attempt++) {
+            Path file = null;
+            try (InputStream body = upstreamClient.fetch(shard, resumeFrom)) {
+                Files.createDirectories(properties.getShardSpoolDirectory());
+                file = Files.createTempFile(properties.getShardSpoolDirectory(), "shard-", ".csv");
+                try (OutputStream out = Files.newOutputStream(file)) {
+                    byte[] buffer = new byte[COPY_BUFFER_SIZE];
+                    int read;
+                    while ((read = body.read(buffer)) != -1) {
+                        if (cancelled.getAsBoolean()) {
+                            throw new CompletionException(new IOException("Sharded fetch was closed"));
+                        }
+                        out.write(buffer, 0, read);
+                    }
+                }
+                return file;
+            } catch (CompletionException e) {
+                deleteQuietly(file);
+                throw e;
+            } catch (IOException e) {
+                deleteQuietly(file);
+                if (attempt >= attempts || cancelled.getAsBoolean()) {
+                    throw new CompletionException(new IOException("Shard " + shard.getStartDate() + ".."
+                            + shard.getEndDate() + " failed after " + attempts + " attempts", e));
+                }
+                log.warn("Shard {}..{} failed (attempt {} of {}), retrying: {}",
+                        shard.getStartDate(), shard.getEndDate(), attempt, attempts, e.getMessage());
+                try {
+                    Thread.sleep(RETRY_BACKOFF_MILLIS * attempt);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new CompletionException(new InterruptedIOException("Interrupted between shard retries"));
+                }
+            }
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete shard file {}", file, e);
+        }
+    }
+
+    private class ShardedInputStream extends InputStream {
+        private final List<TransactionQuery> shards;
+        /** Applies to the first shard only; the later ones start after the token's row. */
+        private final ContinuationToken resumeFrom;
+        private final Deque<CompletableFuture<Path>> inFlight = new ArrayDeque<>();
+        private int nextToStart;
+        private int served;
+        private InputStream current;
+        private Path currentFile;
+        private int lastByte = '\n';
+        private volatile boolean closed;
+
+        ShardedInputStream(List<TransactionQuery> shards, ContinuationToken resumeFrom) {
+            this.shards = shards;
+            this.resumeFrom = resumeFrom;
+            while (inFlight.size() < properties.getShardParallelism() && nextToStart < shards.size()) {
+                startNext();
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            if (length == 0) {
+                return 0;
+            }
+            while (true) {
+                if (current != null) {
+                    int read = current.read(target, offset, length);
+                    if (read > 0) {
+                        lastByte = target[offset + read - 1];
+                        return read;
+                    }
+                    finishCurrent();
+                    if (lastByte != '\n') {
+                        // Keep the last row of a shard from running into the next shard's rows.
+                        lastByte = '\n';
+                        target[offset] = '\n';
+                        return 1;
+                    }
+                }
+                if (!openNext()) {
+                    return -1;
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            finishCurrent();
+            for (CompletableFuture<Path> pending : inFlight) {
+                // Downloads stop at their next read once they see the closed flag.
+                pending.whenComplete((file, error) -> deleteQuietly(file));
+            }
+            inFlight.clear();
+        }
+
+        private void startNext() {
+            ContinuationToken token = nextToStart == 0 ? resumeFrom : null;
+            TransactionQuery shard = shards.get(nextToStart++);
+            inFlight.add(CompletableFuture.supplyAsync(() -> download(shard, token, () -> closed), executionEngine.ioExecutor()));
+        }
+
+        private boolean openNext() throws IOException {
+            CompletableFuture<Path> next = inFlight.poll();
+            if (next == null) {
+                return false;
+            }
+            if (nextToStart < shards.size()) {
+                startNext();
+            }
+            try {
+                currentFile = next.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof IOException ? (IOException) e.getCause()
+                        : new IOException("Shard download failed", e.getCause());
+            }
+            current = new BufferedInputStream(Files.newInputStream(currentFile));
+            if (served++ > 0) {
+                skipHeader(current);
+            }
+            return true;
+        }
+
+        private void skipHeader(InputStream input) throws IOException {
+            int b;
+            while ((b = input.read()) != -1 && b != '\n') {
+                // header rows never contain quoted line breaks
+            }
+        }
+
+        private void finishCurrent() throws IOException {
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+            deleteQuietly(currentFile);
+            currentFile = null;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.demo.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exposes a response body as an {@link InputStream} as soon as the headers arrive. Only a
+ * few body chunks are requested ahead of the reader, so a slow consumer slows the upstream
+ * socket instead of buffering the whole body, and a read that waits longer than the read
+ * timeout fails instead of hanging on a dead connection.
+ */
+class StreamingBodySubscriber implements HttpResponse.BodySubscriber<InputStream> {
+    private static final int PREFETCH = 4;
+    private static final Object END_OF_BODY = new Object();
+
+    private final BlockingQueue<Object> chunks = new LinkedBlockingQueue<>();
+    private final long readTimeoutMillis;
+    private final BodyInputStream body = new BodyInputStream();
+    private volatile Flow.Subscription subscription;
+
+    StreamingBodySubscriber(long readTimeoutMillis) {
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    @Override
+    public CompletionStage<InputStream> getBody() {
+        return CompletableFuture.completedFuture(body);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        if (body.closed) {
+            subscription.cancel();
+        } else {
+            subscription.request(PREFETCH);
+        }
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> item) {
+        chunks.offer(item);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        chunks.offer(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        chunks.offer(END_OF_BODY);
+    }
+
+    private class BodyInputStream extends InputStream {
+        private Iterator<ByteBuffer> pending = Collections.emptyIterator();
+        private ByteBuffer current = ByteBuffer.allocate(0);
+        private boolean finished;
+        private volatile boolean closed;
+
+        @Override
+        public int read() throws IOException {
+            return hasData() ? current.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!hasData()) {
+                return -1;
+            }
+            int count = Math.min(length, current.remaining());
+            current.get(target, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return current.remaining();
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                Flow.Subscription active = subscription;
+                if (active != null) {
+                    active.cancel();
+                }
+                chunks.clear();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private boolean hasData() throws IOException {
+            while (!current.hasRemaining()) {
+                if (pending.hasNext()) {
+                    current = pending.next();
+                    continue;
+                }
+                if (finished) {
+                    return false;
+                }
+                if (closed) {
+                    throw new IOException("Upstream body is closed");
+                }
+                Object next;
+                try {
+                    next = chunks.poll(readTimeoutMillis, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    close();
+                    throw new InterruptedIOException("Interrupted while reading upstream body");
+                }
+                if (next == null) {
+                    close();
+                    throw new SocketTimeoutException("No upstream data for " + readTimeoutMillis + " ms");
+                }
+                if (next == END_OF_BODY) {
+                    finished = true;
+                    return false;
+                }
+                if (next instanceof Throwable) {
+                    close();
+                    throw new IOException("Upstream body failed", (Throwable) next);
+                }
+                pending = ((List<ByteBuffer>) next).iterator();
+                subscription.request(1);
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.demo.client;
+
+import com.example.demo.config.UpstreamProperties;
+import com.example.demo.metrics.ProxyMetrics;
+import com.example.demo.model.TransactionQuery;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+/**
+ * Client for the spending.gov.ua transactions API. One pooled {@link HttpClient} is shared by
+ * all requests, so connections (HTTP/2 where the server offers it, keep-alive otherwise) and
+ * TLS sessions are reused. Bodies are streamed to the caller as they arrive.
+ */
+@Component
+public class UpstreamClient {
+    private static final String TRANSACTIONS_PATH = "api/transactions/";
+    private static final int GZIP_BUFFER_SIZE = 65536;
+    private static final long RESUME_BACKOFF_MILLIS = 500;
+    private final UpstreamProperties properties;
+    private final ProxyMetrics metrics;
+    private final HttpClient httpClient;
+
+    public UpstreamClient(UpstreamProperties properties) {
+        this(properties, null);
+    }
+
+    /**
+     * @param metrics where to record how long the upstream takes to answer, or {@code null}
+     */
+    @Autowired
+    public UpstreamClient(UpstreamProperties properties, ProxyMetrics metrics) {
+        this.properties = properties;
+        this.metrics = metrics;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(properties.getConnectTimeout())
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /**
+     * Completes with the response body once the upstream has answered {@code 200 OK}.
+     */
+    public CompletableFuture<InputStream> fetchAsync(TransactionQuery query) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(buildUri(query))
+                .timeout(properties.getReadTimeout())
+                .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_OCTET_STREAM_VALUE)
+                .GET();
+        if (properties.isCompression()) {
+            request.header(HttpHeaders.ACCEPT_ENCODING, "gzip");
+        }
+        long readTimeoutMillis = properties.getReadTimeout().toMillis();
+        long start = System.nanoTime();
+        CompletableFuture<InputStream> body = httpClient.sendAsync(request.build(), response ->
+                        response.statusCode() == 200
+                                ? new StreamingBodySubscriber(readTimeoutMillis)
+                                : HttpResponse.BodySubscribers.<InputStream>replacing(null))
+                .thenApply(this::openBody);
+        if (metrics == null) {
+            return body;
+        }
+        return body.whenComplete((stream, error) ->
+                metrics.recordUpstreamResponse(System.nanoTime() - start, error == null));
+    }
+
+    /**
+     * The response body of {@code query}. Unless {@code upstream.resume-attempts} is 0, a body
+     * whose connection drops is requested again from its last complete row, see
+     * {@link ResumableUpstreamStream}.
+     */
+    public InputStream fetch(TransactionQuery query) throws IOException {
+        return fetch(query, null);
+    }
+
+    /**
+     * The rows of {@code query} after {@code resumeFrom}, under the usual header; every row
+     * when {@code resumeFrom} is {@code null}.
+     */
+    public InputStream fetch(TransactionQuery query, ContinuationToken resumeFrom) throws IOException {
+        InputStream body = open(resumeFrom == null ? query : resumeFrom.remainderOf(query));
+        if (resumeFrom == null && properties.getResumeAttempts() == 0) {
+            return body;
+        }
+        return new ResumableUpstreamStream(query, resumeFrom, body, this::reopen,
+                properties.getResumeAttempts(), RESUME_BACKOFF_MILLIS);
+    }
+
+    private InputStream reopen(TransactionQuery remainder) throws IOException {
+        InputStream body = open(remainder);
+        if (metrics != null) {
+            metrics.recordUpstreamResume();
+        }
+        return body;
+    }
+
+    private InputStream open(TransactionQuery query) throws IOException {
+        try {
+            return fetchAsync(query).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException("Upstream request failed", cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for upstream");
+        }
+    }
+
+    URI buildUri(TransactionQuery query) {
+        StringBuilder urlBuilder = new StringBuilder(properties.getBaseUrl())
+                .append(TRANSACTIONS_PATH)
+                .append("?startdate=")
+                .append(query.getStartDate())
+                .append("&enddate=")
+                .append(query.getEndDate());
+
+        if (!query.getReciptEdrpous().isEmpty()) {
+            String edrpousParam = query.getReciptEdrpous().stream()
+                    .map(edrpou -> "recipt_edrpous=" + edrpou)
+                    .collect(Collectors.joining("&"));
+            urlBuilder.append("&").append(edrpousParam);
+        }
+        return URI.create(urlBuilder.toString());
+    }
+
+    private InputStream openBody(HttpResponse<InputStream> response) {
+        if (response.statusCode() != 200) {
+            throw new CompletionException(new IOException("Unexpected response code: " + response.statusCode()));
+        }
+        boolean gzip = response.headers().firstValue(HttpHeaders.CONTENT_ENCODING)
+                .map("gzip"::equalsIgnoreCase)
+                .orElse(false);
+        if (!gzip) {
+            return response.body();
+        }
+        try {
+            return new GZIPInputStream(response.body(), GZIP_BUFFER_SIZE);
+        } catch (IOException e) {
+            try {
+                response.body().close();
+            } catch (IOException ignored) {
+                // the gzip error is the one worth reporting
+            }
+            throw new CompletionException(e);
+        }
+    }
+}
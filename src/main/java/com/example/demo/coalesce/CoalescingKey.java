@@ -0,0 +1,25 @@
+package com.example.demo.coalesce;
+
+import com.example.demo.model.TransactionQuery;
+import com.example.demo.service.OutputFormat;
+import java.time.LocalDate;
+import java.util.TreeSet;
+import lombok.Value;
+
+/**
+ * What makes two {@code /proxy} requests produce the same bytes. Recipients are sorted and
+ * without duplicates, like {@link com.example.demo.cache.CacheKey}; the reader, mode and
+ * sharding only change how the bytes are produced, so they are not part of the key.
+ */
+@Value
+public class CoalescingKey {
+    LocalDate startDate;
+    LocalDate endDate;
+    String recipients;
+    OutputFormat format;
+
+    public static CoalescingKey of(TransactionQuery query, OutputFormat format) {
+        return new CoalescingKey(query.getStartDate(), query.getEndDate(),
+                String.join(",", new TreeSet<>(query.getReciptEdrpous())), format);
+    }
+}
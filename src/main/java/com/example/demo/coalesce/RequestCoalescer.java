@@ -0,0 +1,175 @@
+package com.example.demo.coalesce;
+
+import com.example.demo.config.CoalescingProperties;
+import com.example.demo.execution.ExecutionEngine;
+import com.example.demo.metrics.ProxyMetrics;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Single-flight for identical requests: the first request for a key starts the producer on
+ * an I/O thread, and every request for the same key that arrives while the first byte is
+ * still buffered reads the same bytes from a {@link SharedStream}. A request that arrives
+ * later, or falls behind and is dropped, runs the producer itself; a drop mid-stream skips
+ * the bytes it already sent, after checking that they came out the same.
+ * <p>
+ * Producers must be deterministic for a key, and must not depend on the request that started
+ * them: the shared fetch outlives that request if others are still reading.
+ * <p>
+ * Rings take memory only once their producer writes, and together stay within
+ * {@code coalescing.max-total-buffer-size}, past which shared fetches stop growing theirs.
+ */
+@Slf4j
+@Component
+public class RequestCoalescer {
+    private static final int COPY_BUFFER_SIZE = 65536;
+
+    private final CoalescingProperties properties;
+    private final ExecutionEngine executionEngine;
+    private final ProxyMetrics metrics;
+    private final RingMemory ringMemory;
+    private final Map<Object, SharedStream> flights = new HashMap<>();
+
+    public RequestCoalescer(CoalescingProperties properties, ExecutionEngine executionEngine, ProxyMetrics metrics) {
+        this.properties = properties;
+        this.executionEngine = executionEngine;
+        this.metrics = metrics;
+        this.ringMemory = new RingMemory(properties.getMaxTotalBufferSize().toBytes());
+    }
+
+    @FunctionalInterface
+    public interface Producer {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /** Writes what {@code producer} writes for {@code key} to {@code out}, sharing it when possible. */
+    public void stream(Object key, Producer producer, OutputStream out) throws IOException {
+        SharedStream stream;
+        SharedStream.Subscription subscription;
+        boolean leader = false;
+        synchronized (flights) {
+            stream = flights.get(key);
+            subscription = stream == null ? null : stream.join();
+            if (subscription == null) {
+                // Replaces a flight that can no longer be joined, so later requests share this one.
+                stream = new SharedStream((int) properties.getBufferSize().toBytes(),
+                        properties.getStallTimeout().toNanos(), ringMemory);
+                subscription = stream.join();
+                flights.put(key, stream);
+                leader = true;
+            }
+        }
+        if (leader) {
+            SharedStream started = stream;
+            executionEngine.ioExecutor().execute(() -> produce(key, started, producer));
+        }
+        metrics.recordCoalescing(leader ? "leader" : "joined");
+        copy(subscription, producer, out);
+    }
+
+    /** Ring buffer bytes held by the shared fetches. */
+    long bufferedBytes() {
+        return ringMemory.used();
+    }
+
+    private void produce(Object key, SharedStream stream, Producer producer) {
+        try {
+            producer.writeTo(stream.output());
+            stream.finish();
+        } catch (IOException | RuntimeException e) {
+            stream.fail(e);
+        } finally {
+            synchronized (flights) {
+                flights.remove(key, stream);
+            }
+        }
+    }
+
+    private void copy(SharedStream.Subscription subscription, Producer producer, OutputStream out)
+            throws IOException {
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        CRC32 sent = new CRC32();
+        try (subscription) {
+            for (int n; (n = subscription.read(buffer, 0, buffer.length)) > 0; ) {
+                out.write(buffer, 0, n);
+                sent.update(buffer, 0, n);
+                // Flush when the producer has nothing more yet, which is once per batch it wrote.
+                if (!subscription.ready()) {
+                    out.flush();
+                }
+            }
+            out.flush();
+        } catch (SharedStream.OverrunException e) {
+            log.info("Request fell behind a shared fetch after {} bytes, fetching on its own", e.position());
+            metrics.recordCoalescing("fallback");
+            ResumingOutputStream resumed = new ResumingOutputStream(out, e.position(), sent.getValue());
+            producer.writeTo(resumed);
+            resumed.finish();
+            out.flush();
+        }
+    }
+
+    /** Drops the first {@code skip} bytes after checking them against the checksum of what was sent. */
+    private static final class ResumingOutputStream extends OutputStream {
+        private final OutputStream out;
+        private final long expectedChecksum;
+        private final CRC32 skipped = new CRC32();
+        private long remaining;
+
+        ResumingOutputStream(OutputStream out, long skip, long expectedChecksum) {
+            this.out = out;
+            this.remaining = skip;
+            this.expectedChecksum = expectedChecksum;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (remaining > 0) {
+                int n = (int) Math.min(len, remaining);
+                skipped.update(b, off, n);
+                remaining -= n;
+                off += n;
+                len -= n;
+                if (remaining == 0) {
+                    checkSkipped();
+                }
+            }
+            if (len > 0) {
+                out.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (remaining == 0) {
+                out.flush();
+            }
+        }
+
+        void finish() throws IOException {
+            if (remaining > 0) {
+                throw new IOException("Upstream data changed while resuming: " + remaining + " bytes short");
+            }
+        }
+
+        private void checkSkipped() throws IOException {
+            if (skipped.getValue() != expectedChecksum) {
+                throw new IOException("Upstream data changed while resuming a shared fetch");
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.demo.coalesce;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Ring buffer bytes held by all shared fetches together, against a limit. */
+final class RingMemory {
+    private final long limit;
+    private final AtomicLong used = new AtomicLong();
+
+    RingMemory(long limit) {
+        this.limit = limit;
+    }
+
+    /** Takes {@code bytes} if that stays within the limit. */
+    boolean tryReserve(long bytes) {
+        long current;
+        do {
+            current = used.get();
+            if (current + bytes > limit) {
+                return false;
+            }
+        } while (!used.compareAndSet(current, current + bytes));
+        return true;
+    }
+
+    /** Takes {@code bytes} even past the limit. */
+    void reserve(long bytes) {
+        used.addAndGet(bytes);
+    }
+
+    void release(long bytes) {
+        used.addAndGet(-bytes);
+    }
+
+    long used() {
+        return used.get();
+    }
+}
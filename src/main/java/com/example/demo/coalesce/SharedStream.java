@@ -0,0 +1,268 @@
+package com.example.demo.coalesce;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One producer fanned out to many subscribers through a bounded ring buffer. The producer
+ * waits while the ring is full, so subscribers normally see every byte. A subscriber that holds
+ * the ring full for longer than the stall timeout is dropped with {@link OverrunException}
+ * and the others go on. Subscribers can join as long as the first byte is still in the ring.
+ * <p>
+ * The ring is allocated at the first write, which is after the producer was admitted, with
+ * {@link #INITIAL_CAPACITY} bytes; it doubles up to its capacity only while the slowest
+ * subscriber or the first byte holds it full, and only within the shared {@link RingMemory}.
+ */
+final class SharedStream {
+    /** Ring size at the first write; taken even when the shared memory is used up. */
+    static final int INITIAL_CAPACITY = 65536;
+
+    private final int capacity;
+    private final long stallTimeoutNanos;
+    private final RingMemory memory;
+    private final List<Subscription> subscriptions = new ArrayList<>();
+    private byte[] ring = new byte[0];
+    private long written;
+    /** Whether the first byte is still in the ring, so that new subscribers can join. */
+    private boolean joinable = true;
+    private boolean finished;
+    private Exception failure;
+    private boolean closed;
+    private boolean released;
+
+    SharedStream(int capacity, long stallTimeoutNanos, RingMemory memory) {
+        this.capacity = capacity;
+        this.stallTimeoutNanos = stallTimeoutNanos;
+        this.memory = memory;
+    }
+
+    /**
+     * @return a subscription reading from the first byte, or {@code null} if that byte is gone
+     *         or every subscriber has left
+     */
+    synchronized Subscription join() {
+        if (closed || !joinable) {
+            return null;
+        }
+        Subscription subscription = new Subscription();
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    /** The producer's end; fails once every subscriber has left. */
+    OutputStream output() {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                append(b, off, len);
+            }
+        };
+    }
+
+    synchronized void finish() {
+        finished = true;
+        releaseIfDone();
+        notifyAll();
+    }
+
+    synchronized void fail(Exception e) {
+        failure = e;
+        closed = true;
+        releaseIfDone();
+        notifyAll();
+    }
+
+    private synchronized void append(byte[] b, int off, int len) throws IOException {
+        long deadline = 0;
+        while (len > 0) {
+            if (subscriptions.isEmpty()) {
+                throw new IOException("Every subscriber of the shared fetch has left");
+            }
+            long oldest = joinable ? 0 : written;
+            for (Subscription subscription : subscriptions) {
+                oldest = Math.min(oldest, subscription.position);
+            }
+            int free = (int) (ring.length - (written - oldest));
+            if (free < len && grow(oldest, written - oldest + len)) {
+                continue;
+            }
+            if (free == 0 && joinable) {
+                // Keeping the first byte for late joiners must not hold back the subscribers.
+                joinable = false;
+                continue;
+            }
+            if (free == 0) {
+                long now = System.nanoTime();
+                if (deadline == 0) {
+                    deadline = now + stallTimeoutNanos;
+                }
+                if (now - deadline >= 0) {
+                    dropSubscribersAt(oldest);
+                    deadline = 0;
+                    continue;
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(this, deadline - now);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for subscribers");
+                }
+                continue;
+            }
+            deadline = 0;
+            int n = Math.min(free, len);
+            int at = (int) (written % ring.length);
+            int first = Math.min(n, ring.length - at);
+            System.arraycopy(b, off, ring, at, first);
+            System.arraycopy(b, off + first, ring, 0, n - first);
+            written += n;
+            off += n;
+            len -= n;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Moves the bytes from {@code from} on into a larger ring that holds {@code needed} bytes,
+     * or at least twice as many as now, up to the capacity.
+     *
+     * @return {@code false} if the ring is at its capacity or the shared memory is used up
+     */
+    private boolean grow(long from, long needed) {
+        if (ring.length >= capacity) {
+            return false;
+        }
+        int length;
+        if (ring.length == 0) {
+            length = Math.min(capacity, INITIAL_CAPACITY);
+            memory.reserve(length);
+        } else {
+            length = (int) Math.min(capacity, Math.max(needed, 2L * ring.length));
+            if (!memory.tryReserve(length - ring.length)) {
+                return false;
+            }
+        }
+        byte[] grown = new byte[length];
+        for (long position = from; position < written; ) {
+            int at = (int) (position % ring.length);
+            int to = (int) (position % length);
+            int n = (int) Math.min(written - position, Math.min(ring.length - at, length - to));
+            System.arraycopy(ring, at, grown, to, n);
+            position += n;
+        }
+        ring = grown;
+        return true;
+    }
+
+    /** Gives the ring back once the producer is done and every subscriber has left. */
+    private void releaseIfDone() {
+        if (released || !subscriptions.isEmpty() || !(finished || closed)) {
+            return;
+        }
+        released = true;
+        closed = true;
+        memory.release(ring.length);
+        ring = new byte[0];
+    }
+
+    private void dropSubscribersAt(long position) {
+        subscriptions.removeIf(subscription -> {
+            if (subscription.position == position) {
+                subscription.overrun = true;
+                return true;
+            }
+            return false;
+        });
+        closed |= subscriptions.isEmpty();
+        releaseIfDone();
+        notifyAll();
+    }
+
+    /** A subscriber's cursor into the ring. Used by one thread. */
+    final class Subscription implements AutoCloseable {
+        private long position;
+        private boolean overrun;
+
+        /**
+         * Blocks until bytes are available.
+         *
+         * @return the number of bytes read, or -1 once the producer has finished and everything was read
+         * @throws OverrunException if this subscriber fell behind and was dropped
+         */
+        int read(byte[] b, int off, int len) throws IOException {
+            synchronized (SharedStream.this) {
+                while (!overrun && position == written && !finished && failure == null) {
+                    try {
+                        SharedStream.this.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while waiting for the shared fetch");
+                    }
+                }
+                if (overrun) {
+                    throw new OverrunException(position);
+                }
+                if (position < written) {
+                    int n = (int) Math.min(len, written - position);
+                    int at = (int) (position % ring.length);
+                    int first = Math.min(n, ring.length - at);
+                    System.arraycopy(ring, at, b, off, first);
+                    System.arraycopy(ring, 0, b, off + first, n - first);
+                    position += n;
+                    SharedStream.this.notifyAll();
+                    return n;
+                }
+                if (failure instanceof RuntimeException) {
+                    throw (RuntimeException) failure;
+                }
+                if (failure != null) {
+                    throw new IOException("Shared fetch failed", failure);
+                }
+                return -1;
+            }
+        }
+
+        /** Whether {@link #read} would return without waiting. */
+        boolean ready() {
+            synchronized (SharedStream.this) {
+                return overrun || position < written || finished || failure != null;
+            }
+        }
+
+        /** Leaves the stream; the producer stops once nobody is left. */
+        @Override
+        public void close() {
+            synchronized (SharedStream.this) {
+                subscriptions.remove(this);
+                if (subscriptions.isEmpty()) {
+                    closed = true;
+                }
+                releaseIfDone();
+                SharedStream.this.notifyAll();
+            }
+        }
+    }
+
+    /** The subscriber was dropped after it had read {@link #position()} bytes. */
+    static final class OverrunException extends IOException {
+        private final long position;
+
+        OverrunException(long position) {
+            super("Fell behind the shared fetch after " + position + " bytes");
+            this.position = position;
+        }
+
+        long position() {
+            return position;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.demo.columnar;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/** One decoded column chunk. Plain strings are only decoded when read. */
+final class Column {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final LogicalType type;
+    private final int encoding;
+    private final byte[] nulls;
+    private long[] longs;
+    private int[] ints;
+    private byte[] scales;
+    private int[] offsets;
+    private byte[] bytes;
+    private String[] dictionary;
+
+    private Column(LogicalType type, int encoding, byte[] nulls) {
+        this.type = type;
+        this.encoding = encoding;
+        this.nulls = nulls;
+    }
+
+    static Column decode(LogicalType type, int encoding, int rows, ByteBuffer payload) throws IOException {
+        byte[] nulls = new byte[(rows + 7) / 8];
+        payload.get(nulls);
+        Column column = new Column(type, encoding, nulls);
+        switch (encoding) {
+            case ColumnarFormat.PLAIN:
+                column.offsets = ints(payload, rows + 1);
+                column.bytes = bytes(payload, payload.remaining());
+                break;
+            case ColumnarFormat.DICTIONARY:
+                int size = payload.getInt();
+                int[] offsets = ints(payload, size + 1);
+                byte[] utf8 = bytes(payload, offsets[size]);
+                column.dictionary = new String[size];
+                for (int i = 0; i < size; i++) {
+                    column.dictionary[i] = new String(utf8, offsets[i], offsets[i + 1] - offsets[i],
+                            StandardCharsets.UTF_8);
+                }
+                column.ints = codes(payload, payload.get(), rows);
+                break;
+            case ColumnarFormat.INT64:
+                column.longs = longs(payload, rows);
+                break;
+            case ColumnarFormat.INT32:
+                column.ints = ints(payload, rows);
+                break;
+            case ColumnarFormat.DECIMAL64:
+                column.scales = bytes(payload, rows);
+                column.longs = longs(payload, rows);
+                break;
+            case ColumnarFormat.BYTES32:
+                column.bytes = bytes(payload, rows * ColumnarFormat.HASH_LENGTH);
+                break;
+            case ColumnarFormat.NULLS:
+                break;
+            default:
+                throw new IOException("Unknown column encoding " + encoding);
+        }
+        return column;
+    }
+
+    boolean isNull(int row) {
+        return (nulls[row >>> 3] & (1 << (row & 7))) != 0;
+    }
+
+    long getLong(int row) {
+        switch (encoding) {
+            case ColumnarFormat.INT64:
+                return longs[row];
+            case ColumnarFormat.INT32:
+                return ints[row];
+            default:
+                return Long.parseLong(getText(row));
+        }
+    }
+
+    int getInt(int row) {
+        if (encoding == ColumnarFormat.INT32) {
+            return ints[row];
+        }
+        return type == LogicalType.DATE
+                ? (int) LocalDate.parse(getText(row)).toEpochDay()
+                : Integer.parseInt(getText(row));
+    }
+
+    BigDecimal getDecimal(int row) {
+        switch (encoding) {
+            case ColumnarFormat.DECIMAL64:
+                return BigDecimal.valueOf(longs[row], scales[row]);
+            case ColumnarFormat.INT64:
+                return BigDecimal.valueOf(longs[row]);
+            default:
+                return new BigDecimal(getText(row));
+        }
+    }
+
+    byte[] getBytes(int row) {
+        byte[] value = new byte[ColumnarFormat.HASH_LENGTH];
+        if (encoding == ColumnarFormat.BYTES32) {
+            System.arraycopy(bytes, row * ColumnarFormat.HASH_LENGTH, value, 0, value.length);
+            return value;
+        }
+        String hex = getText(row);
+        for (int i = 0; i < value.length; i++) {
+            value[i] = (byte) Integer.parseInt(hex, i * 2, i * 2 + 2, 16);
+        }
+        return value;
+    }
+
+    /** The value as the CSV export prints it; empty for null. */
+    String getText(int row) {
+        if (isNull(row)) {
+            return "";
+        }
+        switch (encoding) {
+            case ColumnarFormat.PLAIN:
+                return new String(bytes, offsets[row], offsets[row + 1] - offsets[row], StandardCharsets.UTF_8);
+            case ColumnarFormat.DICTIONARY:
+                return dictionary[ints[row]];
+            case ColumnarFormat.INT64:
+                return Long.toString(longs[row]);
+            case ColumnarFormat.INT32:
+                return type == LogicalType.DATE
+                        ? LocalDate.ofEpochDay(ints[row]).toString()
+                        : Integer.toString(ints[row]);
+            case ColumnarFormat.DECIMAL64:
+                return getDecimal(row).toString();
+            default:
+                char[] hex = new char[ColumnarFormat.HASH_LENGTH * 2];
+                for (int i = 0; i < ColumnarFormat.HASH_LENGTH; i++) {
+                    int b = bytes[row * ColumnarFormat.HASH_LENGTH + i] & 0xff;
+                    hex[i * 2] = HEX[b >>> 4];
+                    hex[i * 2 + 1] = HEX[b & 0x0f];
+                }
+                return new String(hex);
+        }
+    }
+
+    private static byte[] bytes(ByteBuffer payload, int length) {
+        byte[] values = new byte[length];
+        payload.get(values);
+        return values;
+    }
+
+    private static int[] ints(ByteBuffer payload, int count) {
+        int[] values = new int[count];
+        payload.asIntBuffer().get(values);
+        payload.position(payload.position() + count * 4);
+        return values;
+    }
+
+    private static long[] longs(ByteBuffer payload, int count) {
+        long[] values = new long[count];
+        payload.asLongBuffer().get(values);
+        payload.position(payload.position() + count * 8);
+        return values;
+    }
+
+    private static int[] codes(ByteBuffer payload, int width, int rows) throws IOException {
+        switch (width) {
+            case 1:
+                int[] bytes = new int[rows];
+                for (int row = 0; row < rows; row++) {
+                    bytes[row] = payload.get() & 0xff;
+                }
+                return bytes;
+            case 2:
+                int[] shorts = new int[rows];
+                for (int row = 0; row < rows; row++) {
+                    shorts[row] = payload.getShort() & 0xffff;
+                }
+                return shorts;
+            case 4:
+                return ints(payload, rows);
+            default:
+                throw new IOException("Invalid dictionary code width " + width);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.demo.columnar;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * One batch of rows, accessed by column index and row. Typed getters read the stored
+ * primitives; on a chunk that fell back to text they parse the text instead. Getters other
+ * than {@link #getText} must not be called for null values.
+ */
+public final class ColumnarBatch {
+    private final int rowCount;
+    private final Column[] columns;
+
+    ColumnarBatch(int rowCount, Column[] columns) {
+        this.rowCount = rowCount;
+        this.columns = columns;
+    }
+
+    public int rowCount() {
+        return rowCount;
+    }
+
+    public boolean isNull(int column, int row) {
+        return columns[column].isNull(row);
+    }
+
+    /** An {@link LogicalType#INT64} or {@link LogicalType#INT32} value. */
+    public long getLong(int column, int row) {
+        return columns[column].getLong(row);
+    }
+
+    /** An {@link LogicalType#INT32} value, or a {@link LogicalType#DATE} as days since 1970-01-01. */
+    public int getInt(int column, int row) {
+        return columns[column].getInt(row);
+    }
+
+    public LocalDate getDate(int column, int row) {
+        return LocalDate.ofEpochDay(columns[column].getInt(row));
+    }
+
+    public BigDecimal getDecimal(int column, int row) {
+        return columns[column].getDecimal(row);
+    }
+
+    /** The 32 bytes of a {@link LogicalType#HASH} value. */
+    public byte[] getHash(int column, int row) {
+        return columns[column].getBytes(row);
+    }
+
+    /** Any value as the CSV export prints it, with an empty string for null. */
+    public String getText(int column, int row) {
+        return columns[column].getText(row);
+    }
+}
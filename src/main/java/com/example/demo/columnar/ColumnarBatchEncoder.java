@@ -0,0 +1,440 @@
+package com.example.demo.columnar;
+
+import com.example.demo.model.TransactionColumns;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes rows of the transaction export into one batch of {@link ColumnarFormat} column
+ * chunks. String columns are dictionary-encoded whenever a batch has few distinct values,
+ * which covers currency, source name, EDRPOU codes and bank names. One encoder belongs to
+ * one batch on one thread.
+ */
+public final class ColumnarBatchEncoder {
+    /** The 38 upstream columns and the hash. */
+    public static final int COLUMNS = TransactionColumns.COUNT + 1;
+
+    private static final LogicalType[] TYPES = new LogicalType[COLUMNS];
+    private static final int MIN_DICTIONARY_SIZE = 16;
+
+    static {
+        for (int column = 0; column < TransactionColumns.COUNT; column++) {
+            switch (TransactionColumns.type(column)) {
+                case LONG:
+                    TYPES[column] = LogicalType.INT64;
+                    break;
+                case INTEGER:
+                    TYPES[column] = LogicalType.INT32;
+                    break;
+                case DATE:
+                    TYPES[column] = LogicalType.DATE;
+                    break;
+                case DECIMAL:
+                    TYPES[column] = LogicalType.DECIMAL;
+                    break;
+                default:
+                    TYPES[column] = LogicalType.STRING;
+            }
+        }
+        TYPES[TransactionColumns.AMOUNT_COP] = LogicalType.INT64;
+        TYPES[TransactionColumns.COUNT] = LogicalType.HASH;
+    }
+
+    private final String[][] values;
+    private int rows;
+
+    public ColumnarBatchEncoder(int capacity) {
+        this.values = new String[COLUMNS][Math.max(capacity, 1)];
+    }
+
+    public static void writeStreamHeader(OutputStream out) throws IOException {
+        ChunkBuffer header = new ChunkBuffer(1024);
+        header.putBytes(ColumnarFormat.MAGIC);
+        header.putByte(ColumnarFormat.VERSION);
+        header.putShort(COLUMNS);
+        for (int column = 0; column < COLUMNS; column++) {
+            byte[] name = (column < TransactionColumns.COUNT ? TransactionColumns.name(column) : "hash")
+                    .getBytes(StandardCharsets.UTF_8);
+            header.putByte(TYPES[column].ordinal());
+            header.putShort(name.length);
+            header.putBytes(name);
+        }
+        header.writeTo(out);
+    }
+
+    public static void writeEnd(OutputStream out) throws IOException {
+        out.write(new byte[4]);
+    }
+
+    /**
+     * Adds a row: the 38 fields as the CSV output prints them, then the hex hash. Missing and
+     * empty fields are null; fields beyond the hash are ignored.
+     */
+    public void add(String[] row) {
+        if (rows == values[0].length) {
+            for (int column = 0; column < COLUMNS; column++) {
+                values[column] = Arrays.copyOf(values[column], rows * 2);
+            }
+        }
+        for (int column = 0; column < COLUMNS; column++) {
+            values[column][rows] = column < row.length ? row[column] : null;
+        }
+        rows++;
+    }
+
+    public int size() {
+        return rows;
+    }
+
+    /** The batch: its row count followed by one chunk per column. */
+    public byte[] encode() {
+        ChunkBuffer out = new ChunkBuffer(rows * 256 + 64);
+        out.putInt(rows);
+        for (int column = 0; column < COLUMNS; column++) {
+            int start = out.reserve(5);
+            int encoding = encodeColumn(TYPES[column], values[column], out);
+            out.putByteAt(start, encoding);
+            out.putIntAt(start + 1, out.position() - start - 5);
+        }
+        return out.toByteArray();
+    }
+
+    private int encodeColumn(LogicalType type, String[] column, ChunkBuffer out) {
+        if (allNull(column)) {
+            writeNulls(column, out);
+            return ColumnarFormat.NULLS;
+        }
+        switch (type) {
+            case INT64:
+                if (encodeInt64(column, out)) {
+                    return ColumnarFormat.INT64;
+                }
+                break;
+            case INT32:
+            case DATE:
+                if (encodeInt32(type, column, out)) {
+                    return ColumnarFormat.INT32;
+                }
+                break;
+            case DECIMAL:
+                if (encodeDecimal(column, out)) {
+                    return ColumnarFormat.DECIMAL64;
+                }
+                break;
+            case HASH:
+                if (encodeHash(column, out)) {
+                    return ColumnarFormat.BYTES32;
+                }
+                break;
+            default:
+                break;
+        }
+        return encodeString(column, out);
+    }
+
+    private boolean encodeInt64(String[] column, ChunkBuffer out) {
+        long[] numbers = new long[rows];
+        for (int row = 0; row < rows; row++) {
+            String value = column[row];
+            if (isNull(value)) {
+                continue;
+            }
+            try {
+                numbers[row] = Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+            if (!Long.toString(numbers[row]).equals(value)) {
+                return false;
+            }
+        }
+        writeNulls(column, out);
+        for (int row = 0; row < rows; row++) {
+            out.putLong(numbers[row]);
+        }
+        return true;
+    }
+
+    private boolean encodeInt32(LogicalType type, String[] column, ChunkBuffer out) {
+        int[] numbers = new int[rows];
+        for (int row = 0; row < rows; row++) {
+            String value = column[row];
+            if (isNull(value)) {
+                continue;
+            }
+            if (type == LogicalType.DATE) {
+                if (!parseEpochDay(value, numbers, row)) {
+                    return false;
+                }
+                continue;
+            }
+            try {
+                numbers[row] = Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+            if (!Integer.toString(numbers[row]).equals(value)) {
+                return false;
+            }
+        }
+        writeNulls(column, out);
+        for (int row = 0; row < rows; row++) {
+            out.putInt(numbers[row]);
+        }
+        return true;
+    }
+
+    /** Fixed-width {@code yyyy-MM-dd}, the only form {@code LocalDate.toString()} prints for years 0-9999. */
+    private static boolean parseEpochDay(String value, int[] days, int row) {
+        if (value.length() != 10 || value.charAt(4) != '-' || value.charAt(7) != '-') {
+            return false;
+        }
+        int year = digits(value, 0, 4);
+        int month = digits(value, 5, 2);
+        int day = digits(value, 8, 2);
+        if (year < 0 || month < 0 || day < 0) {
+            return false;
+        }
+        try {
+            days[row] = (int) LocalDate.of(year, month, day).toEpochDay();
+            return true;
+        } catch (DateTimeException e) {
+            return false;
+        }
+    }
+
+    private boolean encodeDecimal(String[] column, ChunkBuffer out) {
+        byte[] scales = new byte[rows];
+        long[] unscaled = new long[rows];
+        for (int row = 0; row < rows; row++) {
+            String value = column[row];
+            if (isNull(value)) {
+                continue;
+            }
+            BigDecimal decimal;
+            try {
+                decimal = new BigDecimal(value);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+            if (decimal.scale() != (byte) decimal.scale() || decimal.unscaledValue().bitLength() > 63
+                    || !decimal.toString().equals(value)) {
+                return false;
+            }
+            scales[row] = (byte) decimal.scale();
+            unscaled[row] = decimal.unscaledValue().longValue();
+        }
+        writeNulls(column, out);
+        out.putBytes(scales);
+        for (int row = 0; row < rows; row++) {
+            out.putLong(unscaled[row]);
+        }
+        return true;
+    }
+
+    private boolean encodeHash(String[] column, ChunkBuffer out) {
+        byte[] hashes = new byte[rows * ColumnarFormat.HASH_LENGTH];
+        for (int row = 0; row < rows; row++) {
+            String value = column[row];
+            if (isNull(value)) {
+                continue;
+            }
+            if (value.length() != ColumnarFormat.HASH_LENGTH * 2) {
+                return false;
+            }
+            for (int i = 0; i < ColumnarFormat.HASH_LENGTH; i++) {
+                int high = lowerHexDigit(value.charAt(i * 2));
+                int low = lowerHexDigit(value.charAt(i * 2 + 1));
+                if (high < 0 || low < 0) {
+                    return false;
+                }
+                hashes[row * ColumnarFormat.HASH_LENGTH + i] = (byte) (high << 4 | low);
+            }
+        }
+        writeNulls(column, out);
+        out.putBytes(hashes);
+        return true;
+    }
+
+    private int encodeString(String[] column, ChunkBuffer out) {
+        int limit = Math.max(MIN_DICTIONARY_SIZE, rows / 4);
+        Map<String, Integer> dictionary = new HashMap<>();
+        List<String> entries = new ArrayList<>();
+        int[] codes = new int[rows];
+        for (int row = 0; row < rows; row++) {
+            String value = column[row];
+            if (isNull(value)) {
+                continue;
+            }
+            Integer code = dictionary.get(value);
+            if (code == null) {
+                if (entries.size() == limit) {
+                    writeNulls(column, out);
+                    writeStrings(column, rows, out);
+                    return ColumnarFormat.PLAIN;
+                }
+                code = entries.size();
+                dictionary.put(value, code);
+                entries.add(value);
+            }
+            codes[row] = code;
+        }
+        writeNulls(column, out);
+        out.putInt(entries.size());
+        writeStrings(entries.toArray(new String[0]), entries.size(), out);
+        int width = entries.size() <= 0x100 ? 1 : entries.size() <= 0x10000 ? 2 : 4;
+        out.putByte(width);
+        for (int row = 0; row < rows; row++) {
+            if (width == 1) {
+                out.putByte(codes[row]);
+            } else if (width == 2) {
+                out.putShort(codes[row]);
+            } else {
+                out.putInt(codes[row]);
+            }
+        }
+        return ColumnarFormat.DICTIONARY;
+    }
+
+    /** i32 offsets[count + 1] followed by the UTF-8 bytes of the first {@code count} strings. */
+    private static void writeStrings(String[] strings, int count, ChunkBuffer out) {
+        byte[][] encoded = new byte[count][];
+        int offset = 0;
+        out.putInt(0);
+        for (int i = 0; i < count; i++) {
+            encoded[i] = isNull(strings[i]) ? new byte[0] : strings[i].getBytes(StandardCharsets.UTF_8);
+            offset += encoded[i].length;
+            out.putInt(offset);
+        }
+        for (byte[] bytes : encoded) {
+            out.putBytes(bytes);
+        }
+    }
+
+    private void writeNulls(String[] column, ChunkBuffer out) {
+        byte[] nulls = new byte[(rows + 7) / 8];
+        for (int row = 0; row < rows; row++) {
+            if (isNull(column[row])) {
+                nulls[row >>> 3] |= (byte) (1 << (row & 7));
+            }
+        }
+        out.putBytes(nulls);
+    }
+
+    private boolean allNull(String[] column) {
+        for (int row = 0; row < rows; row++) {
+            if (!isNull(column[row])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isNull(String value) {
+        return value == null || value.isEmpty();
+    }
+
+    private static int digits(String value, int offset, int count) {
+        int result = 0;
+        for (int i = offset; i < offset + count; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    private static int lowerHexDigit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        return c >= 'a' && c <= 'f' ? c - 'a' + 10 : -1;
+    }
+
+    /** A growable little-endian byte buffer. */
+    private static final class ChunkBuffer {
+        private byte[] bytes;
+        private int position;
+
+        ChunkBuffer(int capacity) {
+            this.bytes = new byte[capacity];
+        }
+
+        int position() {
+            return position;
+        }
+
+        int reserve(int length) {
+            ensure(length);
+            int start = position;
+            position += length;
+            return start;
+        }
+
+        void putByte(int value) {
+            ensure(1);
+            bytes[position++] = (byte) value;
+        }
+
+        void putShort(int value) {
+            ensure(2);
+            bytes[position++] = (byte) value;
+            bytes[position++] = (byte) (value >>> 8);
+        }
+
+        void putInt(int value) {
+            ensure(4);
+            putIntAt(position, value);
+            position += 4;
+        }
+
+        void putLong(long value) {
+            ensure(8);
+            putIntAt(position, (int) value);
+            putIntAt(position + 4, (int) (value >>> 32));
+            position += 8;
+        }
+
+        void putBytes(byte[] value) {
+            ensure(value.length);
+            System.arraycopy(value, 0, bytes, position, value.length);
+            position += value.length;
+        }
+
+        void putByteAt(int index, int value) {
+            bytes[index] = (byte) value;
+        }
+
+        void putIntAt(int index, int value) {
+            bytes[index] = (byte) value;
+            bytes[index + 1] = (byte) (value >>> 8);
+            bytes[index + 2] = (byte) (value >>> 16);
+            bytes[index + 3] = (byte) (value >>> 24);
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, position);
+        }
+
+        void writeTo(OutputStream out) throws IOException {
+            out.write(bytes, 0, position);
+        }
+
+        private void ensure(int length) {
+            if (position + length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(position + length, bytes.length * 2));
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.demo.columnar;
+
+/**
+ * Layout of the columnar transaction stream. All numbers are little-endian.
+ * <pre>
+ * stream  = magic "TXCF", u8 version, u16 column count, column*, batch*, i32 0
+ * column  = u8 logical type, u16 name length, UTF-8 name
+ * batch   = i32 row count (&gt; 0), chunk per column
+ * chunk   = u8 encoding, i32 payload length, payload
+ * </pre>
+ * Every payload starts with a null bitmap of {@code ceil(rows / 8)} bytes, bit {@code row % 8}
+ * of byte {@code row / 8} set for a null (empty) value, followed by:
+ * <ul>
+ *   <li>{@link #PLAIN}: i32 offsets[rows + 1] into the UTF-8 bytes that follow</li>
+ *   <li>{@link #DICTIONARY}: i32 entry count, i32 offsets[count + 1], UTF-8 bytes, u8 code
+ *       width (1, 2 or 4), codes[rows]</li>
+ *   <li>{@link #INT64}: i64[rows]</li>
+ *   <li>{@link #INT32}: i32[rows]</li>
+ *   <li>{@link #DECIMAL64}: i8 scale[rows], i64 unscaled value[rows]</li>
+ *   <li>{@link #BYTES32}: 32 bytes per row</li>
+ *   <li>{@link #NULLS}: nothing more; every value is null</li>
+ * </ul>
+ * A chunk of a typed column falls back to {@link #PLAIN} when one of its values has no
+ * exact typed form, such as a row the proxy could not parse. The stream ends with a zero row
+ * count, so a truncated stream can be told apart from a complete one.
+ */
+public final class ColumnarFormat {
+    public static final String MEDIA_TYPE = "application/vnd.transactions.columnar";
+    public static final int HASH_LENGTH = 32;
+
+    static final byte[] MAGIC = {'T', 'X', 'C', 'F'};
+    static final int VERSION = 1;
+
+    static final int PLAIN = 0;
+    static final int DICTIONARY = 1;
+    static final int INT64 = 2;
+    static final int INT32 = 3;
+    static final int DECIMAL64 = 4;
+    static final int BYTES32 = 5;
+    static final int NULLS = 6;
+
+    private ColumnarFormat() {
+    }
+}
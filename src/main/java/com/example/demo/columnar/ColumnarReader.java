@@ -0,0 +1,128 @@
+package com.example.demo.columnar;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads a {@link ColumnarFormat} stream batch by batch. Only depends on the JDK, so clients
+ * can copy this package without the rest of the proxy.
+ * <pre>
+ * try (ColumnarReader reader = new ColumnarReader(response)) {
+ *     int amount = reader.columnIndex("amount_cop");
+ *     for (ColumnarBatch batch; (batch = reader.next()) != null; ) {
+ *         for (int row = 0; row &lt; batch.rowCount(); row++) {
+ *             total += batch.isNull(amount, row) ? 0 : batch.getLong(amount, row);
+ *         }
+ *     }
+ * }
+ * </pre>
+ */
+public final class ColumnarReader implements Closeable {
+    private final InputStream in;
+    private final String[] names;
+    private final LogicalType[] types;
+    private boolean finished;
+
+    public ColumnarReader(InputStream in) throws IOException {
+        this.in = in;
+        byte[] magic = readFully(ColumnarFormat.MAGIC.length);
+        if (!Arrays.equals(magic, ColumnarFormat.MAGIC)) {
+            throw new IOException("Not a columnar transaction stream");
+        }
+        int version = readFully(1)[0];
+        if (version != ColumnarFormat.VERSION) {
+            throw new IOException("Unsupported columnar format version " + version);
+        }
+        int count = readUnsignedShort();
+        names = new String[count];
+        types = new LogicalType[count];
+        for (int column = 0; column < count; column++) {
+            int type = readFully(1)[0] & 0xff;
+            if (type >= LogicalType.values().length) {
+                throw new IOException("Unknown logical type " + type);
+            }
+            types[column] = LogicalType.values()[type];
+            names[column] = new String(readFully(readUnsignedShort()), StandardCharsets.UTF_8);
+        }
+    }
+
+    public int columnCount() {
+        return names.length;
+    }
+
+    public String columnName(int column) {
+        return names[column];
+    }
+
+    public LogicalType columnType(int column) {
+        return types[column];
+    }
+
+    /**
+     * @return the index of the named column, or {@code -1}
+     */
+    public int columnIndex(String name) {
+        for (int column = 0; column < names.length; column++) {
+            if (names[column].equals(name)) {
+                return column;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the next batch, or {@code null} at the end of the stream
+     * @throws EOFException if the stream ends without its end marker
+     */
+    public ColumnarBatch next() throws IOException {
+        if (finished) {
+            return null;
+        }
+        int rows = readInt();
+        if (rows == 0) {
+            finished = true;
+            return null;
+        }
+        if (rows < 0) {
+            throw new IOException("Invalid row count " + rows);
+        }
+        Column[] columns = new Column[names.length];
+        for (int column = 0; column < names.length; column++) {
+            int encoding = readFully(1)[0];
+            ByteBuffer payload = ByteBuffer.wrap(readFully(readInt())).order(ByteOrder.LITTLE_ENDIAN);
+            columns[column] = Column.decode(types[column], encoding, rows, payload);
+        }
+        return new ColumnarBatch(rows, columns);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private int readInt() throws IOException {
+        return ByteBuffer.wrap(readFully(4)).order(ByteOrder.LITTLE_ENDIAN).getInt();
+    }
+
+    private int readUnsignedShort() throws IOException {
+        byte[] bytes = readFully(2);
+        return (bytes[0] & 0xff) | (bytes[1] & 0xff) << 8;
+    }
+
+    private byte[] readFully(int length) throws IOException {
+        if (length < 0) {
+            throw new IOException("Invalid length " + length);
+        }
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length < length) {
+            throw new EOFException("Columnar stream ended early");
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.demo.columnar;
+
+/**
+ * What a column's values mean, independent of how a chunk happens to encode them. The
+ * declaration order is the wire code, so new types go at the end.
+ */
+public enum LogicalType {
+    STRING,
+    INT64,
+    INT32,
+    /** Days since 1970-01-01. */
+    DATE,
+    DECIMAL,
+    /** A 32-byte SHA-256 digest. */
+    HASH
+}
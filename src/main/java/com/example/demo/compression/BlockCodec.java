@@ -0,0 +1,30 @@
+package com.example.demo.compression;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Compresses blocks that can be concatenated in order into one valid stream, so blocks can
+ * be compressed on different threads.
+ */
+interface BlockCodec {
+    /** Compresses one block; called concurrently from worker threads. */
+    CompressedBlock compress(byte[] data, int offset, int length);
+
+    /** Written once before the first block. */
+    void writeStart(OutputStream out) throws IOException;
+
+    /** Written once after the last block, given the combined CRC-32 and length of all input. */
+    void writeEnd(OutputStream out, int crc, long rawLength) throws IOException;
+
+    static BlockCodec of(ContentCoding coding) {
+        switch (coding) {
+            case GZIP:
+                return GzipBlockCodec.INSTANCE;
+            case ZSTD:
+                return ZstdBlockCodec.INSTANCE;
+            default:
+                throw new IllegalArgumentException("Not a compressing coding: " + coding);
+        }
+    }
+}
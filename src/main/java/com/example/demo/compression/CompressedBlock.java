@@ -0,0 +1,13 @@
+package com.example.demo.compression;
+
+import lombok.Value;
+
+/** One independently compressed block, with what the stream trailer needs to know about its input. */
+@Value
+public class CompressedBlock {
+    byte[] data;
+    int length;
+    int rawLength;
+    /** CRC-32 of the uncompressed block; only computed for gzip. */
+    int crc;
+}
@@ -0,0 +1,152 @@
+package com.example.demo.compression;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Compresses everything written to it in independent blocks on a worker pool, and writes
+ * the blocks to the underlying stream in order. Callers that already compressed a block,
+ * like the pipeline workers, hand it over with {@link #writeBlock}. Used by one thread at a
+ * time; {@link #finish()} ends the compressed stream without closing the underlying one.
+ */
+public final class CompressingOutputStream extends OutputStream {
+    private static final int BLOCK_SIZE = 128 * 1024;
+
+    private final OutputStream out;
+    private final BlockCodec codec;
+    private final Executor executor;
+    private final int maxPending;
+    private final ArrayDeque<CompletableFuture<CompressedBlock>> pending = new ArrayDeque<>();
+    private byte[] buffer = new byte[BLOCK_SIZE];
+    private int count;
+    private boolean started;
+    private boolean finished;
+    private int crc;
+    private long rawLength;
+
+    /**
+     * @param maxPending how many blocks may be compressing at once before writes wait
+     */
+    public CompressingOutputStream(OutputStream out, ContentCoding coding, Executor executor, int maxPending) {
+        this.out = out;
+        this.codec = BlockCodec.of(coding);
+        this.executor = executor;
+        this.maxPending = Math.max(maxPending, 1);
+    }
+
+    /** Compresses a block on the calling thread, for {@link #writeBlock}; thread-safe. */
+    public CompressedBlock compress(byte[] data) {
+        return codec.compress(data, 0, data.length);
+    }
+
+    /** Writes a block compressed elsewhere after everything written so far. */
+    public void writeBlock(CompressedBlock block) throws IOException {
+        submitBuffer();
+        while (!pending.isEmpty()) {
+            emit(await(pending.poll()));
+        }
+        emit(block);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == buffer.length) {
+            submitBuffer();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (count == buffer.length) {
+                submitBuffer();
+            }
+            int chunk = Math.min(len, buffer.length - count);
+            System.arraycopy(b, off, buffer, count, chunk);
+            count += chunk;
+            off += chunk;
+            len -= chunk;
+        }
+    }
+
+    /**
+     * Starts compressing what is buffered and passes on the blocks that are already done,
+     * without waiting for the others, so flushing after every batch keeps blocks in flight.
+     */
+    @Override
+    public void flush() throws IOException {
+        submitBuffer();
+        while (!pending.isEmpty() && pending.peek().isDone()) {
+            emit(await(pending.poll()));
+        }
+        out.flush();
+    }
+
+    /** Writes the remaining blocks and the end of the compressed stream. */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        submitBuffer();
+        while (!pending.isEmpty()) {
+            emit(await(pending.poll()));
+        }
+        if (!started) {
+            emit(codec.compress(buffer, 0, 0));
+        }
+        codec.writeEnd(out, crc, rawLength);
+        finished = true;
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            pending.forEach(block -> block.cancel(false));
+            out.close();
+        }
+    }
+
+    private void submitBuffer() throws IOException {
+        if (count == 0) {
+            return;
+        }
+        byte[] block = buffer;
+        int length = count;
+        buffer = new byte[BLOCK_SIZE];
+        count = 0;
+        pending.add(CompletableFuture.supplyAsync(() -> codec.compress(block, 0, length), executor));
+        while (pending.size() > maxPending) {
+            emit(await(pending.poll()));
+        }
+    }
+
+    private void emit(CompressedBlock block) throws IOException {
+        if (!started) {
+            codec.writeStart(out);
+            started = true;
+        }
+        out.write(block.getData(), 0, block.getLength());
+        crc = GzipBlockCodec.combine(crc, block.getCrc(), block.getRawLength());
+        rawLength += block.getRawLength();
+    }
+
+    private static CompressedBlock await(CompletableFuture<CompressedBlock> block) throws IOException {
+        try {
+            return block.get();
+        } catch (ExecutionException e) {
+            throw new IOException("Block compression failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for block compression");
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.demo.compression;
+
+/**
+ * HTTP content codings the proxy can produce, in order of preference: zstd compresses the
+ * repetitive CSV about as well as gzip at a fraction of the CPU cost.
+ */
+public enum ContentCoding {
+    ZSTD("zstd"),
+    GZIP("gzip"),
+    IDENTITY("identity");
+
+    private final String token;
+
+    ContentCoding(String token) {
+        this.token = token;
+    }
+
+    /** The value for the {@code Content-Encoding} header. */
+    public String token() {
+        return token;
+    }
+
+    public boolean isAvailable() {
+        return this != ZSTD || ZstdBlockCodec.isAvailable();
+    }
+
+    /**
+     * Picks the coding with the highest quality value in an {@code Accept-Encoding} header,
+     * preferring the faster coding on a tie. Codings the client gave {@code q=0} are never
+     * chosen; without a header the response is not compressed.
+     */
+    public static ContentCoding negotiate(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isBlank()) {
+            return IDENTITY;
+        }
+        ContentCoding best = IDENTITY;
+        double bestQuality = 0;
+        for (ContentCoding coding : values()) {
+            if (coding == IDENTITY || !coding.isAvailable()) {
+                continue;
+            }
+            double quality = quality(acceptEncoding, coding.token);
+            if (quality > bestQuality) {
+                best = coding;
+                bestQuality = quality;
+            }
+        }
+        return best;
+    }
+
+    /** The quality the header gives {@code token}, falling back to {@code *}, or 0 if absent. */
+    private static double quality(String acceptEncoding, String token) {
+        double wildcard = 0;
+        for (String element : acceptEncoding.split(",")) {
+            String[] parts = element.split(";");
+            String name = parts[0].trim();
+            double quality = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=") || parameter.startsWith("Q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (name.equalsIgnoreCase(token)) {
+                return quality;
+            }
+            if (name.equals("*")) {
+                wildcard = quality;
+            }
+        }
+        return wildcard;
+    }
+}
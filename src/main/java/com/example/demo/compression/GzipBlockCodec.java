@@ -0,0 +1,122 @@
+package com.example.demo.compression;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * gzip the way pigz writes it: one gzip member whose deflate data is a sequence of blocks
+ * compressed independently and each ended with a sync flush, so they join at byte
+ * boundaries. The member ends with an empty final block and a trailer whose CRC-32 is
+ * combined from the per-block CRCs. Unlike concatenated gzip members, every gzip client
+ * reads this.
+ */
+final class GzipBlockCodec implements BlockCodec {
+    static final GzipBlockCodec INSTANCE = new GzipBlockCodec();
+
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    /** A final, empty block with fixed Huffman codes. */
+    private static final byte[] FINAL_BLOCK = {3, 0};
+    private static final ThreadLocal<Deflater> DEFLATER =
+            ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+
+    private GzipBlockCodec() {
+    }
+
+    @Override
+    public CompressedBlock compress(byte[] data, int offset, int length) {
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setInput(data, offset, length);
+        byte[] output = new byte[Math.max(length / 2, 64)];
+        int written = 0;
+        while (true) {
+            written += deflater.deflate(output, written, output.length - written, Deflater.SYNC_FLUSH);
+            if (written < output.length) {
+                break;
+            }
+            output = Arrays.copyOf(output, output.length * 2);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data, offset, length);
+        return new CompressedBlock(output, written, length, (int) crc.getValue());
+    }
+
+    @Override
+    public void writeStart(OutputStream out) throws IOException {
+        out.write(HEADER);
+    }
+
+    @Override
+    public void writeEnd(OutputStream out, int crc, long rawLength) throws IOException {
+        out.write(FINAL_BLOCK);
+        writeIntLE(out, crc);
+        writeIntLE(out, (int) rawLength);
+    }
+
+    private static void writeIntLE(OutputStream out, int value) throws IOException {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+
+    /**
+     * CRC-32 of two concatenated inputs from the CRCs of each and the length of the second,
+     * as zlib's {@code crc32_combine}: appending {@code length2} zero bits to the first CRC
+     * is a linear operator, applied by repeated squaring of the one-zero-bit operator.
+     */
+    static int combine(int crc1, int crc2, long length2) {
+        if (length2 <= 0) {
+            return crc1;
+        }
+        int[] even = new int[32];
+        int[] odd = new int[32];
+        odd[0] = 0xedb88320;
+        int row = 1;
+        for (int n = 1; n < 32; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        square(even, odd);
+        square(odd, even);
+        long remaining = length2;
+        while (true) {
+            square(even, odd);
+            if ((remaining & 1) != 0) {
+                crc1 = times(even, crc1);
+            }
+            remaining >>= 1;
+            if (remaining == 0) {
+                break;
+            }
+            square(odd, even);
+            if ((remaining & 1) != 0) {
+                crc1 = times(odd, crc1);
+            }
+            remaining >>= 1;
+            if (remaining == 0) {
+                break;
+            }
+        }
+        return crc1 ^ crc2;
+    }
+
+    private static int times(int[] matrix, int vector) {
+        int sum = 0;
+        for (int i = 0; vector != 0; i++, vector >>>= 1) {
+            if ((vector & 1) != 0) {
+                sum ^= matrix[i];
+            }
+        }
+        return sum;
+    }
+
+    private static void square(int[] square, int[] matrix) {
+        for (int n = 0; n < 32; n++) {
+            square[n] = times(matrix, matrix[n]);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.demo.compression;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.util.Native;
+import java.io.OutputStream;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * zstd with one frame per block; a zstd stream is any sequence of frames, so no start or
+ * end marker is needed.
+ */
+@Slf4j
+final class ZstdBlockCodec implements BlockCodec {
+    static final ZstdBlockCodec INSTANCE = new ZstdBlockCodec();
+
+    private static final int LEVEL = 3;
+    private static volatile Boolean available;
+
+    private ZstdBlockCodec() {
+    }
+
+    /** Whether the native library loads on this platform. */
+    static boolean isAvailable() {
+        if (available == null) {
+            try {
+                Native.load();
+                available = true;
+            } catch (LinkageError | RuntimeException e) {
+                log.warn("zstd is not available on this platform, offering gzip only", e);
+                available = false;
+            }
+        }
+        return available;
+    }
+
+    @Override
+    public CompressedBlock compress(byte[] data, int offset, int length) {
+        byte[] output = new byte[(int) Zstd.compressBound(length)];
+        long written = Zstd.compressByteArray(output, 0, output.length, data, offset, length, LEVEL);
+        if (Zstd.isError(written)) {
+            throw new IllegalStateException("zstd compression failed: " + Zstd.getErrorName(written));
+        }
+        return new CompressedBlock(output, (int) written, length, 0);
+    }
+
+    @Override
+    public void writeStart(OutputStream out) {
+    }
+
+    @Override
+    public void writeEnd(OutputStream out, int crc, long rawLength) {
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.demo.config;
+
+import com.example.demo.execution.ExecutionEngine;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Streams responses on the engine's I/O executor rather than the small default task
+ * executor, so the number of parallel downloads is bounded by admission, not by threads.
+ */
+@Configuration
+@RequiredArgsConstructor
+public class AsyncWebConfig implements WebMvcConfigurer {
+    private final ExecutionEngine executionEngine;
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(new TaskExecutorAdapter(executionEngine.ioExecutor()));
+    }
+}
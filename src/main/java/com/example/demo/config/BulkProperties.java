@@ -0,0 +1,19 @@
+package com.example.demo.config;
+
+import java.nio.file.Path;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+@Data
+@ConfigurationProperties(prefix = "bulk")
+public class BulkProperties {
+    /** Directory whose files {@code /bulk?path=} may read; unset turns local paths off. */
+    private Path directory;
+
+    /** Where uploaded bodies are written before they are memory-mapped. */
+    private Path spoolDirectory = Path.of(System.getProperty("java.io.tmpdir"), "transaction-proxy-bulk");
+
+    /** Largest body {@code /bulk} accepts as an upload; 0 turns uploads off. */
+    private DataSize maxUploadSize = DataSize.ofGigabytes(1);
+}
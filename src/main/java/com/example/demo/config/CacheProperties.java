@@ -0,0 +1,24 @@
+package com.example.demo.config;
+
+import java.nio.file.Path;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+@Data
+@ConfigurationProperties(prefix = "cache")
+public class CacheProperties {
+    /** Serve closed days of unsharded requests from the on-disk cache. */
+    private boolean enabled = false;
+
+    private Path directory = Path.of(System.getProperty("java.io.tmpdir"), "transaction-proxy-cache");
+
+    /** Upper bound for all segment files together; the least recently used segments go first. */
+    private DataSize maxSize = DataSize.ofGigabytes(10);
+
+    /** Size at which a new segment file is started. */
+    private DataSize segmentSize = DataSize.ofMegabytes(256);
+
+    /** Days up to this many days back from today, including today, are always fetched again. */
+    private int freshnessDays = 3;
+}
@@ -0,0 +1,25 @@
+package com.example.demo.config;
+
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+@Data
+@ConfigurationProperties(prefix = "coalescing")
+public class CoalescingProperties {
+    /** Let concurrent identical {@code /proxy} requests share one upstream fetch and pipeline. */
+    private boolean enabled = true;
+
+    /** Processed bytes kept per shared fetch; later requests can join while the first byte is still held. */
+    private DataSize bufferSize = DataSize.ofMegabytes(16);
+
+    /**
+     * Buffer memory of all shared fetches together; past it they stop growing their buffers.
+     * Each fetch that is writing still takes its first 64KB.
+     */
+    private DataSize maxTotalBufferSize = DataSize.ofMegabytes(64);
+
+    /** How long the shared fetch waits for its slowest subscriber before dropping it to a fetch of its own. */
+    private Duration stallTimeout = Duration.ofSeconds(5);
+}
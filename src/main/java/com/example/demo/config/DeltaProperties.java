@@ -0,0 +1,18 @@
+package com.example.demo.config;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "delta")
+public class DeltaProperties {
+    private Path directory = Path.of(System.getProperty("java.io.tmpdir"), "transaction-proxy-delta");
+
+    /** Initial number of slots in the id index; it doubles whenever it is three quarters full. */
+    private int initialCapacity = 1 << 20;
+
+    /** How long a delta request waits for the one before it to finish before it is turned away with 503. */
+    private Duration lockTimeout = Duration.ofSeconds(30);
+}
@@ -0,0 +1,36 @@
+package com.example.demo.config;
+
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "execution")
+public class ExecutionProperties {
+    /** Run the I/O-bound reader, writer and response stages on virtual threads when the JVM has them (Java 21+). */
+    private boolean virtualThreads = true;
+
+    /** Hashing threads shared by all requests; 0 means one per available processor. */
+    private int cpuThreads = 0;
+
+    /** Requests processed at the same time; later ones wait for a slot in arrival order. */
+    private int maxConcurrentRequests = 32;
+
+    /** How long a request waits for a slot before it is turned away with 503. */
+    private Duration admissionTimeout = Duration.ofSeconds(30);
+
+    /** Batches of one request being hashed or waiting to be written; 0 means twice the hashing threads. */
+    private int batchesPerRequest = 0;
+
+    /** Hashing time one batch should take; batch sizes follow the measured cost per row towards it. */
+    private Duration batchTarget = Duration.ofMillis(50);
+
+    /** How long a partly filled batch waits for more upstream rows before it is processed anyway. */
+    private Duration batchLinger = Duration.ofMillis(20);
+
+    /** Fail a request whose next batch has not finished for this long while none of its other batches did either. */
+    private Duration stallTimeout = Duration.ofSeconds(30);
+
+    /** Longest a request may take once admitted; 0 means no limit, so long exports only fail when they stall. */
+    private Duration requestTimeout = Duration.ZERO;
+}
@@ -0,0 +1,39 @@
+package com.example.demo.config;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "upstream")
+public class UpstreamProperties {
+    /** Base URL of the spending.gov.ua API, ending with a slash. */
+    private String baseUrl = "https://api.spending.gov.ua/api/v2/";
+
+    private Duration connectTimeout = Duration.ofSeconds(5);
+
+    /** Time allowed for the response headers, and for each read of the body. */
+    private Duration readTimeout = Duration.ofSeconds(60);
+
+    /** Ask for gzip-compressed bodies. */
+    private boolean compression = true;
+
+    /**
+     * Times one upstream body is requested again from its last complete row after the
+     * connection drops; 0 turns resuming off.
+     */
+    private int resumeAttempts = 3;
+
+    /** Sharded fetches: how many shards of one request are downloaded at the same time. */
+    private int shardParallelism = 4;
+
+    /** Sharded fetches: retries per shard after the first failed attempt. */
+    private int shardRetries = 2;
+
+    /** Sharded fetches: recipient EDRPOU codes per shard when a long list is given. */
+    private int shardMaxEdrpous = 20;
+
+    /** Sharded fetches: where shards are written until they are served. */
+    private Path shardSpoolDirectory = Path.of(System.getProperty("java.io.tmpdir"), "transaction-proxy-shards");
+}
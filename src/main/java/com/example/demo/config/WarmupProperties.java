@@ -0,0 +1,17 @@
+package com.example.demo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "warmup")
+public class WarmupProperties {
+    /** Push synthetic rows through the service at startup, before readiness is reported. */
+    private boolean enabled = false;
+
+    /** Rows per pass; every reader, mode and format combination gets one pass per round. */
+    private int rows = 5_000;
+
+    /** Rounds over all combinations; more rounds give the JIT more profile before real traffic. */
+    private int rounds = 2;
+}
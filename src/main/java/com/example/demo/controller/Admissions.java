@@ -0,0 +1,30 @@
+package com.example.demo.controller;
+
+import com.example.demo.exception.ServerBusyException;
+import com.example.demo.execution.ExecutionEngine;
+import com.example.demo.metrics.ProxyMetrics;
+import java.io.InterruptedIOException;
+
+/** Processing slots for the transaction endpoints, with the wait recorded. */
+final class Admissions {
+    private Admissions() {
+    }
+
+    /**
+     * Waits, in arrival order, for a processing slot.
+     *
+     * @throws ServerBusyException if none frees up in time
+     */
+    static ExecutionEngine.Admission admit(ExecutionEngine executionEngine, ProxyMetrics proxyMetrics)
+            throws InterruptedIOException {
+        long waitStart = System.nanoTime();
+        try {
+            ExecutionEngine.Admission admission = executionEngine.admit();
+            proxyMetrics.recordAdmissionWait(System.nanoTime() - waitStart);
+            return admission;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a processing slot");
+        }
+    }
+}
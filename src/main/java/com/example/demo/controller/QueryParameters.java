@@ -0,0 +1,23 @@
+package com.example.demo.controller;
+
+import com.example.demo.model.TransactionQuery;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/** Request parameters shared by the transaction endpoints. */
+final class QueryParameters {
+    private QueryParameters() {
+    }
+
+    /** The query for a date range; an impossible date or a reversed range is the client's error. */
+    static TransactionQuery query(String startDate, String endDate, List<String> reciptEdrpous) {
+        try {
+            return new TransactionQuery(LocalDate.parse(startDate), LocalDate.parse(endDate), reciptEdrpous);
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+}
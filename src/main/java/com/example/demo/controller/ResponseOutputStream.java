@@ -0,0 +1,74 @@
+package com.example.demo.controller;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Response body stream that remembers how much was written and whether writing to the
+ * client failed, so a broken stream can be told apart from a client that went away. Runs a
+ * callback before the first byte, while headers can still be set.
+ */
+class ResponseOutputStream extends OutputStream {
+    private final OutputStream out;
+    private Runnable beforeFirstWrite;
+    private long bytesWritten;
+    private boolean clientFailed;
+
+    ResponseOutputStream(OutputStream out, Runnable beforeFirstWrite) {
+        this.out = out;
+        this.beforeFirstWrite = beforeFirstWrite;
+    }
+
+    long bytesWritten() {
+        return bytesWritten;
+    }
+
+    boolean clientFailed() {
+        return clientFailed;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        starting();
+        try {
+            out.write(b);
+            bytesWritten++;
+        } catch (IOException e) {
+            clientFailed = true;
+            throw e;
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        starting();
+        try {
+            out.write(b, off, len);
+            bytesWritten += len;
+        } catch (IOException e) {
+            clientFailed = true;
+            throw e;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (bytesWritten == 0) {
+            // Flushing would commit the response, and with it the status and headers.
+            return;
+        }
+        try {
+            out.flush();
+        } catch (IOException e) {
+            clientFailed = true;
+            throw e;
+        }
+    }
+
+    private void starting() {
+        if (beforeFirstWrite != null) {
+            beforeFirstWrite.run();
+            beforeFirstWrite = null;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.demo.controller;
+
+import com.example.demo.aggregate.Aggregation;
+import com.example.demo.aggregate.AggregationResult;
+import com.example.demo.aggregate.TransactionAggregator;
+import com.example.demo.client.ShardedUpstreamFetcher;
+import com.example.demo.client.UpstreamClient;
+import com.example.demo.exception.TransactionFetchingException;
+import com.example.demo.execution.ExecutionEngine;
+import com.example.demo.filter.RowFilter;
+import com.example.demo.metrics.ProxyMetrics;
+import com.example.demo.model.TransactionQuery;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.List;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Group-by totals over the same upstream query as {@code /transactions/proxy}, so dashboards
+ * get kilobytes of aggregates instead of every row.
+ */
+@RestController
+@RequestMapping("/transactions")
+@RequiredArgsConstructor
+public class TransactionAggregationController {
+    private final TransactionAggregator transactionAggregator;
+    private final UpstreamClient upstreamClient;
+    private final ShardedUpstreamFetcher shardedUpstreamFetcher;
+    private final ExecutionEngine executionEngine;
+    private final ProxyMetrics proxyMetrics;
+
+    @GetMapping("/aggregate")
+    public AggregationResult aggregate(
+            @RequestParam @Pattern(regexp = "\\d{4}-\\d{2}-\\d{2}") String startDate,
+            @RequestParam @Pattern(regexp = "\\d{4}-\\d{2}-\\d{2}") String endDate,
+            @RequestParam(required = false) @Size(min = 1) List<@Pattern(regexp = "\\d{8}") String> reciptEdrpous,
+            @RequestParam String groupBy,
+            @RequestParam(required = false) List<String> filter,
+            @RequestParam(required = false) @Min(1) Integer shardDays) throws InterruptedIOException {
+        Aggregation aggregation;
+        try {
+            aggregation = new Aggregation(groupBy, filter == null ? null : RowFilter.compile(filter));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+        TransactionQuery query = QueryParameters.query(startDate, endDate, reciptEdrpous);
+        try (ExecutionEngine.Admission admission = Admissions.admit(executionEngine, proxyMetrics);
+             InputStream inputStream = shardDays == null
+                     ? upstreamClient.fetch(query)
+                     : shardedUpstreamFetcher.fetch(query, shardDays)) {
+            return transactionAggregator.aggregate(inputStream, aggregation);
+        } catch (InterruptedIOException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new TransactionFetchingException("Failed to aggregate transactions from API", e);
+        }
+    }
+}
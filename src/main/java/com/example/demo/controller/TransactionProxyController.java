@@ -1,69 +1,491 @@
 package com.example.demo.controller;
 
+import com.example.demo.cache.CacheStats;
+import com.example.demo.cache.CachedTransactionExporter;
+import com.example.demo.cache.ProcessedRangeCache;
+import com.example.demo.client.ContinuationToken;
+import com.example.demo.client.ShardedUpstreamFetcher;
+import com.example.demo.client.UpstreamClient;
+import com.example.demo.coalesce.CoalescingKey;
+import com.example.demo.coalesce.RequestCoalescer;
+import com.example.demo.columnar.ColumnarFormat;
+import com.example.demo.config.BulkProperties;
+import com.example.demo.compression.CompressingOutputStream;
+import com.example.demo.compression.ContentCoding;
+import com.example.demo.delta.DeltaIndex;
+import com.example.demo.delta.DeltaSession;
+import com.example.demo.exception.ServerBusyException;
 import com.example.demo.exception.TransactionFetchingException;
+import com.example.demo.execution.ExecutionEngine;
+import com.example.demo.filter.RowFilter;
+import com.example.demo.hash.IntegrityReport;
+import com.example.demo.hash.ResponseDigest;
+import com.example.demo.metrics.ProxyMetrics;
+import com.example.demo.model.ColumnProjection;
+import com.example.demo.model.TransactionColumns;
+import com.example.demo.model.TransactionQuery;
+import com.example.demo.service.CsvReaderType;
+import com.example.demo.service.DigestMode;
+import com.example.demo.service.OutputFormat;
+import com.example.demo.service.ProcessingMode;
+import com.example.demo.service.ProcessingOptions;
 import com.example.demo.service.TransactionProxyService;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.util.List;
-import java.util.stream.Collectors;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.Pattern;
 import jakarta.validation.constraints.Size;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+@Slf4j
 @RestController
 @RequestMapping("/transactions")
 @RequiredArgsConstructor
 public class TransactionProxyController {
+    /** Response header with the cursor to send as {@code since} on the next delta request. */
+    public static final String DELTA_CURSOR_HEADER = "X-Delta-Cursor";
+    private static final String TRAILER_HEADER = "Trailer";
+    private static final MediaType COLUMNAR = MediaType.parseMediaType(ColumnarFormat.MEDIA_TYPE);
+
     private final TransactionProxyService transactionProxyService;
+    private final UpstreamClient upstreamClient;
+    private final ShardedUpstreamFetcher shardedUpstreamFetcher;
+    private final ProcessedRangeCache processedRangeCache;
+    private final CachedTransactionExporter cachedTransactionExporter;
+    private final DeltaIndex deltaIndex;
+    private final ExecutionEngine executionEngine;
+    private final ProxyMetrics proxyMetrics;
+    private final RequestCoalescer requestCoalescer;
+    private final BulkProperties bulkProperties;
 
-    @GetMapping(value = "/proxy", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
-    public InputStream getTransactions(
+    @GetMapping(value = "/proxy", produces = {MediaType.APPLICATION_OCTET_STREAM_VALUE, ColumnarFormat.MEDIA_TYPE})
+    public ResponseEntity<StreamingResponseBody> getTransactions(
             @RequestParam @Pattern(regexp = "\\d{4}-\\d{2}-\\d{2}") String startDate,
             @RequestParam @Pattern(regexp = "\\d{4}-\\d{2}-\\d{2}") String endDate,
-            @RequestParam(required = false) @Size(min = 1) List<@Pattern(regexp = "\\d{8}") String> reciptEdrpous) {
+            @RequestParam(required = false) @Size(min = 1) List<@Pattern(regexp = "\\d{8}") String> reciptEdrpous,
+            @RequestParam(defaultValue = "OPENCSV") CsvReaderType reader,
+            @RequestParam(defaultValue = "FULL") ProcessingMode mode,
+            @RequestParam(required = false) @Min(1) Integer shardDays,
+            @RequestParam(required = false) @Min(0) Long since,
+            @RequestParam(defaultValue = "false") boolean tombstones,
+            @RequestParam(required = false) OutputFormat format,
+            @RequestParam(required = false) String fields,
+            @RequestParam(required = false) List<String> filter,
+            @RequestParam(required = false) DigestMode digest,
+            @RequestParam(required = false) String resume,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            HttpServletResponse servletResponse) {
+        OutputFormat outputFormat = outputFormat(format, accept);
+        if (since != null && outputFormat != OutputFormat.CSV) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Delta mode only supports CSV output");
+        }
+        boolean narrowed = fields != null || filter != null;
+        if (narrowed && since != null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Delta mode cannot be filtered or projected");
+        }
+        if (digest != null && (since != null || filter != null)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "digest cannot be combined with since or filter");
+        }
+        if (digest == DigestMode.MANIFEST && outputFormat != OutputFormat.CSV) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The digest manifest only applies to CSV output");
+        }
+        if (resume != null && since != null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "resume cannot be combined with since");
+        }
+        ColumnProjection projection = projection(fields, outputFormat);
+        RowFilter rowFilter = rowFilter(filter);
+        ResponseDigest responseDigest = digest == null ? null : new ResponseDigest(digest == DigestMode.MANIFEST);
         try {
-            InputStream inputStream = fetchTransactionsFromAPI(startDate, endDate, reciptEdrpous);
-            return transactionProxyService.processTransactions(inputStream);
+            TransactionQuery query = QueryParameters.query(startDate, endDate, reciptEdrpous);
+            ContinuationToken resumeFrom = continuationToken(resume, query, shardDays, projection);
+            ProcessingOptions options = ProcessingOptions.builder().reader(reader).mode(mode)
+                    .format(outputFormat).compression(ContentCoding.negotiate(acceptEncoding))
+                    .projection(projection).filter(rowFilter).digest(responseDigest).build();
+            if (since != null) {
+                return getDelta(query, options, shardDays, since, tombstones, servletResponse);
+            }
+            if (digest == DigestMode.TRAILER) {
+                servletResponse.setHeader(TRAILER_HEADER, ResponseDigest.ROOT_TRAILER + ", " + ResponseDigest.ROWS_TRAILER);
+                servletResponse.setTrailerFields(responseDigest::trailers);
+            }
+            // The cache holds full, unfiltered CSV only, and digests are hashed by the pipeline's workers.
+            boolean tailored = narrowed || digest != null || resumeFrom != null;
+            boolean cached = shardDays == null && outputFormat == OutputFormat.CSV && !tailored
+                    && processedRangeCache.isEnabled();
+            if (!tailored && requestCoalescer.isEnabled()) {
+                return ok(options).body(coalesced(CoalescingKey.of(query, outputFormat),
+                        plainProducer(query, options, shardDays, cached), options, servletResponse));
+            }
+            if (cached) {
+                return ok(options).body(admitted(out -> cachedTransactionExporter.export(query, options, out),
+                        options, servletResponse));
+            }
+            return ok(options).body(admitted(out -> {
+                try (InputStream inputStream = fetch(query, shardDays, resumeFrom)) {
+                    transactionProxyService.processTransactions(inputStream, out, options);
+                }
+            }, options, servletResponse));
+        } catch (ResponseStatusException e) {
+            throw e;
         } catch (Exception e) {
-            throw new TransactionFetchingException("Failed to fetch transactions from API");
+            throw new TransactionFetchingException("Failed to fetch transactions from API", e);
+        }
+    }
+
+    /**
+     * Processes a CSV export that is already on disk: either {@code path}, relative to
+     * {@code bulk.directory}, or the request body, which is spooled to a file once the request
+     * is admitted and turned away with 413 beyond {@code bulk.max-upload-size}. The file
+     * is split across the hashing workers instead of being read front to back; the output is
+     * the same as {@code /proxy} would give for the same rows.
+     */
+    @PostMapping(value = "/bulk", produces = {MediaType.APPLICATION_OCTET_STREAM_VALUE, ColumnarFormat.MEDIA_TYPE})
+    public ResponseEntity<StreamingResponseBody> processBulk(
+            @RequestParam(required = false) String path,
+            @RequestParam(defaultValue = "FULL") ProcessingMode mode,
+            @RequestParam(required = false) OutputFormat format,
+            @RequestParam(required = false) String fields,
+            @RequestParam(required = false) List<String> filter,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            HttpServletRequest servletRequest,
+            HttpServletResponse servletResponse) throws IOException {
+        OutputFormat outputFormat = outputFormat(format, accept);
+        ProcessingOptions options = ProcessingOptions.builder().reader(CsvReaderType.TOKENIZER).mode(mode)
+                .format(outputFormat).compression(ContentCoding.negotiate(acceptEncoding))
+                .projection(projection(fields, outputFormat)).filter(rowFilter(filter)).build();
+        if (path != null) {
+            Path file = bulkFile(path);
+            return ok(options).body(admitted(out -> transactionProxyService.processFile(file, out, options),
+                    options, servletResponse));
+        }
+        long maxUploadSize = bulkProperties.getMaxUploadSize().toBytes();
+        if (maxUploadSize <= 0) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Bulk uploads are not enabled");
+        }
+        if (servletRequest.getContentLengthLong() > maxUploadSize) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                    "Bulk uploads are limited to " + bulkProperties.getMaxUploadSize());
+        }
+        InputStream upload = servletRequest.getInputStream();
+        return ok(options).body(admitted(out -> {
+            Path spooled = spool(upload, maxUploadSize);
+            try {
+                transactionProxyService.processFile(spooled, out, options);
+            } finally {
+                Files.deleteIfExists(spooled);
+            }
+        }, options, servletResponse));
+    }
+
+    /**
+     * The integrity digest of what {@code /proxy} sends for a cached range as plain CSV, with
+     * every leaf, so a client can find which group of rows it got wrong. Only cached days are
+     * read; a range with a day that is fresh or not cached yet gets 409 instead of an export.
+     */
+    @GetMapping("/digest")
+    public IntegrityReport getDigest(
+            @RequestParam @Pattern(regexp = "\\d{4}-\\d{2}-\\d{2}") String startDate,
+            @RequestParam @Pattern(regexp = "\\d{4}-\\d{2}-\\d{2}") String endDate,
+            @RequestParam(required = false) @Size(min = 1) List<@Pattern(regexp = "\\d{8}") String> reciptEdrpous) {
+        TransactionQuery query = QueryParameters.query(startDate, endDate, reciptEdrpous);
+        if (!processedRangeCache.isEnabled()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Range digests need the processed range cache");
+        }
+        ResponseDigest digest = new ResponseDigest(false);
+        try (ExecutionEngine.Admission admission = Admissions.admit(executionEngine, proxyMetrics)) {
+            ResponseDigest.RecordStream records = digest.records(OutputStream.nullOutputStream(),
+                    executionEngine.cpuExecutor(), executionEngine.batchesPerRequest());
+            if (!cachedTransactionExporter.exportCached(query, records)) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT,
+                        "Not every day of the range is cached; export it with /proxy first");
+            }
+            records.finish();
+        } catch (IOException e) {
+            throw new TransactionFetchingException("Failed to digest transactions from API", e);
         }
+        return digest.report();
+    }
+
+    @GetMapping("/cache/stats")
+    public CacheStats getCacheStats() {
+        return processedRangeCache.stats();
+    }
+
+    /**
+     * The delta session is only opened once the request is admitted, so a request turned away
+     * or abandoned while waiting never holds the index. The cursor header goes out with the
+     * first byte, like {@code Content-Encoding}.
+     */
+    private ResponseEntity<StreamingResponseBody> getDelta(TransactionQuery query,
+                                                           ProcessingOptions options,
+                                                           Integer shardDays,
+                                                           long since,
+                                                           boolean tombstones,
+                                                           HttpServletResponse servletResponse) {
+        return ok(options).body(admitted(out -> {
+            try (DeltaSession delta = beginDelta(since, query, tombstones);
+                 InputStream inputStream = fetch(query, shardDays)) {
+                servletResponse.setHeader(DELTA_CURSOR_HEADER, String.valueOf(delta.cursor()));
+                transactionProxyService.processTransactions(inputStream, out,
+                        options.toBuilder().delta(delta).build());
+            }
+        }, options, servletResponse));
     }
 
-    private InputStream fetchTransactionsFromAPI(String startDate,
-                                                 String endDate,
-                                                 List<String> reciptEdrpous) throws IOException {
-        StringBuilder urlBuilder = new StringBuilder("https://api.spending.gov.ua/api/v2/"
-                + "api/transactions/?startdate=")
-                .append(startDate)
-                .append("&enddate=")
-                .append(endDate);
+    private DeltaSession beginDelta(long since, TransactionQuery query, boolean tombstones) throws IOException {
+        try {
+            return deltaIndex.begin(since, query, tombstones);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the delta index");
+        }
+    }
 
-        if (reciptEdrpous != null && !reciptEdrpous.isEmpty()) {
-            String edrpousParam = reciptEdrpous.stream()
-                    .map(edrpou -> "recipt_edrpous=" + edrpou)
-                    .collect(Collectors.joining("&"));
-            urlBuilder.append("&").append(edrpousParam);
+    private static ColumnProjection projection(String fields, OutputFormat format) {
+        if (fields == null) {
+            return null;
+        }
+        if (format != OutputFormat.CSV) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "fields only applies to CSV output");
+        }
+        try {
+            return ColumnProjection.parse(fields);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
         }
+    }
 
-        URL url = new URL(urlBuilder.toString());
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    /**
+     * Parses {@code resume=}, which must point into the requested range. Clients build the token
+     * from the last row they received, so a projection without its columns cannot have produced one.
+     */
+    private ContinuationToken continuationToken(String resume, TransactionQuery query, Integer shardDays,
+                                                ColumnProjection projection) {
+        if (resume == null) {
+            return null;
+        }
         try {
-            connection.setRequestMethod("GET");
-            connection.setRequestProperty("Accept", MediaType.APPLICATION_OCTET_STREAM_VALUE);
-            int responseCode = connection.getResponseCode();
-            if (responseCode != HttpURLConnection.HTTP_OK) {
-                throw new IOException("Unexpected response code: " + responseCode);
+            if (projection != null && !(projection.includes(TransactionColumns.ID)
+                    && projection.includes(TransactionColumns.TRANS_DATE))) {
+                throw new IllegalArgumentException("resume needs fields to include id and trans_date");
             }
-            return connection.getInputStream();
-        } finally {
-            connection.disconnect();
+            ContinuationToken token = ContinuationToken.parse(resume);
+            token.remainderOf(query);
+            if (shardDays != null && !shardedUpstreamFetcher.isDateOrdered(query)) {
+                throw new IllegalArgumentException("resume cannot be combined with shardDays for this many recipients");
+            }
+            return token;
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
         }
     }
+
+    private static RowFilter rowFilter(List<String> filter) {
+        try {
+            return filter == null ? null : RowFilter.compile(filter);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+
+    /** Resolves {@code path} inside {@code bulk.directory}, following links before checking. */
+    private Path bulkFile(String path) throws IOException {
+        if (bulkProperties.getDirectory() == null) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Local bulk files are not enabled");
+        }
+        Path root = bulkProperties.getDirectory().toRealPath();
+        Path file;
+        try {
+            file = root.resolve(path).toRealPath();
+        } catch (NoSuchFileException | InvalidPathException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No such bulk file: " + path, e);
+        }
+        if (!file.startsWith(root) || !Files.isRegularFile(file)) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Not a file in the bulk directory: " + path);
+        }
+        return file;
+    }
+
+    /**
+     * Copies an uploaded body to disk so it can be memory-mapped; the caller deletes the file.
+     * Bodies sent without a length are cut off once they pass {@code maxSize}.
+     */
+    private Path spool(InputStream body, long maxSize) throws IOException {
+        Files.createDirectories(bulkProperties.getSpoolDirectory());
+        Path file = Files.createTempFile(bulkProperties.getSpoolDirectory(), "upload-", ".csv");
+        try {
+            long size = 0;
+            try (OutputStream out = Files.newOutputStream(file)) {
+                byte[] buffer = new byte[65536];
+                for (int read = body.read(buffer); read >= 0; read = body.read(buffer)) {
+                    size += read;
+                    if (size > maxSize) {
+                        throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                                "Bulk uploads are limited to " + bulkProperties.getMaxUploadSize());
+                    }
+                    out.write(buffer, 0, read);
+                }
+            }
+            if (size == 0) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Send a CSV body or a path");
+            }
+            return file;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    /** {@code format=} wins over {@code Accept}; the columnar format has to be asked for. */
+    private static OutputFormat outputFormat(OutputFormat format, String accept) {
+        if (format != null) {
+            return format;
+        }
+        if (accept != null) {
+            for (MediaType type : MediaType.parseMediaTypes(accept)) {
+                if (type.equalsTypeAndSubtype(COLUMNAR) && type.getQualityValue() > 0) {
+                    return OutputFormat.COLUMNAR;
+                }
+            }
+        }
+        return OutputFormat.CSV;
+    }
+
+    /**
+     * Produces the uncompressed body once per {@link CoalescingKey}, holding a processing slot
+     * while it runs; each request compresses its copy on its own. Columnar batches are cut at
+     * fixed row counts, so a request that falls behind produces the same bytes again.
+     */
+    private RequestCoalescer.Producer plainProducer(TransactionQuery query,
+                                                    ProcessingOptions options,
+                                                    Integer shardDays,
+                                                    boolean cached) {
+        ProcessingOptions plain = options.toBuilder()
+                .compression(ContentCoding.IDENTITY)
+                .fixedBatches(options.getFormat() == OutputFormat.COLUMNAR)
+                .build();
+        return out -> {
+            try (ExecutionEngine.Admission admission = Admissions.admit(executionEngine, proxyMetrics)) {
+                if (cached) {
+                    cachedTransactionExporter.export(query, plain, out);
+                    return;
+                }
+                try (InputStream inputStream = fetch(query, shardDays)) {
+                    transactionProxyService.processTransactions(inputStream, out, plain);
+                }
+            }
+        };
+    }
+
+    private StreamingResponseBody coalesced(CoalescingKey key,
+                                            RequestCoalescer.Producer producer,
+                                            ProcessingOptions options,
+                                            HttpServletResponse servletResponse) {
+        ContentCoding coding = options.getCompression();
+        return streamed(out -> {
+            if (coding == ContentCoding.IDENTITY) {
+                requestCoalescer.stream(key, producer, out);
+                return;
+            }
+            CompressingOutputStream compressed = new CompressingOutputStream(out, coding,
+                    executionEngine.cpuExecutor(), executionEngine.batchesPerRequest());
+            requestCoalescer.stream(key, producer, compressed);
+            compressed.finish();
+        }, options, servletResponse);
+    }
+
+    private static ResponseEntity.BodyBuilder ok(ProcessingOptions options) {
+        return ResponseEntity.ok()
+                .contentType(options.getFormat() == OutputFormat.COLUMNAR ? COLUMNAR : MediaType.APPLICATION_OCTET_STREAM)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT + ", " + HttpHeaders.ACCEPT_ENCODING);
+    }
+
+    /** Holds back the response body until the request gets a processing slot; see {@link #streamed}. */
+    private StreamingResponseBody admitted(StreamingResponseBody body,
+                                           ProcessingOptions options,
+                                           HttpServletResponse servletResponse) {
+        return streamed(out -> {
+            try (ExecutionEngine.Admission admission = Admissions.admit(executionEngine, proxyMetrics)) {
+                body.writeTo(out);
+            }
+        }, options, servletResponse);
+    }
+
+
+    /**
+     * Handles failures while streaming. A failure before anything reached the client becomes an
+     * error response. Once the response is committed its status cannot change, so the
+     * failure is rethrown and the container aborts the connection instead of ending the
+     * chunked body; the client sees an incomplete response rather than a clean, truncated
+     * CSV. {@code Content-Encoding} is only set with the first byte, so error responses are
+     * never labelled as compressed.
+     */
+    private StreamingResponseBody streamed(StreamingResponseBody body,
+                                           ProcessingOptions options,
+                                           HttpServletResponse servletResponse) {
+        ContentCoding coding = options.getCompression();
+        return out -> {
+            ResponseOutputStream response = new ResponseOutputStream(out, () -> {
+                if (coding != ContentCoding.IDENTITY) {
+                    servletResponse.setHeader(HttpHeaders.CONTENT_ENCODING, coding.token());
+                }
+            });
+            try {
+                body.writeTo(response);
+            } catch (IOException | RuntimeException e) {
+                if (response.bytesWritten() == 0 && !servletResponse.isCommitted()) {
+                    // The error page is rendered as JSON, which the preset octet-stream type would refuse.
+                    servletResponse.setContentType(null);
+                }
+                if (e instanceof ServerBusyException || e instanceof ResponseStatusException) {
+                    throw e;
+                }
+                if (response.clientFailed()) {
+                    log.debug("Client went away after {} bytes: {}", response.bytesWritten(), e.toString());
+                    throw e;
+                }
+                if (response.bytesWritten() == 0) {
+                    throw new TransactionFetchingException("Failed to fetch transactions from API", e);
+                }
+                log.error("Transaction stream failed after {} bytes, aborting the response",
+                        response.bytesWritten(), e);
+                throw e;
+            }
+        };
+    }
+
+    private InputStream fetch(TransactionQuery query, Integer shardDays) throws IOException {
+        return fetch(query, shardDays, null);
+    }
+
+    private InputStream fetch(TransactionQuery query, Integer shardDays, ContinuationToken resumeFrom)
+            throws IOException {
+        return shardDays == null
+                ? upstreamClient.fetch(query, resumeFrom)
+                : shardedUpstreamFetcher.fetch(query, shardDays, resumeFrom);
+    }
 }
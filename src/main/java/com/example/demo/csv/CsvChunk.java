@@ -0,0 +1,14 @@
+package com.example.demo.csv;
+
+import java.nio.ByteBuffer;
+import lombok.Value;
+
+/**
+ * A run of complete CSV records: {@code data} holds whole records from position 0 up to
+ * its limit, so it can be tokenized on any thread.
+ */
+@Value
+public class CsvChunk {
+    ByteBuffer data;
+    int recordCount;
+}
@@ -0,0 +1,118 @@
+package com.example.demo.csv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Cuts a UTF-8 CSV stream into {@link CsvChunk}s of whole records. The reader only looks
+ * for record boundaries; tokenizing and decoding happen later on whichever thread handles
+ * the chunk. Each chunk gets a copy of just its records, so a small chunk does not pin the
+ * whole read buffer, which is reused for the rest of the stream.
+ */
+public class CsvChunkReader implements Closeable {
+    private static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    private final InputStream input;
+    private final int bufferSize;
+    private byte[] buffer;
+    private int limit;
+    private int scanPosition;
+    private boolean inQuotes;
+    private boolean endOfInput;
+
+    public CsvChunkReader(InputStream input) {
+        this(input, DEFAULT_BUFFER_SIZE);
+    }
+
+    public CsvChunkReader(InputStream input, int bufferSize) {
+        this.input = input;
+        this.bufferSize = bufferSize;
+        this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * Reads up to {@code maxRecords} whole records. A final record without a trailing line
+     * feed is still returned.
+     *
+     * @return the next chunk, or {@code null} once the input is exhausted
+     */
+    public CsvChunk nextChunk(int maxRecords) throws IOException {
+        return nextChunk(maxRecords, Long.MAX_VALUE);
+    }
+
+    /**
+     * Reads up to {@code maxRecords} whole records, but returns the records it has instead of
+     * reading more input once {@code lingerNanos} have passed since the call.
+     *
+     * @return the next chunk, or {@code null} once the input is exhausted
+     */
+    public CsvChunk nextChunk(int maxRecords, long lingerNanos) throws IOException {
+        long start = System.nanoTime();
+        int records = 0;
+        int chunkEnd = 0;
+        while (records < maxRecords) {
+            if (scanPosition == limit) {
+                // Only a read can block, so buffered records are always taken first.
+                if (records > 0 && System.nanoTime() - start >= lingerNanos) {
+                    break;
+                }
+                if (endOfInput || !fill()) {
+                    break;
+                }
+            }
+            byte b = buffer[scanPosition++];
+            if (b == '"') {
+                inQuotes = !inQuotes;
+            } else if (b == '\n' && !inQuotes) {
+                records++;
+                chunkEnd = scanPosition;
+            }
+        }
+        if (records < maxRecords && endOfInput && limit > chunkEnd) {
+            records++;
+            chunkEnd = limit;
+        }
+        if (records == 0) {
+            return null;
+        }
+        return cut(chunkEnd, records);
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    private CsvChunk cut(int chunkEnd, int records) {
+        byte[] chunk = Arrays.copyOfRange(buffer, 0, chunkEnd);
+        int tail = limit - chunkEnd;
+        if (buffer.length > bufferSize && tail <= bufferSize / 2) {
+            // The buffer grew for an oversized record; do not keep it for the small ones after.
+            byte[] shrunk = new byte[bufferSize];
+            System.arraycopy(buffer, chunkEnd, shrunk, 0, tail);
+            buffer = shrunk;
+        } else {
+            System.arraycopy(buffer, chunkEnd, buffer, 0, tail);
+        }
+        limit = tail;
+        scanPosition -= chunkEnd;
+        return new CsvChunk(ByteBuffer.wrap(chunk), records);
+    }
+
+    private boolean fill() throws IOException {
+        if (limit == buffer.length) {
+            // A single record is larger than the buffer.
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        int read = input.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+            endOfInput = true;
+            return false;
+        }
+        limit += read;
+        return true;
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.demo.csv;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import lombok.Value;
+
+/**
+ * Cuts a CSV file into runs of whole records without reading it front to back. Each fixed-size
+ * range is memory-mapped and scanned on its own thread for its quote parity and for the first
+ * line feed that ends a record, once assuming the range starts outside quotes and once inside.
+ * A pass over the ranges then carries the quote state forward and picks one of the two. Quotes
+ * toggle exactly as in {@link CsvTokenizer#findRecordEnd}, so a quoted line feed never splits a
+ * record.
+ */
+public final class CsvFileSplitter {
+    private static final byte QUOTE = '"';
+    private static final byte LINE_FEED = '\n';
+
+    private CsvFileSplitter() {
+    }
+
+    /**
+     * Splits the file from {@code start}, which must be a record boundary, to its end, with at
+     * most {@code maxInFlight} range scans submitted to {@code executor} at a time.
+     *
+     * @return ascending record boundaries from {@code start} to the file size; consecutive
+     *         boundaries enclose about {@code rangeSize} bytes, more when a record spans ranges
+     */
+    public static long[] split(FileChannel channel, long start, int rangeSize, Executor executor, int maxInFlight)
+            throws IOException {
+        long size = channel.size();
+        if (start >= size) {
+            return new long[]{start};
+        }
+        int ranges = Math.toIntExact((size - start + rangeSize - 1) / rangeSize);
+        Deque<CompletableFuture<RangeScan>> scans = new ArrayDeque<>(maxInFlight);
+        int submitted = 0;
+        long[] boundaries = new long[ranges + 1];
+        int count = 0;
+        boundaries[count++] = start;
+        boolean inQuotes = false;
+        for (int i = 0; i < ranges; i++) {
+            while (submitted < ranges && scans.size() < Math.max(maxInFlight, 1)) {
+                long from = start + (long) submitted++ * rangeSize;
+                long to = Math.min(size, from + rangeSize);
+                scans.add(CompletableFuture.supplyAsync(() -> scan(channel, from, to), executor));
+            }
+            RangeScan scan = join(scans.poll());
+            // The first range starts at a boundary already; every later one contributes its first record end.
+            long end = i == 0 ? -1 : inQuotes ? scan.getEndInQuotes() : scan.getEndOutsideQuotes();
+            if (end >= 0 && end < size) {
+                boundaries[count++] = end;
+            }
+            inQuotes ^= scan.isOddQuotes();
+        }
+        boundaries[count++] = size;
+        return Arrays.copyOf(boundaries, count);
+    }
+
+    private static RangeScan scan(FileChannel channel, long from, long to) {
+        ByteBuffer data;
+        try {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        int limit = data.limit();
+        int quotes = 0;
+        long endOutsideQuotes = -1;
+        long endInQuotes = -1;
+        for (int i = 0; i < limit; i++) {
+            byte b = data.get(i);
+            if (b == QUOTE) {
+                quotes++;
+            } else if (b == LINE_FEED) {
+                if ((quotes & 1) == 0) {
+                    if (endOutsideQuotes < 0) {
+                        endOutsideQuotes = from + i + 1;
+                    }
+                } else if (endInQuotes < 0) {
+                    endInQuotes = from + i + 1;
+                }
+            }
+        }
+        return new RangeScan((quotes & 1) != 0, endOutsideQuotes, endInQuotes);
+    }
+
+    private static RangeScan join(CompletableFuture<RangeScan> scan) throws IOException {
+        try {
+            return scan.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @Value
+    private static class RangeScan {
+        boolean oddQuotes;
+        long endOutsideQuotes;
+        long endInQuotes;
+    }
+}
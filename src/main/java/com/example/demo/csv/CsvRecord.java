@@ -0,0 +1,135 @@
+package com.example.demo.csv;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * One tokenized CSV record: each field is an (offset, length) slice of the UTF-8 buffer it
+ * was read from. Nothing is decoded until a field is asked for as a String. A record is
+ * reused from row to row and is only valid until the next call to the tokenizer.
+ */
+public final class CsvRecord {
+    private static final int INITIAL_FIELDS = 48;
+
+    private ByteBuffer data;
+    private int size;
+    private int[] offsets = new int[INITIAL_FIELDS];
+    private int[] lengths = new int[INITIAL_FIELDS];
+    private boolean[] quoted = new boolean[INITIAL_FIELDS];
+    private int recordOffset;
+    private int recordLength;
+
+    public ByteBuffer data() {
+        return data;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int offset(int field) {
+        return offsets[field];
+    }
+
+    public int length(int field) {
+        return lengths[field];
+    }
+
+    /**
+     * Whether the slice is raw quoted text (doubled or stray quotes) that must go through
+     * {@link #unquote} before use. Plain fields and simple quoted fields are already exact.
+     */
+    public boolean needsUnquoting(int field) {
+        return quoted[field];
+    }
+
+    /** Start of the whole record in {@link #data()}, excluding its line terminator. */
+    public int recordOffset() {
+        return recordOffset;
+    }
+
+    public int recordLength() {
+        return recordLength;
+    }
+
+    public String getString(int field) {
+        int length = lengths[field];
+        if (length == 0) {
+            return "";
+        }
+        if (!quoted[field] && data.hasArray()) {
+            return new String(data.array(), data.arrayOffset() + offsets[field], length, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[length];
+        return new String(bytes, 0, copyField(field, bytes, 0), StandardCharsets.UTF_8);
+    }
+
+    public String[] toStringArray() {
+        String[] fields = new String[size];
+        for (int i = 0; i < size; i++) {
+            fields[i] = getString(i);
+        }
+        return fields;
+    }
+
+    /**
+     * Copies the field's unquoted bytes into {@code target}, which needs room for
+     * {@link #length(int)} bytes.
+     *
+     * @return the number of bytes written
+     */
+    public int copyField(int field, byte[] target, int targetOffset) {
+        int offset = offsets[field];
+        int length = lengths[field];
+        if (!quoted[field]) {
+            data.get(offset, target, targetOffset, length);
+            return length;
+        }
+        return unquote(data, offset, length, target, targetOffset);
+    }
+
+    /** Removes quoting the way a CSV reader would: {@code "a""b"} becomes {@code a"b}. */
+    public static int unquote(ByteBuffer source, int offset, int length, byte[] target, int targetOffset) {
+        int written = targetOffset;
+        boolean inQuotes = false;
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            byte b = source.get(i);
+            if (b == '"') {
+                if (inQuotes && i + 1 < end && source.get(i + 1) == '"') {
+                    target[written++] = '"';
+                    i++;
+                } else {
+                    inQuotes = !inQuotes;
+                }
+            } else {
+                target[written++] = b;
+            }
+        }
+        return written - targetOffset;
+    }
+
+    void reset(ByteBuffer data, int recordOffset) {
+        this.data = data;
+        this.recordOffset = recordOffset;
+        this.recordLength = 0;
+        this.size = 0;
+    }
+
+    void addField(int offset, int length, boolean needsUnquoting) {
+        if (size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, size * 2);
+            lengths = Arrays.copyOf(lengths, size * 2);
+            quoted = Arrays.copyOf(quoted, size * 2);
+        }
+        offsets[size] = offset;
+        lengths[size] = length;
+        quoted[size] = needsUnquoting;
+        size++;
+    }
+
+    void finish(int recordEnd) {
+        this.recordLength = recordEnd - recordOffset;
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.demo.csv;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Splits RFC 4180 records in a UTF-8 buffer into field slices without decoding them.
+ * Separators and line breaks inside quotes belong to the field; {@code \r\n} and {@code \n}
+ * both end a record. Works on heap and memory-mapped buffers alike and never moves their
+ * position.
+ */
+public final class CsvTokenizer {
+    private static final byte SEPARATOR = ',';
+    private static final byte QUOTE = '"';
+    private static final byte LINE_FEED = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+
+    private CsvTokenizer() {
+    }
+
+    /**
+     * Tokenizes the record starting at {@code position} into {@code record}.
+     *
+     * @return the position just after the record's line terminator, or {@code limit}
+     */
+    public static int nextRecord(ByteBuffer data, int position, int limit, CsvRecord record) {
+        record.reset(data, position);
+        int fieldStart = position;
+        int quotes = 0;
+        boolean inQuotes = false;
+        int i = position;
+        while (i < limit) {
+            byte b = data.get(i);
+            if (b == QUOTE) {
+                inQuotes = !inQuotes;
+                quotes++;
+            } else if (!inQuotes) {
+                if (b == SEPARATOR) {
+                    addField(data, fieldStart, i, quotes, record);
+                    fieldStart = i + 1;
+                    quotes = 0;
+                } else if (b == LINE_FEED) {
+                    int end = i > fieldStart && data.get(i - 1) == CARRIAGE_RETURN ? i - 1 : i;
+                    addField(data, fieldStart, end, quotes, record);
+                    record.finish(end);
+                    return i + 1;
+                }
+            }
+            i++;
+        }
+        int end = limit > fieldStart && data.get(limit - 1) == CARRIAGE_RETURN ? limit - 1 : limit;
+        addField(data, fieldStart, end, quotes, record);
+        record.finish(end);
+        return limit;
+    }
+
+    /**
+     * Finds the end of the record starting at {@code position}.
+     *
+     * @return the position just after the record's line feed, or {@code -1} if the buffer
+     *         ends inside the record
+     */
+    public static int findRecordEnd(ByteBuffer data, int position, int limit) {
+        boolean inQuotes = false;
+        for (int i = position; i < limit; i++) {
+            byte b = data.get(i);
+            if (b == QUOTE) {
+                inQuotes = !inQuotes;
+            } else if (b == LINE_FEED && !inQuotes) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static void addField(ByteBuffer data, int start, int end, int quotes, CsvRecord record) {
+        if (quotes == 0) {
+            record.addField(start, end - start, false);
+        } else if (quotes == 2 && end - start >= 2 && data.get(start) == QUOTE && data.get(end - 1) == QUOTE) {
+            record.addField(start + 1, end - start - 2, false);
+        } else {
+            record.addField(start, end - start, true);
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.example.demo.delta;
+
+import com.example.demo.config.DeltaProperties;
+import com.example.demo.exception.ServerBusyException;
+import com.example.demo.model.TransactionQuery;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Persistent id → hash-prefix index behind delta mode.
+ * <p>
+ * An open-addressing hash table of fixed 32-byte slots in a memory-mapped file, so tens of
+ * millions of ids live in the page cache rather than on the heap. Each slot records the
+ * first 64 bits of the row hash, the transaction day, the generation in which the row last
+ * changed and the generation in which it was last seen. Every delta request is one
+ * generation, and its number is the cursor the client passes back as {@code since}.
+ * Requests run one at a time, so a cursor never skips changes made by an earlier request
+ * that finished later.
+ */
+@Slf4j
+@Component
+public class DeltaIndex {
+    private static final String INDEX_FILE = "index.dat";
+    private static final long MAGIC = 0x4445_4c54_4149_4458L;
+    private static final int HEADER_SIZE = 64;
+    private static final int SLOT_SIZE = 32;
+    private static final long REGION_SIZE = 1L << 30;
+
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_CAPACITY = 8;
+    private static final int HEADER_SIZE_FIELD = 16;
+    private static final int HEADER_GENERATION = 24;
+    private static final int HEADER_CLEAN = 32;
+
+    private static final int SLOT_ID = 0;
+    private static final int SLOT_HASH = 8;
+    private static final int SLOT_CHANGED = 16;
+    private static final int SLOT_SEEN = 20;
+    private static final int SLOT_DAY = 24;
+    private static final int SLOT_FLAGS = 28;
+    private static final int OCCUPIED = 1;
+    private static final int DELETED = 2;
+
+    private final DeltaProperties properties;
+    private final Semaphore exclusive = new Semaphore(1, true);
+    private FileChannel channel;
+    private MappedByteBuffer[] regions;
+    private long capacity;
+    private long size;
+    private int generation;
+
+    public DeltaIndex(DeltaProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Starts the next generation, waiting for a running delta request to finish first.
+     * Tombstones are only produced for requests without a recipient filter, because only
+     * those fetch every row of a day.
+     *
+     * @throws ServerBusyException if the running request does not finish within {@code delta.lock-timeout}
+     */
+    public DeltaSession begin(long since, TransactionQuery query, boolean tombstones)
+            throws IOException, InterruptedException {
+        if (!exclusive.tryAcquire(properties.getLockTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+            throw new ServerBusyException("Another delta request is running, try again later");
+        }
+        try {
+            if (channel == null) {
+                open();
+            }
+            generation++;
+            header().putLong(HEADER_GENERATION, generation);
+            header().putInt(HEADER_CLEAN, 0);
+            return new DeltaSession(this, generation, since, query,
+                    tombstones && query.getReciptEdrpous().isEmpty());
+        } catch (IOException | RuntimeException e) {
+            exclusive.release();
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException, InterruptedException {
+        // Do not hold up shutdown for a running request; it fails on the closed channel instead.
+        boolean acquired = exclusive.tryAcquire(10, TimeUnit.SECONDS);
+        try {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        } finally {
+            if (acquired) {
+                exclusive.release();
+            }
+        }
+    }
+
+    long size() {
+        return size;
+    }
+
+    /**
+     * Records a row under the session's generation.
+     *
+     * @return whether the client at cursor {@code since} has not seen this version of the row
+     */
+    boolean update(long id, long hashPrefix, int day, int generation, long since) throws IOException {
+        long slot = find(id);
+        int flags = getInt(slot, SLOT_FLAGS);
+        if (flags == 0) {
+            if ((size + 1) * 4 > capacity * 3) {
+                grow();
+                slot = find(id);
+            }
+            putLong(slot, SLOT_ID, id);
+            write(slot, hashPrefix, day, generation);
+            size++;
+            return true;
+        }
+        if ((flags & DELETED) != 0 || getLong(slot, SLOT_HASH) != hashPrefix) {
+            write(slot, hashPrefix, day, generation);
+            return true;
+        }
+        putInt(slot, SLOT_SEEN, generation);
+        putInt(slot, SLOT_DAY, day);
+        return getInt(slot, SLOT_CHANGED) > since;
+    }
+
+    /**
+     * Marks ids in {@code [fromDay, toDay]} that this generation did not see as deleted, and
+     * reports every deletion in that range the client at {@code since} has not seen yet.
+     * Slots are placed by id, not by day, so this reads every slot of the table whatever the
+     * range: 32 bytes per slot, about 64 MB of page cache per million ids.
+     */
+    long sweep(int fromDay, int toDay, int generation, long since, TombstoneListener listener)
+            throws IOException {
+        long reported = 0;
+        for (long slot = 0; slot < capacity; slot++) {
+            int flags = getInt(slot, SLOT_FLAGS);
+            int day = getInt(slot, SLOT_DAY);
+            if (flags == 0 || day < fromDay || day > toDay) {
+                continue;
+            }
+            if ((flags & DELETED) == 0 && getInt(slot, SLOT_SEEN) != generation) {
+                putInt(slot, SLOT_FLAGS, OCCUPIED | DELETED);
+                putInt(slot, SLOT_CHANGED, generation);
+                flags |= DELETED;
+            }
+            if ((flags & DELETED) != 0 && getInt(slot, SLOT_CHANGED) > since) {
+                listener.deleted(getLong(slot, SLOT_ID), day);
+                reported++;
+            }
+        }
+        return reported;
+    }
+
+    void end() {
+        try {
+            header().putLong(HEADER_SIZE_FIELD, size);
+            header().putInt(HEADER_CLEAN, 1);
+            for (MappedByteBuffer region : regions) {
+                region.force();
+            }
+        } finally {
+            exclusive.release();
+        }
+    }
+
+    private void open() throws IOException {
+        Files.createDirectories(properties.getDirectory());
+        Path file = properties.getDirectory().resolve(INDEX_FILE);
+        if (!Files.exists(file)) {
+            create(file, Long.highestOneBit(Math.max(properties.getInitialCapacity(), 16) * 2L - 1));
+        }
+        map(file);
+        if (header().getLong(HEADER_MAGIC) != MAGIC) {
+            throw new IOException("Not a delta index: " + file);
+        }
+        capacity = header().getLong(HEADER_CAPACITY);
+        generation = (int) header().getLong(HEADER_GENERATION);
+        size = header().getLong(HEADER_SIZE_FIELD);
+        if (header().getInt(HEADER_CLEAN) == 0) {
+            // The last request did not finish, so the stored size may be stale.
+            size = 0;
+            for (long slot = 0; slot < capacity; slot++) {
+                if (getInt(slot, SLOT_FLAGS) != 0) {
+                    size++;
+                }
+            }
+        }
+        log.info("Opened delta index {}: {} ids, capacity {}, generation {}", file, size, capacity, generation);
+    }
+
+    private void create(Path file, long slots) throws IOException {
+        try (FileChannel created = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // Mapping past the end grows the file; the new slots read as empty.
+            MappedByteBuffer header = created.map(FileChannel.MapMode.READ_WRITE, 0, fileSize(slots));
+            header.putLong(HEADER_MAGIC, MAGIC);
+            header.putLong(HEADER_CAPACITY, slots);
+            header.putLong(HEADER_GENERATION, generation);
+            header.putInt(HEADER_CLEAN, 1);
+            header.force();
+        }
+    }
+
+    private void grow() throws IOException {
+        Path file = properties.getDirectory().resolve(INDEX_FILE);
+        Path grown = properties.getDirectory().resolve(INDEX_FILE + ".grow");
+        Files.deleteIfExists(grown);
+        create(grown, capacity * 2);
+
+        FileChannel oldChannel = channel;
+        MappedByteBuffer[] oldRegions = regions;
+        long oldCapacity = capacity;
+        map(grown);
+        capacity = oldCapacity * 2;
+        for (long slot = 0; slot < oldCapacity; slot++) {
+            long position = HEADER_SIZE + slot * SLOT_SIZE;
+            MappedByteBuffer region = oldRegions[(int) (position / REGION_SIZE)];
+            int offset = (int) (position % REGION_SIZE);
+            if (region.getInt(offset + SLOT_FLAGS) != 0) {
+                long target = find(region.getLong(offset + SLOT_ID));
+                for (int field = 0; field < SLOT_SIZE; field += 8) {
+                    putLong(target, field, region.getLong(offset + field));
+                }
+            }
+        }
+        header().putLong(HEADER_GENERATION, generation);
+        header().putLong(HEADER_SIZE_FIELD, size);
+        oldChannel.close();
+        channel.close();
+        Files.move(grown, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        map(file);
+        log.info("Grew delta index to {} slots", capacity);
+    }
+
+    private void map(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long length = channel.size();
+        regions = new MappedByteBuffer[(int) ((length + REGION_SIZE - 1) / REGION_SIZE)];
+        for (int i = 0; i < regions.length; i++) {
+            long start = i * REGION_SIZE;
+            regions[i] = channel.map(FileChannel.MapMode.READ_WRITE, start, Math.min(REGION_SIZE, length - start));
+        }
+    }
+
+    private long find(long id) {
+        long mask = capacity - 1;
+        long slot = mix(id) & mask;
+        while (getInt(slot, SLOT_FLAGS) != 0 && getLong(slot, SLOT_ID) != id) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void write(long slot, long hashPrefix, int day, int generation) {
+        putLong(slot, SLOT_HASH, hashPrefix);
+        putInt(slot, SLOT_CHANGED, generation);
+        putInt(slot, SLOT_SEEN, generation);
+        putInt(slot, SLOT_DAY, day);
+        putInt(slot, SLOT_FLAGS, OCCUPIED);
+    }
+
+    private MappedByteBuffer header() {
+        return regions[0];
+    }
+
+    // Slots are 32-byte aligned after a 64-byte header, so none crosses a region boundary.
+    private long getLong(long slot, int field) {
+        long position = HEADER_SIZE + slot * SLOT_SIZE + field;
+        return regions[(int) (position / REGION_SIZE)].getLong((int) (position % REGION_SIZE));
+    }
+
+    private int getInt(long slot, int field) {
+        long position = HEADER_SIZE + slot * SLOT_SIZE + field;
+        return regions[(int) (position / REGION_SIZE)].getInt((int) (position % REGION_SIZE));
+    }
+
+    private void putLong(long slot, int field, long value) {
+        long position = HEADER_SIZE + slot * SLOT_SIZE + field;
+        regions[(int) (position / REGION_SIZE)].putLong((int) (position % REGION_SIZE), value);
+    }
+
+    private void putInt(long slot, int field, int value) {
+        long position = HEADER_SIZE + slot * SLOT_SIZE + field;
+        regions[(int) (position / REGION_SIZE)].putInt((int) (position % REGION_SIZE), value);
+    }
+
+    private static long fileSize(long slots) {
+        return HEADER_SIZE + slots * SLOT_SIZE;
+    }
+
+    /** The finalizer step of MurmurHash3, so sequential ids spread over the table. */
+    private static long mix(long id) {
+        long h = id;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    @FunctionalInterface
+    interface TombstoneListener {
+        void deleted(long id, int day) throws IOException;
+    }
+}
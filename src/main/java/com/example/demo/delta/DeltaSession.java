@@ -0,0 +1,110 @@
+package com.example.demo.delta;
+
+import com.example.demo.model.TransactionColumns;
+import com.example.demo.model.TransactionQuery;
+import com.example.demo.pipeline.BatchSink;
+import com.example.demo.pipeline.EncodedBatch;
+import com.example.demo.pipeline.RowKeys;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * One delta request: filters processed batches down to the rows the client at cursor
+ * {@code since} has not seen, and afterwards reports ids that disappeared from the range.
+ * The index stays locked until the session is closed.
+ */
+public final class DeltaSession implements Closeable {
+    private final DeltaIndex index;
+    private final int generation;
+    private final long since;
+    private final int fromDay;
+    private final int toDay;
+    private final boolean tombstones;
+    private boolean closed;
+
+    DeltaSession(DeltaIndex index, int generation, long since, TransactionQuery query, boolean tombstones) {
+        this.index = index;
+        this.generation = generation;
+        this.since = since;
+        this.fromDay = (int) query.getStartDate().toEpochDay();
+        this.toDay = (int) query.getEndDate().toEpochDay();
+        this.tombstones = tombstones;
+    }
+
+    /** The cursor to pass as {@code since} on the next request. */
+    public long cursor() {
+        return generation;
+    }
+
+    /** A sink that writes only new and changed rows; batches must carry {@link RowKeys}. */
+    public BatchSink sink(OutputStream out) {
+        return batch -> write(batch, out);
+    }
+
+    /**
+     * Writes a tombstone for every id in the range that the client has not seen deleted:
+     * a row with only the id and trans_date set and an empty hash. Call only after all rows
+     * of the range were written, or live rows would be reported as deleted.
+     *
+     * @return the number of tombstones written
+     */
+    public long finish(OutputStream out) throws IOException {
+        if (!tombstones) {
+            return 0;
+        }
+        long written = index.sweep(fromDay, toDay, generation, since, (id, day) -> {
+            StringBuilder line = new StringBuilder(160);
+            for (int column = 0; column < TransactionColumns.COUNT; column++) {
+                line.append('"');
+                if (column == TransactionColumns.ID) {
+                    line.append(id);
+                } else if (column == TransactionColumns.TRANS_DATE) {
+                    line.append(LocalDate.ofEpochDay(day));
+                }
+                line.append("\",");
+            }
+            line.append("\"\"\n");
+            out.write(line.toString().getBytes(StandardCharsets.UTF_8));
+        });
+        out.flush();
+        return written;
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            index.end();
+        }
+    }
+
+    private long write(EncodedBatch batch, OutputStream out) throws IOException {
+        RowKeys keys = batch.getKeys();
+        if (keys == null) {
+            throw new IllegalStateException("Delta mode needs row keys for batch " + batch.getSequence());
+        }
+        byte[] data = batch.getData();
+        long written = 0;
+        int runStart = 0;
+        int runEnd = 0;
+        for (int row = 0; row < keys.size(); row++) {
+            boolean emit = !keys.hasId(row)
+                    || index.update(keys.id(row), keys.hashPrefix(row), keys.day(row), generation, since);
+            if (emit) {
+                // Consecutive selected rows go out in one write.
+                if (keys.start(row) != runEnd) {
+                    out.write(data, runStart, runEnd - runStart);
+                    runStart = keys.start(row);
+                }
+                runEnd = keys.end(row);
+                written++;
+            }
+        }
+        out.write(data, runStart, runEnd - runStart);
+        out.flush();
+        return written;
+    }
+}
@@ -4,4 +4,8 @@ public class TransactionFetchingException extends RuntimeException {
     public TransactionFetchingException(String message) {
         super(message);
     }
+
+    public TransactionFetchingException(String message, Throwable cause) {
+        super(message, cause);
+    }
 }
@@ -0,0 +1,161 @@
+package com.example.demo.execution;
+
+import com.example.demo.config.ExecutionProperties;
+import com.example.demo.exception.ServerBusyException;
+import com.example.demo.pipeline.FlowController;
+import jakarta.annotation.PreDestroy;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Threads for request processing, split by the kind of work.
+ * <p>
+ * Reading upstream bodies, draining pipelines and writing responses block on I/O, so they
+ * run on the I/O executor: a virtual thread per task on Java 21+, a cached platform pool
+ * otherwise. Hashing runs on one fixed CPU pool shared by all requests. Each request keeps
+ * at most {@link #batchesPerRequest()} batches in that pool's FIFO queue, so concurrent
+ * requests get equal turns on the CPU and one large export cannot crowd out the others.
+ * {@link #admit()} caps how many requests are processed at once.
+ */
+@Slf4j
+@Component
+public class ExecutionEngine {
+    private final ExecutorService ioExecutor;
+    private final ThreadPoolExecutor cpuExecutor;
+    private final Semaphore admission;
+    private final long admissionTimeoutMillis;
+    private final int batchesPerRequest;
+    private final boolean virtualThreads;
+    private final ExecutionProperties properties;
+    private final LongAdder callerRuns = new LongAdder();
+
+    public ExecutionEngine(ExecutionProperties properties) {
+        this.properties = properties;
+        int cpuThreads = properties.getCpuThreads() > 0
+                ? properties.getCpuThreads()
+                : Runtime.getRuntime().availableProcessors();
+        this.batchesPerRequest = properties.getBatchesPerRequest() > 0
+                ? properties.getBatchesPerRequest()
+                : cpuThreads * 2;
+        // Admission keeps the queue below this bound; running on the caller is only a safety net.
+        ThreadPoolExecutor.CallerRunsPolicy callerRunsPolicy = new ThreadPoolExecutor.CallerRunsPolicy();
+        this.cpuExecutor = new ThreadPoolExecutor(
+                cpuThreads,
+                cpuThreads,
+                60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(properties.getMaxConcurrentRequests(), 1) * batchesPerRequest),
+                threadFactory("transaction-cpu-"),
+                (task, executor) -> {
+                    callerRuns.increment();
+                    callerRunsPolicy.rejectedExecution(task, executor);
+                }
+        );
+        ExecutorService virtual = properties.isVirtualThreads() ? newVirtualThreadExecutor() : null;
+        this.virtualThreads = virtual != null;
+        this.ioExecutor = virtual != null ? virtual : Executors.newCachedThreadPool(threadFactory("transaction-io-"));
+        this.admission = new Semaphore(properties.getMaxConcurrentRequests(), true);
+        this.admissionTimeoutMillis = properties.getAdmissionTimeout().toMillis();
+        log.info("Execution engine: {} hashing threads, {} I/O threads, {} concurrent requests",
+                cpuThreads, virtualThreads ? "virtual" : "platform", properties.getMaxConcurrentRequests());
+    }
+
+    public ExecutorService ioExecutor() {
+        return ioExecutor;
+    }
+
+    public ThreadPoolExecutor cpuExecutor() {
+        return cpuExecutor;
+    }
+
+    public int batchesPerRequest() {
+        return batchesPerRequest;
+    }
+
+    public long stallTimeoutMillis() {
+        return properties.getStallTimeout().toMillis();
+    }
+
+    /** Flow control for one request, with its deadline starting now. */
+    public FlowController newFlow() {
+        return new FlowController(properties.getBatchTarget().toNanos(), properties.getBatchLinger().toNanos(),
+                properties.getRequestTimeout().toNanos());
+    }
+
+    /** Flow control with batches of exactly {@code batchRows} rows, with its deadline starting now. */
+    public FlowController newFixedFlow(int batchRows) {
+        return FlowController.fixed(batchRows, properties.getRequestTimeout().toNanos());
+    }
+
+    /** How many hashing tasks ran on the submitting thread because the CPU queue was full. */
+    public long callerRunsCount() {
+        return callerRuns.sum();
+    }
+
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Waits, in arrival order, for a processing slot.
+     *
+     * @throws ServerBusyException if no slot frees up within the admission timeout
+     */
+    public Admission admit() throws InterruptedException {
+        if (!admission.tryAcquire(admissionTimeoutMillis, TimeUnit.MILLISECONDS)) {
+            throw new ServerBusyException("Too many concurrent requests, try again later");
+        }
+        return admission::release;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ioExecutor.shutdown();
+        cpuExecutor.shutdown();
+        try {
+            if (!cpuExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+                cpuExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            cpuExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** The project compiles for Java 17, so the Java 21 factory is looked up at runtime. */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            log.warn("Virtual threads are not available, using platform threads", e);
+            return null;
+        }
+    }
+
+    private static ThreadFactory threadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /** A held processing slot; closing it lets the next request in. */
+    @FunctionalInterface
+    public interface Admission extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,407 @@
+package com.example.demo.filter;
+
+import com.example.demo.csv.CsvRecord;
+import com.example.demo.hash.RowHasher;
+import com.example.demo.model.ColumnType;
+import com.example.demo.model.TransactionColumns;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Row predicate compiled once per request from {@code filter=} expressions, all of which must
+ * match:
+ * <ul>
+ *   <li>{@code column=a|b|c}: equal to one of the values; codes and text compare exactly,
+ *       numbers and dates by value</li>
+ *   <li>{@code column>=v}, {@code column<=v}: a range on a number, amount or date column</li>
+ *   <li>{@code column^=p|q}: a text column starting with one of the prefixes</li>
+ * </ul>
+ * Values are trimmed like {@code TransactionDto} reads them, and an empty value matches no
+ * condition. The predicate runs on the raw field bytes before any DTO or record is built and
+ * does not allocate for plain fields. Instances are immutable and shared by the workers of a
+ * request.
+ */
+public final class RowFilter {
+    private static final String[] OPERATORS = {">=", "<=", "^=", "="};
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[256]);
+
+    private final int[] columns;
+    private final Condition[] conditions;
+
+    private RowFilter(List<Integer> columns, List<Condition> conditions) {
+        this.columns = columns.stream().mapToInt(Integer::intValue).toArray();
+        this.conditions = conditions.toArray(new Condition[0]);
+    }
+
+    /**
+     * @throws IllegalArgumentException for an unknown column, an operator the column's type
+     *                                  does not support, or a value that does not parse
+     */
+    public static RowFilter compile(List<String> expressions) {
+        List<Integer> columns = new ArrayList<>();
+        List<Condition> conditions = new ArrayList<>();
+        for (String expression : expressions) {
+            // The first operator wins, so values may contain operator characters.
+            String operator = null;
+            int at = -1;
+            for (String candidate : OPERATORS) {
+                int index = expression.indexOf(candidate);
+                if (index > 0 && (operator == null || index < at)) {
+                    operator = candidate;
+                    at = index;
+                }
+            }
+            if (operator == null) {
+                throw new IllegalArgumentException("Invalid filter: " + expression);
+            }
+            String name = expression.substring(0, at).trim();
+            String value = expression.substring(at + operator.length()).trim();
+            int column = TransactionColumns.indexOf(name);
+            if (column < 0) {
+                throw new IllegalArgumentException("Unknown filter column: " + name);
+            }
+            if (value.isEmpty()) {
+                throw new IllegalArgumentException("Empty filter value: " + expression);
+            }
+            columns.add(column);
+            conditions.add(condition(TransactionColumns.type(column), operator, value, expression));
+        }
+        return new RowFilter(columns, conditions);
+    }
+
+    /** Tests a row read by OpenCSV. */
+    public boolean test(String[] row) {
+        byte[] scratch = SCRATCH.get();
+        for (int i = 0; i < columns.length; i++) {
+            int column = columns[i];
+            String value = column < row.length ? row[column] : null;
+            if (value == null) {
+                return false;
+            }
+            int start = 0;
+            int end = value.length();
+            while (start < end && value.charAt(start) <= ' ') {
+                start++;
+            }
+            while (end > start && value.charAt(end - 1) <= ' ') {
+                end--;
+            }
+            if (scratch.length < (end - start) * 3) {
+                scratch = new byte[(end - start) * 3];
+                SCRATCH.set(scratch);
+            }
+            int length = RowHasher.encodeUtf8(value, start, end, scratch, 0);
+            if (length == 0 || !conditions[i].test(scratch, 0, length)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Tests a tokenized row on its field slices. */
+    public boolean test(CsvRecord record) {
+        ByteBuffer data = record.data();
+        for (int i = 0; i < columns.length; i++) {
+            int column = columns[i];
+            if (column >= record.size()) {
+                return false;
+            }
+            byte[] source;
+            int offset;
+            int length = record.length(column);
+            if (!record.needsUnquoting(column) && data.hasArray()) {
+                source = data.array();
+                offset = data.arrayOffset() + record.offset(column);
+            } else {
+                source = SCRATCH.get();
+                if (source.length < length) {
+                    source = new byte[length];
+                    SCRATCH.set(source);
+                }
+                offset = 0;
+                length = record.copyField(column, source, 0);
+            }
+            while (length > 0 && (source[offset] & 0xff) <= ' ') {
+                offset++;
+                length--;
+            }
+            while (length > 0 && (source[offset + length - 1] & 0xff) <= ' ') {
+                length--;
+            }
+            if (length == 0 || !conditions[i].test(source, offset, length)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Condition condition(ColumnType type, String operator, String value, String expression) {
+        String[] values = value.split("\\|");
+        try {
+            switch (type) {
+                case STRING:
+                    if (operator.equals("=")) {
+                        return new TextIn(values);
+                    }
+                    if (operator.equals("^=")) {
+                        return new TextPrefix(values);
+                    }
+                    break;
+                case LONG:
+                case INTEGER:
+                    if (operator.equals("^=")) {
+                        break;
+                    }
+                    return new IntegerCondition(operator, Arrays.stream(values).mapToLong(v -> Long.parseLong(v.trim()))
+                            .toArray());
+                case DECIMAL:
+                    if (operator.equals("^=")) {
+                        break;
+                    }
+                    return new DecimalCondition(operator, Arrays.stream(values).map(v -> new BigDecimal(v.trim()))
+                            .toArray(BigDecimal[]::new));
+                case DATE:
+                    if (operator.equals("^=")) {
+                        break;
+                    }
+                    return new IntegerCondition(operator, Arrays.stream(values)
+                            .mapToLong(v -> dateKey(LocalDate.parse(v.trim()))).toArray());
+                default:
+                    break;
+            }
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid filter value: " + expression, e);
+        }
+        throw new IllegalArgumentException("Operator " + operator + " does not apply to " + expression);
+    }
+
+    private static long dateKey(LocalDate date) {
+        return date.getYear() * 10000L + date.getMonthValue() * 100L + date.getDayOfMonth();
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    /** A condition on one trimmed, non-empty field. */
+    private interface Condition {
+        boolean test(byte[] value, int offset, int length);
+    }
+
+    private static final class TextIn implements Condition {
+        private final long[] hashes;
+        private final byte[][] values;
+
+        TextIn(String[] candidates) {
+            byte[][] encoded = Arrays.stream(candidates).map(c -> c.trim().getBytes(StandardCharsets.UTF_8))
+                    .sorted(Comparator.comparingLong(c -> hash(c, 0, c.length)))
+                    .toArray(byte[][]::new);
+            this.values = encoded;
+            this.hashes = Arrays.stream(encoded).mapToLong(c -> hash(c, 0, c.length)).toArray();
+        }
+
+        @Override
+        public boolean test(byte[] value, int offset, int length) {
+            long hash = hash(value, offset, length);
+            int at = Arrays.binarySearch(hashes, hash);
+            if (at < 0) {
+                return false;
+            }
+            while (at > 0 && hashes[at - 1] == hash) {
+                at--;
+            }
+            for (; at < hashes.length && hashes[at] == hash; at++) {
+                if (Arrays.equals(values[at], 0, values[at].length, value, offset, offset + length)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /** 64-bit FNV-1a. */
+        private static long hash(byte[] bytes, int offset, int length) {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = offset; i < offset + length; i++) {
+                hash = (hash ^ (bytes[i] & 0xff)) * 0x100000001b3L;
+            }
+            return hash;
+        }
+    }
+
+    private static final class TextPrefix implements Condition {
+        private final byte[][] prefixes;
+
+        TextPrefix(String[] candidates) {
+            this.prefixes = Arrays.stream(candidates).map(c -> c.trim().getBytes(StandardCharsets.UTF_8))
+                    .toArray(byte[][]::new);
+        }
+
+        @Override
+        public boolean test(byte[] value, int offset, int length) {
+            for (byte[] prefix : prefixes) {
+                if (prefix.length <= length
+                        && Arrays.equals(prefix, 0, prefix.length, value, offset, offset + prefix.length)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /** Integer and date columns; dates compare as {@code yyyyMMdd}. */
+    private static final class IntegerCondition implements Condition {
+        private final String operator;
+        private final long[] values;
+
+        IntegerCondition(String operator, long[] values) {
+            if (!operator.equals("=") && values.length != 1) {
+                throw new IllegalArgumentException("A range takes one value");
+            }
+            this.operator = operator;
+            this.values = values.clone();
+            Arrays.sort(this.values);
+        }
+
+        @Override
+        public boolean test(byte[] value, int offset, int length) {
+            long parsed;
+            if (length == 10 && value[offset + 4] == '-' && value[offset + 7] == '-') {
+                parsed = digits(value, offset, 4) * 10000L + digits(value, offset + 5, 2) * 100L
+                        + digits(value, offset + 8, 2);
+                if (parsed < 0) {
+                    return false;
+                }
+            } else {
+                boolean negative = value[offset] == '-';
+                int i = negative || value[offset] == '+' ? offset + 1 : offset;
+                if (i == offset + length || offset + length - i > 18) {
+                    return false;
+                }
+                parsed = 0;
+                for (; i < offset + length; i++) {
+                    if (!isDigit(value[i])) {
+                        return false;
+                    }
+                    parsed = parsed * 10 + (value[i] - '0');
+                }
+                parsed = negative ? -parsed : parsed;
+            }
+            switch (operator) {
+                case ">=":
+                    return parsed >= values[0];
+                case "<=":
+                    return parsed <= values[0];
+                default:
+                    return Arrays.binarySearch(values, parsed) >= 0;
+            }
+        }
+
+        private static int digits(byte[] value, int offset, int count) {
+            int result = 0;
+            for (int i = offset; i < offset + count; i++) {
+                if (!isDigit(value[i])) {
+                    return Integer.MIN_VALUE;
+                }
+                result = result * 10 + (value[i] - '0');
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Amount columns. A plain decimal of up to 18 digits is read as an unscaled long and
+     * compared with the bounds pre-scaled to its scale; anything else goes through BigDecimal.
+     */
+    private static final class DecimalCondition implements Condition {
+        private static final int MAX_SCALE = 18;
+
+        private final String operator;
+        private final BigDecimal[] values;
+        /** Per scale: the smallest unscaled value that satisfies {@code >=}, or the largest for {@code <=}. */
+        private final long[] bounds = new long[MAX_SCALE + 1];
+        /** Per scale: the sorted unscaled values of an in-list that are exact at that scale. */
+        private final long[][] exact = new long[MAX_SCALE + 1][];
+
+        DecimalCondition(String operator, BigDecimal[] values) {
+            if (!operator.equals("=") && values.length != 1) {
+                throw new IllegalArgumentException("A range takes one value");
+            }
+            this.operator = operator;
+            this.values = values;
+            for (int scale = 0; scale <= MAX_SCALE; scale++) {
+                if (operator.equals("=")) {
+                    int at = scale;
+                    exact[scale] = Arrays.stream(values).map(v -> v.movePointRight(at))
+                            .filter(v -> v.stripTrailingZeros().scale() <= 0 && v.toBigInteger().bitLength() < 64)
+                            .mapToLong(BigDecimal::longValueExact).sorted().toArray();
+                } else {
+                    BigDecimal scaled = values[0].movePointRight(scale)
+                            .setScale(0, operator.equals(">=") ? RoundingMode.CEILING : RoundingMode.FLOOR);
+                    bounds[scale] = scaled.toBigInteger().bitLength() < 64
+                            ? scaled.longValueExact()
+                            : scaled.signum() > 0 ? Long.MAX_VALUE : Long.MIN_VALUE;
+                }
+            }
+        }
+
+        @Override
+        public boolean test(byte[] value, int offset, int length) {
+            int end = offset + length;
+            boolean negative = value[offset] == '-';
+            int i = negative || value[offset] == '+' ? offset + 1 : offset;
+            int digitsStart = i;
+            int point = -1;
+            long unscaled = 0;
+            int digits = 0;
+            for (; i < end; i++) {
+                byte b = value[i];
+                if (b == '.' && point < 0) {
+                    point = i;
+                } else if (isDigit(b) && ++digits <= MAX_SCALE) {
+                    unscaled = unscaled * 10 + (b - '0');
+                } else {
+                    return slowTest(value, offset, length);
+                }
+            }
+            int scale = point < 0 ? 0 : end - point - 1;
+            if (digits == 0 || digitsStart == end) {
+                return false;
+            }
+            unscaled = negative ? -unscaled : unscaled;
+            switch (operator) {
+                case ">=":
+                    return unscaled >= bounds[scale];
+                case "<=":
+                    return unscaled <= bounds[scale];
+                default:
+                    return Arrays.binarySearch(exact[scale], unscaled) >= 0;
+            }
+        }
+
+        /** Exponents, more than 18 digits, or text that is not a number at all. */
+        private boolean slowTest(byte[] value, int offset, int length) {
+            BigDecimal parsed;
+            try {
+                parsed = new BigDecimal(new String(value, offset, length, StandardCharsets.US_ASCII));
+            } catch (NumberFormatException e) {
+                return false;
+            }
+            switch (operator) {
+                case ">=":
+                    return parsed.compareTo(values[0]) >= 0;
+                case "<=":
+                    return parsed.compareTo(values[0]) <= 0;
+                default:
+                    return Arrays.stream(values).anyMatch(v -> v.compareTo(parsed) == 0);
+            }
+        }
+    }
+}
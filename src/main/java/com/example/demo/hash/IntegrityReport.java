@@ -0,0 +1,13 @@
+package com.example.demo.hash;
+
+import java.util.List;
+import lombok.Value;
+
+/** A response's Merkle digest with its leaves, for finding which group of rows differs. */
+@Value
+public class IntegrityReport {
+    long rows;
+    int leafRows;
+    String root;
+    List<String> leaves;
+}
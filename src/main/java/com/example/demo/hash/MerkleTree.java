@@ -0,0 +1,72 @@
+package com.example.demo.hash;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * SHA-256 Merkle tree hash as defined in RFC 6962: leaves are hashed as {@code 0x00 || data},
+ * inner nodes as {@code 0x01 || left || right}, and a tree of {@code n} leaves splits after the
+ * largest power of two below {@code n}. Leaf hashes are computed wherever the data is, and added
+ * here in order.
+ */
+public final class MerkleTree {
+    private static final byte LEAF_PREFIX = 0;
+    private static final byte NODE_PREFIX = 1;
+
+    private final List<byte[]> leaves = new ArrayList<>();
+
+    public static byte[] leafHash(byte[] data) {
+        return leafHash(data, 0, data.length);
+    }
+
+    public static byte[] leafHash(byte[] data, int offset, int length) {
+        MessageDigest digest = sha256();
+        digest.update(LEAF_PREFIX);
+        digest.update(data, offset, length);
+        return digest.digest();
+    }
+
+    public synchronized void add(byte[] leafHash) {
+        leaves.add(leafHash);
+    }
+
+    public synchronized List<byte[]> leaves() {
+        return List.copyOf(leaves);
+    }
+
+    /** The tree hash; for no leaves, the hash of empty input. */
+    public synchronized byte[] root() {
+        if (leaves.isEmpty()) {
+            return sha256().digest();
+        }
+        return root(sha256(), 0, leaves.size());
+    }
+
+    private byte[] root(MessageDigest digest, int from, int to) {
+        if (to - from == 1) {
+            return leaves.get(from);
+        }
+        int split = Integer.highestOneBit(to - from - 1);
+        byte[] left = root(digest, from, from + split);
+        byte[] right = root(digest, from + split, to);
+        digest.update(NODE_PREFIX);
+        digest.update(left);
+        digest.update(right);
+        return digest.digest();
+    }
+
+    public static String hex(byte[] hash) {
+        return HexFormat.of().formatHex(hash);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
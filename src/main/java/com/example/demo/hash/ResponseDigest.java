@@ -0,0 +1,149 @@
+package com.example.demo.hash;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Integrity digest of one response body: a {@link MerkleTree} whose leaves are the encoded
+ * output of consecutive groups of {@link #LEAF_ROWS} rows, the header excluded. The pipeline
+ * hashes each group on the worker that encoded it; {@link #records} does the same for CSV that
+ * is already encoded. Sent as HTTP trailers, or in CSV as a manifest line after the last row.
+ * A client checks a body by hashing the same groups, and finds a bad group by comparing leaves.
+ */
+public final class ResponseDigest {
+    public static final int LEAF_ROWS = 4096;
+    public static final String ROOT_TRAILER = "X-Merkle-Root";
+    public static final String ROWS_TRAILER = "X-Row-Count";
+    /** Starts the manifest line; no row starts with it, since every row starts with its id. */
+    public static final String MANIFEST_PREFIX = "#integrity ";
+
+    private final boolean manifest;
+    private final MerkleTree tree = new MerkleTree();
+    private volatile long rows = -1;
+
+    /** @param manifest whether the body ends with a manifest line rather than relying on trailers */
+    public ResponseDigest(boolean manifest) {
+        this.manifest = manifest;
+    }
+
+    public boolean writesManifest() {
+        return manifest;
+    }
+
+    /** Adds the leaf hash of the next group of rows. */
+    public void add(byte[] leafHash) {
+        tree.add(leafHash);
+    }
+
+    /** Marks the body complete after {@code rows} rows. */
+    public void finish(long rows) {
+        this.rows = rows;
+    }
+
+    public byte[] manifestLine() {
+        return (MANIFEST_PREFIX + "merkle-sha256=" + MerkleTree.hex(tree.root()) + " rows=" + rows
+                + " leaf-rows=" + LEAF_ROWS + "\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /** The trailer fields; empty unless the body was completed, so a failed response carries no digest. */
+    public Map<String, String> trailers() {
+        Map<String, String> trailers = new LinkedHashMap<>();
+        if (rows >= 0) {
+            trailers.put(ROOT_TRAILER, MerkleTree.hex(tree.root()));
+            trailers.put(ROWS_TRAILER, Long.toString(rows));
+        }
+        return trailers;
+    }
+
+    public IntegrityReport report() {
+        return new IntegrityReport(rows, LEAF_ROWS, MerkleTree.hex(tree.root()),
+                tree.leaves().stream().map(MerkleTree::hex).toList());
+    }
+
+    /**
+     * Passes encoded CSV through to {@code out} and hashes its row groups on {@code executor},
+     * with at most {@code maxPending} groups waiting to be hashed.
+     */
+    public RecordStream records(OutputStream out, Executor executor, int maxPending) {
+        return new RecordStream(out, executor, maxPending);
+    }
+
+    /** Splits CSV output into records, quoted line feeds included, and groups them into leaves. */
+    public final class RecordStream extends FilterOutputStream {
+        private final Executor executor;
+        private final int maxPending;
+        private final Deque<CompletableFuture<byte[]>> pending = new ArrayDeque<>();
+        private final ByteArrayOutputStream group = new ByteArrayOutputStream();
+        private boolean inHeader = true;
+        private boolean inQuotes;
+        private int groupRows;
+        private long recordCount;
+
+        private RecordStream(OutputStream out, Executor executor, int maxPending) {
+            super(out);
+            this.executor = executor;
+            this.maxPending = maxPending;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            int start = off;
+            for (int i = off; i < off + len; i++) {
+                if (b[i] == '"') {
+                    inQuotes = !inQuotes;
+                } else if (b[i] == '\n' && !inQuotes) {
+                    if (inHeader) {
+                        inHeader = false;
+                    } else {
+                        recordCount++;
+                        if (++groupRows < LEAF_ROWS) {
+                            continue;
+                        }
+                        group.write(b, start, i + 1 - start);
+                        submit();
+                    }
+                    start = i + 1;
+                }
+            }
+            if (!inHeader) {
+                group.write(b, start, off + len - start);
+            }
+        }
+
+        /** Hashes the last group and completes the digest; the stream itself stays open. */
+        public void finish() {
+            if (group.size() > 0) {
+                submit();
+            }
+            while (!pending.isEmpty()) {
+                add(pending.poll().join());
+            }
+            ResponseDigest.this.finish(recordCount);
+        }
+
+        private void submit() {
+            byte[] data = group.toByteArray();
+            group.reset();
+            groupRows = 0;
+            pending.add(CompletableFuture.supplyAsync(() -> MerkleTree.leafHash(data), executor));
+            while (pending.size() > maxPending) {
+                add(pending.poll().join());
+            }
+        }
+    }
+}
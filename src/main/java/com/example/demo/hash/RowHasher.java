@@ -0,0 +1,241 @@
+package com.example.demo.hash;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+
+/**
+ * SHA-256 over comma-joined row fields without building the joined String.
+ * <p>
+ * Fields are UTF-8 encoded straight into the digest with a {@code ','} between them, so
+ * {@code begin().add(a).add(b).finishToString()} equals the SHA-256 hex of
+ * {@code String.join(",", a, b)}. One instance is kept per thread; an instance is not
+ * thread-safe and its returned buffers are only valid until the next call.
+ */
+public final class RowHasher {
+    public static final int HEX_LENGTH = 64;
+    private static final int DIGEST_LENGTH = 32;
+    private static final byte SEPARATOR = ',';
+    private static final byte[] HEX_PAIRS = new byte[512];
+    private static final ThreadLocal<RowHasher> CURRENT = ThreadLocal.withInitial(RowHasher::new);
+
+    static {
+        byte[] digits = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < 256; i++) {
+            HEX_PAIRS[i * 2] = digits[i >>> 4];
+            HEX_PAIRS[i * 2 + 1] = digits[i & 0x0f];
+        }
+    }
+
+    private final MessageDigest digest;
+    private final byte[] digestBytes = new byte[DIGEST_LENGTH];
+    private final byte[] hex = new byte[HEX_LENGTH];
+    private byte[] scratch = new byte[256];
+    private boolean firstField = true;
+
+    private RowHasher() {
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    public static RowHasher current() {
+        return CURRENT.get();
+    }
+
+    public RowHasher begin() {
+        digest.reset();
+        firstField = true;
+        return this;
+    }
+
+    public RowHasher add(String value) {
+        separator();
+        if (value != null) {
+            updateUtf8(value);
+        }
+        return this;
+    }
+
+    public RowHasher add(Long value) {
+        separator();
+        if (value != null) {
+            updateDecimal(value);
+        }
+        return this;
+    }
+
+    public RowHasher add(Integer value) {
+        separator();
+        if (value != null) {
+            updateDecimal(value);
+        }
+        return this;
+    }
+
+    public RowHasher add(BigDecimal value) {
+        // BigDecimal caches its string form, so this does not allocate on repeat calls.
+        return add(value == null ? null : value.toString());
+    }
+
+    public RowHasher add(LocalDate value) {
+        separator();
+        if (value == null) {
+            return this;
+        }
+        int year = value.getYear();
+        if (year < 0 || year > 9999) {
+            updateUtf8(value.toString());
+            return this;
+        }
+        byte[] buffer = scratch;
+        writeDigits(buffer, 0, year, 4);
+        buffer[4] = '-';
+        writeDigits(buffer, 5, value.getMonthValue(), 2);
+        buffer[7] = '-';
+        writeDigits(buffer, 8, value.getDayOfMonth(), 2);
+        digest.update(buffer, 0, 10);
+        return this;
+    }
+
+    /** Adds a field that is already UTF-8 encoded. */
+    public RowHasher add(byte[] utf8, int offset, int length) {
+        separator();
+        digest.update(utf8, offset, length);
+        return this;
+    }
+
+    /** Adds a field that is already UTF-8 encoded, without moving the buffer's position. */
+    public RowHasher add(ByteBuffer utf8, int offset, int length) {
+        separator();
+        if (utf8.hasArray()) {
+            digest.update(utf8.array(), utf8.arrayOffset() + offset, length);
+        } else {
+            digest.update(utf8.slice(offset, length));
+        }
+        return this;
+    }
+
+    /**
+     * Completes the hash and returns its lowercase hex form in a buffer owned by this hasher.
+     */
+    public byte[] finish() {
+        try {
+            digest.digest(digestBytes, 0, DIGEST_LENGTH);
+        } catch (DigestException e) {
+            throw new IllegalStateException("Error calculating SHA-256 hash", e);
+        }
+        for (int i = 0; i < DIGEST_LENGTH; i++) {
+            int pair = (digestBytes[i] & 0xff) * 2;
+            hex[i * 2] = HEX_PAIRS[pair];
+            hex[i * 2 + 1] = HEX_PAIRS[pair + 1];
+        }
+        return hex;
+    }
+
+    public void finish(byte[] target, int offset) {
+        System.arraycopy(finish(), 0, target, offset, HEX_LENGTH);
+    }
+
+    public String finishToString() {
+        return new String(finish(), 0, HEX_LENGTH, StandardCharsets.ISO_8859_1);
+    }
+
+    /** The first 64 bits of a hash from its hex form, as a compact key for comparing hashes. */
+    public static long prefix(byte[] hex, int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + 16; i++) {
+            value = (value << 4) | Character.digit(hex[i], 16);
+        }
+        return value;
+    }
+
+    public static long prefix(CharSequence hex) {
+        long value = 0;
+        for (int i = 0; i < 16; i++) {
+            value = (value << 4) | Character.digit(hex.charAt(i), 16);
+        }
+        return value;
+    }
+
+    private void separator() {
+        if (firstField) {
+            firstField = false;
+        } else {
+            digest.update(SEPARATOR);
+        }
+    }
+
+    private void updateDecimal(long value) {
+        byte[] buffer = scratch;
+        int position = buffer.length;
+        boolean negative = value < 0;
+        // Work on the negative range so Long.MIN_VALUE needs no special case.
+        long remaining = negative ? value : -value;
+        do {
+            buffer[--position] = (byte) ('0' - (remaining % 10));
+            remaining /= 10;
+        } while (remaining != 0);
+        if (negative) {
+            buffer[--position] = '-';
+        }
+        digest.update(buffer, position, buffer.length - position);
+    }
+
+    private void updateUtf8(String value) {
+        int length = value.length();
+        if (scratch.length < length * 3) {
+            scratch = new byte[Math.max(length * 3, scratch.length * 2)];
+        }
+        digest.update(scratch, 0, encodeUtf8(value, 0, length, scratch, 0));
+    }
+
+    /**
+     * Encodes {@code value[start, end)} like {@code String.getBytes(UTF_8)}, including '?' for
+     * unpaired surrogates. {@code target} needs room for three bytes per char.
+     *
+     * @return the number of bytes written
+     */
+    public static int encodeUtf8(String value, int start, int end, byte[] target, int offset) {
+        int position = offset;
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                target[position++] = (byte) c;
+            } else if (c < 0x800) {
+                target[position++] = (byte) (0xc0 | (c >> 6));
+                target[position++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                char low = i + 1 < end ? value.charAt(i + 1) : 0;
+                if (Character.isHighSurrogate(c) && Character.isLowSurrogate(low)) {
+                    int codePoint = Character.toCodePoint(c, low);
+                    target[position++] = (byte) (0xf0 | (codePoint >> 18));
+                    target[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                    target[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                    target[position++] = (byte) (0x80 | (codePoint & 0x3f));
+                    i++;
+                } else {
+                    target[position++] = '?';
+                }
+            } else {
+                target[position++] = (byte) (0xe0 | (c >> 12));
+                target[position++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                target[position++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        return position - offset;
+    }
+
+    private static void writeDigits(byte[] buffer, int offset, int value, int width) {
+        for (int i = offset + width - 1; i >= offset; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.demo.metrics;
+
+import com.example.demo.execution.ExecutionEngine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.stereotype.Component;
+
+/**
+ * Micrometer meters for the proxy, exported through Actuator at {@code /actuator/prometheus}.
+ * <ul>
+ *   <li>{@code proxy.stage}: time per batch in the {@code read}, {@code process} and
+ *       {@code write} stages of the pipeline, with a histogram</li>
+ *   <li>{@code proxy.rows}, {@code proxy.output.bytes}: rows and encoded bytes written, whose
+ *       rates are rows/s and bytes/s</li>
+ *   <li>{@code proxy.rows.fallback}: rows the DTO could not parse, hashed over their raw text</li>
+ *   <li>{@code proxy.upstream.response}: time until the upstream answered with headers</li>
+ *   <li>{@code proxy.upstream.resumes}: upstream bodies requested again from their last
+ *       complete row after the connection dropped</li>
+ *   <li>{@code proxy.admission.wait}: time a request waited for a processing slot</li>
+ *   <li>{@code proxy.coalescing}: requests that started a shared fetch, joined one, or fell
+ *       behind one and fetched on their own, by {@code outcome}</li>
+ *   <li>{@code proxy.executor.queue}, {@code proxy.executor.active},
+ *       {@code proxy.executor.caller.runs}, {@code proxy.batches.in.flight},
+ *       {@code proxy.requests.active}: load on the shared hashing pool</li>
+ * </ul>
+ * Request meters are tagged with the request's shape (reader, mode, format, compression and
+ * delta) rather than an id, so the number of series stays bounded. They are looked up once
+ * per request; per batch and per row only counters and timers are updated, which does not
+ * allocate.
+ */
+@Component
+public class ProxyMetrics {
+    private final MeterRegistry registry;
+    private final Map<Tags, RequestMeters> requestMeters = new ConcurrentHashMap<>();
+    private final Timer upstreamSuccess;
+    private final Timer upstreamFailure;
+    private final Timer admissionWait;
+    private final Counter upstreamResumes;
+    private final Counter coalescingLeader;
+    private final Counter coalescingJoined;
+    private final Counter coalescingFallback;
+    private final AtomicInteger batchesInFlight = new AtomicInteger();
+    private final AtomicInteger activeRequests = new AtomicInteger();
+
+    public ProxyMetrics(MeterRegistry registry, ExecutionEngine executionEngine) {
+        this.registry = registry;
+        this.upstreamSuccess = upstreamTimer("success");
+        this.upstreamFailure = upstreamTimer("failure");
+        this.admissionWait = Timer.builder("proxy.admission.wait")
+                .description("Time a request waited for a processing slot")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.upstreamResumes = Counter.builder("proxy.upstream.resumes")
+                .description("Upstream bodies requested again from their last complete row")
+                .register(registry);
+        this.coalescingLeader = coalescingCounter("leader");
+        this.coalescingJoined = coalescingCounter("joined");
+        this.coalescingFallback = coalescingCounter("fallback");
+        ThreadPoolExecutor cpu = executionEngine.cpuExecutor();
+        Gauge.builder("proxy.executor.queue", cpu, executor -> executor.getQueue().size())
+                .description("Batches waiting for a hashing thread")
+                .register(registry);
+        Gauge.builder("proxy.executor.active", cpu, ThreadPoolExecutor::getActiveCount)
+                .description("Hashing threads busy with a batch")
+                .register(registry);
+        FunctionCounter.builder("proxy.executor.caller.runs", executionEngine, ExecutionEngine::callerRunsCount)
+                .description("Batches hashed on the reading thread because the queue was full")
+                .register(registry);
+        Gauge.builder("proxy.batches.in.flight", batchesInFlight, AtomicInteger::get)
+                .description("Batches read but not yet written")
+                .register(registry);
+        Gauge.builder("proxy.requests.active", activeRequests, AtomicInteger::get)
+                .description("Requests being processed")
+                .register(registry);
+    }
+
+    /** Meters kept in memory only, for code that runs outside the application context. */
+    public static ProxyMetrics inMemory(ExecutionEngine executionEngine) {
+        return new ProxyMetrics(new SimpleMeterRegistry(), executionEngine);
+    }
+
+    public MeterRegistry registry() {
+        return registry;
+    }
+
+    /** Starts tracking one request; close the result when the request ends. */
+    public RequestMetrics begin(Tags tags) {
+        activeRequests.incrementAndGet();
+        return new RequestMetrics(this, requestMeters.computeIfAbsent(tags, this::newRequestMeters), tags);
+    }
+
+    public void recordUpstreamResponse(long nanos, boolean success) {
+        (success ? upstreamSuccess : upstreamFailure).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordUpstreamResume() {
+        upstreamResumes.increment();
+    }
+
+    public void recordAdmissionWait(long nanos) {
+        admissionWait.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** Counts a request by how it got its data: {@code leader}, {@code joined} or {@code fallback}. */
+    public void recordCoalescing(String outcome) {
+        switch (outcome) {
+            case "leader" -> coalescingLeader.increment();
+            case "joined" -> coalescingJoined.increment();
+            case "fallback" -> coalescingFallback.increment();
+            default -> throw new IllegalArgumentException("Unknown coalescing outcome: " + outcome);
+        }
+    }
+
+    void batchesInFlight(int delta) {
+        batchesInFlight.addAndGet(delta);
+    }
+
+    void requestEnded() {
+        activeRequests.decrementAndGet();
+    }
+
+    private Counter coalescingCounter(String outcome) {
+        return Counter.builder("proxy.coalescing")
+                .description("Requests by how they shared an upstream fetch")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    private Timer upstreamTimer(String outcome) {
+        return Timer.builder("proxy.upstream.response")
+                .description("Time until the upstream answered with headers")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private RequestMeters newRequestMeters(Tags tags) {
+        return new RequestMeters(
+                stageTimer("read", tags),
+                stageTimer("process", tags),
+                stageTimer("write", tags),
+                Counter.builder("proxy.rows").description("Rows written").tags(tags).register(registry),
+                Counter.builder("proxy.output.bytes").description("Encoded bytes written").baseUnit("bytes")
+                        .tags(tags).register(registry),
+                Counter.builder("proxy.rows.fallback").description("Rows hashed over their raw text")
+                        .tags(tags).register(registry));
+    }
+
+    private Timer stageTimer(String stage, Tags tags) {
+        return Timer.builder("proxy.stage")
+                .description("Time per batch in a pipeline stage")
+                .tags(tags)
+                .tag("stage", stage)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    /** The meters shared by all requests with the same tags. */
+    static final class RequestMeters {
+        final Timer read;
+        final Timer process;
+        final Timer write;
+        final Counter rows;
+        final Counter bytes;
+        final Counter fallbackRows;
+
+        RequestMeters(Timer read, Timer process, Timer write, Counter rows, Counter bytes, Counter fallbackRows) {
+            this.read = read;
+            this.process = process;
+            this.write = write;
+            this.rows = rows;
+            this.bytes = bytes;
+            this.fallbackRows = fallbackRows;
+        }
+    }
+}
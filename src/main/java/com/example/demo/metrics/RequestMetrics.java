@@ -0,0 +1,100 @@
+package com.example.demo.metrics;
+
+import com.example.demo.pipeline.BatchProcessor;
+import com.example.demo.pipeline.BatchSink;
+import com.example.demo.pipeline.BatchSource;
+import com.example.demo.pipeline.EncodedBatch;
+import io.micrometer.core.instrument.Tags;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Metrics of one request. Wraps the pipeline stages to time them per batch, and keeps totals
+ * that are logged as a one-line summary when the request ends.
+ */
+@Slf4j
+public final class RequestMetrics implements AutoCloseable {
+    private final ProxyMetrics owner;
+    private final ProxyMetrics.RequestMeters meters;
+    private final Tags tags;
+    private final long startNanos = System.nanoTime();
+    private final AtomicInteger batchesInFlight = new AtomicInteger();
+    private final LongAdder readNanos = new LongAdder();
+    private final LongAdder processNanos = new LongAdder();
+    private final LongAdder writeNanos = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder fallbackRows = new LongAdder();
+
+    RequestMetrics(ProxyMetrics owner, ProxyMetrics.RequestMeters meters, Tags tags) {
+        this.owner = owner;
+        this.meters = meters;
+        this.tags = tags;
+    }
+
+    public <T> BatchSource<T> source(BatchSource<T> source) {
+        return () -> {
+            long start = System.nanoTime();
+            T batch = source.nextBatch();
+            long nanos = System.nanoTime() - start;
+            readNanos.add(nanos);
+            if (batch != null) {
+                meters.read.record(nanos, TimeUnit.NANOSECONDS);
+                batchesInFlight.incrementAndGet();
+                owner.batchesInFlight(1);
+            }
+            return batch;
+        };
+    }
+
+    public <T> BatchProcessor<T> processor(BatchProcessor<T> processor) {
+        return (sequence, batch) -> {
+            long start = System.nanoTime();
+            EncodedBatch encoded = processor.process(sequence, batch);
+            long nanos = System.nanoTime() - start;
+            meters.process.record(nanos, TimeUnit.NANOSECONDS);
+            processNanos.add(nanos);
+            return encoded;
+        };
+    }
+
+    public BatchSink sink(BatchSink sink) {
+        return batch -> {
+            long start = System.nanoTime();
+            long written = sink.write(batch);
+            long nanos = System.nanoTime() - start;
+            meters.write.record(nanos, TimeUnit.NANOSECONDS);
+            writeNanos.add(nanos);
+            long length = batch.getCompressed() != null ? batch.getCompressed().getLength() : batch.getData().length;
+            meters.rows.increment(written);
+            meters.bytes.increment(length);
+            rows.add(written);
+            bytes.add(length);
+            batchesInFlight.decrementAndGet();
+            owner.batchesInFlight(-1);
+            return written;
+        };
+    }
+
+    /** Counts a row that went through the raw-text fallback hash. */
+    public void fallbackRow() {
+        meters.fallbackRows.increment();
+        fallbackRows.increment();
+    }
+
+    /** Releases the batches a failed pipeline never wrote, and logs the request's totals. */
+    @Override
+    public void close() {
+        owner.batchesInFlight(-batchesInFlight.getAndSet(0));
+        owner.requestEnded();
+        log.info("Processed {} rows, {} bytes in {} ms ({} fallback rows; read {} ms, process {} ms, write {} ms) {}",
+                rows.sum(), bytes.sum(), millis(System.nanoTime() - startNanos), fallbackRows.sum(),
+                millis(readNanos.sum()), millis(processNanos.sum()), millis(writeNanos.sum()), tags);
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+}
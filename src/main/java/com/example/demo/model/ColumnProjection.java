@@ -0,0 +1,57 @@
+package com.example.demo.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The upstream columns a client asked for with {@code fields=}. Selected columns are written in
+ * upstream order and the hash is always appended; the hash still covers every column, so it
+ * stays comparable with unprojected output.
+ */
+public final class ColumnProjection {
+    private final boolean[] included = new boolean[TransactionColumns.COUNT];
+
+    private ColumnProjection() {
+    }
+
+    /**
+     * @param fields comma-separated column names as in the upstream header; {@code hash} is accepted
+     *               and always included
+     * @throws IllegalArgumentException for an unknown column or an empty list
+     */
+    public static ColumnProjection parse(String fields) {
+        ColumnProjection projection = new ColumnProjection();
+        boolean any = false;
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty() || name.equals("hash")) {
+                continue;
+            }
+            int column = TransactionColumns.indexOf(name);
+            if (column < 0) {
+                throw new IllegalArgumentException("Unknown field: " + name);
+            }
+            projection.included[column] = true;
+            any = true;
+        }
+        if (!any) {
+            throw new IllegalArgumentException("fields must name at least one column");
+        }
+        return projection;
+    }
+
+    public boolean includes(int column) {
+        return included[column];
+    }
+
+    /** Picks the selected columns out of a full row; columns missing from a short row are empty. */
+    public String[] select(String[] row) {
+        List<String> selected = new ArrayList<>();
+        for (int column = 0; column < TransactionColumns.COUNT; column++) {
+            if (included[column]) {
+                selected.add(column < row.length ? row[column] : "");
+            }
+        }
+        return selected.toArray(new String[0]);
+    }
+}
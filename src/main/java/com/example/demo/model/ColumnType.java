@@ -0,0 +1,12 @@
+package com.example.demo.model;
+
+/**
+ * How a {@link TransactionDto} column is parsed, and so how it is printed in hashes and CSV.
+ */
+public enum ColumnType {
+    STRING,
+    LONG,
+    INTEGER,
+    DECIMAL,
+    DATE
+}
@@ -0,0 +1,453 @@
+package com.example.demo.model;
+
+import com.example.demo.hash.RowHasher;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A transaction row with primitive fields instead of {@link TransactionDto}'s boxed ones:
+ * dates as epoch days, {@code id} and {@code amount_cop} as longs, {@code amount} as an
+ * unscaled long with its scale, and the integer codes as ints. Nulls are kept in a bitmap by
+ * column index, and the repetitive text columns go through the request's {@link StringInterner}.
+ * <p>
+ * Values are parsed only when their exact printed form can be rebuilt, so {@link #write}
+ * produces the same hash and line as {@code generateHash()} and {@code toCsv()}. A row that
+ * needs {@code BigDecimal} or {@code LocalDate} semantics is rejected and left to the DTO.
+ * A record is reused from row to row by one thread at a time.
+ */
+public final class CompactTransaction {
+    private static final int COLUMNS = TransactionColumns.COUNT;
+    private static final byte QUOTE = '"';
+    /** Digits of the largest unscaled amount that surely fits a long. */
+    private static final int MAX_DECIMAL_DIGITS = 18;
+    private static final boolean[] INTERNED = new boolean[COLUMNS];
+
+    static {
+        for (int column : new int[]{
+                TransactionColumns.DOC_VOB, TransactionColumns.DOC_VOB_NAME, TransactionColumns.CURRENCY,
+                TransactionColumns.PAYER_EDRPOU, TransactionColumns.PAYER_NAME, TransactionColumns.PAYER_ACCOUNT,
+                TransactionColumns.PAYER_MFO, TransactionColumns.PAYER_BANK, TransactionColumns.PAYER_EDRPOU_FACT,
+                TransactionColumns.PAYER_NAME_FACT, TransactionColumns.RECIPT_EDRPOU, TransactionColumns.RECIPT_NAME,
+                TransactionColumns.RECIPT_ACCOUNT, TransactionColumns.RECIPT_MFO, TransactionColumns.RECIPT_BANK,
+                TransactionColumns.RECIPT_EDRPOU_FACT, TransactionColumns.RECIPT_NAME_FACT,
+                TransactionColumns.PAYMENT_TYPE, TransactionColumns.SOURCE_NAME, TransactionColumns.KPK,
+                TransactionColumns.BUDGET_CODE}) {
+            INTERNED[column] = true;
+        }
+    }
+
+    private final StringInterner interner;
+    private final String[] text = new String[COLUMNS];
+    private long nulls;
+    private long id;
+    private int docDate;
+    private int docVDate;
+    private int transDate;
+    private long amountUnscaled;
+    private int amountScale;
+    private long amountCop;
+    private int regionId;
+    private int sourceId;
+    private int kekv;
+    private long hashPrefix;
+
+    private long number;
+    private int scale;
+    private byte[] field = new byte[256];
+    private byte[] line = new byte[4096];
+    private int lineLength;
+
+    public CompactTransaction(StringInterner interner) {
+        this.interner = interner;
+    }
+
+    /**
+     * Parses the upstream columns, trimmed like {@link TransactionDto}.
+     *
+     * @return {@code false} if the row needs the DTO path; the record is then undefined
+     */
+    public boolean parse(String[] columns) {
+        if (columns.length < COLUMNS) {
+            return false;
+        }
+        nulls = 0;
+        for (int column = 0; column < COLUMNS; column++) {
+            String value = columns[column];
+            int start = 0;
+            int end = value == null ? 0 : value.length();
+            while (start < end && value.charAt(start) <= ' ') {
+                start++;
+            }
+            while (end > start && value.charAt(end - 1) <= ' ') {
+                end--;
+            }
+            text[column] = null;
+            if (start == end) {
+                nulls |= 1L << column;
+            } else if (!parseColumn(column, value, start, end)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isNull(int column) {
+        return (nulls & (1L << column)) != 0;
+    }
+
+    public long id() {
+        return id;
+    }
+
+    /** Days since 1970-01-01. */
+    public int docDate() {
+        return docDate;
+    }
+
+    public int docVDate() {
+        return docVDate;
+    }
+
+    public int transDate() {
+        return transDate;
+    }
+
+    public long amountUnscaled() {
+        return amountUnscaled;
+    }
+
+    public int amountScale() {
+        return amountScale;
+    }
+
+    public long amountCop() {
+        return amountCop;
+    }
+
+    public int regionId() {
+        return regionId;
+    }
+
+    public int sourceId() {
+        return sourceId;
+    }
+
+    public int kekv() {
+        return kekv;
+    }
+
+    /** A {@link ColumnType#STRING} column, or {@code null}. */
+    public String text(int column) {
+        return text[column];
+    }
+
+    /** The first 64 bits of the hash of the last written row. */
+    public long hashPrefix() {
+        return hashPrefix;
+    }
+
+    /** Hashes the row and writes it like {@code toCsv()}, followed by a line feed. */
+    public void write(OutputStream out) throws IOException {
+        write(out, null);
+    }
+
+    /**
+     * Hashes the whole row but writes only the projected columns and the hash, like
+     * {@link TransactionDto#toCsv(ColumnProjection)}; all columns when {@code projection} is null.
+     */
+    public void write(OutputStream out, ColumnProjection projection) throws IOException {
+        RowHasher hasher = RowHasher.current().begin();
+        lineLength = 0;
+        for (int column = 0; column < COLUMNS; column++) {
+            int length = isNull(column) ? 0 : render(column);
+            hasher.add(field, 0, length);
+            if (projection == null || projection.includes(column)) {
+                appendQuoted(length);
+                line[lineLength++] = ',';
+            }
+        }
+        byte[] hash = hasher.finish();
+        hashPrefix = RowHasher.prefix(hash, 0);
+        ensureLine(RowHasher.HEX_LENGTH + 3);
+        line[lineLength++] = QUOTE;
+        System.arraycopy(hash, 0, line, lineLength, RowHasher.HEX_LENGTH);
+        lineLength += RowHasher.HEX_LENGTH;
+        line[lineLength++] = QUOTE;
+        line[lineLength++] = '\n';
+        out.write(line, 0, lineLength);
+    }
+
+    private boolean parseColumn(int column, String value, int start, int end) {
+        switch (column) {
+            case TransactionColumns.ID:
+                if (!parseInteger(value, start, end, Long.MIN_VALUE, Long.MAX_VALUE)) {
+                    return false;
+                }
+                id = number;
+                return true;
+            case TransactionColumns.DOC_DATE:
+                docDate = parseDate(value, start, end);
+                return docDate != Integer.MIN_VALUE;
+            case TransactionColumns.DOC_V_DATE:
+                docVDate = parseDate(value, start, end);
+                return docVDate != Integer.MIN_VALUE;
+            case TransactionColumns.TRANS_DATE:
+                transDate = parseDate(value, start, end);
+                return transDate != Integer.MIN_VALUE;
+            case TransactionColumns.AMOUNT:
+                if (!parseDecimal(value, start, end)) {
+                    return false;
+                }
+                amountUnscaled = number;
+                amountScale = scale;
+                return true;
+            case TransactionColumns.AMOUNT_COP:
+                if (!parseDecimal(value, start, end) || scale != 0) {
+                    return false;
+                }
+                amountCop = number;
+                return true;
+            case TransactionColumns.REGION_ID:
+                if (!parseInteger(value, start, end, Integer.MIN_VALUE, Integer.MAX_VALUE)) {
+                    return false;
+                }
+                regionId = (int) number;
+                return true;
+            case TransactionColumns.SOURCE_ID:
+                if (!parseInteger(value, start, end, Integer.MIN_VALUE, Integer.MAX_VALUE)) {
+                    return false;
+                }
+                sourceId = (int) number;
+                return true;
+            case TransactionColumns.KEKV:
+                if (!parseInteger(value, start, end, Integer.MIN_VALUE, Integer.MAX_VALUE)) {
+                    return false;
+                }
+                kekv = (int) number;
+                return true;
+            default:
+                if (INTERNED[column]) {
+                    text[column] = interner.intern(value, start, end);
+                } else {
+                    text[column] = start == 0 && end == value.length() ? value : value.substring(start, end);
+                }
+                return true;
+        }
+    }
+
+    /** Accepts what {@code Long.parseLong} accepts in ASCII digits, into {@link #number}. */
+    private boolean parseInteger(String value, int start, int end, long min, long max) {
+        char first = value.charAt(start);
+        boolean negative = first == '-';
+        int i = negative || first == '+' ? start + 1 : start;
+        if (i == end) {
+            return false;
+        }
+        // Accumulate negatively like Long.parseLong, so the minimum value fits.
+        long limit = negative ? min : -max;
+        long multiplyMin = limit / 10;
+        long result = 0;
+        for (; i < end; i++) {
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || result < multiplyMin) {
+                return false;
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                return false;
+            }
+            result -= digit;
+        }
+        number = negative ? result : -result;
+        return true;
+    }
+
+    /**
+     * Accepts plain decimals whose {@code BigDecimal} form prints without an exponent, into
+     * {@link #number} and {@link #scale}.
+     */
+    private boolean parseDecimal(String value, int start, int end) {
+        char first = value.charAt(start);
+        boolean negative = first == '-';
+        int i = negative || first == '+' ? start + 1 : start;
+        long unscaled = 0;
+        int precision = 0;
+        int digitsStart = i;
+        int point = -1;
+        for (; i < end; i++) {
+            char c = value.charAt(i);
+            if (c == '.' && point < 0) {
+                point = i;
+                continue;
+            }
+            if (c < '0' || c > '9') {
+                return false;
+            }
+            if (unscaled != 0 || c != '0') {
+                if (++precision > MAX_DECIMAL_DIGITS) {
+                    return false;
+                }
+            }
+            unscaled = unscaled * 10 + (c - '0');
+        }
+        if (digitsStart == end || point == digitsStart || point == end - 1) {
+            return false;
+        }
+        int digitsAfterPoint = point < 0 ? 0 : end - point - 1;
+        // BigDecimal.toString switches to exponent notation when the adjusted exponent is below -6.
+        if (digitsAfterPoint > 0 && Math.max(precision, 1) - 1 - digitsAfterPoint < -6) {
+            return false;
+        }
+        number = negative ? -unscaled : unscaled;
+        scale = digitsAfterPoint;
+        return true;
+    }
+
+    /**
+     * Parses the {@code yyyy-MM-dd} form {@code LocalDate.parse} accepts for four-digit years.
+     *
+     * @return days since 1970-01-01, or {@link Integer#MIN_VALUE} if it is not a valid date
+     */
+    private static int parseDate(String value, int start, int end) {
+        if (end - start != 10 || value.charAt(start + 4) != '-' || value.charAt(start + 7) != '-') {
+            return Integer.MIN_VALUE;
+        }
+        int year = digits(value, start, 4);
+        int month = digits(value, start + 5, 2);
+        int day = digits(value, start + 8, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > monthLength(year, month)) {
+            return Integer.MIN_VALUE;
+        }
+        return epochDay(year, month, day);
+    }
+
+    private static int digits(String value, int offset, int count) {
+        int result = 0;
+        for (int i = offset; i < offset + count; i++) {
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            result = result * 10 + digit;
+        }
+        return result;
+    }
+
+    private static int monthLength(int year, int month) {
+        if (month == 2) {
+            return year % 4 == 0 && (year % 100 != 0 || year % 400 == 0) ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    /** Days since 1970-01-01 of a proleptic Gregorian date with a non-negative year. */
+    static int epochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /** Renders a non-null column into {@link #field} as the DTO prints it. */
+    private int render(int column) {
+        switch (column) {
+            case TransactionColumns.ID:
+                return writeDecimal(id, 0);
+            case TransactionColumns.DOC_DATE:
+                return writeDate(docDate);
+            case TransactionColumns.DOC_V_DATE:
+                return writeDate(docVDate);
+            case TransactionColumns.TRANS_DATE:
+                return writeDate(transDate);
+            case TransactionColumns.AMOUNT:
+                return writeDecimal(amountUnscaled, amountScale);
+            case TransactionColumns.AMOUNT_COP:
+                return writeDecimal(amountCop, 0);
+            case TransactionColumns.REGION_ID:
+                return writeDecimal(regionId, 0);
+            case TransactionColumns.SOURCE_ID:
+                return writeDecimal(sourceId, 0);
+            case TransactionColumns.KEKV:
+                return writeDecimal(kekv, 0);
+            default:
+                String value = text[column];
+                if (field.length < value.length() * 3) {
+                    field = new byte[Math.max(value.length() * 3, field.length * 2)];
+                }
+                return RowHasher.encodeUtf8(value, 0, value.length(), field, 0);
+        }
+    }
+
+    /** Writes {@code unscaled * 10^-scale} in plain notation, like {@code BigDecimal.toString}. */
+    private int writeDecimal(long unscaled, int scale) {
+        boolean negative = unscaled < 0;
+        // Work on the negative range so Long.MIN_VALUE needs no special case.
+        long remaining = negative ? unscaled : -unscaled;
+        int digits = 1;
+        for (long rest = remaining / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        int width = Math.max(digits, scale + 1);
+        int length = (negative ? 1 : 0) + width + (scale > 0 ? 1 : 0);
+        int position = length;
+        for (int written = 0; written < width; written++) {
+            if (written == scale && scale > 0) {
+                field[--position] = '.';
+            }
+            field[--position] = (byte) ('0' - (remaining % 10));
+            remaining /= 10;
+        }
+        if (negative) {
+            field[0] = '-';
+        }
+        return length;
+    }
+
+    private int writeDate(int epochDay) {
+        // Inverse of epochDay(), from Howard Hinnant's civil_from_days.
+        int z = epochDay + 719468;
+        int era = (z >= 0 ? z : z - 146096) / 146097;
+        int dayOfEra = z - era * 146097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int monthIndex = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * monthIndex + 2) / 5 + 1;
+        int month = monthIndex < 10 ? monthIndex + 3 : monthIndex - 9;
+        int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        writeDigits(0, year, 4);
+        field[4] = '-';
+        writeDigits(5, month, 2);
+        field[7] = '-';
+        writeDigits(8, day, 2);
+        return 10;
+    }
+
+    private void writeDigits(int offset, int value, int width) {
+        for (int i = offset + width - 1; i >= offset; i--) {
+            field[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private void appendQuoted(int length) {
+        ensureLine(length * 2 + 3);
+        line[lineLength++] = QUOTE;
+        for (int i = 0; i < length; i++) {
+            byte b = field[i];
+            if (b == QUOTE) {
+                line[lineLength++] = QUOTE;
+            }
+            line[lineLength++] = b;
+        }
+        line[lineLength++] = QUOTE;
+    }
+
+    private void ensureLine(int extra) {
+        if (lineLength + extra > line.length) {
+            line = Arrays.copyOf(line, Math.max(lineLength + extra, line.length * 2));
+        }
+    }
+}
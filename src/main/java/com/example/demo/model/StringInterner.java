@@ -0,0 +1,43 @@
+package com.example.demo.model;
+
+/**
+ * A bounded, lossy intern table for the repetitive text columns of one request, such as bank
+ * names, account numbers and budget codes. It is direct-mapped: a value that hashes to a taken
+ * slot replaces the old one, so the table never grows past its capacity.
+ * <p>
+ * Safe to share between the workers of a request without locking. Strings are immutable and
+ * safely published through their final fields, so a racing reader at worst misses and
+ * stores its own copy.
+ */
+public final class StringInterner {
+    private final String[] table;
+    private final int mask;
+
+    /**
+     * @param capacity number of slots, rounded up to a power of two
+     */
+    public StringInterner(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.table = new String[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * @return {@code value.substring(start, end)}, or an equal string this table returned before
+     */
+    public String intern(String value, int start, int end) {
+        int length = end - start;
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + value.charAt(i);
+        }
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        String cached = table[slot];
+        if (cached != null && cached.length() == length && value.regionMatches(start, cached, 0, length)) {
+            return cached;
+        }
+        String interned = length == value.length() ? value : value.substring(start, end);
+        table[slot] = interned;
+        return interned;
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.demo.model;
+
+import java.util.Arrays;
+
+/**
+ * Column layout of the spending.gov.ua transaction export, in the order
+ * {@link TransactionDto} reads and writes it.
+ */
+public final class TransactionColumns {
+    public static final int ID = 0;
+    public static final int DOC_VOB = 1;
+    public static final int DOC_VOB_NAME = 2;
+    public static final int DOC_NUMBER = 3;
+    public static final int DOC_DATE = 4;
+    public static final int DOC_V_DATE = 5;
+    public static final int TRANS_DATE = 6;
+    public static final int AMOUNT = 7;
+    public static final int AMOUNT_COP = 8;
+    public static final int CURRENCY = 9;
+    public static final int PAYER_EDRPOU = 10;
+    public static final int PAYER_NAME = 11;
+    public static final int PAYER_ACCOUNT = 12;
+    public static final int PAYER_MFO = 13;
+    public static final int PAYER_BANK = 14;
+    public static final int PAYER_EDRPOU_FACT = 15;
+    public static final int PAYER_NAME_FACT = 16;
+    public static final int RECIPT_EDRPOU = 17;
+    public static final int RECIPT_NAME = 18;
+    public static final int RECIPT_ACCOUNT = 19;
+    public static final int RECIPT_MFO = 20;
+    public static final int RECIPT_BANK = 21;
+    public static final int RECIPT_EDRPOU_FACT = 22;
+    public static final int RECIPT_NAME_FACT = 23;
+    public static final int PAYMENT_DETAILS = 24;
+    public static final int DOC_ADD_ATTR = 25;
+    public static final int REGION_ID = 26;
+    public static final int PAYMENT_TYPE = 27;
+    public static final int PAYMENT_DATA = 28;
+    public static final int SOURCE_ID = 29;
+    public static final int SOURCE_NAME = 30;
+    public static final int KEKV = 31;
+    public static final int KPK = 32;
+    public static final int CONTRACT_ID = 33;
+    public static final int CONTRACT_NUMBER = 34;
+    public static final int BUDGET_CODE = 35;
+    public static final int SYSTEM_KEY = 36;
+    public static final int SYSTEM_KEY_FF = 37;
+
+    /** Number of upstream columns; the output adds {@code hash} after them. */
+    public static final int COUNT = 38;
+
+    private static final String[] NAMES = {
+            "id", "doc_vob", "doc_vob_name", "doc_number",
+            "doc_date", "doc_v_date", "trans_date", "amount",
+            "amount_cop", "currency", "payer_edrpou", "payer_name",
+            "payer_account", "payer_mfo", "payer_bank", "payer_edrpou_fact",
+            "payer_name_fact", "recipt_edrpou", "recipt_name", "recipt_account",
+            "recipt_mfo", "recipt_bank", "recipt_edrpou_fact", "recipt_name_fact",
+            "payment_details", "doc_add_attr", "region_id", "payment_type",
+            "payment_data", "source_id", "source_name", "kekv",
+            "kpk", "contractId", "contractNumber", "budgetCode",
+            "system_key", "system_key_ff"
+    };
+
+    private static final ColumnType[] TYPES = new ColumnType[COUNT];
+
+    static {
+        Arrays.fill(TYPES, ColumnType.STRING);
+        TYPES[ID] = ColumnType.LONG;
+        TYPES[DOC_DATE] = ColumnType.DATE;
+        TYPES[DOC_V_DATE] = ColumnType.DATE;
+        TYPES[TRANS_DATE] = ColumnType.DATE;
+        TYPES[AMOUNT] = ColumnType.DECIMAL;
+        TYPES[AMOUNT_COP] = ColumnType.DECIMAL;
+        TYPES[REGION_ID] = ColumnType.INTEGER;
+        TYPES[SOURCE_ID] = ColumnType.INTEGER;
+        TYPES[KEKV] = ColumnType.INTEGER;
+    }
+
+    private TransactionColumns() {
+    }
+
+    public static String name(int column) {
+        return NAMES[column];
+    }
+
+    public static ColumnType type(int column) {
+        return TYPES[column];
+    }
+
+    /**
+     * @return the column index for an upstream header name, or {@code -1}
+     */
+    public static int indexOf(String name) {
+        for (int i = 0; i < COUNT; i++) {
+            if (NAMES[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -1,16 +1,15 @@
 package com.example.demo.model;
 
+import com.example.demo.hash.RowHasher;
 import com.opencsv.CSVWriter;
 import lombok.Data;
 import java.io.IOException;
 import java.io.Serializable;
 import java.io.StringWriter;
 import java.math.BigDecimal;
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.time.LocalDate;
 import java.time.format.DateTimeParseException;
+import java.util.Arrays;
 import java.util.Objects;
 
 @Data
@@ -128,7 +127,51 @@ public class TransactionDto implements Serializable {
     private String hash;
 
     public void generateHash() {
-        String data = String.join(",",
+        this.hash = RowHasher.current().begin()
+                .add(id)
+                .add(docVob)
+                .add(docVobName)
+                .add(docNumber)
+                .add(docDate)
+                .add(docVDate)
+                .add(transDate)
+                .add(amount)
+                .add(amountCop)
+                .add(currency)
+                .add(payerEdrpou)
+                .add(payerName)
+                .add(payerAccount)
+                .add(payerMfo)
+                .add(payerBank)
+                .add(payerEdrpouFact)
+                .add(payerNameFact)
+                .add(reciptEdrpou)
+                .add(reciptName)
+                .add(reciptAccount)
+                .add(reciptMfo)
+                .add(reciptBank)
+                .add(reciptEdrpouFact)
+                .add(reciptNameFact)
+                .add(paymentDetails)
+                .add(docAddAttr)
+                .add(regionId)
+                .add(paymentType)
+                .add(paymentData)
+                .add(sourceId)
+                .add(sourceName)
+                .add(kekv)
+                .add(kpk)
+                .add(contractId)
+                .add(contractNumber)
+                .add(budgetCode)
+                .add(systemKey)
+                .add(systemKeyFf)
+                .finishToString();
+    }
+
+    /** The fields as {@link #toCsv()} prints them, hash last, with empty strings for nulls. */
+    public String[] toRow() {
+        return new String[]{
                 Objects.toString(id, ""),
                 Objects.toString(docVob, ""),
                 Objects.toString(docVobName, ""),
@@ -166,71 +209,31 @@ public class TransactionDto implements Serializable {
                 Objects.toString(contractNumber, ""),
                 Objects.toString(budgetCode, ""),
                 Objects.toString(systemKey, ""),
-                Objects.toString(systemKeyFf, "")
-        );
-        this.hash = calculateSHA256(data);
+                Objects.toString(systemKeyFf, ""),
+                Objects.toString(hash, "")
+        };
     }
 
-    private String calculateSHA256(String data) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hashBytes = digest.digest(data.getBytes(StandardCharsets.UTF_8));
-            StringBuilder sb = new StringBuilder();
-            for (byte b : hashBytes) {
-                sb.append(String.format("%02x", b));
-            }
-            return sb.toString();
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("Error calculating SHA-256 hash", e);
+    public String toCsv() {
+        return toCsv(toRow());
+    }
+
+    /** The projected fields and the hash; all fields when {@code projection} is null. */
+    public String toCsv(ColumnProjection projection) {
+        if (projection == null) {
+            return toCsv();
         }
+        String[] selected = projection.select(toRow());
+        String[] row = Arrays.copyOf(selected, selected.length + 1);
+        row[selected.length] = Objects.toString(hash, "");
+        return toCsv(row);
     }
 
-    public String toCsv() {
+    private static String toCsv(String[] row) {
         try (StringWriter stringWriter = new StringWriter();
              CSVWriter csvWriter = new CSVWriter(stringWriter, ',',
                      CSVWriter.DEFAULT_QUOTE_CHARACTER,
                      CSVWriter.DEFAULT_ESCAPE_CHARACTER, "")) {
-            String[] row = new String[]{
-                    Objects.toString(id, ""),
-                    Objects.toString(docVob, ""),
-                    Objects.toString(docVobName, ""),
-                    Objects.toString(docNumber, ""),
-                    Objects.toString(docDate, ""),
-                    Objects.toString(docVDate, ""),
-                    Objects.toString(transDate, ""),
-                    Objects.toString(amount, ""),
-                    Objects.toString(amountCop, ""),
-                    Objects.toString(currency, ""),
-                    Objects.toString(payerEdrpou, ""),
-                    Objects.toString(payerName, ""),
-                    Objects.toString(payerAccount, ""),
-                    Objects.toString(payerMfo, ""),
-                    Objects.toString(payerBank, ""),
-                    Objects.toString(payerEdrpouFact, ""),
-                    Objects.toString(payerNameFact, ""),
-                    Objects.toString(reciptEdrpou, ""),
-                    Objects.toString(reciptName, ""),
-                    Objects.toString(reciptAccount, ""),
-                    Objects.toString(reciptMfo, ""),
-                    Objects.toString(reciptBank, ""),
-                    Objects.toString(reciptEdrpouFact, ""),
-                    Objects.toString(reciptNameFact, ""),
-                    Objects.toString(paymentDetails, ""),
-                    Objects.toString(docAddAttr, ""),
-                    Objects.toString(regionId, ""),
-                    Objects.toString(paymentType, ""),
-                    Objects.toString(paymentData, ""),
-                    Objects.toString(sourceId, ""),
-                    Objects.toString(sourceName, ""),
-                    Objects.toString(kekv, ""),
-                    Objects.toString(kpk, ""),
-                    Objects.toString(contractId, ""),
-                    Objects.toString(contractNumber, ""),
-                    Objects.toString(budgetCode, ""),
-                    Objects.toString(systemKey, ""),
-                    Objects.toString(systemKeyFf, ""),
-                    Objects.toString(hash, "")
-            };
             csvWriter.writeNext(row);
             return stringWriter.toString().trim();
         } catch (IOException e) {
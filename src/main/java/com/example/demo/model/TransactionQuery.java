@@ -0,0 +1,24 @@
+package com.example.demo.model;
+
+import java.time.LocalDate;
+import java.util.List;
+import lombok.Value;
+
+/**
+ * One upstream request: an inclusive date range and an optional recipient filter.
+ */
+@Value
+public class TransactionQuery {
+    LocalDate startDate;
+    LocalDate endDate;
+    List<String> reciptEdrpous;
+
+    public TransactionQuery(LocalDate startDate, LocalDate endDate, List<String> reciptEdrpous) {
+        if (endDate.isBefore(startDate)) {
+            throw new IllegalArgumentException("End date " + endDate + " is before start date " + startDate);
+        }
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.reciptEdrpous = reciptEdrpous == null ? List.of() : List.copyOf(reciptEdrpous);
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.demo.pipeline;
+
+import java.io.IOException;
+
+@FunctionalInterface
+public interface BatchProcessor<T> {
+    /**
+     * Encodes one batch. Called concurrently from worker threads, so implementations
+     * must not share mutable state between batches.
+     */
+    EncodedBatch process(long sequence, T batch) throws IOException;
+}
@@ -0,0 +1,13 @@
+package com.example.demo.pipeline;
+
+import java.io.IOException;
+
+@FunctionalInterface
+public interface BatchSink {
+    /**
+     * Writes one batch. Called from the single writer stage, in input order.
+     *
+     * @return the number of rows written
+     */
+    long write(EncodedBatch batch) throws IOException;
+}
@@ -0,0 +1,13 @@
+package com.example.demo.pipeline;
+
+import java.io.IOException;
+
+@FunctionalInterface
+public interface BatchSource<T> {
+    /**
+     * Reads the next batch of input.
+     *
+     * @return the next batch, or {@code null} once the input is exhausted
+     */
+    T nextBatch() throws IOException;
+}
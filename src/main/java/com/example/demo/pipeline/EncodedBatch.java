@@ -0,0 +1,30 @@
+package com.example.demo.pipeline;
+
+import com.example.demo.compression.CompressedBlock;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+import lombok.With;
+
+@Value
+@AllArgsConstructor
+public class EncodedBatch {
+    long sequence;
+    /** The encoded rows, or {@code null} once the batch was compressed. */
+    byte[] data;
+    int rowCount;
+    /** Per-row identity, or {@code null} when the processor was not asked to collect it. */
+    RowKeys keys;
+    /** The compressed rows, when the processor compressed the batch. */
+    CompressedBlock compressed;
+    /** Merkle leaf hash of the encoded rows, when the response carries an integrity digest. */
+    @With
+    byte[] digest;
+
+    public EncodedBatch(long sequence, byte[] data, int rowCount) {
+        this(sequence, data, rowCount, null, null, null);
+    }
+
+    public EncodedBatch(long sequence, byte[] data, int rowCount, RowKeys keys) {
+        this(sequence, data, rowCount, keys, null, null);
+    }
+}
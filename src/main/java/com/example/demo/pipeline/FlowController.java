@@ -0,0 +1,116 @@
+package com.example.demo.pipeline;
+
+import java.util.function.ToIntFunction;
+
+/**
+ * Flow control for one request's pipeline. Batches start small so the first rows go out fast,
+ * then follow the measured cost per input row towards a target batch time: the cost of hashing
+ * a row or of writing it, whichever is higher, since a batch the writer cannot keep up with only
+ * waits in memory. The reader cuts a partial batch once it has waited {@link #lingerNanos()}
+ * for more input, and {@link OrderedBatchPipeline} fails the request at its deadline.
+ */
+public final class FlowController {
+    static final int MIN_BATCH_ROWS = 64;
+    static final int MAX_BATCH_ROWS = 20_000;
+    private static final int INITIAL_BATCH_ROWS = 256;
+    /** Weight of the newest batch in the moving averages. */
+    private static final double SMOOTHING = 0.3;
+
+    private final long targetNanos;
+    private final long lingerNanos;
+    private final long deadlineNanos;
+    private final boolean adaptive;
+    private double processNanosPerRow;
+    private double writeNanosPerRow;
+    private double outputPerInputRow = 1;
+    private int batchRows;
+
+    /**
+     * @param targetNanos  worker time a batch should take
+     * @param lingerNanos  how long a partial batch waits for more input
+     * @param timeoutNanos how long the request may run from now; 0 means no deadline
+     */
+    public FlowController(long targetNanos, long lingerNanos, long timeoutNanos) {
+        this(targetNanos, lingerNanos, timeoutNanos, INITIAL_BATCH_ROWS, true);
+    }
+
+    private FlowController(long targetNanos, long lingerNanos, long timeoutNanos, int batchRows, boolean adaptive) {
+        this.targetNanos = targetNanos;
+        this.lingerNanos = lingerNanos;
+        this.deadlineNanos = timeoutNanos > 0 ? System.nanoTime() + timeoutNanos : 0;
+        this.batchRows = batchRows;
+        this.adaptive = adaptive;
+    }
+
+    /** Batches of exactly {@code batchRows} input rows and no linger, for output whose batching must not vary. */
+    public static FlowController fixed(int batchRows, long timeoutNanos) {
+        return new FlowController(0, Long.MAX_VALUE, timeoutNanos, batchRows, false);
+    }
+
+    /** Input rows the reader should put in its next batch. */
+    public synchronized int batchRows() {
+        return batchRows;
+    }
+
+    public long lingerNanos() {
+        return lingerNanos;
+    }
+
+    /** The {@link System#nanoTime()} by which the request must finish, or 0 for none. */
+    public long deadlineNanos() {
+        return deadlineNanos;
+    }
+
+    /** Times {@code processor} per input row; {@code inputRows} tells how many rows a batch holds. */
+    public <T> BatchProcessor<T> processor(BatchProcessor<T> processor, ToIntFunction<T> inputRows) {
+        return (sequence, batch) -> {
+            long start = System.nanoTime();
+            EncodedBatch encoded = processor.process(sequence, batch);
+            int rows = inputRows.applyAsInt(batch);
+            if (rows > 0) {
+                processed(rows, encoded.getRowCount(), System.nanoTime() - start);
+            }
+            return encoded;
+        };
+    }
+
+    /** Times {@code sink} per output row. */
+    public BatchSink sink(BatchSink sink) {
+        return batch -> {
+            long start = System.nanoTime();
+            long written = sink.write(batch);
+            if (batch.getRowCount() > 0) {
+                written(batch.getRowCount(), System.nanoTime() - start);
+            }
+            return written;
+        };
+    }
+
+    private synchronized void processed(int inputRows, int outputRows, long nanos) {
+        processNanosPerRow = average(processNanosPerRow, (double) nanos / inputRows);
+        outputPerInputRow += SMOOTHING * ((double) outputRows / inputRows - outputPerInputRow);
+        resize();
+    }
+
+    private synchronized void written(int outputRows, long nanos) {
+        writeNanosPerRow = average(writeNanosPerRow, (double) nanos / outputRows);
+        resize();
+    }
+
+    private void resize() {
+        if (!adaptive) {
+            return;
+        }
+        double nanosPerRow = Math.max(processNanosPerRow, writeNanosPerRow * outputPerInputRow);
+        if (nanosPerRow <= 0) {
+            return;
+        }
+        // Grow at most twofold per batch: the first measurements include warm-up and are noisy.
+        long rows = Math.min((long) (targetNanos / nanosPerRow), 2L * batchRows);
+        batchRows = (int) Math.max(MIN_BATCH_ROWS, Math.min(MAX_BATCH_ROWS, rows));
+    }
+
+    private static double average(double current, double sample) {
+        return current == 0 ? sample : current + SMOOTHING * (sample - current);
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.demo.pipeline;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Sequenced batch pipeline: the calling thread reads and numbers batches, worker threads
+ * encode them in parallel, and a single writer stage drains the encoded batches in input
+ * order. At most {@code windowSize} batches are in flight, from being read until the writer
+ * is done with them, so a slow consumer blocks the reader instead of growing memory.
+ * <p>
+ * There is no limit on how long a run takes as a whole. It fails when it stalls, that is when
+ * the writer has waited {@code stallTimeoutMillis} for its next batch and no other batch
+ * finished meanwhile, and when it passes the caller's deadline, which is checked between batches.
+ */
+public class OrderedBatchPipeline {
+    private static final CompletableFuture<EncodedBatch> END_OF_INPUT = new CompletableFuture<>();
+
+    private final Executor workerExecutor;
+    private final Executor writerExecutor;
+    private final int windowSize;
+    private final long stallTimeoutNanos;
+
+    public OrderedBatchPipeline(Executor workerExecutor,
+                                Executor writerExecutor,
+                                int windowSize,
+                                long stallTimeoutMillis) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("Window size must be positive, got " + windowSize);
+        }
+        this.workerExecutor = workerExecutor;
+        this.writerExecutor = writerExecutor;
+        this.windowSize = windowSize;
+        this.stallTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(stallTimeoutMillis);
+    }
+
+    /**
+     * Runs the pipeline to completion on the calling thread.
+     *
+     * @return the number of rows written to {@code out}
+     */
+    public <T> long run(BatchSource<T> source, BatchProcessor<T> processor, OutputStream out)
+            throws IOException {
+        return run(source, processor, batch -> {
+            out.write(batch.getData());
+            out.flush();
+            return batch.getRowCount();
+        });
+    }
+
+    /**
+     * Runs the pipeline to completion on the calling thread, handing encoded batches to
+     * {@code sink} in input order.
+     *
+     * @return the number of rows the sink reported as written
+     */
+    public <T> long run(BatchSource<T> source, BatchProcessor<T> processor, BatchSink sink)
+            throws IOException {
+        return run(source, processor, sink, 0);
+    }
+
+    /**
+     * Runs the pipeline like {@link #run(BatchSource, BatchProcessor, BatchSink)}, failing once
+     * {@link System#nanoTime()} passes {@code deadlineNanos}; 0 means no deadline.
+     */
+    public <T> long run(BatchSource<T> source, BatchProcessor<T> processor, BatchSink sink, long deadlineNanos)
+            throws IOException {
+        BlockingQueue<CompletableFuture<EncodedBatch>> window = new ArrayBlockingQueue<>(windowSize + 1);
+        // A batch holds a permit from before it is read until the writer is done with it.
+        Semaphore inFlight = new Semaphore(windowSize);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicLong lastProgress = new AtomicLong(System.nanoTime());
+        CompletableFuture<Long> writer = CompletableFuture.supplyAsync(
+                () -> drain(window, inFlight, sink, failure, lastProgress, deadlineNanos), writerExecutor);
+
+        try {
+            long sequence = 0;
+            T batch;
+            while (failure.get() == null) {
+                checkDeadline(deadlineNanos);
+                // The permit is taken before reading, so not even a read batch waits beyond the window.
+                inFlight.acquire();
+                if ((batch = source.nextBatch()) == null) {
+                    break;
+                }
+                long batchSequence = sequence++;
+                T currentBatch = batch;
+                window.put(CompletableFuture.supplyAsync(
+                        () -> process(processor, batchSequence, currentBatch, lastProgress), workerExecutor));
+            }
+        } catch (IOException | RuntimeException e) {
+            failure.compareAndSet(null, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, e);
+        } finally {
+            signalEndOfInput(window, failure);
+        }
+
+        long rows;
+        try {
+            rows = writer.join();
+        } catch (CompletionException e) {
+            failure.compareAndSet(null, e.getCause());
+            rows = -1;
+        }
+
+        Throwable error = failure.get();
+        if (error instanceof IOException) {
+            throw (IOException) error;
+        }
+        if (error != null) {
+            throw new IOException("Batch pipeline failed", error);
+        }
+        return rows;
+    }
+
+    private <T> EncodedBatch process(BatchProcessor<T> processor, long sequence, T batch, AtomicLong lastProgress) {
+        try {
+            EncodedBatch encoded = processor.process(sequence, batch);
+            lastProgress.set(System.nanoTime());
+            return encoded;
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private long drain(BlockingQueue<CompletableFuture<EncodedBatch>> window,
+                       Semaphore inFlight,
+                       BatchSink sink,
+                       AtomicReference<Throwable> failure,
+                       AtomicLong lastProgress,
+                       long deadlineNanos) {
+        long rows = 0;
+        try {
+            CompletableFuture<EncodedBatch> next;
+            while ((next = window.take()) != END_OF_INPUT) {
+                if (failure.get() != null) {
+                    // Keep taking so the reader never blocks on a full window.
+                    next.cancel(false);
+                    inFlight.release();
+                    continue;
+                }
+                try {
+                    EncodedBatch batch = await(next, lastProgress, deadlineNanos);
+                    rows += sink.write(batch);
+                    lastProgress.set(System.nanoTime());
+                } catch (ExecutionException e) {
+                    failure.compareAndSet(null, unwrap(e.getCause()));
+                } catch (IOException | RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    inFlight.release();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, e);
+        }
+        return rows;
+    }
+
+    /** Waits for {@code next} while the run is before its deadline and some batch keeps finishing. */
+    private EncodedBatch await(CompletableFuture<EncodedBatch> next, AtomicLong lastProgress, long deadlineNanos)
+            throws IOException, ExecutionException, InterruptedException {
+        long waitStart = System.nanoTime();
+        while (true) {
+            checkDeadline(deadlineNanos);
+            long now = System.nanoTime();
+            long idle = now - Math.max(waitStart, lastProgress.get());
+            if (idle >= stallTimeoutNanos) {
+                throw new IOException("Batch processing stalled: no batch finished for "
+                        + TimeUnit.NANOSECONDS.toMillis(idle) + " ms");
+            }
+            long wait = stallTimeoutNanos - idle;
+            if (deadlineNanos != 0) {
+                wait = Math.min(wait, deadlineNanos - now);
+            }
+            try {
+                return next.get(wait, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                // Check the deadline and whether other batches moved on.
+            }
+        }
+    }
+
+    private static void checkDeadline(long deadlineNanos) throws IOException {
+        if (deadlineNanos != 0 && System.nanoTime() - deadlineNanos >= 0) {
+            throw new IOException("Request deadline exceeded");
+        }
+    }
+
+    private void signalEndOfInput(BlockingQueue<CompletableFuture<EncodedBatch>> window,
+                                  AtomicReference<Throwable> failure) {
+        try {
+            window.put(END_OF_INPUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, e);
+            // The writer only drains, so a cleared window always has room for the marker.
+            window.clear();
+            window.offer(END_OF_INPUT);
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+}
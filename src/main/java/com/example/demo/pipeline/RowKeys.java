@@ -0,0 +1,82 @@
+package com.example.demo.pipeline;
+
+import java.util.Arrays;
+
+/**
+ * Identity of each row in an encoded batch: the transaction id, the first 64 bits of the
+ * row hash, the transaction day, and where the row ends in the batch data. Rows whose id
+ * could not be read are kept without one.
+ */
+public final class RowKeys {
+    /** Day of a row without a transaction date. */
+    public static final int NO_DAY = Integer.MIN_VALUE;
+
+    private long[] ids;
+    private long[] hashPrefixes;
+    private int[] days;
+    private int[] ends;
+    private boolean[] hasId;
+    private int size;
+
+    public RowKeys(int expectedRows) {
+        int capacity = Math.max(expectedRows, 16);
+        ids = new long[capacity];
+        hashPrefixes = new long[capacity];
+        days = new int[capacity];
+        ends = new int[capacity];
+        hasId = new boolean[capacity];
+    }
+
+    public void add(long id, long hashPrefix, int day, int end) {
+        add(true, id, hashPrefix, day, end);
+    }
+
+    public void addWithoutId(int end) {
+        add(false, 0, 0, NO_DAY, end);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean hasId(int row) {
+        return hasId[row];
+    }
+
+    public long id(int row) {
+        return ids[row];
+    }
+
+    public long hashPrefix(int row) {
+        return hashPrefixes[row];
+    }
+
+    public int day(int row) {
+        return days[row];
+    }
+
+    public int start(int row) {
+        return row == 0 ? 0 : ends[row - 1];
+    }
+
+    public int end(int row) {
+        return ends[row];
+    }
+
+    private void add(boolean withId, long id, long hashPrefix, int day, int end) {
+        if (size == ids.length) {
+            int capacity = size * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            hashPrefixes = Arrays.copyOf(hashPrefixes, capacity);
+            days = Arrays.copyOf(days, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            hasId = Arrays.copyOf(hasId, capacity);
+        }
+        hasId[size] = withId;
+        ids[size] = id;
+        hashPrefixes[size] = hashPrefix;
+        days[size] = day;
+        ends[size] = end;
+        size++;
+    }
+}
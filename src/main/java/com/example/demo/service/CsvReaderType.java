@@ -0,0 +1,8 @@
+package com.example.demo.service;
+
+public enum CsvReaderType {
+    /** OpenCSV over a decoded character stream; the reference behaviour. */
+    OPENCSV,
+    /** Byte-level tokenizer; decodes fields on the worker threads instead of the reader. */
+    TOKENIZER
+}
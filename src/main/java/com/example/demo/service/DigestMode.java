@@ -0,0 +1,9 @@
+package com.example.demo.service;
+
+/** How a response delivers its integrity digest. */
+public enum DigestMode {
+    /** HTTP trailer fields after the last chunk; the body is unchanged. */
+    TRAILER,
+    /** A {@code #integrity} line after the last CSV row. */
+    MANIFEST
+}
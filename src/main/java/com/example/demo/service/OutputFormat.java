@@ -0,0 +1,11 @@
+package com.example.demo.service;
+
+public enum OutputFormat {
+    /** The upstream columns plus {@code hash}, as written by TransactionDto.toCsv(). */
+    CSV,
+    /**
+     * Typed column chunks per batch, see {@link com.example.demo.columnar.ColumnarFormat}.
+     * Every row goes through a TransactionDto, so PASSTHROUGH has no effect.
+     */
+    COLUMNAR
+}
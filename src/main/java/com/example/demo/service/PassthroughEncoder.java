@@ -0,0 +1,303 @@
+package com.example.demo.service;
+
+import com.example.demo.csv.CsvRecord;
+import com.example.demo.hash.RowHasher;
+import com.example.demo.model.ColumnProjection;
+import com.example.demo.model.ColumnType;
+import com.example.demo.model.TransactionColumns;
+import com.example.demo.pipeline.RowKeys;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.Year;
+import java.util.Arrays;
+
+/**
+ * Writes a tokenized row straight from its field slices, without building a
+ * {@link com.example.demo.model.TransactionDto}.
+ * <p>
+ * Fields are trimmed, and numbers and dates are accepted only when they are already in the
+ * form {@code TransactionDto} would print them, so the hash and the output line are
+ * byte-identical to {@code generateHash()} and {@code toCsv()}. Any other row is rejected
+ * and left to the full DTO path. One encoder is used by one thread at a time.
+ */
+public final class PassthroughEncoder {
+    private static final byte QUOTE = '"';
+    private static final int COLUMNS = TransactionColumns.COUNT;
+
+    private final int[] offsets = new int[COLUMNS];
+    private final int[] lengths = new int[COLUMNS];
+    private final boolean[] inScratch = new boolean[COLUMNS];
+    private byte[] scratch = new byte[4096];
+    private ByteBuffer scratchBuffer = ByteBuffer.wrap(scratch);
+    private byte[] line = new byte[4096];
+    private int lineLength;
+    private ByteBuffer rowData;
+    private long hashPrefix;
+
+    /**
+     * Hashes and writes the row followed by a line feed.
+     *
+     * @return {@code false}, with nothing written, if the row needs the full DTO path
+     */
+    public boolean encode(CsvRecord record, OutputStream out) throws IOException {
+        return encode(record, out, null);
+    }
+
+    /**
+     * Hashes the whole row but writes only the projected columns and the hash; all columns when
+     * {@code projection} is null.
+     *
+     * @return {@code false}, with nothing written, if the row needs the full DTO path
+     */
+    public boolean encode(CsvRecord record, OutputStream out, ColumnProjection projection) throws IOException {
+        if (record.size() < COLUMNS) {
+            return false;
+        }
+        ByteBuffer data = record.data();
+        int scratchLength = 0;
+        for (int column = 0; column < COLUMNS; column++) {
+            ByteBuffer source = data;
+            int offset = record.offset(column);
+            int length = record.length(column);
+            boolean unquoted = record.needsUnquoting(column);
+            if (unquoted) {
+                ensureScratch(scratchLength + length);
+                source = scratchBuffer;
+                length = record.copyField(column, scratch, scratchLength);
+                offset = scratchLength;
+                scratchLength += length;
+            }
+            while (length > 0 && isTrimmable(source.get(offset))) {
+                offset++;
+                length--;
+            }
+            while (length > 0 && isTrimmable(source.get(offset + length - 1))) {
+                length--;
+            }
+            if (!isCanonical(TransactionColumns.type(column), source, offset, length)) {
+                return false;
+            }
+            offsets[column] = offset;
+            lengths[column] = length;
+            inScratch[column] = unquoted;
+        }
+
+        RowHasher hasher = RowHasher.current().begin();
+        for (int column = 0; column < COLUMNS; column++) {
+            hasher.add(inScratch[column] ? scratchBuffer : data, offsets[column], lengths[column]);
+        }
+        byte[] hash = hasher.finish();
+        hashPrefix = RowHasher.prefix(hash, 0);
+        rowData = data;
+
+        lineLength = 0;
+        for (int column = 0; column < COLUMNS; column++) {
+            if (projection == null || projection.includes(column)) {
+                appendQuoted(inScratch[column] ? scratchBuffer : data, offsets[column], lengths[column]);
+                append((byte) ',');
+            }
+        }
+        ensureLine(RowHasher.HEX_LENGTH + 3);
+        line[lineLength++] = QUOTE;
+        System.arraycopy(hash, 0, line, lineLength, RowHasher.HEX_LENGTH);
+        lineLength += RowHasher.HEX_LENGTH;
+        line[lineLength++] = QUOTE;
+        line[lineLength++] = '\n';
+        out.write(line, 0, lineLength);
+        return true;
+    }
+
+    /** Whether the last encoded row has an id. */
+    public boolean hasId() {
+        return lengths[TransactionColumns.ID] > 0;
+    }
+
+    /** The id of the last encoded row; only valid if {@link #hasId()}. */
+    public long id() {
+        ByteBuffer source = field(TransactionColumns.ID);
+        int offset = offsets[TransactionColumns.ID];
+        int end = offset + lengths[TransactionColumns.ID];
+        boolean negative = source.get(offset) == '-';
+        long value = 0;
+        for (int i = negative ? offset + 1 : offset; i < end; i++) {
+            value = value * 10 - (source.get(i) - '0');
+        }
+        return negative ? value : -value;
+    }
+
+    /** The transaction date of the last encoded row as an epoch day, or {@link RowKeys#NO_DAY}. */
+    public int transDay() {
+        if (lengths[TransactionColumns.TRANS_DATE] == 0) {
+            return RowKeys.NO_DAY;
+        }
+        ByteBuffer source = field(TransactionColumns.TRANS_DATE);
+        int offset = offsets[TransactionColumns.TRANS_DATE];
+        return (int) LocalDate.of(digits(source, offset, 4), digits(source, offset + 5, 2),
+                digits(source, offset + 8, 2)).toEpochDay();
+    }
+
+    /** The first 64 bits of the last encoded row's hash. */
+    public long hashPrefix() {
+        return hashPrefix;
+    }
+
+    private ByteBuffer field(int column) {
+        return inScratch[column] ? scratchBuffer : rowData;
+    }
+
+    static boolean isCanonical(ColumnType type, ByteBuffer source, int offset, int length) {
+        if (length == 0) {
+            return true;
+        }
+        switch (type) {
+            case LONG:
+                return isCanonicalInteger(source, offset, length, Long.MIN_VALUE, Long.MAX_VALUE);
+            case INTEGER:
+                return isCanonicalInteger(source, offset, length, Integer.MIN_VALUE, Integer.MAX_VALUE);
+            case DECIMAL:
+                return isCanonicalDecimal(source, offset, length);
+            case DATE:
+                return isCanonicalDate(source, offset, length);
+            default:
+                return true;
+        }
+    }
+
+    /** Matches {@code Long.toString(Long.parseLong(s))}: no sign but '-', no leading zeros, in range. */
+    private static boolean isCanonicalInteger(ByteBuffer source, int offset, int length, long min, long max) {
+        int end = offset + length;
+        boolean negative = source.get(offset) == '-';
+        int i = negative ? offset + 1 : offset;
+        if (i == end || (source.get(i) == '0' && (negative || end - i > 1))) {
+            return false;
+        }
+        // Accumulate negatively like Long.parseLong, so the minimum value fits.
+        long limit = negative ? min : -max;
+        long multiplyMin = limit / 10;
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = source.get(i) - '0';
+            if (digit < 0 || digit > 9 || value < multiplyMin) {
+                return false;
+            }
+            value *= 10;
+            if (value < limit + digit) {
+                return false;
+            }
+            value -= digit;
+        }
+        return true;
+    }
+
+    /**
+     * Matches {@code new BigDecimal(s).toString()}: plain notation, no leading zeros, no
+     * negative zero, and not small enough for BigDecimal to switch to exponent notation.
+     */
+    private static boolean isCanonicalDecimal(ByteBuffer source, int offset, int length) {
+        int end = offset + length;
+        boolean negative = source.get(offset) == '-';
+        int i = negative ? offset + 1 : offset;
+        int integerStart = i;
+        while (i < end && isDigit(source.get(i))) {
+            i++;
+        }
+        int integerDigits = i - integerStart;
+        if (integerDigits == 0 || (integerDigits > 1 && source.get(integerStart) == '0')) {
+            return false;
+        }
+        boolean belowOne = source.get(integerStart) == '0';
+        int fractionDigits = 0;
+        int leadingFractionZeros = 0;
+        if (i < end) {
+            if (source.get(i) != '.') {
+                return false;
+            }
+            int fractionStart = ++i;
+            while (i < end && isDigit(source.get(i))) {
+                i++;
+            }
+            fractionDigits = i - fractionStart;
+            if (fractionDigits == 0 || i != end) {
+                return false;
+            }
+            while (leadingFractionZeros < fractionDigits && source.get(fractionStart + leadingFractionZeros) == '0') {
+                leadingFractionZeros++;
+            }
+        }
+        if (!belowOne) {
+            return true;
+        }
+        if (leadingFractionZeros == fractionDigits) {
+            // Zero keeps its scale but loses its sign, and prints as 0E-7 from scale 7.
+            return !negative && fractionDigits <= 6;
+        }
+        return leadingFractionZeros <= 5;
+    }
+
+    /** Matches {@code LocalDate.parse(s).toString()} for four-digit years. */
+    private static boolean isCanonicalDate(ByteBuffer source, int offset, int length) {
+        if (length != 10 || source.get(offset + 4) != '-' || source.get(offset + 7) != '-') {
+            return false;
+        }
+        int year = digits(source, offset, 4);
+        int month = digits(source, offset + 5, 2);
+        int day = digits(source, offset + 8, 2);
+        return year >= 0 && month >= 1 && month <= 12
+                && day >= 1 && day <= Month.of(month).length(Year.isLeap(year));
+    }
+
+    private static int digits(ByteBuffer source, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            byte b = source.get(i);
+            if (!isDigit(b)) {
+                return -1;
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    /** Same set as {@code String.trim()}; UTF-8 never uses these values inside a multi-byte character. */
+    private static boolean isTrimmable(byte b) {
+        return (b & 0xff) <= ' ';
+    }
+
+    private void appendQuoted(ByteBuffer source, int offset, int length) {
+        ensureLine(length * 2 + 2);
+        line[lineLength++] = QUOTE;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = source.get(i);
+            if (b == QUOTE) {
+                line[lineLength++] = QUOTE;
+            }
+            line[lineLength++] = b;
+        }
+        line[lineLength++] = QUOTE;
+    }
+
+    private void append(byte b) {
+        ensureLine(1);
+        line[lineLength++] = b;
+    }
+
+    private void ensureLine(int extra) {
+        if (lineLength + extra > line.length) {
+            line = Arrays.copyOf(line, Math.max(lineLength + extra, line.length * 2));
+        }
+    }
+
+    private void ensureScratch(int capacity) {
+        if (capacity > scratch.length) {
+            scratch = Arrays.copyOf(scratch, Math.max(capacity, scratch.length * 2));
+            scratchBuffer = ByteBuffer.wrap(scratch);
+        }
+    }
+}
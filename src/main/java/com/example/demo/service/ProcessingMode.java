@@ -0,0 +1,11 @@
+package com.example.demo.service;
+
+public enum ProcessingMode {
+    /** Every row is parsed into a TransactionDto, hashed and written back with toCsv(). */
+    FULL,
+    /**
+     * Rows already in canonical form are hashed and copied from the upstream bytes; only the
+     * rest are parsed into a TransactionDto. Output is identical to FULL. Uses the tokenizer.
+     */
+    PASSTHROUGH
+}
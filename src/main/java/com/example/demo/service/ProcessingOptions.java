@@ -0,0 +1,49 @@
+package com.example.demo.service;
+
+import com.example.demo.compression.ContentCoding;
+import com.example.demo.delta.DeltaSession;
+import com.example.demo.filter.RowFilter;
+import com.example.demo.hash.ResponseDigest;
+import com.example.demo.model.ColumnProjection;
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder(toBuilder = true)
+public class ProcessingOptions {
+    public static final ProcessingOptions DEFAULT = ProcessingOptions.builder().build();
+
+    @Builder.Default
+    CsvReaderType reader = CsvReaderType.OPENCSV;
+
+    @Builder.Default
+    ProcessingMode mode = ProcessingMode.FULL;
+
+    @Builder.Default
+    OutputFormat format = OutputFormat.CSV;
+
+    /** When set, only rows new or changed since the session's cursor are written; CSV only. */
+    DeltaSession delta;
+
+    /** Coding of the output; compressed output is compressed in blocks on the hashing workers. */
+    @Builder.Default
+    ContentCoding compression = ContentCoding.IDENTITY;
+
+    /** When set, only matching rows are processed and written; not combined with delta. */
+    RowFilter filter;
+
+    /** When set, only these columns and the hash are written; CSV only, not combined with delta. */
+    ColumnProjection projection;
+
+    /**
+     * When set, receives the Merkle digest of the output, hashed on the workers in batches of
+     * its leaf size; not combined with delta or filter, and its manifest line is CSV only.
+     */
+    ResponseDigest digest;
+
+    /**
+     * Cut batches at a fixed row count instead of by timing. Columnar output carries the batch
+     * boundaries, so it is only the same on every run with fixed batches.
+     */
+    boolean fixedBatches;
+}
@@ -0,0 +1,112 @@
+package com.example.demo.service;
+
+import com.example.demo.config.WarmupProperties;
+import com.example.demo.model.TransactionColumns;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * Pushes synthetic rows through {@link TransactionProxyService} at startup, so parsing, hashing
+ * and encoding are compiled before the first real request. Runners finish before
+ * {@code ApplicationReadyEvent}, so the readiness probe reports ACCEPTING_TRAFFIC only after
+ * the warm-up. The warm-up rows count in the proxy metrics like any other request.
+ */
+@Slf4j
+@Component
+public class StartupWarmup implements ApplicationRunner {
+    private static final LocalDate FIRST_DAY = LocalDate.of(2024, 1, 1);
+
+    private final TransactionProxyService transactionProxyService;
+    private final WarmupProperties properties;
+
+    public StartupWarmup(TransactionProxyService transactionProxyService, WarmupProperties properties) {
+        this.transactionProxyService = transactionProxyService;
+        this.properties = properties;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        long start = System.nanoTime();
+        long rows = warmUp();
+        log.info("Warm-up processed {} rows in {} ms", rows, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /** @return the rows written over all rounds */
+    long warmUp() throws IOException {
+        byte[] input = csv(properties.getRows());
+        long rows = 0;
+        for (int round = 0; round < properties.getRounds(); round++) {
+            for (CsvReaderType reader : CsvReaderType.values()) {
+                for (ProcessingMode mode : ProcessingMode.values()) {
+                    for (OutputFormat format : OutputFormat.values()) {
+                        ProcessingOptions options = ProcessingOptions.builder()
+                                .reader(reader)
+                                .mode(mode)
+                                .format(format)
+                                .build();
+                        rows += transactionProxyService.processTransactions(
+                                new ByteArrayInputStream(input), OutputStream.nullOutputStream(), options);
+                    }
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Upstream-shaped rows: quoted Cyrillic names with embedded commas and doubled quotes, and
+     * amounts both in and out of canonical form, so the passthrough path sees both kinds.
+     */
+    static byte[] csv(int rows) {
+        StringBuilder csv = new StringBuilder(rows * 320);
+        for (int column = 0; column < TransactionColumns.COUNT; column++) {
+            csv.append(column == 0 ? "" : ",").append(TransactionColumns.name(column));
+        }
+        csv.append('\n');
+        String[] columns = new String[TransactionColumns.COUNT];
+        for (int i = 0; i < rows; i++) {
+            Arrays.fill(columns, "");
+            String date = FIRST_DAY.plusDays(i % 366).toString();
+            long cop = 100 + i * 7919L % 1_000_000_000L;
+            columns[TransactionColumns.ID] = Long.toString(290_000_000L + i);
+            columns[TransactionColumns.DOC_VOB] = "6";
+            columns[TransactionColumns.DOC_NUMBER] = (i % 1000) + "/" + (i % 9973);
+            columns[TransactionColumns.DOC_DATE] = date;
+            columns[TransactionColumns.DOC_V_DATE] = date;
+            columns[TransactionColumns.TRANS_DATE] = date;
+            // Every other amount has a leading zero, which BigDecimal does not print.
+            columns[TransactionColumns.AMOUNT] = (i % 2 == 0 ? "" : "0") + cop / 100 + "."
+                    + String.format("%02d", cop % 100);
+            columns[TransactionColumns.AMOUNT_COP] = Long.toString(cop);
+            columns[TransactionColumns.CURRENCY] = "UAH";
+            columns[TransactionColumns.PAYER_EDRPOU] = Integer.toString(37_567_646 + i % 64);
+            columns[TransactionColumns.PAYER_NAME] = "\"ГУ ДКСУ у м.Києві, відділ розрахунків\"";
+            columns[TransactionColumns.PAYER_ACCOUNT] = "UA618201720000042314000" + (100_000 + i % 900_000);
+            columns[TransactionColumns.RECIPT_EDRPOU] = String.format("%08d", i % 100_000_000);
+            columns[TransactionColumns.RECIPT_NAME] = "\"ТОВ \"\"Будсервіс-Україна\"\"\"";
+            columns[TransactionColumns.RECIPT_ACCOUNT] = "UA608201720343340023000" + (100_000 + i % 900_000);
+            columns[TransactionColumns.PAYMENT_DETAILS] = "\"Оплата за послуги, рах. №" + i + " від 01.10.2024, без ПДВ\"";
+            columns[TransactionColumns.REGION_ID] = Integer.toString(1 + i % 28);
+            columns[TransactionColumns.PAYMENT_TYPE] = "nsep";
+            columns[TransactionColumns.SOURCE_ID] = "2";
+            columns[TransactionColumns.SOURCE_NAME] = "ДКСУ";
+            columns[TransactionColumns.KEKV] = Integer.toString(2110 + i % 8 * 100);
+            columns[TransactionColumns.KPK] = Integer.toString(3_511_000 + i % 1000);
+            columns[TransactionColumns.BUDGET_CODE] = "9900000000";
+            columns[TransactionColumns.SYSTEM_KEY] = Long.toString(176_000_000L + i);
+            csv.append(String.join(",", columns)).append('\n');
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -2,7 +2,37 @@ package com.example.demo.service;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
 
 public interface TransactionProxyService {
     InputStream processTransactions(InputStream inputStream) throws IOException, InterruptedException;
+
+    /**
+     * Processes the input on a background thread and returns the output through a pipe. A
+     * failure surfaces as an IOException at the end of the returned stream. Prefer the
+     * OutputStream variant when the output has a destination already; it saves the pipe's
+     * copy and thread handoff.
+     */
+    InputStream processTransactions(InputStream inputStream, ProcessingOptions options)
+            throws IOException, InterruptedException;
+
+    /**
+     * Processes the whole input into {@code outputStream} on the calling thread.
+     *
+     * @return the number of rows written after the header
+     * @throws IOException if reading, processing or writing fails; the output is then incomplete
+     */
+    long processTransactions(InputStream inputStream, OutputStream outputStream, ProcessingOptions options)
+            throws IOException;
+
+    /**
+     * Processes a CSV file on disk into {@code outputStream}. The file is memory-mapped and cut
+     * into record-aligned ranges that are tokenized and hashed in parallel; the output is the
+     * same as streaming the file through the tokenizer. The reader option is ignored.
+     *
+     * @return the number of rows written after the header
+     * @throws IOException if reading, processing or writing fails; the output is then incomplete
+     */
+    long processFile(Path file, OutputStream outputStream, ProcessingOptions options) throws IOException;
 }
@@ -1,96 +1,104 @@
 package com.example.demo.service;
 
+import com.example.demo.columnar.ColumnarBatchEncoder;
+import com.example.demo.compression.CompressingOutputStream;
+import com.example.demo.compression.ContentCoding;
+import com.example.demo.config.ExecutionProperties;
+import com.example.demo.csv.CsvChunk;
+import com.example.demo.csv.CsvChunkReader;
+import com.example.demo.csv.CsvFileSplitter;
+import com.example.demo.csv.CsvRecord;
+import com.example.demo.csv.CsvTokenizer;
+import com.example.demo.delta.DeltaSession;
+import com.example.demo.execution.ExecutionEngine;
+import com.example.demo.filter.RowFilter;
+import com.example.demo.hash.MerkleTree;
+import com.example.demo.hash.ResponseDigest;
+import com.example.demo.hash.RowHasher;
+import com.example.demo.metrics.ProxyMetrics;
+import com.example.demo.metrics.RequestMetrics;
+import com.example.demo.model.ColumnProjection;
+import com.example.demo.model.CompactTransaction;
+import com.example.demo.model.StringInterner;
+import com.example.demo.model.TransactionColumns;
 import com.example.demo.model.TransactionDto;
+import com.example.demo.pipeline.BatchSink;
+import com.example.demo.pipeline.EncodedBatch;
+import com.example.demo.pipeline.FlowController;
+import com.example.demo.pipeline.OrderedBatchPipeline;
+import com.example.demo.pipeline.RowKeys;
 import com.opencsv.CSVParserBuilder;
 import com.opencsv.CSVReader;
 import com.opencsv.CSVReaderBuilder;
-import java.io.BufferedWriter;
+import com.opencsv.exceptions.CsvValidationException;
+import io.micrometer.core.instrument.Tags;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.ExecutionException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 @Service
 public class TransactionProxyServiceImpl implements TransactionProxyService {
-    private static final int THREAD_POOL_SIZE = Math.min(Runtime.getRuntime().availableProcessors(), 4);
-    private static final int BATCH_SIZE = 5000;
     private static final int PIPE_BUFFER_SIZE = 65536;
-    private final ThreadPoolExecutor executorService;
+    private static final int INTERN_TABLE_SIZE = 4096;
+    private static final int MAPPED_RANGE_SIZE = 4 << 20;
+    private static final int ESTIMATED_RECORD_SIZE = 512;
+    private static final String MAPPED_READER = "MAPPED";
+    private final ExecutionEngine executionEngine;
+    private final ProxyMetrics proxyMetrics;
+    private final OrderedBatchPipeline pipeline;
 
     public TransactionProxyServiceImpl() {
-        this.executorService = new ThreadPoolExecutor(
-                THREAD_POOL_SIZE,
-                THREAD_POOL_SIZE,
-                60L, TimeUnit.SECONDS,
-                new ArrayBlockingQueue<>(THREAD_POOL_SIZE * 2),
-                new ThreadPoolExecutor.CallerRunsPolicy()
-        );
+        this(new ExecutionEngine(new ExecutionProperties()));
     }
 
-    public InputStream processTransactions(InputStream inputStream) throws IOException {
-        PipedOutputStream pipedOutputStream = new PipedOutputStream();
-        PipedInputStream pipedInputStream = new PipedInputStream(pipedOutputStream, PIPE_BUFFER_SIZE);
-        AtomicBoolean hasErrors = new AtomicBoolean(false);
-        List<CompletableFuture<Void>> futures = new ArrayList<>();
-
-        CompletableFuture.runAsync(() -> {
-            try (CSVReader csvReader
-                         = new CSVReaderBuilder(new InputStreamReader(inputStream, StandardCharsets.UTF_8))
-                    .withCSVParser(new CSVParserBuilder().withSeparator(',').build())
-                    .build();
-                 BufferedWriter writer
-                         = new BufferedWriter(new OutputStreamWriter(pipedOutputStream, StandardCharsets.UTF_8))) {
-
-                // Читання заголовка
-                String[] header = csvReader.readNext();
-                if (header != null) {
-                    if (header.length < 38) {
-                        throw new IOException("Invalid CSV header: expected at least 38 columns, got "
-                                + header.length);
-                    }
-                    writer.write(String.join(",", header) + ",hash\n");
-                } else {
-                    throw new IOException("Empty CSV file");
-                }
+    public TransactionProxyServiceImpl(ExecutionEngine executionEngine) {
+        this(executionEngine, ProxyMetrics.inMemory(executionEngine));
+    }
 
-                List<String[]> batch = new ArrayList<>(BATCH_SIZE);
-                String[] line;
-                while ((line = csvReader.readNext()) != null) {
-                    batch.add(line);
-                    if (batch.size() >= BATCH_SIZE) {
-                        futures.add(processBatchAsync(batch, writer, hasErrors));
-                        batch = new ArrayList<>(BATCH_SIZE);
-                    }
-                }
+    @Autowired
+    public TransactionProxyServiceImpl(ExecutionEngine executionEngine, ProxyMetrics proxyMetrics) {
+        this.executionEngine = executionEngine;
+        this.proxyMetrics = proxyMetrics;
+        // Reader and writer stages block on I/O, so they must not occupy the hashing workers.
+        this.pipeline = new OrderedBatchPipeline(executionEngine.cpuExecutor(), executionEngine.ioExecutor(),
+                executionEngine.batchesPerRequest(), executionEngine.stallTimeoutMillis());
+    }
 
-                if (!batch.isEmpty()) {
-                    futures.add(processBatchAsync(batch, writer, hasErrors));
-                }
+    public InputStream processTransactions(InputStream inputStream) throws IOException {
+        return processTransactions(inputStream, ProcessingOptions.DEFAULT);
+    }
 
-                CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(30,
-                        TimeUnit.SECONDS);
+    public InputStream processTransactions(InputStream inputStream, ProcessingOptions options) throws IOException {
+        PipedOutputStream pipedOutputStream = new PipedOutputStream();
+        PipedInputStream pipedInputStream = new PipedInputStream(pipedOutputStream, PIPE_BUFFER_SIZE);
 
-                if (hasErrors.get()) {
-                    throw new IOException("Errors occurred during batch processing");
-                }
+        CompletableFuture<Void> processing = CompletableFuture.runAsync(() -> {
+            try (OutputStream output = new BufferedOutputStream(pipedOutputStream, PIPE_BUFFER_SIZE)) {
+                processTransactions(inputStream, output, options);
             } catch (IOException e) {
-                hasErrors.set(true);
                 throw new RuntimeException("Error processing transactions", e);
             } catch (Exception e) {
-                hasErrors.set(true);
                 throw new RuntimeException("Unexpected error during transaction processing", e);
             } finally {
                 try {
@@ -99,72 +107,491 @@ public class TransactionProxyServiceImpl implements TransactionProxyService {
                     throw new RuntimeException("Error closing output stream", e);
                 }
             }
-        }, executorService);
+        }, executionEngine.ioExecutor());
+
+        return new FailureReportingInputStream(pipedInputStream, processing);
+    }
+
+    public long processTransactions(InputStream inputStream, OutputStream outputStream, ProcessingOptions options)
+            throws IOException {
+        boolean tokenizer = options.getReader() == CsvReaderType.TOKENIZER
+                || options.getMode() == ProcessingMode.PASSTHROUGH;
+        if (tokenizer) {
+            return encoded(CsvReaderType.TOKENIZER.name(), (output, sink, request) ->
+                    processWithTokenizer(inputStream, output, sink, request), outputStream, options);
+        }
+        return encoded(CsvReaderType.OPENCSV.name(), (output, sink, request) ->
+                processWithOpenCsv(inputStream, output, sink, request), outputStream, options);
+    }
 
-        return pipedInputStream;
+    public long processFile(Path file, OutputStream outputStream, ProcessingOptions options) throws IOException {
+        if (options.getDigest() != null) {
+            // Mapped ranges are cut by size, not into the digest's fixed groups of rows.
+            throw new IllegalArgumentException("Integrity digests are not available for bulk files");
+        }
+        return encoded(MAPPED_READER, (output, sink, request) -> processMapped(file, output, sink, request),
+                outputStream, options);
+    }
+
+    private long encoded(String reader, Input input, OutputStream outputStream, ProcessingOptions options)
+            throws IOException {
+        if (options.getCompression() == ContentCoding.IDENTITY) {
+            return process(reader, input, outputStream, options, null);
+        }
+        CompressingOutputStream compressed = new CompressingOutputStream(outputStream, options.getCompression(),
+                executionEngine.cpuExecutor(), executionEngine.batchesPerRequest());
+        long rows = process(reader, input, compressed, options, compressed);
+        compressed.finish();
+        return rows;
+    }
+
+    private long process(String reader,
+                         Input input,
+                         OutputStream outputStream,
+                         ProcessingOptions options,
+                         CompressingOutputStream compressed) throws IOException {
+        DeltaSession delta = options.getDelta();
+        boolean keyed = delta != null;
+        OutputFormat format = options.getFormat();
+        if (keyed && format != OutputFormat.CSV) {
+            throw new IllegalArgumentException("Delta output is only available as CSV");
+        }
+        if (keyed && (options.getFilter() != null || options.getProjection() != null)) {
+            throw new IllegalArgumentException("Delta output cannot be filtered or projected");
+        }
+        if (options.getProjection() != null && format != OutputFormat.CSV) {
+            throw new IllegalArgumentException("Field projection is only available as CSV");
+        }
+        ResponseDigest digest = options.getDigest();
+        if (digest != null && (keyed || options.getFilter() != null)) {
+            throw new IllegalArgumentException("Integrity digests cannot be combined with delta or filters");
+        }
+        if (digest != null && digest.writesManifest() && format != OutputFormat.CSV) {
+            throw new IllegalArgumentException("The integrity manifest line is only available in CSV");
+        }
+        // Delta drops rows on the writer stage, so its output is compressed by the stream rather than the workers.
+        CompressingOutputStream blocks = keyed ? null : compressed;
+        BatchSink sink;
+        if (keyed) {
+            sink = delta.sink(outputStream);
+        } else if (blocks != null) {
+            sink = batch -> {
+                blocks.writeBlock(batch.getCompressed());
+                blocks.flush();
+                return batch.getRowCount();
+            };
+        } else {
+            sink = batch -> {
+                outputStream.write(batch.getData());
+                outputStream.flush();
+                return batch.getRowCount();
+            };
+        }
+        if (digest != null) {
+            BatchSink written = sink;
+            sink = batch -> {
+                digest.add(batch.getDigest());
+                return written.write(batch);
+            };
+        }
+        Tags tags = Tags.of(
+                "reader", reader,
+                "mode", options.getMode().name(),
+                "format", format.name(),
+                "compression", options.getCompression().token(),
+                "delta", Boolean.toString(keyed));
+        long rows;
+        try (RequestMetrics metrics = proxyMetrics.begin(tags)) {
+            // Digest leaves are fixed groups of rows, and fixed batches are asked for when the
+            // output must come out the same on every run, so neither follows the adaptive sizing.
+            FlowController flow = digest != null || options.isFixedBatches()
+                    ? executionEngine.newFixedFlow(ResponseDigest.LEAF_ROWS)
+                    : executionEngine.newFlow();
+            Request request = new Request(options.getMode(), format, keyed, blocks, metrics, flow,
+                    options.getFilter(), options.getProjection(), digest);
+            rows = input.read(outputStream, flow.sink(metrics.sink(sink)), request);
+        }
+        if (digest != null) {
+            digest.finish(rows);
+            if (digest.writesManifest()) {
+                outputStream.write(digest.manifestLine());
+            }
+        }
+        if (format == OutputFormat.COLUMNAR) {
+            ColumnarBatchEncoder.writeEnd(outputStream);
+        }
+        if (keyed) {
+            rows += delta.finish(outputStream);
+        }
+        outputStream.flush();
+        return rows;
     }
 
-    private CompletableFuture<Void> processBatchAsync(List<String[]> batch,
-                                                      BufferedWriter writer,
-                                                      AtomicBoolean hasErrors) {
-        return CompletableFuture.runAsync(() -> {
+    private long processWithOpenCsv(InputStream inputStream,
+                                    OutputStream output,
+                                    BatchSink sink,
+                                    Request request) throws IOException {
+        try (CSVReader csvReader
+                     = new CSVReaderBuilder(new InputStreamReader(inputStream, StandardCharsets.UTF_8))
+                .withCSVParser(new CSVParserBuilder().withSeparator(',').build())
+                .build()) {
+
+            // Читання заголовка
             try {
-                for (String[] columns : batch) {
-                    String processedLine = processTransactionLine(columns);
-                    synchronized (writer) {
-                        writer.write(processedLine + "\n");
-                    }
-                }
-                synchronized (writer) {
-                    writer.flush();
+                writeHeader(csvReader.readNext(), output, request);
+            } catch (CsvValidationException e) {
+                throw new IOException("Invalid CSV header", e);
+            }
+            return pipeline.run(request.metrics.source(() -> readBatch(csvReader, request.flow)),
+                    request.flow.processor(request.metrics.processor((sequence, batch) ->
+                            compressed(digested(processBatch(sequence, batch, request), request), request.blocks)),
+                            List::size),
+                    sink, request.flow.deadlineNanos());
+        }
+    }
+
+    private long processWithTokenizer(InputStream inputStream,
+                                      OutputStream output,
+                                      BatchSink sink,
+                                      Request request) throws IOException {
+        try (CsvChunkReader chunkReader = new CsvChunkReader(inputStream)) {
+            CsvChunk headerChunk = chunkReader.nextChunk(1);
+            String[] header = null;
+            if (headerChunk != null) {
+                CsvRecord record = new CsvRecord();
+                CsvTokenizer.nextRecord(headerChunk.getData(), 0, headerChunk.getData().limit(), record);
+                header = record.toStringArray();
+            }
+            writeHeader(header, output, request);
+            FlowController flow = request.flow;
+            return pipeline.run(request.metrics.source(() ->
+                            chunkReader.nextChunk(flow.batchRows(), flow.lingerNanos())),
+                    flow.processor(request.metrics.processor((sequence, chunk) ->
+                            compressed(digested(processChunk(sequence, chunk, request), request), request.blocks)),
+                            CsvChunk::getRecordCount),
+                    sink, flow.deadlineNanos());
+        }
+    }
+
+    /**
+     * Reads a file through memory mappings: the body after the header is cut into record-aligned
+     * ranges in parallel, and each range goes to the hashing workers as one chunk, so nothing
+     * tokenizes the file front to back.
+     */
+    private long processMapped(Path file, OutputStream output, BatchSink sink, Request request) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer head = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, MAPPED_RANGE_SIZE));
+            int headerEnd = CsvTokenizer.findRecordEnd(head, 0, head.limit());
+            if (headerEnd < 0) {
+                if (size > head.limit()) {
+                    throw new IOException("Invalid CSV header: longer than " + MAPPED_RANGE_SIZE + " bytes");
                 }
-            } catch (IOException e) {
-                hasErrors.set(true);
-                throw new RuntimeException("Error processing batch", e);
+                headerEnd = head.limit();
+            }
+            String[] header = null;
+            if (size > 0) {
+                CsvRecord record = new CsvRecord();
+                CsvTokenizer.nextRecord(head, 0, headerEnd, record);
+                header = record.toStringArray();
             }
-        }, executorService);
+            writeHeader(header, output, request);
+            long[] boundaries = CsvFileSplitter.split(channel, headerEnd, MAPPED_RANGE_SIZE,
+                    executionEngine.cpuExecutor(), executionEngine.batchesPerRequest());
+            int[] range = {0};
+            return pipeline.run(request.metrics.source(() -> {
+                        if (range[0] == boundaries.length - 1) {
+                            return null;
+                        }
+                        long from = boundaries[range[0]];
+                        long length = boundaries[++range[0]] - from;
+                        if (length > Integer.MAX_VALUE) {
+                            throw new IOException("CSV record at byte " + from + " spans more than 2 GB");
+                        }
+                        return new CsvChunk(channel.map(FileChannel.MapMode.READ_ONLY, from, length),
+                                (int) (length / ESTIMATED_RECORD_SIZE) + 1);
+                    }),
+                    request.metrics.processor((sequence, chunk) ->
+                            compressed(processChunk(sequence, chunk, request), request.blocks)),
+                    sink, request.flow.deadlineNanos());
+        }
     }
 
-    private String processTransactionLine(String[] columns) {
+    private void writeHeader(String[] header, OutputStream output, Request request) throws IOException {
+        if (header != null) {
+            if (header.length < 38) {
+                throw new IOException("Invalid CSV header: expected at least 38 columns, got "
+                        + header.length);
+            }
+            if (request.format == OutputFormat.COLUMNAR) {
+                ColumnarBatchEncoder.writeStreamHeader(output);
+                return;
+            }
+            String[] columns = request.projection != null ? request.projection.select(header) : header;
+            output.write((String.join(",", columns) + ",hash\n").getBytes(StandardCharsets.UTF_8));
+        } else {
+            throw new IOException("Empty CSV file");
+        }
+    }
+
+    /** Reads up to the flow's batch size, but no longer than its linger time once a row is in. */
+    private List<String[]> readBatch(CSVReader csvReader, FlowController flow) throws IOException {
+        int maxRows = flow.batchRows();
+        long start = System.nanoTime();
+        List<String[]> batch = new ArrayList<>(maxRows);
         try {
-            if (columns.length < 38) {
-                throw new IllegalArgumentException("Expected 38 columns, got "
-                        + columns.length);
+            String[] line;
+            while (batch.size() < maxRows && (line = csvReader.readNext()) != null) {
+                batch.add(line);
+                if (System.nanoTime() - start >= flow.lingerNanos()) {
+                    break;
+                }
             }
+        } catch (CsvValidationException e) {
+            throw new IOException("Invalid CSV input", e);
+        }
+        return batch.isEmpty() ? null : batch;
+    }
 
-            TransactionDto transaction = new TransactionDto(columns);
-            transaction.generateHash();
-            return transaction.toCsv();
-        } catch (Exception e) {
-            String csvLine = String.join(",", columns);
-            String hash = calculateSHA256(csvLine);
-            return csvLine + "," + hash;
+    private EncodedBatch processBatch(long sequence, List<String[]> batch, Request request) throws IOException {
+        if (request.format == OutputFormat.COLUMNAR) {
+            ColumnarBatchEncoder encoder = new ColumnarBatchEncoder(batch.size());
+            int rows = 0;
+            for (String[] columns : batch) {
+                if (request.filter == null || request.filter.test(columns)) {
+                    encoder.add(columnarRow(columns, request));
+                    rows++;
+                }
+            }
+            return columnar(sequence, encoder, rows);
+        }
+        CompactTransaction transaction = new CompactTransaction(request.interner);
+        ByteArrayOutputStream output = new ByteArrayOutputStream(batch.size() * 512);
+        RowKeys keys = request.keyed ? new RowKeys(batch.size()) : null;
+        int rows = 0;
+        for (String[] columns : batch) {
+            if (request.filter == null || request.filter.test(columns)) {
+                writeLine(columns, transaction, output, keys, request);
+                rows++;
+            }
         }
+        return new EncodedBatch(sequence, output.toByteArray(), rows, keys);
     }
 
-    private String calculateSHA256(String data) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hashBytes = digest.digest(data.getBytes(StandardCharsets.UTF_8));
-            StringBuilder sb = new StringBuilder();
-            for (byte b : hashBytes) {
-                sb.append(String.format("%02x", b));
+    /**
+     * A batch with no rows writes nothing: its row count of 0 would read as the end of
+     * the stream.
+     */
+    private static EncodedBatch columnar(long sequence, ColumnarBatchEncoder encoder, int rows) {
+        return new EncodedBatch(sequence, rows == 0 ? new byte[0] : encoder.encode(), rows);
+    }
+
+    private EncodedBatch processChunk(long sequence, CsvChunk chunk, Request request) throws IOException {
+        ByteBuffer data = chunk.getData();
+        CsvRecord record = new CsvRecord();
+        if (request.format == OutputFormat.COLUMNAR) {
+            ColumnarBatchEncoder encoder = new ColumnarBatchEncoder(chunk.getRecordCount());
+            int rows = 0;
+            int position = 0;
+            while (position < data.limit()) {
+                position = CsvTokenizer.nextRecord(data, position, data.limit(), record);
+                if (request.filter == null || request.filter.test(record)) {
+                    encoder.add(columnarRow(record.toStringArray(), request));
+                    rows++;
+                }
             }
-            return sb.toString();
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("Error calculating SHA-256 hash", e);
+            return columnar(sequence, encoder, rows);
         }
+        PassthroughEncoder passthrough = request.mode == ProcessingMode.PASSTHROUGH ? new PassthroughEncoder() : null;
+        CompactTransaction transaction = new CompactTransaction(request.interner);
+        ByteArrayOutputStream output = new ByteArrayOutputStream(data.limit() + chunk.getRecordCount() * 128);
+        RowKeys keys = request.keyed ? new RowKeys(chunk.getRecordCount()) : null;
+        int rows = 0;
+        int position = 0;
+        while (position < data.limit()) {
+            position = CsvTokenizer.nextRecord(data, position, data.limit(), record);
+            if (request.filter != null && !request.filter.test(record)) {
+                continue;
+            }
+            rows++;
+            if (passthrough != null && passthrough.encode(record, output, request.projection)) {
+                if (keys == null) {
+                    continue;
+                }
+                if (passthrough.hasId()) {
+                    keys.add(passthrough.id(), passthrough.hashPrefix(), passthrough.transDay(), output.size());
+                } else {
+                    keys.addWithoutId(output.size());
+                }
+            } else {
+                writeLine(record.toStringArray(), transaction, output, keys, request);
+            }
+        }
+        return new EncodedBatch(sequence, output.toByteArray(), rows, keys);
     }
 
-    public void shutdown() {
-        executorService.shutdown();
+    /** Hashes the batch's Merkle leaf on its worker when the response carries a digest. */
+    private static EncodedBatch digested(EncodedBatch batch, Request request) {
+        return request.digest == null ? batch : batch.withDigest(MerkleTree.leafHash(batch.getData()));
+    }
+
+    /** Compresses the batch on its worker when the response is compressed block by block. */
+    private static EncodedBatch compressed(EncodedBatch batch, CompressingOutputStream blocks) {
+        if (blocks == null) {
+            return batch;
+        }
+        return new EncodedBatch(batch.getSequence(), null, batch.getRowCount(), null,
+                blocks.compress(batch.getData()), batch.getDigest());
+    }
+
+    /**
+     * Writes the row's output line through the compact record, or through the DTO when the record
+     * rejects it, and records its id, hash and day when {@code keys} is not null.
+     */
+    private void writeLine(String[] columns,
+                           CompactTransaction transaction,
+                           ByteArrayOutputStream output,
+                           RowKeys keys,
+                           Request request) throws IOException {
+        if (transaction.parse(columns)) {
+            transaction.write(output, request.projection);
+            if (keys == null) {
+                return;
+            }
+            if (transaction.isNull(TransactionColumns.ID)) {
+                keys.addWithoutId(output.size());
+            } else {
+                keys.add(transaction.id(), transaction.hashPrefix(),
+                        transaction.isNull(TransactionColumns.TRANS_DATE) ? RowKeys.NO_DAY : transaction.transDate(),
+                        output.size());
+            }
+            return;
+        }
+        TransactionDto dto;
+        String line;
         try {
-            if (!executorService.awaitTermination(10, TimeUnit.SECONDS)) {
-                executorService.shutdownNow();
+            dto = hashedTransaction(columns);
+            line = dto.toCsv(request.projection);
+        } catch (Exception e) {
+            dto = null;
+            line = fallbackLine(columns, request.projection);
+            request.metrics.fallbackRow();
+        }
+        output.writeBytes(line.getBytes(StandardCharsets.UTF_8));
+        output.write('\n');
+        if (keys == null) {
+            return;
+        }
+        if (dto == null || dto.getId() == null) {
+            keys.addWithoutId(output.size());
+        } else {
+            LocalDate transDate = dto.getTransDate();
+            keys.add(dto.getId(), RowHasher.prefix(dto.getHash()),
+                    transDate == null ? RowKeys.NO_DAY : (int) transDate.toEpochDay(), output.size());
+        }
+    }
+
+    /** The row for {@link ColumnarBatchEncoder}: printed fields and hash, or for a rejected row its raw fields. */
+    private String[] columnarRow(String[] columns, Request request) {
+        try {
+            return hashedTransaction(columns).toRow();
+        } catch (Exception e) {
+            request.metrics.fallbackRow();
+            String[] row = Arrays.copyOf(columns, TransactionColumns.COUNT + 1);
+            row[TransactionColumns.COUNT] = calculateSHA256(columns);
+            return row;
+        }
+    }
+
+    private TransactionDto hashedTransaction(String[] columns) {
+        if (columns.length < 38) {
+            throw new IllegalArgumentException("Expected 38 columns, got "
+                    + columns.length);
+        }
+
+        TransactionDto transaction = new TransactionDto(columns);
+        transaction.generateHash();
+        return transaction;
+    }
+
+    private String fallbackLine(String[] columns, ColumnProjection projection) {
+        String csvLine = String.join(",", projection != null ? projection.select(columns) : columns);
+        String hash = calculateSHA256(columns);
+        return csvLine + "," + hash;
+    }
+
+    private String calculateSHA256(String[] columns) {
+        RowHasher hasher = RowHasher.current().begin();
+        for (String column : columns) {
+            hasher.add(String.valueOf(column));
+        }
+        return hasher.finishToString();
+    }
+
+    /** Reads the header and feeds the body through the pipeline; returns the rows written. */
+    @FunctionalInterface
+    private interface Input {
+        long read(OutputStream output, BatchSink sink, Request request) throws IOException;
+    }
+
+    /** What the batch workers of one request share. */
+    @RequiredArgsConstructor
+    private static final class Request {
+        final ProcessingMode mode;
+        final OutputFormat format;
+        final boolean keyed;
+        final CompressingOutputStream blocks;
+        final RequestMetrics metrics;
+        final FlowController flow;
+        final RowFilter filter;
+        final ColumnProjection projection;
+        final ResponseDigest digest;
+        final StringInterner interner = new StringInterner(INTERN_TABLE_SIZE);
+    }
+
+    /** Turns the end of the pipe into an IOException when processing failed, instead of a silent truncation. */
+    private static final class FailureReportingInputStream extends FilterInputStream {
+        private final CompletableFuture<Void> processing;
+
+        FailureReportingInputStream(InputStream in, CompletableFuture<Void> processing) {
+            super(in);
+            this.processing = processing;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b < 0) {
+                checkProcessing();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n < 0) {
+                checkProcessing();
             }
-        } catch (InterruptedException e) {
-            executorService.shutdownNow();
-            Thread.currentThread().interrupt();
+            return n;
         }
+
+        private void checkProcessing() throws IOException {
+            try {
+                processing.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() instanceof RuntimeException && e.getCause().getCause() != null
+                        ? e.getCause().getCause()
+                        : e.getCause();
+                throw new IOException("Transaction processing failed", cause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for transaction processing");
+            }
+        }
+    }
+
+    public void shutdown() {
+        executionEngine.shutdown();
     }
 }
@@ -0,0 +1,43 @@
+package com.example.demo.aggregate;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AggregateTableTest {
+
+    @Test
+    public void testMatchesReferenceAfterGrowthAndMerge() {
+        Random random = new Random(7);
+        AggregateTable first = new AggregateTable();
+        AggregateTable second = new AggregateTable();
+        Map<Long, long[]> expected = new HashMap<>();
+        for (int i = 0; i < 50_000; i++) {
+            // Sequential, negative and sparse keys.
+            long key = random.nextInt(3) == 0 ? 20240000 + random.nextInt(400)
+                    : random.nextBoolean() ? -random.nextInt(50) : random.nextLong() >>> random.nextInt(64);
+            long amount = random.nextInt(2_000_000) - 1_000_000;
+            (i % 2 == 0 ? first : second).add(key, amount);
+            expected.merge(key, new long[]{1, amount, amount, amount}, (a, b) -> new long[]{
+                    a[0] + 1, a[1] + b[1], Math.min(a[2], b[2]), Math.max(a[3], b[3])});
+        }
+
+        first.merge(second);
+
+        assertEquals(expected.size(), first.size());
+        first.forEach((key, count, sum, min, max) ->
+                assertArrayEquals(expected.get(key), new long[]{count, sum, min, max}, "key " + key));
+    }
+
+    @Test
+    public void testSumOverflowFails() {
+        AggregateTable table = new AggregateTable();
+        table.add(1, Long.MAX_VALUE);
+
+        assertThrows(ArithmeticException.class, () -> table.add(1, 1));
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.demo.aggregate;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.example.demo.config.ExecutionProperties;
+import com.example.demo.execution.ExecutionEngine;
+import com.example.demo.filter.RowFilter;
+import com.example.demo.metrics.ProxyMetrics;
+
+public class AggregationTest {
+    private static final String HEADER = "id,doc_vob,doc_vob_name,doc_number,doc_date,doc_v_date,trans_date,amount,amount_cop,currency,payer_edrpou,payer_name,payer_account,payer_mfo,payer_bank,payer_edrpou_fact,payer_name_fact,recipt_edrpou,recipt_name,recipt_account,recipt_mfo,recipt_bank,recipt_edrpou_fact,recipt_name_fact,payment_details,doc_add_attr,region_id,payment_type,payment_data,source_id,source_name,kekv,kpk,contractId,contractNumber,budgetCode,system_key,system_key_ff\n";
+    private static final String[] RECIPIENTS = {"00013480", "13480", "\"ТОВ \"\"Мрія\"\"\"", ""};
+    private static final String[] KEKVS = {"2240", " 2410 ", "+2240", "n/a"};
+    private static final String[] DAYS = {"2024-10-29", "2024-10-30", "30.10.2024"};
+
+    private final ExecutionEngine executionEngine = new ExecutionEngine(new ExecutionProperties());
+    private final TransactionAggregator aggregator =
+            new TransactionAggregator(executionEngine, ProxyMetrics.inMemory(executionEngine));
+
+    @Test
+    public void testGroupsByCodeKeepingLeadingZeros() throws Exception {
+        AggregationResult result = aggregate("recipt_edrpou", null);
+
+        assertEquals(12_000, result.getRows());
+        assertEquals(1, result.getSkippedRows());
+        assertEquals(List.of("", "00013480", "13480", "ТОВ \"Мрія\""), keys(result));
+        AggregationResult.Group group = result.getGroups().get(1);
+        assertEquals(3000, group.getCount());
+        assertEquals(expectedSum(0, 4), group.getSumCop());
+        assertEquals(100, group.getMinCop());
+        assertEquals(100 + 11_996, group.getMaxCop());
+    }
+
+    @Test
+    public void testGroupsByNumberAndDate() throws Exception {
+        AggregationResult byKekv = aggregate("kekv", null);
+        assertEquals(List.of("2240", "2410", "n/a"), keys(byKekv));
+        assertEquals(6000, byKekv.getGroups().get(0).getCount());
+
+        AggregationResult byDay = aggregate("trans_date", null);
+        assertEquals(List.of("2024-10-29", "2024-10-30", "30.10.2024"), keys(byDay));
+        assertEquals(12_000, byDay.getGroups().stream().mapToLong(AggregationResult.Group::getCount).sum());
+    }
+
+    @Test
+    public void testAppliesFilterBeforeAggregating() throws Exception {
+        AggregationResult result = aggregate("kekv", RowFilter.compile(List.of("recipt_edrpou=00013480")));
+
+        assertEquals(3000, result.getRows());
+        assertEquals(1, result.getSkippedRows());
+        assertEquals(expectedSum(0, 4), result.getGroups().stream().mapToLong(AggregationResult.Group::getSumCop).sum());
+    }
+
+    @Test
+    public void testRejectsAmountGrouping() {
+        assertThrows(IllegalArgumentException.class, () -> new Aggregation("amount", null));
+        assertThrows(IllegalArgumentException.class, () -> new Aggregation("nope", null));
+    }
+
+    /** Row i goes to recipient i % 4, kekv i % 4, day i % 3, with amount_cop 100 + i. */
+    private AggregationResult aggregate(String groupBy, RowFilter filter) throws Exception {
+        StringBuilder csv = new StringBuilder(HEADER);
+        for (int i = 0; i < 12_000; i++) {
+            csv.append(i).append(",6,,x,,,").append(DAYS[i % 3]).append(",1.00,")
+                    .append(i % 2 == 0 ? String.valueOf(100 + i) : (100 + i) + ".00")
+                    .append(",UAH,,,,,,,,").append(RECIPIENTS[i % 4]).append(",,,,,,,,,,,,,,")
+                    .append(KEKVS[i % 4]).append(",,,,,,\n");
+        }
+        csv.append("12000,6,,x,,,2024-10-29,1.00,12.5,UAH,,,,,,,,00013480,,,,,,,,,,,,,,2240,,,,,,\n");
+        return aggregator.aggregate(new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)),
+                new Aggregation(groupBy, filter));
+    }
+
+    private static long expectedSum(int first, int step) {
+        long sum = 0;
+        for (int i = first; i < 12_000; i += step) {
+            sum += 100 + i;
+        }
+        return sum;
+    }
+
+    private static List<String> keys(AggregationResult result) {
+        return result.getGroups().stream().map(AggregationResult.Group::getKey).collect(Collectors.toList());
+    }
+}
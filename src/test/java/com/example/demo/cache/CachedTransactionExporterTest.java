@@ -0,0 +1,93 @@
+package com.example.demo.cache;
+
+import com.example.demo.client.UpstreamClient;
+import com.example.demo.compression.ContentCoding;
+import com.example.demo.config.CacheProperties;
+import com.example.demo.config.ExecutionProperties;
+import com.example.demo.execution.ExecutionEngine;
+import com.example.demo.model.TransactionQuery;
+import com.example.demo.service.ProcessingOptions;
+import com.example.demo.service.TransactionProxyService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class CachedTransactionExporterTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testRepeatedRangeIsServedFromCache() throws IOException {
+        CacheProperties properties = new CacheProperties();
+        properties.setEnabled(true);
+        properties.setDirectory(directory);
+        ProcessedRangeCache cache = new ProcessedRangeCache(properties);
+        cache.open();
+
+        UpstreamClient upstreamClient = mock(UpstreamClient.class);
+        when(upstreamClient.fetch(any())).thenAnswer(invocation -> {
+            TransactionQuery query = invocation.getArgument(0);
+            return new ByteArrayInputStream(("id,day\n1," + query.getStartDate() + "\n2," + query.getEndDate() + "\n")
+                    .getBytes(StandardCharsets.UTF_8));
+        });
+        TransactionProxyService service = mock(TransactionProxyService.class);
+        when(service.processTransactions(any(InputStream.class), any(OutputStream.class), any()))
+                .thenAnswer(invocation -> invocation.<InputStream>getArgument(0)
+                        .transferTo(invocation.getArgument(1)));
+        CachedTransactionExporter exporter = new CachedTransactionExporter(cache, upstreamClient, service,
+                new ExecutionEngine(new ExecutionProperties()));
+
+        LocalDate today = LocalDate.now();
+        TransactionQuery query = new TransactionQuery(today.minusDays(4), today, List.of("12345678"));
+        String expected = "id,day\n"
+                + "1," + today.minusDays(4) + "\n2," + today.minusDays(4) + "\n"
+                + "1," + today.minusDays(3) + "\n2," + today.minusDays(3) + "\n"
+                + "1," + today.minusDays(2) + "\n2," + today + "\n";
+
+        assertEquals(expected, export(exporter, query));
+        verify(upstreamClient, times(3)).fetch(any());
+
+        assertEquals(expected, export(exporter, query));
+        // Only the days inside the freshness horizon are fetched again, as one request.
+        verify(upstreamClient, times(4)).fetch(any());
+        verify(upstreamClient, times(2)).fetch(new TransactionQuery(today.minusDays(2), today, List.of("12345678")));
+        assertEquals(2, cache.stats().getHits());
+
+        ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+        exporter.export(query, ProcessingOptions.builder().compression(ContentCoding.GZIP).build(), gzip);
+        assertEquals(expected, new String(new GZIPInputStream(new ByteArrayInputStream(gzip.toByteArray()))
+                .readAllBytes(), StandardCharsets.UTF_8));
+
+        // Reading only the cache fetches nothing, and gives up on fresh or missing days.
+        ByteArrayOutputStream cached = new ByteArrayOutputStream();
+        assertTrue(exporter.exportCached(new TransactionQuery(today.minusDays(4), today.minusDays(3),
+                List.of("12345678")), cached));
+        assertEquals(expected.substring(0, expected.indexOf("1," + today.minusDays(2))),
+                cached.toString(StandardCharsets.UTF_8));
+        assertFalse(exporter.exportCached(query, OutputStream.nullOutputStream()));
+        assertFalse(exporter.exportCached(new TransactionQuery(today.minusDays(5), today.minusDays(4),
+                List.of("12345678")), OutputStream.nullOutputStream()));
+        verify(upstreamClient, times(5)).fetch(any());
+        cache.close();
+    }
+
+    private static String export(CachedTransactionExporter exporter, TransactionQuery query) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exporter.export(query, ProcessingOptions.DEFAULT, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
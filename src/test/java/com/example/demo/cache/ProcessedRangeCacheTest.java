@@ -0,0 +1,131 @@
+package com.example.demo.cache;
+
+import com.example.demo.config.CacheProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProcessedRangeCacheTest {
+    private static final LocalDate TODAY = LocalDate.of(2024, 10, 10);
+
+    @TempDir
+    Path directory;
+
+    private ProcessedRangeCache cache;
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        cache.close();
+    }
+
+    @Test
+    public void testServesCommittedEntryWithOrWithoutHeader() throws IOException {
+        cache = open(DataSize.ofMegabytes(1), DataSize.ofMegabytes(1));
+        CacheKey key = CacheKey.of(TODAY.minusDays(10), List.of("2", "1"));
+        put(key, "h1,h2\n", "a,b\n");
+
+        assertEquals("h1,h2\na,b\n", read(CacheKey.of(TODAY.minusDays(10), List.of("1", "2")), true));
+        assertEquals("a,b\n", read(key, false));
+        assertNull(cache.lookup(CacheKey.of(TODAY.minusDays(11), List.of())));
+
+        CacheStats stats = cache.stats();
+        assertEquals(2, stats.getHits());
+        assertEquals(1, stats.getMisses());
+        assertEquals(1, stats.getEntries());
+    }
+
+    @Test
+    public void testUncommittedEntryIsDiscarded() throws IOException {
+        cache = open(DataSize.ofMegabytes(1), DataSize.ofMegabytes(1));
+        CacheKey key = CacheKey.of(TODAY.minusDays(10), List.of());
+        try (ProcessedRangeCache.EntryWriter entry = cache.newEntry(key)) {
+            entry.write("h\npartial".getBytes(StandardCharsets.UTF_8));
+        }
+        assertNull(cache.lookup(key));
+    }
+
+    @Test
+    public void testFreshnessHorizon() throws IOException {
+        cache = open(DataSize.ofMegabytes(1), DataSize.ofMegabytes(1));
+        assertFalse(cache.isCacheable(TODAY));
+        assertFalse(cache.isCacheable(TODAY.minusDays(2)));
+        assertTrue(cache.isCacheable(TODAY.minusDays(3)));
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedSegment() throws IOException {
+        // Every entry gets its own segment, and only two segments fit.
+        cache = open(DataSize.ofBytes(25), DataSize.ofBytes(10));
+        CacheKey first = CacheKey.of(TODAY.minusDays(30), List.of());
+        CacheKey second = CacheKey.of(TODAY.minusDays(29), List.of());
+        CacheKey third = CacheKey.of(TODAY.minusDays(28), List.of());
+        put(first, "h\n", "1111111\n");
+        put(second, "h\n", "2222222\n");
+        read(first, true);
+        put(third, "h\n", "3333333\n");
+
+        assertNotNull(read(first, true));
+        assertNull(read(second, true));
+        assertNotNull(read(third, true));
+        assertEquals(1, cache.stats().getEvictions());
+    }
+
+    @Test
+    public void testEntriesSurviveRestart() throws IOException {
+        cache = open(DataSize.ofMegabytes(1), DataSize.ofBytes(10));
+        CacheKey first = CacheKey.of(TODAY.minusDays(30), List.of());
+        CacheKey second = CacheKey.of(TODAY.minusDays(29), List.of("12345678"));
+        put(first, "h\n", "1\n");
+        put(second, "h\n", "2\n");
+        cache.close();
+
+        cache = open(DataSize.ofMegabytes(1), DataSize.ofBytes(10));
+        assertEquals("h\n1\n", read(first, true));
+        assertEquals("2\n", read(second, false));
+        assertEquals(2, cache.stats().getEntries());
+    }
+
+    private ProcessedRangeCache open(DataSize maxSize, DataSize segmentSize) throws IOException {
+        CacheProperties properties = new CacheProperties();
+        properties.setEnabled(true);
+        properties.setDirectory(directory);
+        properties.setMaxSize(maxSize);
+        properties.setSegmentSize(segmentSize);
+        properties.setFreshnessDays(3);
+        ProcessedRangeCache opened = new ProcessedRangeCache(properties,
+                Clock.fixed(TODAY.atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC));
+        opened.open();
+        return opened;
+    }
+
+    private void put(CacheKey key, String header, String rows) throws IOException {
+        try (ProcessedRangeCache.EntryWriter entry = cache.newEntry(key)) {
+            entry.write((header + rows).getBytes(StandardCharsets.UTF_8));
+            entry.commit(header.length());
+        }
+    }
+
+    private String read(CacheKey key, boolean includeHeader) throws IOException {
+        try (ProcessedRangeCache.CachedEntry entry = cache.lookup(key)) {
+            if (entry == null) {
+                return null;
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            entry.transferTo(Channels.newChannel(out), includeHeader);
+            return out.toString(StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.demo.client;
+
+import com.example.demo.model.TransactionQuery;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResumableUpstreamStreamTest {
+    private static final String HEADER = "id,doc_vob,doc_vob_name,doc_number,doc_date,doc_v_date,trans_date,payment_details\n";
+    private static final LocalDate FIRST_DAY = LocalDate.of(2024, 10, 1);
+    private static final TransactionQuery QUERY = new TransactionQuery(FIRST_DAY, FIRST_DAY.plusDays(2), null);
+    private static final int ROWS = 12;
+
+    @Test
+    public void testResumesFromLastCompleteRowWhereverTheConnectionDrops() throws Exception {
+        String full = csv(QUERY, 0);
+        for (int failAt = 0; failAt < full.length(); failAt += 7) {
+            List<TransactionQuery> reopened = new ArrayList<>();
+            InputStream first = new DroppingStream(full, failAt);
+            try (InputStream body = new ResumableUpstreamStream(QUERY, null, first, query -> {
+                reopened.add(query);
+                return new ByteArrayInputStream(csv(query, 0).getBytes(StandardCharsets.UTF_8));
+            }, 1, 0)) {
+                assertEquals(full, new String(body.readAllBytes(), StandardCharsets.UTF_8), "dropped at " + failAt);
+            }
+            assertEquals(1, reopened.size());
+            assertEquals(QUERY.getEndDate(), reopened.get(0).getEndDate());
+        }
+    }
+
+    @Test
+    public void testRequestsOnlyTheRemainingDays() throws Exception {
+        String full = csv(QUERY, 0);
+        List<TransactionQuery> reopened = new ArrayList<>();
+        // Drops in the middle of row 10, on the last day; the first reopened body drops too.
+        InputStream first = new DroppingStream(full, full.indexOf("\n10,") + 20);
+        try (InputStream body = new ResumableUpstreamStream(QUERY, null, first, query -> {
+            reopened.add(query);
+            String remainder = csv(query, 0);
+            return reopened.size() == 1 ? new DroppingStream(remainder, HEADER.length() + 5)
+                    : new ByteArrayInputStream(remainder.getBytes(StandardCharsets.UTF_8));
+        }, 2, 0)) {
+            assertEquals(full, new String(body.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        assertEquals(2, reopened.size());
+        assertEquals(FIRST_DAY.plusDays(2), reopened.get(0).getStartDate());
+    }
+
+    @Test
+    public void testStartsAfterContinuationToken() throws Exception {
+        ContinuationToken token = ContinuationToken.parse(new ContinuationToken(FIRST_DAY.plusDays(1), "6").encode());
+        TransactionQuery remainder = token.remainderOf(QUERY);
+        InputStream first = new ByteArrayInputStream(csv(remainder, 0).getBytes(StandardCharsets.UTF_8));
+
+        try (InputStream body = new ResumableUpstreamStream(QUERY, token, first, query -> {
+            throw new IOException("not expected");
+        }, 0, 0)) {
+            String expected = csv(QUERY, 0);
+            expected = HEADER + expected.substring(expected.indexOf("\n7,") + 1);
+            assertEquals(expected, new String(body.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testFailsWhenTheCheckpointRowIsGone() throws Exception {
+        String full = csv(QUERY, 0);
+        InputStream first = new DroppingStream(full, full.indexOf("\n6,") + 3);
+        try (InputStream body = new ResumableUpstreamStream(QUERY, null, first,
+                query -> new ByteArrayInputStream(csv(query, 5).getBytes(StandardCharsets.UTF_8)), 1, 0)) {
+            IOException error = assertThrows(IOException.class, body::readAllBytes);
+            assertTrue(error.getMessage().contains("no longer returns"), error.getMessage());
+        }
+    }
+
+    @Test
+    public void testDoesNotResumeRowsOutOfDateOrder() throws Exception {
+        String unordered = HEADER + row(1, FIRST_DAY.plusDays(1)) + row(2, FIRST_DAY) + row(3, FIRST_DAY);
+        InputStream first = new DroppingStream(unordered, unordered.length() - 3);
+        try (InputStream body = new ResumableUpstreamStream(QUERY, null, first, query -> {
+            throw new AssertionError("resumed");
+        }, 1, 0)) {
+            IOException error = assertThrows(IOException.class, body::readAllBytes);
+            assertEquals("Connection reset", error.getMessage());
+        }
+    }
+
+    @Test
+    public void testRejectsMalformedTokens() {
+        assertThrows(IllegalArgumentException.class, () -> ContinuationToken.parse("not base64!"));
+        assertThrows(IllegalArgumentException.class, () -> ContinuationToken.parse(
+                new ContinuationToken(FIRST_DAY, "").encode()));
+        assertThrows(IllegalArgumentException.class, () -> new ContinuationToken(FIRST_DAY.minusDays(1), "1")
+                .remainderOf(QUERY));
+    }
+
+    /** Four rows a day over the query's days, with quoted line feeds and commas; {@code missingId} is left out. */
+    private static String csv(TransactionQuery query, int missingId) {
+        StringBuilder csv = new StringBuilder(HEADER);
+        for (int id = 1; id <= ROWS; id++) {
+            LocalDate day = FIRST_DAY.plusDays((id - 1) / 4);
+            if (id != missingId && !day.isBefore(query.getStartDate()) && !day.isAfter(query.getEndDate())) {
+                csv.append(row(id, day));
+            }
+        }
+        return csv.toString();
+    }
+
+    private static String row(int id, LocalDate day) {
+        return id + ",6,,\"" + id + "/1\"," + day + "," + day + "," + day + ",\"Оплата, рах. №" + id
+                + "\nрядок \"\"2\"\"\"\n";
+    }
+
+    /** Serves {@code text} and then fails after {@code failAt} characters, like a reset connection. */
+    private static final class DroppingStream extends InputStream {
+        private final byte[] data;
+        private final int failAt;
+        private int pos;
+
+        DroppingStream(String text, int failAt) {
+            this.data = text.getBytes(StandardCharsets.UTF_8);
+            this.failAt = text.substring(0, Math.min(failAt, text.length())).getBytes(StandardCharsets.UTF_8).length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) throws IOException {
+            if (pos >= failAt) {
+                throw new IOException("Connection reset");
+            }
+            int count = Math.min(Math.min(length, 5), failAt - pos);
+            System.arraycopy(data, pos, target, offset, count);
+            pos += count;
+            return count;
+        }
+    }
+}
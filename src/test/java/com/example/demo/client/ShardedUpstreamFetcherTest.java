@@ -0,0 +1,119 @@
+package com.example.demo.client;
+
+import com.example.demo.config.ExecutionProperties;
+import com.example.demo.config.UpstreamProperties;
+import com.example.demo.execution.ExecutionEngine;
+import com.example.demo.model.TransactionQuery;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardedUpstreamFetcherTest {
+    private final ExecutionEngine executionEngine = new ExecutionEngine(new ExecutionProperties());
+    private HttpServer server;
+    private ShardedUpstreamFetcher fetcher;
+    @TempDir
+    private Path spoolDirectory;
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/transactions/", exchange -> {
+            String query = exchange.getRequestURI().getQuery();
+            String start = query.replaceAll(".*startdate=([^&]+).*", "$1");
+            String end = query.replaceAll(".*enddate=([^&]+).*", "$1");
+            if (start.equals("2024-10-02") && failuresLeft.getAndUpdate(left -> Math.max(left - 1, 0)) > 0) {
+                exchange.sendResponseHeaders(500, -1);
+                exchange.close();
+                return;
+            }
+            // The last row of each shard has no line feed on purpose.
+            byte[] body = ("id,from,to\n" + start + "," + start + "," + end + "\n" + start + "-last,"
+                    + query.contains("recipt_edrpous=2") + "," + end).getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+
+        UpstreamProperties properties = new UpstreamProperties();
+        properties.setBaseUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+        properties.setCompression(false);
+        properties.setShardParallelism(2);
+        properties.setShardRetries(1);
+        properties.setShardMaxEdrpous(1);
+        properties.setShardSpoolDirectory(spoolDirectory);
+        fetcher = new ShardedUpstreamFetcher(new UpstreamClient(properties), properties, executionEngine);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executionEngine.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    public void testSplitsByDaysThenEdrpous() {
+        TransactionQuery query = new TransactionQuery(LocalDate.of(2024, 10, 1), LocalDate.of(2024, 10, 5),
+                List.of("1", "2", "3"));
+
+        List<TransactionQuery> shards = ShardedUpstreamFetcher.split(query, 2, 2);
+
+        assertEquals(6, shards.size());
+        assertEquals(new TransactionQuery(LocalDate.of(2024, 10, 1), LocalDate.of(2024, 10, 2), List.of("1", "2")),
+                shards.get(0));
+        assertEquals(new TransactionQuery(LocalDate.of(2024, 10, 1), LocalDate.of(2024, 10, 2), List.of("3")),
+                shards.get(1));
+        assertEquals(new TransactionQuery(LocalDate.of(2024, 10, 5), LocalDate.of(2024, 10, 5), List.of("3")),
+                shards.get(5));
+    }
+
+    @Test
+    public void testMergesShardsInDateOrderWithOneHeader() throws Exception {
+        failuresLeft.set(1);
+        TransactionQuery query = new TransactionQuery(LocalDate.of(2024, 10, 1), LocalDate.of(2024, 10, 3), null);
+
+        String merged;
+        try (InputStream input = fetcher.fetch(query, 1)) {
+            merged = new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+        assertEquals("id,from,to\n"
+                + "2024-10-01,2024-10-01,2024-10-01\n2024-10-01-last,false,2024-10-01\n"
+                + "2024-10-02,2024-10-02,2024-10-02\n2024-10-02-last,false,2024-10-02\n"
+                + "2024-10-03,2024-10-03,2024-10-03\n2024-10-03-last,false,2024-10-03\n", merged);
+        assertEquals(0, failuresLeft.get(), "The failed shard should have been retried once");
+        try (var spooled = Files.list(spoolDirectory)) {
+            assertEquals(0, spooled.count(), "Served shards should have been deleted");
+        }
+    }
+
+    @Test
+    public void testFailsWhenShardRetriesAreExhausted() {
+        failuresLeft.set(5);
+        TransactionQuery query = new TransactionQuery(LocalDate.of(2024, 10, 1), LocalDate.of(2024, 10, 2), null);
+
+        assertThrows(IOException.class, () -> {
+            try (InputStream input = fetcher.fetch(query, 1)) {
+                input.readAllBytes();
+            }
+        });
+    }
+}
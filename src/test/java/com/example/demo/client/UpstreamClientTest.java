@@ -0,0 +1,123 @@
+package com.example.demo.client;
+
+import com.example.demo.config.UpstreamProperties;
+import com.example.demo.model.TransactionQuery;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UpstreamClientTest {
+    private static final String BODY = "id,payer_name\n1,Мінфін\n";
+
+    private HttpServer server;
+    private UpstreamClient client;
+    private final AtomicReference<String> lastQuery = new AtomicReference<>();
+    private final AtomicReference<String> lastAcceptEncoding = new AtomicReference<>();
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/transactions/", exchange -> {
+            lastQuery.set(exchange.getRequestURI().getQuery());
+            lastAcceptEncoding.set(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+            byte[] body = BODY.getBytes(StandardCharsets.UTF_8);
+            if ("gzip".equals(lastAcceptEncoding.get())) {
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                    gzip.write(body);
+                }
+                body = compressed.toByteArray();
+                exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/missing/api/transactions/", exchange -> {
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+        });
+        server.createContext("/stalled/api/transactions/", exchange -> {
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            out.write("id\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            try {
+                Thread.sleep(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        server.start();
+        client = new UpstreamClient(properties(""));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testStreamsDecompressedBody() throws Exception {
+        TransactionQuery query = new TransactionQuery(LocalDate.of(2024, 10, 1), LocalDate.of(2024, 10, 31),
+                List.of("00013480", "37567646"));
+
+        try (InputStream body = client.fetch(query)) {
+            assertEquals(BODY, new String(body.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        assertEquals("gzip", lastAcceptEncoding.get());
+        assertEquals("startdate=2024-10-01&enddate=2024-10-31&recipt_edrpous=00013480&recipt_edrpous=37567646",
+                lastQuery.get());
+    }
+
+    @Test
+    public void testRejectsUnexpectedStatus() {
+        UpstreamClient failing = new UpstreamClient(properties("missing/"));
+
+        IOException error = assertThrows(IOException.class, () -> failing.fetch(query()));
+        assertTrue(error.getMessage().contains("503"), error.getMessage());
+    }
+
+    @Test
+    public void testFailsStalledBodyAfterReadTimeout() throws Exception {
+        UpstreamProperties properties = properties("stalled/");
+        properties.setReadTimeout(Duration.ofMillis(300));
+        properties.setCompression(false);
+        // Resuming would only request the same stalled body again.
+        properties.setResumeAttempts(0);
+
+        try (InputStream body = new UpstreamClient(properties).fetch(query())) {
+            assertEquals('i', body.read());
+            assertThrows(SocketTimeoutException.class, body::readAllBytes);
+        }
+    }
+
+    private UpstreamProperties properties(String path) {
+        UpstreamProperties properties = new UpstreamProperties();
+        properties.setBaseUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/" + path);
+        properties.setReadTimeout(Duration.ofSeconds(5));
+        return properties;
+    }
+
+    private static TransactionQuery query() {
+        return new TransactionQuery(LocalDate.of(2024, 10, 1), LocalDate.of(2024, 10, 1), null);
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.demo.coalesce;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.example.demo.columnar.ColumnarBatch;
+import com.example.demo.columnar.ColumnarReader;
+import com.example.demo.config.CoalescingProperties;
+import com.example.demo.config.ExecutionProperties;
+import com.example.demo.execution.ExecutionEngine;
+import com.example.demo.metrics.ProxyMetrics;
+import com.example.demo.service.OutputFormat;
+import com.example.demo.service.ProcessingOptions;
+import com.example.demo.service.TransactionProxyServiceImpl;
+
+public class RequestCoalescerTest {
+    private static final byte[] BODY = body(200_000, 1);
+    private static final String HEADER = "id,doc_vob,doc_vob_name,doc_number,doc_date,doc_v_date,trans_date,amount,"
+            + "amount_cop,currency,payer_edrpou,payer_name,payer_account,payer_mfo,payer_bank,payer_edrpou_fact,"
+            + "payer_name_fact,recipt_edrpou,recipt_name,recipt_account,recipt_mfo,recipt_bank,recipt_edrpou_fact,"
+            + "recipt_name_fact,payment_details,doc_add_attr,region_id,payment_type,payment_data,source_id,"
+            + "source_name,kekv,kpk,contractId,contractNumber,budgetCode,system_key,system_key_ff\n";
+
+    private final ExecutionEngine executionEngine = new ExecutionEngine(new ExecutionProperties());
+
+    @Test
+    public void testConcurrentRequestsShareOneProduction() throws Exception {
+        RequestCoalescer coalescer = coalescer(DataSize.ofKilobytes(64), Duration.ofSeconds(5));
+        AtomicInteger productions = new AtomicInteger();
+        CountDownLatch joined = new CountDownLatch(1);
+        RequestCoalescer.Producer producer = out -> {
+            productions.incrementAndGet();
+            await(joined);
+            write(out, BODY);
+        };
+
+        CompletableFuture<byte[]> first = CompletableFuture.supplyAsync(() -> stream(coalescer, producer));
+        while (productions.get() == 0) {
+            Thread.sleep(1);
+        }
+        CompletableFuture<byte[]> second = CompletableFuture.supplyAsync(() -> stream(coalescer, producer));
+        Thread.sleep(100);
+        joined.countDown();
+
+        assertArrayEquals(BODY, first.get(10, TimeUnit.SECONDS));
+        assertArrayEquals(BODY, second.get(10, TimeUnit.SECONDS));
+        assertEquals(1, productions.get());
+    }
+
+    @Test
+    public void testLateRequestProducesOnItsOwn() throws Exception {
+        RequestCoalescer coalescer = coalescer(DataSize.ofKilobytes(16), Duration.ofSeconds(5));
+        AtomicInteger productions = new AtomicInteger();
+        CountDownLatch resume = new CountDownLatch(1);
+        RequestCoalescer.Producer producer = out -> {
+            if (productions.incrementAndGet() == 1) {
+                write(out, Arrays.copyOf(BODY, 32_000));
+                await(resume);
+                out.write(BODY, 32_000, BODY.length - 32_000);
+            } else {
+                write(out, BODY);
+            }
+        };
+
+        CompletableFuture<byte[]> first = CompletableFuture.supplyAsync(() -> stream(coalescer, producer));
+        while (productions.get() == 0) {
+            Thread.sleep(1);
+        }
+        Thread.sleep(100);
+        // More than the ring holds has been written, so the first byte is gone.
+        assertArrayEquals(BODY, stream(coalescer, producer));
+        resume.countDown();
+
+        assertArrayEquals(BODY, first.get(10, TimeUnit.SECONDS));
+        assertEquals(2, productions.get());
+    }
+
+    @Test
+    public void testSlowRequestFallsBackAndResumes() throws Exception {
+        RequestCoalescer coalescer = coalescer(DataSize.ofKilobytes(8), Duration.ofMillis(50));
+
+        assertEquals(2, streamFastAndSlow(coalescer, out -> write(out, BODY), BODY));
+        assertEquals(0, coalescer.bufferedBytes());
+    }
+
+    @Test
+    public void testSlowRequestResumesColumnarOutput() throws Exception {
+        RequestCoalescer coalescer = coalescer(DataSize.ofKilobytes(8), Duration.ofMillis(50));
+        TransactionProxyServiceImpl service = new TransactionProxyServiceImpl(executionEngine);
+        StringBuilder csv = new StringBuilder(HEADER);
+        for (int i = 0; i < 10_000; i++) {
+            csv.append(290_000_000 + i).append(",6,,x,2024-10-31,,2024-10-31,").append(i % 997)
+                    .append(".5,1250,UAH,,,,,,,,,,,,,,,,,28,nsep,,2,,2410,,,,,,\n");
+        }
+        byte[] input = csv.toString().getBytes(StandardCharsets.UTF_8);
+        // Fixed batches, as the proxy asks for when it shares columnar output.
+        ProcessingOptions options = ProcessingOptions.builder()
+                .format(OutputFormat.COLUMNAR)
+                .fixedBatches(true)
+                .build();
+        RequestCoalescer.Producer producer = out ->
+                service.processTransactions(new ByteArrayInputStream(input), out, options);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        producer.writeTo(expected);
+
+        assertEquals(2, streamFastAndSlow(coalescer, producer, expected.toByteArray()));
+        int rows = 0;
+        try (ColumnarReader reader = new ColumnarReader(new ByteArrayInputStream(expected.toByteArray()))) {
+            for (ColumnarBatch batch; (batch = reader.next()) != null; ) {
+                rows += batch.rowCount();
+            }
+        }
+        assertEquals(10_000, rows);
+    }
+
+    @Test
+    public void testRingsStayWithinTotalBufferSize() throws Exception {
+        // The ring could hold the whole body, but the total only allows its first slice.
+        RequestCoalescer coalescer = coalescer(DataSize.ofMegabytes(1), DataSize.ofKilobytes(64),
+                Duration.ofMillis(50));
+
+        assertEquals(2, streamFastAndSlow(coalescer, out -> write(out, BODY), BODY));
+        assertEquals(0, coalescer.bufferedBytes());
+    }
+
+    @Test
+    public void testSharedFailureReachesEverySubscriber() {
+        RequestCoalescer coalescer = coalescer(DataSize.ofKilobytes(64), Duration.ofSeconds(5));
+
+        CompletableFuture<byte[]> result = CompletableFuture.supplyAsync(() -> stream(coalescer, out -> {
+            out.write(BODY, 0, 100);
+            throw new IOException("Unexpected response code: 500");
+        }));
+
+        Exception e = assertThrows(Exception.class, () -> result.get(10, TimeUnit.SECONDS));
+        assertEquals("Shared fetch failed", e.getCause().getCause().getMessage());
+    }
+
+    /**
+     * Streams what {@code body} writes to a fast request and a slow one that waits for the fast
+     * one after its first write, and checks that both got {@code expected}.
+     *
+     * @return how many times the producer ran
+     */
+    private int streamFastAndSlow(RequestCoalescer coalescer, RequestCoalescer.Producer body, byte[] expected)
+            throws Exception {
+        AtomicInteger productions = new AtomicInteger();
+        CountDownLatch joined = new CountDownLatch(1);
+        RequestCoalescer.Producer producer = out -> {
+            if (productions.incrementAndGet() == 1) {
+                await(joined);
+            }
+            body.writeTo(out);
+        };
+        CountDownLatch fastDone = new CountDownLatch(1);
+
+        CompletableFuture<byte[]> fast = CompletableFuture.supplyAsync(() -> stream(coalescer, producer));
+        while (productions.get() == 0) {
+            Thread.sleep(1);
+        }
+        CompletableFuture<byte[]> slow = CompletableFuture.supplyAsync(() -> {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try {
+                coalescer.stream("key", producer, new OutputStream() {
+                    @Override
+                    public void write(int b) {
+                        out.write(b);
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) {
+                        if (out.size() > 0 && fastDone.getCount() > 0) {
+                            await(fastDone);
+                        }
+                        out.write(b, off, len);
+                    }
+                });
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return out.toByteArray();
+        });
+        Thread.sleep(100);
+        joined.countDown();
+
+        assertArrayEquals(expected, fast.get(10, TimeUnit.SECONDS));
+        fastDone.countDown();
+        assertArrayEquals(expected, slow.get(10, TimeUnit.SECONDS));
+        return productions.get();
+    }
+
+    private RequestCoalescer coalescer(DataSize bufferSize, Duration stallTimeout) {
+        return coalescer(bufferSize, DataSize.ofMegabytes(64), stallTimeout);
+    }
+
+    private RequestCoalescer coalescer(DataSize bufferSize, DataSize maxTotalBufferSize, Duration stallTimeout) {
+        CoalescingProperties properties = new CoalescingProperties();
+        properties.setBufferSize(bufferSize);
+        properties.setMaxTotalBufferSize(maxTotalBufferSize);
+        properties.setStallTimeout(stallTimeout);
+        return new RequestCoalescer(properties, executionEngine, ProxyMetrics.inMemory(executionEngine));
+    }
+
+    private static byte[] stream(RequestCoalescer coalescer, RequestCoalescer.Producer producer) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            coalescer.stream("key", producer, out);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /** Writes in pieces, like the pipeline writing batches. */
+    private static void write(OutputStream out, byte[] data) throws IOException {
+        for (int off = 0; off < data.length; off += 5000) {
+            out.write(data, off, Math.min(5000, data.length - off));
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static byte[] body(int length, long seed) {
+        byte[] body = new byte[length];
+        new Random(seed).nextBytes(body);
+        return body;
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.demo.columnar;
+
+import com.example.demo.model.TransactionColumns;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ColumnarReaderTest {
+    private static final String HASH = "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        List<String[]> batch = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            batch.add(row(i));
+        }
+        // A row the DTO rejected keeps its raw text, so its typed columns fall back to strings.
+        String[] rejected = row(300);
+        rejected[TransactionColumns.TRANS_DATE] = "30.10.2024";
+        List<String[]> second = List.of(rejected, row(301));
+
+        byte[] stream = write(batch, second);
+
+        try (ColumnarReader reader = new ColumnarReader(new ByteArrayInputStream(stream))) {
+            assertEquals(TransactionColumns.COUNT + 1, reader.columnCount());
+            assertEquals("hash", reader.columnName(TransactionColumns.COUNT));
+            assertEquals(LogicalType.DATE, reader.columnType(TransactionColumns.TRANS_DATE));
+            int amountCop = reader.columnIndex("amount_cop");
+            assertEquals(LogicalType.INT64, reader.columnType(amountCop));
+
+            ColumnarBatch first = reader.next();
+            assertEquals(300, first.rowCount());
+            assertRows(batch, first);
+            assertEquals(25_017L, first.getLong(amountCop, 17));
+            assertEquals(new BigDecimal("250.17"), first.getDecimal(TransactionColumns.AMOUNT, 17));
+            assertEquals(LocalDate.of(2024, 10, 18), first.getDate(TransactionColumns.TRANS_DATE, 17));
+            assertEquals(17, first.getInt(TransactionColumns.KEKV, 17) - 2000);
+            assertTrue(first.isNull(TransactionColumns.REGION_ID, 17));
+            assertEquals(0x01, first.getHash(TransactionColumns.COUNT, 0)[0]);
+
+            ColumnarBatch next = reader.next();
+            assertRows(second, next);
+            assertEquals(LocalDate.of(2024, 10, 1).toEpochDay() + 301 % 28,
+                    next.getInt(TransactionColumns.TRANS_DATE, 1));
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    public void testSmallerThanCsvOutput() throws IOException {
+        List<String[]> rows = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            rows.add(row(i));
+        }
+        // The CSV output quotes every field.
+        int csvLength = rows.stream()
+                .mapToInt(row -> ("\"" + String.join("\",\"", row) + "\"\n").getBytes(StandardCharsets.UTF_8).length)
+                .sum();
+
+        assertTrue(write(rows).length * 2 < csvLength);
+    }
+
+    @Test
+    public void testTruncatedStreamFails() throws IOException {
+        byte[] stream = write(List.<String[]>of(row(0)));
+        byte[] truncated = Arrays.copyOf(stream, stream.length - 4);
+
+        try (ColumnarReader reader = new ColumnarReader(new ByteArrayInputStream(truncated))) {
+            assertNotNull(reader.next());
+            assertThrows(EOFException.class, reader::next);
+        }
+    }
+
+    @SafeVarargs
+    private static byte[] write(List<String[]>... batches) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ColumnarBatchEncoder.writeStreamHeader(out);
+        for (List<String[]> batch : batches) {
+            ColumnarBatchEncoder encoder = new ColumnarBatchEncoder(1);
+            batch.forEach(encoder::add);
+            out.write(encoder.encode());
+        }
+        ColumnarBatchEncoder.writeEnd(out);
+        return out.toByteArray();
+    }
+
+    private static void assertRows(List<String[]> expected, ColumnarBatch batch) {
+        for (int row = 0; row < expected.size(); row++) {
+            for (int column = 0; column <= TransactionColumns.COUNT; column++) {
+                String value = expected.get(row)[column];
+                assertEquals(value == null ? "" : value, batch.getText(column, row), "row " + row + " column " + column);
+            }
+        }
+    }
+
+    private static String[] row(int i) {
+        String[] row = new String[TransactionColumns.COUNT + 1];
+        Arrays.fill(row, "");
+        row[TransactionColumns.ID] = String.valueOf(290_000_000L + i);
+        row[TransactionColumns.DOC_VOB] = "6";
+        row[TransactionColumns.DOC_NUMBER] = "18/2/" + i;
+        row[TransactionColumns.TRANS_DATE] = LocalDate.of(2024, 10, 1).plusDays(i % 28).toString();
+        row[TransactionColumns.AMOUNT] = new BigDecimal(25_000 + i).movePointLeft(2).toString();
+        row[TransactionColumns.AMOUNT_COP] = String.valueOf(25_000 + i);
+        row[TransactionColumns.CURRENCY] = "UAH";
+        row[TransactionColumns.PAYER_NAME] = i % 3 == 0 ? "\"Виділення асигнувань по ЗФ\"" : "ГУ ДКСУ у м.Києві";
+        row[TransactionColumns.PAYMENT_DETAILS] = "Оплата за рах. №" + i;
+        row[TransactionColumns.REGION_ID] = i % 2 == 0 ? "28" : null;
+        row[TransactionColumns.SOURCE_NAME] = "ДКСУ";
+        row[TransactionColumns.KEKV] = String.valueOf(2000 + i % 100);
+        row[TransactionColumns.COUNT] = HASH;
+        return row;
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.demo.compression;
+
+import com.github.luben.zstd.ZstdInputStream;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompressingOutputStreamTest {
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(4);
+
+    @AfterAll
+    static void shutdown() {
+        EXECUTOR.shutdown();
+    }
+
+    @Test
+    public void testGzipIsOneMemberOfIndependentBlocks() throws Exception {
+        byte[] input = sample();
+        byte[] compressed = compress(ContentCoding.GZIP, input);
+
+        assertArrayEquals(input, new GZIPInputStream(new ByteArrayInputStream(compressed)).readAllBytes());
+        // One deflate stream after the 10-byte header, followed only by the 8-byte trailer.
+        Inflater inflater = new Inflater(true);
+        inflater.setInput(compressed, 10, compressed.length - 10);
+        byte[] inflated = new byte[input.length];
+        int length = 0;
+        while (!inflater.finished()) {
+            length += inflater.inflate(inflated, length, inflated.length - length);
+        }
+        assertEquals(input.length, length);
+        assertEquals(8, inflater.getRemaining());
+    }
+
+    @Test
+    public void testZstdRoundTrip() throws IOException {
+        byte[] input = sample();
+        byte[] compressed = compress(ContentCoding.ZSTD, input);
+
+        try (InputStream in = new ZstdInputStream(new ByteArrayInputStream(compressed))) {
+            assertArrayEquals(input, in.readAllBytes());
+        }
+    }
+
+    @Test
+    public void testEmptyStreamIsValid() throws IOException {
+        byte[] compressed = compress(ContentCoding.GZIP, new byte[0]);
+
+        assertEquals(0, new GZIPInputStream(new ByteArrayInputStream(compressed)).readAllBytes().length);
+    }
+
+    @Test
+    public void testCrcCombine() {
+        byte[] input = sample();
+        int split = 100_003;
+        CRC32 whole = new CRC32();
+        whole.update(input);
+        CRC32 first = new CRC32();
+        first.update(input, 0, split);
+        CRC32 second = new CRC32();
+        second.update(input, split, input.length - split);
+
+        assertEquals((int) whole.getValue(), GzipBlockCodec.combine((int) first.getValue(),
+                (int) second.getValue(), input.length - split));
+    }
+
+    /** Mixes buffered writes and pre-compressed blocks, the way the service writes a response. */
+    private static byte[] compress(ContentCoding coding, byte[] input) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompressingOutputStream compressed = new CompressingOutputStream(out, coding, EXECUTOR, 2);
+        int position = 0;
+        boolean block = false;
+        while (position < input.length) {
+            int length = Math.min(input.length - position, 70_000);
+            if (block) {
+                compressed.writeBlock(compressed.compress(Arrays.copyOfRange(input, position, position + length)));
+            } else {
+                compressed.write(input, position, length);
+            }
+            compressed.flush();
+            position += length;
+            block = !block;
+        }
+        compressed.finish();
+        return out.toByteArray();
+    }
+
+    private static byte[] sample() {
+        StringBuilder sample = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            sample.append(i).append(",\"Виділення асигнувань по ЗФ\",ДКСУ,UAH,").append(i * 7919 % 10_007).append('\n');
+        }
+        return sample.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.demo.compression;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContentCodingTest {
+    @Test
+    public void testNegotiate() {
+        assertEquals(ContentCoding.IDENTITY, ContentCoding.negotiate(null));
+        assertEquals(ContentCoding.IDENTITY, ContentCoding.negotiate("br"));
+        assertEquals(ContentCoding.GZIP, ContentCoding.negotiate("gzip, deflate, br"));
+        assertEquals(ContentCoding.ZSTD, ContentCoding.negotiate("gzip, deflate, br, zstd"));
+        assertEquals(ContentCoding.GZIP, ContentCoding.negotiate("zstd;q=0.5, GZIP"));
+        assertEquals(ContentCoding.GZIP, ContentCoding.negotiate("zstd;q=0, *"));
+        assertEquals(ContentCoding.IDENTITY, ContentCoding.negotiate("gzip;q=0"));
+    }
+}
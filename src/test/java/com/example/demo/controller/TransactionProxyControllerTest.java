@@ -0,0 +1,330 @@
+package com.example.demo.controller;
+
+import com.example.demo.client.ContinuationToken;
+import com.example.demo.columnar.ColumnarBatch;
+import com.example.demo.columnar.ColumnarFormat;
+import com.example.demo.columnar.ColumnarReader;
+import com.github.luben.zstd.ZstdInputStream;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@AutoConfigureObservability
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "cache.enabled=false")
+public class TransactionProxyControllerTest {
+    private static final String HEADER = "id,doc_vob,doc_vob_name,doc_number,doc_date,doc_v_date,trans_date,amount,amount_cop,currency,payer_edrpou,payer_name,payer_account,payer_mfo,payer_bank,payer_edrpou_fact,payer_name_fact,recipt_edrpou,recipt_name,recipt_account,recipt_mfo,recipt_bank,recipt_edrpou_fact,recipt_name_fact,payment_details,doc_add_attr,region_id,payment_type,payment_data,source_id,source_name,kekv,kpk,contractId,contractNumber,budgetCode,system_key,system_key_ff\n";
+    private static final String ROW = ",6,,140/944,2024-10-29,2024-10-29,2024-10-29,894.27,89427,UAH,37567646,\"Виділення асигнувань по ЗФ\",UA618201720000042314000000000,,,,,00013480,Мінфін,UA608201720343340023000000141,,,,,\"Комысыя ыною.Рах-фак.НБУ выд 15.10.24 И117\",,28,nsep,,2,ДКСУ,2420,3511350,,,9900000000,176682599,\n";
+    private static final int RESUMED_ROWS = 3000;
+    private static final AtomicInteger DROPPED_BODIES = new AtomicInteger();
+    private static final HttpServer UPSTREAM = startUpstream();
+
+    @LocalServerPort
+    private int port;
+
+    @DynamicPropertySource
+    static void upstreamProperties(DynamicPropertyRegistry registry) {
+        registry.add("upstream.base-url", () -> "http://127.0.0.1:" + UPSTREAM.getAddress().getPort() + "/");
+        registry.add("upstream.compression", () -> "false");
+        registry.add("delta.directory", () -> createTempDirectory("delta"));
+        registry.add("bulk.max-upload-size", () -> "64KB");
+    }
+
+    @AfterAll
+    static void stopUpstream() {
+        UPSTREAM.stop(0);
+    }
+
+    @Test
+    public void testStreamsProcessedRows() throws Exception {
+        HttpResponse<String> response = get("2024-10-01", HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, response.statusCode());
+        String[] lines = response.body().split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].endsWith(",hash"));
+        assertTrue(lines[2].startsWith("\"2\","));
+    }
+
+    @Test
+    public void testRejectsReversedRange() throws Exception {
+        String range = "?startDate=2024-10-02&endDate=2024-10-01";
+        for (String path : new String[]{"proxy" + range, "digest" + range, "aggregate" + range + "&groupBy=kekv"}) {
+            URI uri = URI.create("http://127.0.0.1:" + port + "/api/v2/transactions/" + path);
+            assertEquals(400, HttpClient.newHttpClient().send(HttpRequest.newBuilder(uri).build(),
+                    HttpResponse.BodyHandlers.ofString()).statusCode(), path);
+        }
+    }
+
+    @Test
+    public void testNegotiatesCompression() throws Exception {
+        String plain = get("2024-10-01", HttpResponse.BodyHandlers.ofString()).body();
+
+        HttpResponse<byte[]> gzip = get("2024-10-01", "gzip, deflate", HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals("gzip", gzip.headers().firstValue("Content-Encoding").orElse(null));
+        assertEquals("Accept, Accept-Encoding", gzip.headers().firstValue("Vary").orElse(null));
+        assertEquals(plain, new String(new GZIPInputStream(new ByteArrayInputStream(gzip.body())).readAllBytes(),
+                StandardCharsets.UTF_8));
+
+        HttpResponse<byte[]> zstd = get("2024-10-01", "gzip;q=0.8, zstd", HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals("zstd", zstd.headers().firstValue("Content-Encoding").orElse(null));
+        assertEquals(plain, new String(new ZstdInputStream(new ByteArrayInputStream(zstd.body())).readAllBytes(),
+                StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testColumnarFormatFromAcceptHeader() throws Exception {
+        URI uri = URI.create("http://127.0.0.1:" + port
+                + "/api/v2/transactions/proxy?startDate=2024-10-01&endDate=2024-10-01");
+        HttpResponse<InputStream> response = HttpClient.newHttpClient().send(HttpRequest.newBuilder(uri)
+                .header("Accept", ColumnarFormat.MEDIA_TYPE).build(), HttpResponse.BodyHandlers.ofInputStream());
+
+        assertEquals(200, response.statusCode());
+        assertEquals(ColumnarFormat.MEDIA_TYPE, response.headers().firstValue("Content-Type").orElse(null));
+        try (ColumnarReader reader = new ColumnarReader(response.body())) {
+            ColumnarBatch batch = reader.next();
+            assertEquals(2, batch.rowCount());
+            assertEquals(2L, batch.getLong(reader.columnIndex("id"), 1));
+            assertEquals(89427L, batch.getLong(reader.columnIndex("amount_cop"), 1));
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    public void testAggregatesRows() throws Exception {
+        String base = "http://127.0.0.1:" + port
+                + "/api/v2/transactions/aggregate?startDate=2024-10-01&endDate=2024-10-01&groupBy=";
+        HttpResponse<String> response = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI.create(base + "kekv")).build(), HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().contains(
+                "\"groups\":[{\"key\":\"2420\",\"count\":2,\"sumCop\":178854,\"minCop\":89427,\"maxCop\":89427}]"),
+                response.body());
+        assertEquals(400, HttpClient.newHttpClient().send(HttpRequest.newBuilder(URI.create(base + "amount")).build(),
+                HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    @Test
+    public void testProcessesUploadedBulkFile() throws Exception {
+        String plain = get("2024-10-01", HttpResponse.BodyHandlers.ofString()).body();
+        URI uri = URI.create("http://127.0.0.1:" + port + "/api/v2/transactions/bulk");
+        HttpResponse<String> response = HttpClient.newHttpClient().send(HttpRequest.newBuilder(uri)
+                .POST(HttpRequest.BodyPublishers.ofString(HEADER + "1" + ROW + "2" + ROW)).build(),
+                HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, response.statusCode());
+        assertEquals(plain, response.body());
+        byte[] tooLarge = (HEADER + ("1" + ROW).repeat(200)).getBytes(StandardCharsets.UTF_8);
+        assertEquals(413, HttpClient.newHttpClient().send(HttpRequest.newBuilder(uri)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(tooLarge)).build(),
+                HttpResponse.BodyHandlers.ofString()).statusCode());
+        // Without a Content-Length the limit is enforced while spooling.
+        assertEquals(413, HttpClient.newHttpClient().send(HttpRequest.newBuilder(uri)
+                .POST(HttpRequest.BodyPublishers.ofInputStream(() -> new ByteArrayInputStream(tooLarge))).build(),
+                HttpResponse.BodyHandlers.ofString()).statusCode());
+        assertEquals(403, HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI.create(uri + "?path=export.csv")).POST(HttpRequest.BodyPublishers.noBody())
+                        .build(), HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    @Test
+    public void testSendsDigestAsTrailer() throws Exception {
+        String manifest = HttpClient.newHttpClient().send(HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port
+                        + "/api/v2/transactions/proxy?startDate=2024-10-01&endDate=2024-10-01&digest=MANIFEST")).build(),
+                HttpResponse.BodyHandlers.ofString()).body();
+        String root = manifest.substring(manifest.indexOf("merkle-sha256=") + 14, manifest.indexOf(" rows="));
+
+        try (Socket socket = new Socket("127.0.0.1", port)) {
+            socket.getOutputStream().write(("GET /api/v2/transactions/proxy?startDate=2024-10-01&endDate=2024-10-01"
+                    + "&digest=TRAILER HTTP/1.1\r\nHost: localhost\r\nTE: trailers\r\nConnection: close\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            String response = new String(socket.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+
+            assertTrue(response.contains("Transfer-Encoding: chunked"), response);
+            String trailers = response.substring(response.lastIndexOf("\r\n0\r\n"));
+            assertTrue(trailers.contains("X-Merkle-Root: " + root), response);
+            assertTrue(trailers.contains("X-Row-Count: 2"), response);
+        }
+    }
+
+    @Test
+    public void testSendsDeltaCursorOnceAdmitted() throws Exception {
+        URI uri = URI.create("http://127.0.0.1:" + port
+                + "/api/v2/transactions/proxy?startDate=2024-10-01&endDate=2024-10-01&since=0");
+        HttpResponse<String> first = HttpClient.newHttpClient().send(HttpRequest.newBuilder(uri).build(),
+                HttpResponse.BodyHandlers.ofString());
+        HttpResponse<String> second = HttpClient.newHttpClient().send(HttpRequest.newBuilder(uri).build(),
+                HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, second.statusCode());
+        assertEquals(3, second.body().split("\n").length);
+        long cursor = Long.parseLong(first.headers().firstValue(TransactionProxyController.DELTA_CURSOR_HEADER)
+                .orElseThrow());
+        assertEquals(String.valueOf(cursor + 1),
+                second.headers().firstValue(TransactionProxyController.DELTA_CURSOR_HEADER).orElse(null));
+    }
+
+    @Test
+    public void testExposesPrometheusMetrics() throws Exception {
+        get("2024-10-01", HttpResponse.BodyHandlers.ofString());
+
+        URI uri = URI.create("http://127.0.0.1:" + port + "/api/v2/actuator/prometheus");
+        String metrics = HttpClient.newHttpClient().send(HttpRequest.newBuilder(uri).build(),
+                HttpResponse.BodyHandlers.ofString()).body();
+        assertTrue(metrics.contains("proxy_rows_total{"));
+        assertTrue(metrics.contains("proxy_stage_seconds_bucket{"));
+        assertTrue(metrics.contains("proxy_upstream_response_seconds_count{outcome=\"success\"}"));
+        assertTrue(metrics.contains("proxy_executor_caller_runs_total"));
+    }
+
+    @Test
+    public void testFailureBeforeFirstByteIsAnErrorStatus() throws Exception {
+        HttpResponse<String> response = get("2024-10-03", "gzip", HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(500, response.statusCode());
+        assertTrue(response.headers().firstValue("Content-Encoding").isEmpty());
+    }
+
+    @Test
+    public void testFailureMidStreamAbortsTheResponse() throws Exception {
+        HttpResponse<InputStream> response = get("2024-10-02", HttpResponse.BodyHandlers.ofInputStream());
+
+        assertEquals(200, response.statusCode());
+        try (InputStream body = response.body()) {
+            assertThrows(IOException.class, () -> body.transferTo(OutputStream.nullOutputStream()));
+        }
+    }
+
+    @Test
+    public void testResumesUpstreamBodyAfterDroppedConnection() throws Exception {
+        HttpResponse<String> response = get("2024-10-04", HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, response.statusCode());
+        String[] lines = response.body().split("\n");
+        assertEquals(RESUMED_ROWS + 1, lines.length);
+        for (int id = 1; id <= RESUMED_ROWS; id++) {
+            assertTrue(lines[id].startsWith("\"" + id + "\","), lines[id]);
+        }
+        assertTrue(DROPPED_BODIES.get() >= 1);
+    }
+
+    @Test
+    public void testContinuesAfterClientToken() throws Exception {
+        String token = new ContinuationToken(LocalDate.of(2024, 10, 4), "2995").encode();
+        URI uri = URI.create("http://127.0.0.1:" + port
+                + "/api/v2/transactions/proxy?startDate=2024-10-04&endDate=2024-10-04&resume=" + token);
+        HttpResponse<String> response = HttpClient.newHttpClient().send(HttpRequest.newBuilder(uri).build(),
+                HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(200, response.statusCode());
+        String[] lines = response.body().split("\n");
+        assertEquals(6, lines.length);
+        assertTrue(lines[1].startsWith("\"2996\","), lines[1]);
+
+        assertEquals(400, HttpClient.newHttpClient().send(HttpRequest.newBuilder(URI.create(uri + "x!")).build(),
+                HttpResponse.BodyHandlers.ofString()).statusCode());
+        // Without id and trans_date in the output the client cannot have built the token.
+        assertEquals(400, HttpClient.newHttpClient().send(HttpRequest.newBuilder(URI.create(uri + "&fields=amount"))
+                .build(), HttpResponse.BodyHandlers.ofString()).statusCode());
+        assertEquals(200, HttpClient.newHttpClient().send(HttpRequest.newBuilder(
+                URI.create(uri + "&fields=id,trans_date,amount")).build(), HttpResponse.BodyHandlers.ofString())
+                .statusCode());
+    }
+
+    private <T> HttpResponse<T> get(String day, HttpResponse.BodyHandler<T> handler) throws Exception {
+        return get(day, null, handler);
+    }
+
+    private <T> HttpResponse<T> get(String day, String acceptEncoding, HttpResponse.BodyHandler<T> handler)
+            throws Exception {
+        URI uri = URI.create("http://127.0.0.1:" + port + "/api/v2/transactions/proxy?startDate=" + day
+                + "&endDate=" + day);
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri);
+        if (acceptEncoding != null) {
+            request.header("Accept-Encoding", acceptEncoding);
+        }
+        return HttpClient.newHttpClient().send(request.build(), handler);
+    }
+
+    private static String createTempDirectory(String prefix) {
+        try {
+            return Files.createTempDirectory(prefix).toString();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 2024-10-01 answers two rows. 2024-10-02 sends enough rows for several batches and then
+     * an unterminated quoted field, and 2024-10-03 fails with a 500. 2024-10-04 has 3000 rows of
+     * that date, and the first body sent for it breaks off halfway.
+     */
+    private static HttpServer startUpstream() {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/api/transactions/", exchange -> {
+                String query = exchange.getRequestURI().getQuery();
+                if (query.contains("startdate=2024-10-03")) {
+                    exchange.sendResponseHeaders(500, -1);
+                    exchange.close();
+                    return;
+                }
+                if (query.contains("startdate=2024-10-04")) {
+                    StringBuilder body = new StringBuilder(HEADER);
+                    for (int id = 1; id <= RESUMED_ROWS; id++) {
+                        body.append(id).append(ROW.replace("2024-10-29", "2024-10-04"));
+                    }
+                    byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+                    boolean drop = DROPPED_BODIES.compareAndSet(0, 1);
+                    exchange.sendResponseHeaders(200, bytes.length);
+                    OutputStream out = exchange.getResponseBody();
+                    out.write(bytes, 0, drop ? bytes.length / 2 : bytes.length);
+                    out.flush();
+                    // Closing short of the announced length drops the connection.
+                    exchange.close();
+                    return;
+                }
+                boolean broken = query.contains("startdate=2024-10-02");
+                StringBuilder body = new StringBuilder(HEADER);
+                for (int id = 1; id <= (broken ? 12_000 : 2); id++) {
+                    body.append(id).append(ROW);
+                }
+                if (broken) {
+                    body.append("12001,\"unterminated\n");
+                }
+                byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, bytes.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+            });
+            server.start();
+            return server;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.demo.csv;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CsvFileSplitterTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testSplitsOnlyAtRecordBoundaries() throws Exception {
+        byte[] csv = ("id,name\n1,\"two\nlines\"\n2,\"\"\"quoted\"\"\n,\"\"\r\n3,\"a\n\n\nb\"\n4,plain\n5,\"\n\"")
+                .getBytes(StandardCharsets.UTF_8);
+        Path file = Files.write(directory.resolve("split.csv"), csv);
+        Set<Long> records = recordBoundaries(csv, 8);
+
+        try (FileChannel channel = FileChannel.open(file)) {
+            for (int rangeSize = 1; rangeSize <= csv.length; rangeSize++) {
+                long[] boundaries = CsvFileSplitter.split(channel, 8, rangeSize, Runnable::run, 2);
+
+                assertEquals(8, boundaries[0]);
+                assertEquals(csv.length, boundaries[boundaries.length - 1]);
+                for (int i = 1; i < boundaries.length; i++) {
+                    assertTrue(boundaries[i] > boundaries[i - 1], "range size " + rangeSize);
+                    assertTrue(records.contains(boundaries[i]), "range size " + rangeSize + " cut at " + boundaries[i]);
+                }
+            }
+            assertEquals(records.size(), CsvFileSplitter.split(channel, 8, 1, Runnable::run, 2).length);
+        }
+    }
+
+    @Test
+    public void testKeepsAtMostMaxInFlightScansSubmitted() throws Exception {
+        byte[] csv = ("id,name\n" + "1,\"a\nb\"\n".repeat(200)).getBytes(StandardCharsets.UTF_8);
+        Path file = Files.write(directory.resolve("bounded.csv"), csv);
+        AtomicInteger submitted = new AtomicInteger();
+        CountDownLatch gate = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        Executor gated = task -> {
+            submitted.incrementAndGet();
+            pool.execute(() -> {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                task.run();
+            });
+        };
+
+        try (FileChannel channel = FileChannel.open(file)) {
+            CompletableFuture<long[]> split = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return CsvFileSplitter.split(channel, 8, 16, gated, 3);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            // No scan can finish before the gate opens, so no further one may be submitted.
+            Thread.sleep(200);
+            assertEquals(3, submitted.get());
+            gate.countDown();
+            assertArrayEquals(CsvFileSplitter.split(channel, 8, 16, Runnable::run, 1), split.get(10, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testEmptyBodyHasNoRanges() throws Exception {
+        Path file = Files.write(directory.resolve("header.csv"), "id,name\n".getBytes(StandardCharsets.UTF_8));
+
+        try (FileChannel channel = FileChannel.open(file)) {
+            assertArrayEquals(new long[]{8}, CsvFileSplitter.split(channel, 8, 4, Runnable::run, 2));
+        }
+    }
+
+    private static Set<Long> recordBoundaries(byte[] csv, int start) {
+        ByteBuffer data = ByteBuffer.wrap(csv);
+        Set<Long> boundaries = new HashSet<>();
+        boundaries.add((long) start);
+        for (int position = start; position >= 0 && position < csv.length; ) {
+            position = CsvTokenizer.findRecordEnd(data, position, csv.length);
+            boundaries.add(position < 0 ? (long) csv.length : position);
+        }
+        return boundaries;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.demo.csv;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CsvTokenizerTest {
+
+    @Test
+    public void testSplitsPlainAndQuotedFields() {
+        CsvRecord record = tokenize("1,,\"Виділення, ЗФ\",\"ТОВ \"\"Будсервіс\"\"\",UAH\r\n");
+
+        assertArrayEquals(new String[]{"1", "", "Виділення, ЗФ", "ТОВ \"Будсервіс\"", "UAH"}, record.toStringArray());
+        assertFalse(record.needsUnquoting(2), "Simple quoted fields should be exact slices");
+        assertTrue(record.needsUnquoting(3), "Doubled quotes need unquoting");
+    }
+
+    @Test
+    public void testKeepsLineBreaksInsideQuotes() {
+        CsvRecord record = tokenize("1,\"first line\nsecond line\",3");
+
+        assertEquals(3, record.size());
+        assertEquals("first line\nsecond line", record.getString(1));
+        assertEquals("3", record.getString(2));
+    }
+
+    @Test
+    public void testExposesFieldsAsSlices() {
+        String row = "292071798,Мінфін,\"UA60\"";
+        CsvRecord record = tokenize(row);
+
+        byte[] bytes = row.getBytes(StandardCharsets.UTF_8);
+        assertEquals(10, record.offset(1));
+        assertEquals("Мінфін".getBytes(StandardCharsets.UTF_8).length, record.length(1));
+        assertEquals("UA60", new String(bytes, record.offset(2), record.length(2), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testChunksContainOnlyWholeRecords() throws Exception {
+        String csv = "h1,h2\n1,\"a\nb\"\n2,\"c,d\"\n3,e\n4,f";
+        CsvChunkReader reader = new CsvChunkReader(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), 4);
+
+        List<String> firstFields = new ArrayList<>();
+        int chunks = 0;
+        CsvChunk chunk;
+        while ((chunk = reader.nextChunk(2)) != null) {
+            chunks++;
+            ByteBuffer data = chunk.getData();
+            CsvRecord record = new CsvRecord();
+            int position = 0;
+            int records = 0;
+            while (position < data.limit()) {
+                position = CsvTokenizer.nextRecord(data, position, data.limit(), record);
+                assertEquals(2, record.size());
+                firstFields.add(record.getString(0));
+                records++;
+            }
+            assertEquals(chunk.getRecordCount(), records);
+            // A chunk holds its own records only, not the read buffer around them.
+            assertEquals(data.limit(), data.capacity());
+        }
+
+        assertEquals(3, chunks);
+        assertEquals(List.of("h1", "1", "2", "3", "4"), firstFields);
+    }
+
+    private static CsvRecord tokenize(String row) {
+        ByteBuffer data = ByteBuffer.wrap(row.getBytes(StandardCharsets.UTF_8));
+        CsvRecord record = new CsvRecord();
+        CsvTokenizer.nextRecord(data, 0, data.limit(), record);
+        return record;
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.demo.delta;
+
+import com.example.demo.config.DeltaProperties;
+import com.example.demo.exception.ServerBusyException;
+import com.example.demo.model.TransactionQuery;
+import com.example.demo.pipeline.EncodedBatch;
+import com.example.demo.pipeline.RowKeys;
+import com.example.demo.service.CsvReaderType;
+import com.example.demo.service.ProcessingMode;
+import com.example.demo.service.ProcessingOptions;
+import com.example.demo.service.TransactionProxyServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DeltaIndexTest {
+    private static final String HEADER = "id,doc_vob,doc_vob_name,doc_number,doc_date,doc_v_date,trans_date,amount,amount_cop,currency,payer_edrpou,payer_name,payer_account,payer_mfo,payer_bank,payer_edrpou_fact,payer_name_fact,recipt_edrpou,recipt_name,recipt_account,recipt_mfo,recipt_bank,recipt_edrpou_fact,recipt_name_fact,payment_details,doc_add_attr,region_id,payment_type,payment_data,source_id,source_name,kekv,kpk,contractId,contractNumber,budgetCode,system_key,system_key_ff\n";
+    private static final String ROW_A = "292071798,6,,18/2/326,2024-10-30,2024-10-30,2024-10-30,4251932925.5,425193292550,UAH,37567646,\"Виділення асигнувань по ЗФ\",UA618201720000042314000000000,,,,,00013480,Мінфін,UA608201720343340023000000141,,,,,\"Процентний. Розп.МФУ від 10.10.xxxx №xxxx\",,28,nsep,,2,ДКСУ,2410,3511350,,,9900000000,176819180,\n";
+    private static final String ROW_B = "291944385,6,,140/944,2024-10-29,2024-10-29,2024-10-29,894.27,89427,UAH,37567646,\"Виділення асигнувань по ЗФ\",UA618201720000042314000000000,,,,,00013480,Мінфін,UA608201720343340023000000141,,,,,\"Комысыя ыною.Рах-фак.НБУ выд 15.10.24 И117\",,28,nsep,,2,ДКСУ,2420,3511350,,,9900000000,176682599,\n";
+    private static final String ROW_A_CHANGED = ROW_A.replace("4251932925.5,425193292550", "4251932925.6,425193292560");
+    private static final String ROW_C = ROW_B.replace("291944385", "291944386");
+    private static final TransactionQuery RANGE = new TransactionQuery(LocalDate.of(2024, 10, 29),
+            LocalDate.of(2024, 10, 30), List.of());
+
+    @TempDir
+    Path directory;
+
+    private DeltaIndex index;
+    private TransactionProxyServiceImpl service;
+
+    @BeforeEach
+    public void setUp() {
+        index = new DeltaIndex(properties(16));
+        service = new TransactionProxyServiceImpl();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        index.close();
+        service.shutdown();
+    }
+
+    @Test
+    public void testEmitsOnlyNewAndChangedRows() throws Exception {
+        String first = process(ROW_A + ROW_B, 0, false, CsvReaderType.OPENCSV, ProcessingMode.FULL);
+        assertEquals(3, first.lines().count());
+
+        String second = process(ROW_A_CHANGED + ROW_B + ROW_C, 1, false, CsvReaderType.TOKENIZER,
+                ProcessingMode.PASSTHROUGH);
+        List<String> rows = second.lines().skip(1).toList();
+        assertEquals(2, rows.size());
+        assertTrue(rows.get(0).startsWith("\"292071798\""));
+        assertTrue(rows.get(0).contains("\"425193292560\""));
+        assertTrue(rows.get(1).startsWith("\"291944386\""));
+
+        // A client still at cursor 0 gets every current row.
+        String behind = process(ROW_A_CHANGED + ROW_B + ROW_C, 0, false, CsvReaderType.OPENCSV, ProcessingMode.FULL);
+        assertEquals(4, behind.lines().count());
+    }
+
+    @Test
+    public void testTombstonesForRowsMissingFromFetchedDays() throws Exception {
+        process(ROW_A + ROW_B + ROW_C, 0, false, CsvReaderType.OPENCSV, ProcessingMode.FULL);
+
+        String output = process(ROW_C, 1, true, CsvReaderType.OPENCSV, ProcessingMode.FULL);
+        List<String> rows = output.lines().skip(1).sorted().toList();
+        assertEquals(List.of(
+                "\"291944385\",\"\",\"\",\"\",\"\",\"\",\"2024-10-29\"" + ",\"\"".repeat(32),
+                "\"292071798\",\"\",\"\",\"\",\"\",\"\",\"2024-10-30\"" + ",\"\"".repeat(32)), rows);
+
+        // Deletions are reported once per cursor, and a returning row counts as changed.
+        assertEquals(1, process(ROW_C, 2, true, CsvReaderType.OPENCSV, ProcessingMode.FULL).lines().count());
+        assertEquals(2, process(ROW_B + ROW_C, 3, true, CsvReaderType.OPENCSV, ProcessingMode.FULL).lines().count());
+    }
+
+    @Test
+    public void testIndexGrowsAndSurvivesRestart() throws Exception {
+        int rows = 1000;
+        RowKeys keys = new RowKeys(rows);
+        for (int i = 0; i < rows; i++) {
+            keys.add(1_000_000L + i, i * 31L, 19_000, i + 1);
+        }
+        EncodedBatch batch = new EncodedBatch(0, new byte[rows], rows, keys);
+        try (DeltaSession session = index.begin(0, RANGE, false)) {
+            assertEquals(rows, session.sink(new ByteArrayOutputStream()).write(batch));
+        }
+        index.close();
+
+        index = new DeltaIndex(properties(16));
+        try (DeltaSession session = index.begin(1, RANGE, false)) {
+            assertEquals(2, session.cursor());
+            assertEquals(0, session.sink(new ByteArrayOutputStream()).write(batch));
+        }
+        assertEquals(rows, index.size());
+    }
+
+    @Test
+    public void testTurnsAwayRequestsWhileAnotherRuns() throws Exception {
+        DeltaProperties properties = properties(16);
+        properties.setLockTimeout(Duration.ofMillis(50));
+        index.close();
+        index = new DeltaIndex(properties);
+        try (DeltaSession running = index.begin(0, RANGE, false)) {
+            assertThrows(ServerBusyException.class, () -> index.begin(running.cursor(), RANGE, false));
+        }
+        try (DeltaSession next = index.begin(1, RANGE, false)) {
+            assertEquals(2, next.cursor());
+        }
+    }
+
+    private String process(String rows, long since, boolean tombstones, CsvReaderType reader, ProcessingMode mode)
+            throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DeltaSession session = index.begin(since, RANGE, tombstones)) {
+            service.processTransactions(new ByteArrayInputStream((HEADER + rows).getBytes(StandardCharsets.UTF_8)),
+                    out, ProcessingOptions.builder().reader(reader).mode(mode).delta(session).build());
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private DeltaProperties properties(int initialCapacity) {
+        DeltaProperties properties = new DeltaProperties();
+        properties.setDirectory(directory);
+        properties.setInitialCapacity(initialCapacity);
+        return properties;
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.demo.execution;
+
+import com.example.demo.config.ExecutionProperties;
+import com.example.demo.exception.ServerBusyException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExecutionEngineTest {
+    private ExecutionEngine engine;
+
+    @AfterEach
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    public void testSizesPoolsFromProperties() {
+        ExecutionProperties properties = new ExecutionProperties();
+        properties.setCpuThreads(3);
+        properties.setMaxConcurrentRequests(2);
+        engine = new ExecutionEngine(properties);
+
+        assertEquals(3, engine.cpuExecutor().getMaximumPoolSize());
+        assertEquals(6, engine.batchesPerRequest());
+        assertEquals(12, engine.cpuExecutor().getQueue().remainingCapacity());
+        assertEquals(Runtime.version().feature() >= 21, engine.usesVirtualThreads());
+    }
+
+    @Test
+    public void testAdmissionWaitsForFreeSlot() throws Exception {
+        ExecutionProperties properties = new ExecutionProperties();
+        properties.setMaxConcurrentRequests(1);
+        properties.setAdmissionTimeout(Duration.ofMillis(100));
+        engine = new ExecutionEngine(properties);
+
+        ExecutionEngine.Admission first = engine.admit();
+        assertThrows(ServerBusyException.class, () -> engine.admit());
+
+        CompletableFuture<ExecutionEngine.Admission> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return engine.admit();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }, engine.ioExecutor());
+        first.close();
+        waiting.get(5, TimeUnit.SECONDS).close();
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.demo.filter;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.example.demo.csv.CsvRecord;
+import com.example.demo.csv.CsvTokenizer;
+import com.example.demo.model.TransactionColumns;
+
+public class RowFilterTest {
+
+    @Test
+    public void testCodesInList() {
+        RowFilter filter = RowFilter.compile(List.of("kekv=2240|2410", "payer_edrpou=00013480"));
+
+        assertMatches(filter, true, TransactionColumns.KEKV, "2410", TransactionColumns.PAYER_EDRPOU, " 00013480 ");
+        assertMatches(filter, true, TransactionColumns.KEKV, "+2240", TransactionColumns.PAYER_EDRPOU, "00013480");
+        assertMatches(filter, false, TransactionColumns.KEKV, "2250", TransactionColumns.PAYER_EDRPOU, "00013480");
+        // Codes are text: leading zeros count.
+        assertMatches(filter, false, TransactionColumns.KEKV, "2410", TransactionColumns.PAYER_EDRPOU, "13480");
+        assertMatches(filter, false, TransactionColumns.KEKV, "", TransactionColumns.PAYER_EDRPOU, "00013480");
+    }
+
+    @Test
+    public void testAmountRangeComparesByValue() {
+        RowFilter filter = RowFilter.compile(List.of("amount>=1000.005", "amount<=1e6"));
+
+        for (String amount : List.of("1000.01", "1000.005", "001000.0050", "1000000", "999999.999999999999999999")) {
+            assertMatches(filter, true, TransactionColumns.AMOUNT, amount);
+        }
+        for (String amount : List.of("1000", "1000.00499", "-5000", "1000000.01", "1E+7", "n/a", "", ".")) {
+            assertMatches(filter, false, TransactionColumns.AMOUNT, amount);
+        }
+        RowFilter exact = RowFilter.compile(List.of("amount=12.5|7"));
+        assertMatches(exact, true, TransactionColumns.AMOUNT, "12.50");
+        assertMatches(exact, true, TransactionColumns.AMOUNT, "7.000");
+        assertMatches(exact, false, TransactionColumns.AMOUNT, "12.05");
+    }
+
+    @Test
+    public void testDateRangeAndAccountPrefix() {
+        RowFilter filter = RowFilter.compile(List.of("trans_date>=2024-10-01", "trans_date<=2024-10-31",
+                "payer_account^=UA61|UA82"));
+
+        assertMatches(filter, true, TransactionColumns.TRANS_DATE, "2024-10-30",
+                TransactionColumns.PAYER_ACCOUNT, "UA618201720000042314000000000");
+        assertMatches(filter, false, TransactionColumns.TRANS_DATE, "2024-11-01",
+                TransactionColumns.PAYER_ACCOUNT, "UA618201720000042314000000000");
+        assertMatches(filter, false, TransactionColumns.TRANS_DATE, "2024-10-30",
+                TransactionColumns.PAYER_ACCOUNT, "UA60");
+        assertMatches(filter, false, TransactionColumns.TRANS_DATE, "30.10.2024",
+                TransactionColumns.PAYER_ACCOUNT, "UA61");
+    }
+
+    @Test
+    public void testQuotedText() {
+        RowFilter filter = RowFilter.compile(List.of("payer_name=ТОВ \"Будсервіс\"|Мінфін"));
+
+        assertMatches(filter, true, TransactionColumns.PAYER_NAME, "ТОВ \"Будсервіс\"");
+        assertMatches(filter, true, TransactionColumns.PAYER_NAME, "Мінфін");
+        assertMatches(filter, false, TransactionColumns.PAYER_NAME, "Мінфін України");
+    }
+
+    @Test
+    public void testRejectsInvalidExpressions() {
+        for (String expression : List.of("kekv", "nope=1", "payer_name>=a", "amount^=1", "amount>=abc",
+                "trans_date=2024-13-01", "amount>=1|2", "kekv=")) {
+            assertThrows(IllegalArgumentException.class, () -> RowFilter.compile(List.of(expression)), expression);
+        }
+    }
+
+    /** Checks both the String and the tokenized path on a row with the given column values. */
+    private static void assertMatches(RowFilter filter, boolean expected, Object... columnValues) {
+        String[] row = new String[TransactionColumns.COUNT];
+        Arrays.fill(row, "");
+        for (int i = 0; i < columnValues.length; i += 2) {
+            row[(Integer) columnValues[i]] = (String) columnValues[i + 1];
+        }
+        assertEquals(expected, filter.test(row), String.join(",", row));
+
+        StringBuilder line = new StringBuilder();
+        for (String value : row) {
+            line.append(line.length() == 0 ? "" : ",").append('"').append(value.replace("\"", "\"\"")).append('"');
+        }
+        ByteBuffer data = ByteBuffer.wrap(line.toString().getBytes(StandardCharsets.UTF_8));
+        CsvRecord record = new CsvRecord();
+        CsvTokenizer.nextRecord(data, 0, data.limit(), record);
+        assertEquals(expected, filter.test(record), line.toString());
+    }
+}
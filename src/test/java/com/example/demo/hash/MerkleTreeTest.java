@@ -0,0 +1,65 @@
+package com.example.demo.hash;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MerkleTreeTest {
+    private static final byte[][] LEAVES = {
+            {}, {0x00}, {0x10}, {0x20, 0x21}, {0x30, 0x31}, {0x40, 0x41, 0x42, 0x43},
+            {0x50, 0x51, 0x52, 0x53, 0x54, 0x55, 0x56, 0x57},
+            {0x60, 0x61, 0x62, 0x63, 0x64, 0x65, 0x66, 0x67, 0x68, 0x69, 0x6a, 0x6b, 0x6c, 0x6d, 0x6e, 0x6f}};
+
+    @Test
+    public void testMatchesRfc6962Vectors() {
+        String[] roots = {
+                "6e340b9cffb37a989ca544e6bb780a2c78901d3fb33738768511a30617afa01d",
+                "fac54203e7cc696cf0dfcb42c92a1d9dbaf70ad9e621f4bd8d98662f00e3c125",
+                "aeb6bcfe274b70a14fb067a5e5578264db0fa9b51af5e0ba159158f329e06e77",
+                "d37ee418976dd95753c1c73862b9398fa2a2cf9b4ff0fdfe8b30cd95209614b7",
+                "4e3bbb1f7b478dcfe71fb631631519a3bca12c9aefca1612bfce4c13a86264d4",
+                "76e67dadbcdf1e10e1b74ddc608abd2f98dfb16fbce75277b5232a127f2087ef",
+                "ddb89be403809e325750d3d263cd78929c2942b7942a34b77e122c9594a74c8c",
+                "5dc9da79a70659a9ad559cb701ded9a2ab9d823aad2f4960cfe370eff4604328"};
+
+        MerkleTree tree = new MerkleTree();
+        assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855", MerkleTree.hex(tree.root()));
+        for (int i = 0; i < LEAVES.length; i++) {
+            tree.add(MerkleTree.leafHash(LEAVES[i]));
+            assertEquals(roots[i], MerkleTree.hex(tree.root()), "tree of " + (i + 1));
+        }
+    }
+
+    @Test
+    public void testRecordStreamGroupsRowsAfterTheHeader() throws Exception {
+        StringBuilder rows = new StringBuilder();
+        for (int i = 0; i < ResponseDigest.LEAF_ROWS + 3; i++) {
+            rows.append(i).append(",\"quoted\nline\",x\n");
+        }
+        byte[] body = rows.toString().getBytes(StandardCharsets.UTF_8);
+        int split = rows.indexOf(ResponseDigest.LEAF_ROWS + ",");
+
+        ResponseDigest digest = new ResponseDigest(false);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ResponseDigest.RecordStream records = digest.records(out, Runnable::run, 1);
+        String header = "id,text,\"x\ny\"\n";
+        records.write(header.getBytes(StandardCharsets.UTF_8));
+        // Writes that cut through records and quotes.
+        for (int off = 0; off < body.length; off += 7) {
+            records.write(body, off, Math.min(7, body.length - off));
+        }
+        records.finish();
+
+        MerkleTree expected = new MerkleTree();
+        expected.add(MerkleTree.leafHash(body, 0, split));
+        expected.add(MerkleTree.leafHash(body, split, body.length - split));
+        IntegrityReport report = digest.report();
+        assertEquals(ResponseDigest.LEAF_ROWS + 3, report.getRows());
+        assertEquals(2, report.getLeaves().size());
+        assertEquals(MerkleTree.hex(expected.root()), report.getRoot());
+        assertEquals(header + rows, out.toString(StandardCharsets.UTF_8));
+    }
+}
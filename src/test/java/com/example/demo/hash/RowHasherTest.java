@@ -0,0 +1,82 @@
+package com.example.demo.hash;
+
+import com.example.demo.model.TransactionDto;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RowHasherTest {
+
+    @Test
+    public void testMatchesJoinedStringHash() throws Exception {
+        String[] fields = {"292071798", "", "Виділення асигнувань по ЗФ", "emoji 💸", "lone \uD800 surrogate", "\"quoted\""};
+
+        RowHasher hasher = RowHasher.current().begin();
+        for (String field : fields) {
+            hasher.add(field);
+        }
+
+        assertEquals(legacySha256(String.join(",", fields)), hasher.finishToString());
+    }
+
+    @Test
+    public void testTypedFieldsMatchObjectsToString() throws Exception {
+        String expected = legacySha256(String.join(",",
+                "-9223372036854775808", "0", "42", "", "2024-10-30", "0999-01-02", "+10000-01-01", "1E-7", "4251932925.5"));
+
+        String actual = RowHasher.current().begin()
+                .add(Long.MIN_VALUE)
+                .add(0)
+                .add(Integer.valueOf(42))
+                .add((Long) null)
+                .add(LocalDate.of(2024, 10, 30))
+                .add(LocalDate.of(999, 1, 2))
+                .add(LocalDate.of(10000, 1, 1))
+                .add(new BigDecimal("0.0000001"))
+                .add(new BigDecimal("4251932925.5"))
+                .finishToString();
+
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testEncodedFieldsMatchStringFields() {
+        byte[] utf8 = "x,Мінфін,y".getBytes(StandardCharsets.UTF_8);
+        int length = "Мінфін".getBytes(StandardCharsets.UTF_8).length;
+
+        String fromString = RowHasher.current().begin().add("Мінфін").add("UAH").finishToString();
+        String fromBytes = RowHasher.current().begin().add(utf8, 2, length)
+                .add(ByteBuffer.wrap("UAH".getBytes(StandardCharsets.US_ASCII)), 0, 3).finishToString();
+
+        assertEquals(fromString, fromBytes);
+    }
+
+    @Test
+    public void testTransactionHashIsUnchanged() throws Exception {
+        String[] columns = ("292071798,6,,18/2/326,2024-10-30,2024-10-30,2024-10-30,4251932925.5,425193292550,UAH,"
+                + "37567646,Виділення асигнувань по ЗФ,UA618201720000042314000000000,,,,,00013480,Мінфін,"
+                + "UA608201720343340023000000141,,,,,Процентний,,28,nsep,,2,ДКСУ,2410,3511350,,,9900000000,176819180, ")
+                .split(",", -1);
+        TransactionDto transaction = new TransactionDto(columns);
+
+        transaction.generateHash();
+
+        String joined = String.join(",", columns).trim();
+        assertEquals(legacySha256(joined), transaction.getHash());
+    }
+
+    private static String legacySha256(String data) throws Exception {
+        byte[] hashBytes = MessageDigest.getInstance("SHA-256").digest(data.getBytes(StandardCharsets.UTF_8));
+        StringBuilder sb = new StringBuilder();
+        for (byte b : hashBytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.demo.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompactTransactionTest {
+    private static final String[] AMOUNTS = {
+            "250.17", " 0012.50 ", "+1.5", "-0.00", "0.000001", "0.000001200", "0", "-42", "123456789012345678"
+    };
+    private static final String[] COPS = {"25017", "0089427", "-42", "+7", "0"};
+    private static final String[] INTEGERS = {"42", " 7 ", "+5", "-0", "007", "2147483647", "-2147483648"};
+    private static final String[] DATES = {"2024-10-30", " 2024-02-29 ", "0000-01-01", "9999-12-31", "1969-12-31"};
+    private static final String[] TEXTS = {
+            "ГУ ДКСУ у м.Києві", "  UAH ", "\"Виділення\" \"асигнувань\"", "a,b", "😀", "\uD800x", "x\uDC00"
+    };
+    /** Values the DTO reads with BigDecimal or LocalDate semantics, or rejects outright. */
+    private static final String[] REJECTED_NUMBERS = {
+            "1E+3", ".5", "5.", "12345678901234567890", "0.0000001", "0.00000000", "-", "1.2.3", "٣", "x"
+    };
+    private static final String[] REJECTED_DATES = {"2023-02-29", "2024-1-05", "30.10.2024", "+12024-01-01"};
+
+    @Test
+    public void testMatchesDtoOutput() throws IOException {
+        CompactTransaction transaction = new CompactTransaction(new StringInterner(64));
+        Random random = new Random(42);
+        int parsed = 0;
+        for (int i = 0; i < 5000; i++) {
+            String[] columns = new String[TransactionColumns.COUNT];
+            boolean rejected = false;
+            for (int column = 0; column < columns.length; column++) {
+                ColumnType type = TransactionColumns.type(column);
+                if (random.nextInt(8) == 0) {
+                    columns[column] = random.nextBoolean() ? null : " \t";
+                } else if (type != ColumnType.STRING && random.nextInt(60) == 0) {
+                    columns[column] = pick(random, type == ColumnType.DATE ? REJECTED_DATES : REJECTED_NUMBERS);
+                    rejected = true;
+                } else {
+                    columns[column] = value(column, random);
+                }
+            }
+            assertEquals(!rejected, transaction.parse(columns), "row " + i);
+            if (!rejected) {
+                parsed++;
+                assertArrayEquals(dtoLine(columns), written(transaction), "row " + i);
+            }
+        }
+        assertTrue(parsed > 1000, "parsed " + parsed);
+    }
+
+    @Test
+    public void testRejectsFractionalAmountCop() {
+        String[] columns = new String[TransactionColumns.COUNT];
+        columns[TransactionColumns.AMOUNT_COP] = "12.50";
+
+        assertFalse(new CompactTransaction(new StringInterner(16)).parse(columns));
+    }
+
+    @Test
+    public void testPrimitiveFields() {
+        String[] columns = new String[TransactionColumns.COUNT];
+        columns[TransactionColumns.ID] = " 290000001 ";
+        columns[TransactionColumns.TRANS_DATE] = "2024-10-30";
+        columns[TransactionColumns.AMOUNT] = "0012.50";
+        columns[TransactionColumns.AMOUNT_COP] = "1250";
+        columns[TransactionColumns.KEKV] = "2240";
+        columns[TransactionColumns.PAYER_BANK] = " ГУ ДКСУ ";
+        String[] next = columns.clone();
+        next[TransactionColumns.PAYER_BANK] = "ГУ ДКСУ";
+
+        CompactTransaction transaction = new CompactTransaction(new StringInterner(16));
+        assertTrue(transaction.parse(columns));
+        String bank = transaction.text(TransactionColumns.PAYER_BANK);
+        assertEquals(290_000_001L, transaction.id());
+        assertEquals(LocalDate.of(2024, 10, 30).toEpochDay(), transaction.transDate());
+        assertEquals(1250, transaction.amountUnscaled());
+        assertEquals(2, transaction.amountScale());
+        assertEquals(1250, transaction.amountCop());
+        assertEquals(2240, transaction.kekv());
+        assertTrue(transaction.isNull(TransactionColumns.REGION_ID));
+        assertFalse(transaction.isNull(TransactionColumns.KEKV));
+
+        assertTrue(transaction.parse(next));
+        assertEquals("ГУ ДКСУ", bank);
+        assertSame(bank, transaction.text(TransactionColumns.PAYER_BANK));
+    }
+
+    @Test
+    public void testEpochDay() {
+        for (LocalDate date = LocalDate.of(1600, 1, 1); date.getYear() < 2500; date = date.plusDays(13)) {
+            assertEquals(date.toEpochDay(),
+                    CompactTransaction.epochDay(date.getYear(), date.getMonthValue(), date.getDayOfMonth()));
+        }
+    }
+
+    private static String value(int column, Random random) {
+        switch (TransactionColumns.type(column)) {
+            case LONG:
+            case INTEGER:
+                return pick(random, INTEGERS);
+            case DECIMAL:
+                return pick(random, column == TransactionColumns.AMOUNT ? AMOUNTS : COPS);
+            case DATE:
+                return pick(random, DATES);
+            default:
+                return pick(random, TEXTS);
+        }
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private static byte[] written(CompactTransaction transaction) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        transaction.write(out);
+        return out.toByteArray();
+    }
+
+    private static byte[] dtoLine(String[] columns) {
+        TransactionDto dto = new TransactionDto(columns);
+        dto.generateHash();
+        return (dto.toCsv() + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.demo.pipeline;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FlowControllerTest {
+    private static final long TARGET_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    @Test
+    public void testStartsSmallAndGrowsTowardsTheTarget() throws Exception {
+        FlowController flow = new FlowController(TARGET_NANOS, 0, 0);
+        BatchProcessor<Integer> processor = flow.processor((sequence, rows) -> {
+            sleep(5);
+            return new EncodedBatch(sequence, new byte[0], rows);
+        }, rows -> rows);
+
+        int first = flow.batchRows();
+        for (int i = 0; i < 20; i++) {
+            processor.process(i, flow.batchRows());
+        }
+
+        assertTrue(first < 1000, "First batch should be small, was " + first);
+        assertTrue(flow.batchRows() > first * 4, "Cheap rows should grow batches, got " + flow.batchRows());
+        assertTrue(flow.batchRows() <= FlowController.MAX_BATCH_ROWS);
+    }
+
+    @Test
+    public void testSlowWriterLimitsBatchSize() throws Exception {
+        FlowController flow = new FlowController(TARGET_NANOS, 0, 0);
+        BatchSink sink = flow.sink(batch -> {
+            // 50 µs per row, so 1000 rows fill the target.
+            sleep(batch.getRowCount() / 20);
+            return batch.getRowCount();
+        });
+
+        for (int i = 0; i < 6; i++) {
+            sink.write(new EncodedBatch(i, new byte[0], flow.batchRows()));
+        }
+
+        assertTrue(flow.batchRows() > 500 && flow.batchRows() < 1500, "Got " + flow.batchRows());
+    }
+
+    @Test
+    public void testDeadlineIsOptional() {
+        assertEquals(0, new FlowController(TARGET_NANOS, 0, 0).deadlineNanos());
+        assertTrue(new FlowController(TARGET_NANOS, 0, TimeUnit.SECONDS.toNanos(1)).deadlineNanos() != 0);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
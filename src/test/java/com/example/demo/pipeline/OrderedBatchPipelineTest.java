@@ -0,0 +1,105 @@
+package com.example.demo.pipeline;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OrderedBatchPipelineTest {
+    private final ExecutorService workers = Executors.newFixedThreadPool(2);
+    private final ExecutorService writer = Executors.newCachedThreadPool();
+
+    @AfterEach
+    public void shutdown() {
+        workers.shutdownNow();
+        writer.shutdownNow();
+    }
+
+    @Test
+    public void testSlowRunThatKeepsProgressingCompletes() throws Exception {
+        OrderedBatchPipeline pipeline = new OrderedBatchPipeline(workers, writer, 2, 200);
+        int[] next = {0};
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long rows = pipeline.run(() -> next[0] < 8 ? next[0]++ : null, (sequence, batch) -> {
+            sleep(100);
+            return new EncodedBatch(sequence, new byte[]{(byte) ('0' + batch)}, 1);
+        }, out);
+
+        assertEquals(8, rows);
+        assertEquals("01234567", out.toString());
+    }
+
+    @Test
+    public void testKeepsAtMostWindowSizeBatchesInFlight() throws Exception {
+        OrderedBatchPipeline pipeline = new OrderedBatchPipeline(workers, writer, 2, 10_000);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        int[] next = {0};
+
+        long rows = pipeline.run(() -> {
+            if (next[0] == 20) {
+                return null;
+            }
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            return next[0]++;
+        }, (sequence, batch) -> new EncodedBatch(sequence, new byte[0], 1), batch -> {
+            sleep(10);
+            inFlight.decrementAndGet();
+            return batch.getRowCount();
+        });
+
+        assertEquals(20, rows);
+        assertTrue(maxInFlight.get() <= 2, "max in flight " + maxInFlight.get());
+    }
+
+    @Test
+    public void testStalledBatchFailsTheRun() {
+        OrderedBatchPipeline pipeline = new OrderedBatchPipeline(workers, writer, 2, 100);
+        CountDownLatch never = new CountDownLatch(1);
+        int[] next = {0};
+
+        IOException e = assertThrows(IOException.class, () -> pipeline.run(() -> next[0] < 1 ? next[0]++ : null,
+                (sequence, batch) -> {
+                    await(never);
+                    return new EncodedBatch(sequence, new byte[0], 0);
+                }, new ByteArrayOutputStream()));
+        assertTrue(e.getMessage().startsWith("Batch processing stalled"), e.getMessage());
+    }
+
+    @Test
+    public void testDeadlineFailsTheRun() {
+        OrderedBatchPipeline pipeline = new OrderedBatchPipeline(workers, writer, 2, 10_000);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(150);
+
+        IOException e = assertThrows(IOException.class, () -> pipeline.run(() -> 1, (sequence, batch) -> {
+            sleep(20);
+            return new EncodedBatch(sequence, new byte[0], 1);
+        }, batch -> batch.getRowCount(), deadline));
+        assertEquals("Request deadline exceeded", e.getMessage());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.demo.service;
+
+import com.example.demo.csv.CsvRecord;
+import com.example.demo.csv.CsvTokenizer;
+import com.example.demo.model.TransactionColumns;
+import com.example.demo.model.TransactionDto;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PassthroughEncoderTest {
+    private static final String ROW = "292071798,6,,18/2/326,2024-10-30,2024-10-30,2024-10-30,4251932925.5,425193292550,"
+            + "UAH,37567646,\"Виділення асигнувань по ЗФ\",UA618201720000042314000000000,,,,,00013480,Мінфін,"
+            + "UA608201720343340023000000141,,,,,\"Процентний. Розп.МФУ від 10.10.xxxx №xxxx\",,28,nsep,,2,ДКСУ,2410,"
+            + "3511350,,,9900000000,176819180,";
+
+    @Test
+    public void testCanonicalRowMatchesDtoOutput() throws Exception {
+        assertTrue(assertSameAsDto(ROW), "A canonical upstream row should take the fast path");
+        assertTrue(assertSameAsDto(ROW.replace("\"Виділення асигнувань по ЗФ\"", "\" ТОВ \"\"Ромашка\"\" \"")));
+        assertTrue(assertSameAsDto(ROW.replace(",Мінфін,", ",  Мінфін\t,")));
+    }
+
+    @Test
+    public void testNumericAndDateEdgeCasesMatchDtoOutput() throws Exception {
+        String[][] variants = {
+                {"292071798", "+292071798", "0292071798", "-0", "0", "-1", "9223372036854775807",
+                        "9223372036854775808", "-9223372036854775808", " 42 ", "1.0", "٣"},
+                {"4251932925.5", "0.5", "-0.5", ".5", "5.", "00.5", "0.000001", "0.0000001", "0.000000",
+                        "0.0000000", "-0.00", "1E+3", "1e3", "-12.340"},
+                {"2410", "+2410", "02410", "2147483647", "2147483648", "-2147483648"},
+                {"2024-10-30", "2024-02-29", "2023-02-29", "2024-13-01", "2024-1-30", "0000-01-01", "20241030", "x"}
+        };
+        int[] columns = {TransactionColumns.ID, TransactionColumns.AMOUNT, TransactionColumns.KEKV,
+                TransactionColumns.TRANS_DATE};
+        for (int i = 0; i < columns.length; i++) {
+            for (String value : variants[i]) {
+                String[] fields = ROW.split(",", -1);
+                fields[columns[i]] = value;
+                assertSameAsDto(String.join(",", fields));
+            }
+        }
+    }
+
+    @Test
+    public void testRejectsShortRows() throws Exception {
+        CsvRecord record = tokenize("1,2,3");
+
+        assertFalse(new PassthroughEncoder().encode(record, new ByteArrayOutputStream()));
+    }
+
+    /** Asserts that a row taking the fast path prints exactly what TransactionDto prints. */
+    private static boolean assertSameAsDto(String row) throws Exception {
+        CsvRecord record = tokenize(row);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        boolean encoded = new PassthroughEncoder().encode(record, output);
+
+        String[] columns = record.toStringArray();
+        TransactionDto transaction;
+        try {
+            transaction = new TransactionDto(columns);
+        } catch (IllegalArgumentException e) {
+            assertFalse(encoded, "Rows the DTO rejects must fall back: " + Arrays.toString(columns));
+            return false;
+        }
+        if (encoded) {
+            transaction.generateHash();
+            assertEquals(transaction.toCsv() + "\n", output.toString(StandardCharsets.UTF_8), row);
+        } else {
+            assertEquals(0, output.size(), "Nothing should be written for a rejected row");
+        }
+        return encoded;
+    }
+
+    private static CsvRecord tokenize(String row) {
+        ByteBuffer data = ByteBuffer.wrap(row.getBytes(StandardCharsets.UTF_8));
+        CsvRecord record = new CsvRecord();
+        CsvTokenizer.nextRecord(data, 0, data.limit(), record);
+        return record;
+    }
+}
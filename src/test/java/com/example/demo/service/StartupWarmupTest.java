@@ -0,0 +1,20 @@
+package com.example.demo.service;
+
+import com.example.demo.config.WarmupProperties;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class StartupWarmupTest {
+
+    @Test
+    public void testEveryWarmupRowIsProcessedOnEveryPath() throws Exception {
+        WarmupProperties properties = new WarmupProperties();
+        properties.setRows(1000);
+        properties.setRounds(2);
+        StartupWarmup warmup = new StartupWarmup(new TransactionProxyServiceImpl(), properties);
+
+        int paths = CsvReaderType.values().length * ProcessingMode.values().length * OutputFormat.values().length;
+        assertEquals(2L * paths * 1000, warmup.warmUp());
+    }
+}
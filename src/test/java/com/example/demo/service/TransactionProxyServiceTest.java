@@ -2,6 +2,7 @@ package com.example.demo.service;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -9,18 +10,34 @@ import org.springframework.boot.test.context.SpringBootTest;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.StringReader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import com.example.demo.columnar.ColumnarBatch;
+import com.example.demo.columnar.ColumnarReader;
+import com.example.demo.compression.ContentCoding;
+import com.example.demo.filter.RowFilter;
+import com.example.demo.hash.ResponseDigest;
+import com.example.demo.model.ColumnProjection;
+import com.github.luben.zstd.ZstdInputStream;
 import com.opencsv.CSVParserBuilder;
 import com.opencsv.CSVReader;
 import com.opencsv.CSVReaderBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 
 @SpringBootTest
 public class TransactionProxyServiceTest {
@@ -28,6 +45,9 @@ public class TransactionProxyServiceTest {
     @Autowired
     private TransactionProxyService transactionProxyService;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     private static final Logger logger = LoggerFactory.getLogger(TransactionProxyServiceTest.class);
 
     private String inputCsv;
@@ -75,6 +95,254 @@ public class TransactionProxyServiceTest {
         assertEquals(64, secondRowColumns[38].length(), "Hash should be 64 characters (SHA-256)");
     }
 
+    @Test
+    public void testProcessTransactionsPreservesInputOrder() throws Exception {
+        String[] lines = inputCsv.split("\n");
+        StringBuilder csv = new StringBuilder(lines[0]).append('\n');
+        int rowCount = 12_345;
+        for (int i = 0; i < rowCount; i++) {
+            csv.append(lines[1].replaceFirst("^292071798", String.valueOf(100_000 + i))).append('\n');
+        }
+        InputStream inputStream = new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8));
+
+        InputStream processedStream = transactionProxyService.processTransactions(inputStream);
+
+        List<String> outputRows;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(processedStream, StandardCharsets.UTF_8))) {
+            outputRows = reader.lines().collect(Collectors.toList());
+        }
+
+        assertEquals(rowCount + 1, outputRows.size(), "Expected header and every transaction");
+        for (int i = 0; i < rowCount; i++) {
+            assertEquals(String.valueOf(100_000 + i), parseCsvRow(outputRows.get(i + 1))[0],
+                    "Rows should keep upstream order");
+        }
+    }
+
+    @Test
+    public void testTokenizerMatchesOpenCsvOutput() throws Exception {
+        String csv = inputCsv + "291944386,6,,\"18/2/\"\"327\"\"\",2024-10-30,,2024-10-30,12.5,1250,UAH,,"
+                + "\"Рядок\nз переносом\",,,,,,,,,,,,,,,,28,nsep,,2,ДКСУ,2410,3511350,,,9900000000,176819181,\r\n"
+                + "not,a,transaction\n";
+
+        assertEquals(process(csv, CsvReaderType.OPENCSV, ProcessingMode.FULL),
+                process(csv, CsvReaderType.TOKENIZER, ProcessingMode.FULL));
+    }
+
+    @Test
+    public void testPassthroughMatchesFullOutput() throws Exception {
+        String csv = inputCsv + "291944386, 6 ,,x,2024-10-30,,2024-10-30,0012.50,1250,UAH,,,,,,,,,,,,,,,,,28,nsep,,2,,,,,,,,\n";
+
+        assertEquals(process(csv, CsvReaderType.OPENCSV, ProcessingMode.FULL),
+                process(csv, CsvReaderType.TOKENIZER, ProcessingMode.PASSTHROUGH));
+    }
+
+    @Test
+    public void testMappedFileMatchesStreamedOutput(@TempDir Path directory) throws Exception {
+        // Big enough for several mapped ranges, with quoted line feeds throughout.
+        StringBuilder body = new StringBuilder(inputCsv);
+        for (int id = 0; id < 30_000; id++) {
+            body.append(id).append(",6,,\"18/2/\"\"327\"\"\",2024-10-30,,2024-10-30,12.5,1250,UAH,,")
+                    .append("\"Рядок\nз переносом\",,,,,,,,,,,,,,,,28,nsep,,2,ДКСУ,2410,3511350,,,9900000000,")
+                    .append(id).append(",\r\n");
+        }
+        String csv = body.toString();
+        Path file = Files.writeString(directory.resolve("bulk.csv"), csv);
+
+        for (ProcessingMode mode : ProcessingMode.values()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            long rows = transactionProxyService.processFile(file, out,
+                    ProcessingOptions.builder().reader(CsvReaderType.TOKENIZER).mode(mode).build());
+
+            assertEquals(30_002, rows);
+            assertEquals(process(csv, CsvReaderType.TOKENIZER, mode), out.toString(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testDigestFromWorkersMatchesDigestOfOutput() throws Exception {
+        StringBuilder body = new StringBuilder(inputCsv);
+        for (int id = 0; id < 10_000; id++) {
+            body.append(id).append(",6,,x,2024-10-30,,2024-10-30,12.5,1250,UAH,,\"Рядок\nз переносом\",")
+                    .append(",,,,,,,,,,,,,,,28,nsep,,2,,,,,,,,\n");
+        }
+        byte[] csv = body.toString().getBytes(StandardCharsets.UTF_8);
+
+        for (CsvReaderType reader : CsvReaderType.values()) {
+            ResponseDigest digest = new ResponseDigest(true);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            transactionProxyService.processTransactions(new ByteArrayInputStream(csv), out,
+                    ProcessingOptions.builder().reader(reader).digest(digest).build());
+
+            String output = out.toString(StandardCharsets.UTF_8);
+            int manifest = output.lastIndexOf(ResponseDigest.MANIFEST_PREFIX);
+            ResponseDigest expected = new ResponseDigest(false);
+            ResponseDigest.RecordStream records = expected.records(OutputStream.nullOutputStream(), Runnable::run, 1);
+            records.write(output.substring(0, manifest).getBytes(StandardCharsets.UTF_8));
+            records.finish();
+            assertEquals(3, expected.report().getLeaves().size());
+            assertEquals(expected.report(), digest.report());
+            assertEquals(ResponseDigest.MANIFEST_PREFIX + "merkle-sha256=" + expected.report().getRoot()
+                    + " rows=10002 leaf-rows=" + ResponseDigest.LEAF_ROWS + "\n", output.substring(manifest));
+        }
+    }
+
+    @Test
+    public void testStreamingMatchesPipedOutput() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long rows = transactionProxyService.processTransactions(
+                new ByteArrayInputStream(inputCsv.getBytes(StandardCharsets.UTF_8)), out, ProcessingOptions.DEFAULT);
+
+        assertEquals(2, rows);
+        assertEquals(process(inputCsv, CsvReaderType.OPENCSV, ProcessingMode.FULL), out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testCompressedOutputDecompressesToPlainOutput() throws Exception {
+        String[] lines = inputCsv.split("\n");
+        StringBuilder csv = new StringBuilder(lines[0]).append('\n');
+        for (int i = 0; i < 12_345; i++) {
+            csv.append(lines[1 + i % 2].replaceFirst("^29\\d+", String.valueOf(100_000 + i))).append('\n');
+        }
+        String expected = process(csv.toString(), CsvReaderType.TOKENIZER, ProcessingMode.PASSTHROUGH);
+
+        for (ContentCoding coding : List.of(ContentCoding.GZIP, ContentCoding.ZSTD)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            transactionProxyService.processTransactions(
+                    new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)), out,
+                    ProcessingOptions.builder().reader(CsvReaderType.TOKENIZER).mode(ProcessingMode.PASSTHROUGH)
+                            .compression(coding).build());
+            InputStream decompressed = coding == ContentCoding.GZIP
+                    ? new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))
+                    : new ZstdInputStream(new ByteArrayInputStream(out.toByteArray()));
+            assertEquals(expected, new String(decompressed.readAllBytes(), StandardCharsets.UTF_8), coding.name());
+            assertTrue(out.size() * 4 < expected.length(), coding.name());
+        }
+    }
+
+    @Test
+    public void testColumnarOutputMatchesCsvOutput() throws Exception {
+        String[] lines = inputCsv.split("\n");
+        StringBuilder csv = new StringBuilder(lines[0]).append('\n');
+        for (int i = 0; i < 12_345; i++) {
+            csv.append(lines[1 + i % 2].replaceFirst("^29\\d+", String.valueOf(100_000 + i))).append('\n');
+        }
+        csv.append("not,a,transaction\n");
+        String[] expected = process(csv.toString(), CsvReaderType.TOKENIZER, ProcessingMode.FULL).split("\n");
+
+        InputStream columnar = transactionProxyService.processTransactions(
+                new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)),
+                ProcessingOptions.builder().reader(CsvReaderType.TOKENIZER).format(OutputFormat.COLUMNAR).build());
+        int row = 1;
+        try (ColumnarReader reader = new ColumnarReader(columnar)) {
+            for (ColumnarBatch batch; (batch = reader.next()) != null; ) {
+                for (int i = 0; i < batch.rowCount(); i++, row++) {
+                    if (row == expected.length - 1) {
+                        // The rejected row keeps its raw fields and the hash over them.
+                        assertEquals("not", batch.getText(0, i));
+                        assertEquals(expected[row].substring(expected[row].lastIndexOf(',') + 1),
+                                batch.getText(reader.columnIndex("hash"), i));
+                        continue;
+                    }
+                    String[] columns = parseCsvRow(expected[row]);
+                    for (int column = 0; column < columns.length; column++) {
+                        assertEquals(columns[column], batch.getText(column, i));
+                    }
+                }
+            }
+        }
+        assertEquals(expected.length, row);
+    }
+
+    @Test
+    public void testColumnarOutputSkipsBatchesWithoutMatchingRows() throws Exception {
+        String[] lines = inputCsv.split("\n");
+        StringBuilder csv = new StringBuilder(lines[0]).append('\n');
+        // The stretch of kekv 2420 rows is longer than the largest batch.
+        for (int i = 0; i < 21_500; i++) {
+            csv.append(lines[i < 500 || i >= 21_000 ? 1 : 2]).append('\n');
+        }
+
+        for (CsvReaderType readerType : CsvReaderType.values()) {
+            InputStream columnar = transactionProxyService.processTransactions(
+                    new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)),
+                    ProcessingOptions.builder().reader(readerType).format(OutputFormat.COLUMNAR)
+                            .filter(RowFilter.compile(List.of("kekv=2410"))).build());
+            int rows = 0;
+            try (ColumnarReader reader = new ColumnarReader(columnar)) {
+                for (ColumnarBatch batch; (batch = reader.next()) != null; ) {
+                    for (int i = 0; i < batch.rowCount(); i++, rows++) {
+                        assertEquals("2410", batch.getText(reader.columnIndex("kekv"), i));
+                    }
+                }
+                assertNull(reader.next());
+            }
+            assertEquals(1000, rows, readerType.name());
+        }
+    }
+
+    @Test
+    public void testFiltersAndProjectsRows() throws Exception {
+        String csv = inputCsv + "291944386,6,,x,2024-10-31,,2024-10-31,12.5,1250,UAH,,,,,,,,,,,,,,,,,28,nsep,,2,,2410,,,,,,\n";
+        String[] full = process(csv, CsvReaderType.OPENCSV, ProcessingMode.FULL).split("\n");
+        ProcessingOptions narrow = ProcessingOptions.builder()
+                .filter(RowFilter.compile(List.of("kekv=2410|2800", "amount>=100")))
+                .projection(ColumnProjection.parse("amount,id,kekv"))
+                .build();
+        String expected = "id,amount,kekv,hash\n\"292071798\",\"4251932925.5\",\"2410\","
+                + full[1].substring(full[1].lastIndexOf(',') + 1) + "\n";
+
+        for (ProcessingOptions options : List.of(narrow,
+                narrow.toBuilder().reader(CsvReaderType.TOKENIZER).build(),
+                narrow.toBuilder().mode(ProcessingMode.PASSTHROUGH).build())) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            long rows = transactionProxyService.processTransactions(
+                    new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), out, options);
+            assertEquals(1, rows);
+            assertEquals(expected, out.toString(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testRecordsPipelineMetrics() throws Exception {
+        String csv = inputCsv + "not,a,transaction\n";
+        double rows = counter("proxy.rows");
+        double fallbackRows = counter("proxy.rows.fallback");
+        long processedBatches = processedBatches();
+
+        process(csv, CsvReaderType.TOKENIZER, ProcessingMode.FULL);
+
+        assertEquals(rows + 3, counter("proxy.rows"));
+        assertEquals(fallbackRows + 1, counter("proxy.rows.fallback"));
+        assertEquals(processedBatches + 1, processedBatches());
+        assertEquals(0, meterRegistry.get("proxy.batches.in.flight").gauge().value());
+    }
+
+    @Test
+    public void testPipedFailureIsReportedAtEndOfStream() {
+        String csv = inputCsv + "291944387,\"unterminated\n";
+
+        IOException e = assertThrows(IOException.class, () -> process(csv, CsvReaderType.OPENCSV, ProcessingMode.FULL));
+        assertEquals("Transaction processing failed", e.getMessage());
+    }
+
+    private String process(String csv, CsvReaderType reader, ProcessingMode mode) throws Exception {
+        InputStream processedStream = transactionProxyService.processTransactions(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)),
+                ProcessingOptions.builder().reader(reader).mode(mode).build());
+        return new String(processedStream.readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    private double counter(String name) {
+        return meterRegistry.find(name).tags("reader", "TOKENIZER", "mode", "FULL").counters().stream()
+                .mapToDouble(Counter::count).sum();
+    }
+
+    private long processedBatches() {
+        return meterRegistry.find("proxy.stage").tags("reader", "TOKENIZER", "stage", "process").timers().stream()
+                .mapToLong(Timer::count).sum();
+    }
+
     private String[] parseCsvRow(String row) throws Exception {
         try (CSVReader csvReader = new CSVReaderBuilder(new StringReader(row))
                 .withCSVParser(new CSVParserBuilder().withSeparator(',').withQuoteChar('"').build())